@@ -23,7 +23,6 @@ import com.google.firebase.encoders.ValueEncoderContext;
 import com.google.firebase.encoders.config.Configurator;
 import com.google.firebase.encoders.config.EncoderConfig;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -32,6 +31,8 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class JsonDataEncoderBuilder implements EncoderConfig<JsonDataEncoderBuilder> {
 
@@ -112,25 +113,45 @@ public final class JsonDataEncoderBuilder implements EncoderConfig<JsonDataEncod
 
   @NonNull
   public DataEncoder build() {
+    ConcurrentMap<String, byte[]> encodedFieldNames = new ConcurrentHashMap<>();
     return new DataEncoder() {
       @Override
       public void encode(@NonNull Object o, @NonNull Writer writer) throws IOException {
-        JsonValueObjectEncoderContext encoderContext =
-            new JsonValueObjectEncoderContext(
-                writer, objectEncoders, valueEncoders, fallbackEncoder, ignoreNullValues);
-        encoderContext.add(o, false);
-        encoderContext.close();
+        Utf8JsonWriter jsonWriter = Utf8JsonWriter.obtain();
+        try {
+          encode(o, jsonWriter);
+          jsonWriter.writeTo(writer);
+          writer.flush();
+        } finally {
+          jsonWriter.recycle();
+        }
       }
 
       @Override
       public String encode(@NonNull Object o) {
-        StringWriter stringWriter = new StringWriter();
+        Utf8JsonWriter jsonWriter = Utf8JsonWriter.obtain();
         try {
-          encode(o, stringWriter);
+          encode(o, jsonWriter);
+          return jsonWriter.toString();
         } catch (IOException e) {
-          // Should not happen (TM) A StringWriter does not throw IOException.
+          // Should not happen (TM) Encoding into memory does not throw IOException.
+          return jsonWriter.toString();
+        } finally {
+          jsonWriter.recycle();
         }
-        return stringWriter.toString();
+      }
+
+      private void encode(Object o, Utf8JsonWriter jsonWriter) throws IOException {
+        JsonValueObjectEncoderContext encoderContext =
+            new JsonValueObjectEncoderContext(
+                jsonWriter,
+                objectEncoders,
+                valueEncoders,
+                fallbackEncoder,
+                ignoreNullValues,
+                encodedFieldNames);
+        encoderContext.add(o, false);
+        encoderContext.close();
       }
     };
   }
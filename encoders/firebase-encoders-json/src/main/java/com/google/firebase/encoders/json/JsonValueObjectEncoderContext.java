@@ -14,8 +14,6 @@
 
 package com.google.firebase.encoders.json;
 
-import android.util.Base64;
-import android.util.JsonWriter;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.firebase.encoders.EncodingException;
@@ -25,36 +23,45 @@ import com.google.firebase.encoders.ObjectEncoderContext;
 import com.google.firebase.encoders.ValueEncoder;
 import com.google.firebase.encoders.ValueEncoderContext;
 import java.io.IOException;
-import java.io.Writer;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 final class JsonValueObjectEncoderContext implements ObjectEncoderContext, ValueEncoderContext {
 
   private JsonValueObjectEncoderContext childContext = null;
   private boolean active = true;
-  private final JsonWriter jsonWriter;
+  private final Utf8JsonWriter jsonWriter;
   private final Map<Class<?>, ObjectEncoder<?>> objectEncoders;
   private final Map<Class<?>, ValueEncoder<?>> valueEncoders;
   private final ObjectEncoder<Object> fallbackEncoder;
   private final boolean ignoreNullValues;
 
+  /**
+   * The encoded names of the fields that were encoded so far. Only names of {@link
+   * FieldDescriptor}s are cached, as there is a fixed number of them, unlike map keys.
+   */
+  private final ConcurrentMap<String, byte[]> encodedFieldNames;
+
   JsonValueObjectEncoderContext(
-      @NonNull Writer writer,
+      @NonNull Utf8JsonWriter jsonWriter,
       @NonNull Map<Class<?>, ObjectEncoder<?>> objectEncoders,
       @NonNull Map<Class<?>, ValueEncoder<?>> valueEncoders,
       ObjectEncoder<Object> fallbackEncoder,
-      boolean ignoreNullValues) {
-    this.jsonWriter = new JsonWriter(writer);
+      boolean ignoreNullValues,
+      @NonNull ConcurrentMap<String, byte[]> encodedFieldNames) {
+    this.jsonWriter = jsonWriter;
     this.objectEncoders = objectEncoders;
     this.valueEncoders = valueEncoders;
     this.fallbackEncoder = fallbackEncoder;
     this.ignoreNullValues = ignoreNullValues;
+    this.encodedFieldNames = encodedFieldNames;
   }
 
   private JsonValueObjectEncoderContext(JsonValueObjectEncoderContext anotherContext) {
     this.jsonWriter = anotherContext.jsonWriter;
+    this.encodedFieldNames = anotherContext.encodedFieldNames;
     this.objectEncoders = anotherContext.objectEncoders;
     this.valueEncoders = anotherContext.valueEncoders;
     this.fallbackEncoder = anotherContext.fallbackEncoder;
@@ -107,38 +114,57 @@ final class JsonValueObjectEncoderContext implements ObjectEncoderContext, Value
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, @Nullable Object obj)
       throws IOException {
-    return add(field.getName(), obj);
+    if (obj == null && ignoreNullValues) {
+      return this;
+    }
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    if (obj == null) {
+      jsonWriter.nullValue();
+      return this;
+    }
+    return add(obj, false);
   }
 
   @NonNull
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, float value) throws IOException {
-    return add(field.getName(), value);
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    return add(value);
   }
 
   @NonNull
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, double value) throws IOException {
-    return add(field.getName(), value);
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    return add(value);
   }
 
   @NonNull
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, int value) throws IOException {
-    return add(field.getName(), value);
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    return add(value);
   }
 
   @NonNull
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, long value) throws IOException {
-    return add(field.getName(), value);
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    return add(value);
   }
 
   @NonNull
   @Override
   public ObjectEncoderContext add(@NonNull FieldDescriptor field, boolean value)
       throws IOException {
-    return add(field.getName(), value);
+    maybeUnNest();
+    jsonWriter.name(encodedName(field));
+    return add(value);
   }
 
   @NonNull
@@ -160,7 +186,11 @@ final class JsonValueObjectEncoderContext implements ObjectEncoderContext, Value
   @NonNull
   @Override
   public ObjectEncoderContext nested(@NonNull FieldDescriptor field) throws IOException {
-    return nested(field.getName());
+    maybeUnNest();
+    childContext = new JsonValueObjectEncoderContext(this);
+    jsonWriter.name(encodedName(field));
+    jsonWriter.beginObject();
+    return childContext;
   }
 
   @NonNull
@@ -175,7 +205,8 @@ final class JsonValueObjectEncoderContext implements ObjectEncoderContext, Value
   @Override
   public JsonValueObjectEncoderContext add(float value) throws IOException {
     maybeUnNest();
-    jsonWriter.value(value);
+    // Floats are written as doubles, as android.util.JsonWriter has no float overload.
+    jsonWriter.value((double) value);
     return this;
   }
 
@@ -218,7 +249,7 @@ final class JsonValueObjectEncoderContext implements ObjectEncoderContext, Value
     if (bytes == null) {
       jsonWriter.nullValue();
     } else {
-      jsonWriter.value(Base64.encodeToString(bytes, Base64.NO_WRAP));
+      jsonWriter.base64Value(bytes);
     }
     return this;
   }
@@ -347,7 +378,16 @@ final class JsonValueObjectEncoderContext implements ObjectEncoderContext, Value
 
   void close() throws IOException {
     maybeUnNest();
-    jsonWriter.flush();
+  }
+
+  private byte[] encodedName(FieldDescriptor field) {
+    String name = field.getName();
+    byte[] encodedName = encodedFieldNames.get(name);
+    if (encodedName == null) {
+      encodedName = Utf8JsonWriter.encodeName(name);
+      encodedFieldNames.put(name, encodedName);
+    }
+    return encodedName;
   }
 
   private void maybeUnNest() throws IOException {
@@ -0,0 +1,474 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.json;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A JSON writer that writes compact, UTF-8 encoded JSON into a growable byte buffer.
+ *
+ * <p>The output is identical to the UTF-8 encoding of what {@link android.util.JsonWriter}
+ * writes, including its escaping rules and its checks of the document structure. Unlike {@link
+ * android.util.JsonWriter}, it does not need a {@link java.io.Writer} and does not allocate
+ * strings for primitive values.
+ *
+ * <p>Writers are meant to be obtained with {@link #obtain()} and returned with {@link #recycle()}
+ * once their output has been consumed, so that the buffer of a thread is reused across encodings.
+ */
+final class Utf8JsonWriter {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+
+  /** Number of chars that are decoded at a time by {@link #writeTo(Writer)}. */
+  private static final int WRITE_CHUNK_SIZE = 8 * 1024;
+
+  /** Buffers that grew beyond this size are not kept around for reuse. */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+  // The scopes of the document, as in android.util.JsonWriter.
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+
+  private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+  private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+  private static final byte[] HEX_DIGITS = {
+    '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+  };
+  private static final byte[] BASE64_ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(UTF_8);
+  private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes(UTF_8);
+
+  private static final ThreadLocal<Utf8JsonWriter> POOL =
+      new ThreadLocal<Utf8JsonWriter>() {
+        @Override
+        protected Utf8JsonWriter initialValue() {
+          return new Utf8JsonWriter();
+        }
+      };
+
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+  private int size;
+
+  private int[] stack = new int[32];
+  private int stackSize;
+
+  private boolean inUse;
+
+  private Utf8JsonWriter() {
+    reset();
+  }
+
+  /**
+   * Returns an empty writer that reuses the buffer of the calling thread, or a new writer if the
+   * thread's writer is already in use by an encoding further up the stack.
+   */
+  @NonNull
+  static Utf8JsonWriter obtain() {
+    Utf8JsonWriter writer = POOL.get();
+    if (writer.inUse) {
+      writer = new Utf8JsonWriter();
+    }
+    writer.inUse = true;
+    writer.reset();
+    return writer;
+  }
+
+  /** Releases the writer for reuse. Its output must not be accessed anymore. */
+  void recycle() {
+    if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new byte[INITIAL_BUFFER_SIZE];
+    }
+    inUse = false;
+  }
+
+  private void reset() {
+    size = 0;
+    stackSize = 0;
+    push(EMPTY_DOCUMENT);
+  }
+
+  Utf8JsonWriter beginArray() {
+    return open(EMPTY_ARRAY, '[');
+  }
+
+  Utf8JsonWriter endArray() {
+    return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+  }
+
+  Utf8JsonWriter beginObject() {
+    return open(EMPTY_OBJECT, '{');
+  }
+
+  Utf8JsonWriter endObject() {
+    return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+  }
+
+  Utf8JsonWriter name(@NonNull String name) {
+    if (name == null) {
+      throw new NullPointerException("name == null");
+    }
+    beforeName();
+    string(name);
+    return this;
+  }
+
+  /** Writes a name that was quoted and escaped in advance with {@link #encodeName(String)}. */
+  Utf8JsonWriter name(@NonNull byte[] encodedName) {
+    beforeName();
+    write(encodedName);
+    return this;
+  }
+
+  Utf8JsonWriter value(@Nullable String value) {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue(false);
+    string(value);
+    return this;
+  }
+
+  Utf8JsonWriter nullValue() {
+    beforeValue(false);
+    write(NULL);
+    return this;
+  }
+
+  Utf8JsonWriter value(boolean value) {
+    beforeValue(false);
+    write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  Utf8JsonWriter value(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue(false);
+    ascii(Double.toString(value));
+    return this;
+  }
+
+  Utf8JsonWriter value(long value) {
+    beforeValue(false);
+    if (value == Long.MIN_VALUE) {
+      write(LONG_MIN_VALUE);
+      return this;
+    }
+    if (value < 0) {
+      writeByte('-');
+      value = -value;
+    }
+    int digits = 1;
+    for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+      digits++;
+    }
+    ensureCapacity(digits);
+    for (int i = size + digits - 1; i >= size; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    size += digits;
+    return this;
+  }
+
+  Utf8JsonWriter value(@Nullable Number value) {
+    if (value == null) {
+      return nullValue();
+    }
+    String string = value.toString();
+    if (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN")) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue(false);
+    ascii(string);
+    return this;
+  }
+
+  /** Writes the given bytes as a Base64 string without line wraps. */
+  Utf8JsonWriter base64Value(@NonNull byte[] bytes) {
+    beforeValue(false);
+    ensureCapacity((bytes.length + 2) / 3 * 4 + 2);
+    byte[] out = buffer;
+    int position = size;
+    out[position++] = '"';
+    int i = 0;
+    for (; i + 2 < bytes.length; i += 3) {
+      int chunk = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+      out[position++] = BASE64_ALPHABET[chunk >>> 18];
+      out[position++] = BASE64_ALPHABET[(chunk >>> 12) & 0x3f];
+      out[position++] = BASE64_ALPHABET[(chunk >>> 6) & 0x3f];
+      out[position++] = BASE64_ALPHABET[chunk & 0x3f];
+    }
+    int remaining = bytes.length - i;
+    if (remaining > 0) {
+      int chunk = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+      out[position++] = BASE64_ALPHABET[chunk >>> 18];
+      out[position++] = BASE64_ALPHABET[(chunk >>> 12) & 0x3f];
+      out[position++] = remaining == 2 ? BASE64_ALPHABET[(chunk >>> 6) & 0x3f] : (byte) '=';
+      out[position++] = '=';
+    }
+    out[position++] = '"';
+    size = position;
+    return this;
+  }
+
+  /**
+   * Writes the output so far to the given writer. The output is decoded in chunks, so that a large
+   * document is not copied into a single string.
+   */
+  void writeTo(@NonNull Writer writer) throws IOException {
+    CharsetDecoder decoder =
+        UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    ByteBuffer in = ByteBuffer.wrap(buffer, 0, size);
+    CharBuffer out = CharBuffer.allocate(Math.min(size, WRITE_CHUNK_SIZE) + 1);
+    CoderResult result;
+    do {
+      result = decoder.decode(in, out, /* endOfInput= */ true);
+      writeChunk(writer, out);
+    } while (result.isOverflow());
+    while (decoder.flush(out).isOverflow()) {
+      writeChunk(writer, out);
+    }
+    writeChunk(writer, out);
+  }
+
+  private static void writeChunk(Writer writer, CharBuffer chunk) throws IOException {
+    chunk.flip();
+    writer.write(chunk.array(), chunk.arrayOffset(), chunk.limit());
+    chunk.clear();
+  }
+
+  /** Returns the bytes written so far, decoded as a string. */
+  @NonNull
+  @Override
+  public String toString() {
+    return new String(buffer, 0, size, UTF_8);
+  }
+
+  /** Returns the quoted, escaped and UTF-8 encoded form of a name, for {@link #name(byte[])}. */
+  @NonNull
+  static byte[] encodeName(@NonNull String name) {
+    Utf8JsonWriter writer = new Utf8JsonWriter();
+    writer.string(name);
+    return Arrays.copyOf(writer.buffer, writer.size);
+  }
+
+  private Utf8JsonWriter open(int empty, char openBracket) {
+    beforeValue(true);
+    push(empty);
+    writeByte(openBracket);
+    return this;
+  }
+
+  private Utf8JsonWriter close(int empty, int nonempty, char closeBracket) {
+    int context = peek();
+    if (context != nonempty && context != empty) {
+      throw new IllegalStateException("Nesting problem: " + scopes());
+    }
+    stackSize--;
+    writeByte(closeBracket);
+    return this;
+  }
+
+  private void beforeName() {
+    int context = peek();
+    if (context == NONEMPTY_OBJECT) {
+      writeByte(',');
+    } else if (context != EMPTY_OBJECT) {
+      throw new IllegalStateException("Nesting problem: " + scopes());
+    }
+    replaceTop(DANGLING_NAME);
+  }
+
+  private void beforeValue(boolean root) {
+    switch (peek()) {
+      case EMPTY_DOCUMENT:
+        if (!root) {
+          throw new IllegalStateException("JSON must start with an array or an object.");
+        }
+        replaceTop(NONEMPTY_DOCUMENT);
+        break;
+      case EMPTY_ARRAY:
+        replaceTop(NONEMPTY_ARRAY);
+        break;
+      case NONEMPTY_ARRAY:
+        writeByte(',');
+        break;
+      case DANGLING_NAME:
+        writeByte(':');
+        replaceTop(NONEMPTY_OBJECT);
+        break;
+      case NONEMPTY_DOCUMENT:
+        throw new IllegalStateException("JSON must have only one top-level value.");
+      default:
+        throw new IllegalStateException("Nesting problem: " + scopes());
+    }
+  }
+
+  /**
+   * Writes a quoted string with the escaping of android.util.JsonWriter. Unpaired surrogates are
+   * replaced by '?', like {@link String#getBytes(Charset)} does.
+   */
+  private void string(String value) {
+    int length = value.length();
+    // Every char takes at most 6 bytes, for \\u escapes, and the quotes take 2.
+    ensureCapacity(length * 6 + 2);
+    byte[] out = buffer;
+    int position = size;
+    out[position++] = '"';
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        switch (c) {
+          case '"':
+          case '\\':
+            out[position++] = '\\';
+            out[position++] = (byte) c;
+            break;
+          case '\t':
+            out[position++] = '\\';
+            out[position++] = 't';
+            break;
+          case '\b':
+            out[position++] = '\\';
+            out[position++] = 'b';
+            break;
+          case '\n':
+            out[position++] = '\\';
+            out[position++] = 'n';
+            break;
+          case '\r':
+            out[position++] = '\\';
+            out[position++] = 'r';
+            break;
+          case '\f':
+            out[position++] = '\\';
+            out[position++] = 'f';
+            break;
+          default:
+            if (c <= 0x1F) {
+              position = unicodeEscape(out, position, c);
+            } else {
+              out[position++] = (byte) c;
+            }
+            break;
+        }
+      } else if (c < 0x800) {
+        out[position++] = (byte) (0xc0 | c >> 6);
+        out[position++] = (byte) (0x80 | (c & 0x3f));
+      } else if (c == '\u2028' || c == '\u2029') {
+        position = unicodeEscape(out, position, c);
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          out[position++] = (byte) (0xf0 | codePoint >> 18);
+          out[position++] = (byte) (0x80 | (codePoint >> 12 & 0x3f));
+          out[position++] = (byte) (0x80 | (codePoint >> 6 & 0x3f));
+          out[position++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+          out[position++] = '?';
+        }
+      } else {
+        out[position++] = (byte) (0xe0 | c >> 12);
+        out[position++] = (byte) (0x80 | (c >> 6 & 0x3f));
+        out[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    out[position++] = '"';
+    size = position;
+  }
+
+  private static int unicodeEscape(byte[] out, int position, char c) {
+    out[position++] = '\\';
+    out[position++] = 'u';
+    out[position++] = HEX_DIGITS[c >> 12];
+    out[position++] = HEX_DIGITS[(c >> 8) & 0xf];
+    out[position++] = HEX_DIGITS[(c >> 4) & 0xf];
+    out[position++] = HEX_DIGITS[c & 0xf];
+    return position;
+  }
+
+  /** Writes a string that is known to only contain ASCII characters, such as a number. */
+  private void ascii(String value) {
+    int length = value.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void write(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  private void writeByte(char c) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) c;
+  }
+
+  private void ensureCapacity(int additionalBytes) {
+    int required = size + additionalBytes;
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+  }
+
+  private int peek() {
+    if (stackSize == 0) {
+      throw new IllegalStateException("JsonWriter is closed.");
+    }
+    return stack[stackSize - 1];
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  private void replaceTop(int scope) {
+    stack[stackSize - 1] = scope;
+  }
+
+  private String scopes() {
+    return Arrays.toString(Arrays.copyOf(stack, stackSize));
+  }
+}
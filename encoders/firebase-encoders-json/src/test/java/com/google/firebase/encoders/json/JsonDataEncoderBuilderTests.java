@@ -15,11 +15,16 @@
 package com.google.firebase.encoders.json;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.firebase.encoders.DataEncoder;
 import com.google.firebase.encoders.ObjectEncoderContext;
 import com.google.firebase.encoders.ValueEncoderContext;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.Collections;
 import java.util.HashMap;
 import org.junit.Test;
@@ -99,4 +104,22 @@ public class JsonDataEncoderBuilderTests {
     fooMap.put("bar", null);
     assertThat(encoder.encode(fooMap)).isEqualTo("{\"foo\":\"value\"}");
   }
+
+  @Test
+  public void encode_toBufferedWriter_flushesTheWholeDocument() throws IOException {
+    DataEncoder encoder = new JsonDataEncoderBuilder().build();
+    StringBuilder value = new StringBuilder();
+    // Large enough to be written in several chunks, with multi-byte characters across them.
+    for (int i = 0; i < 10_000; i++) {
+      value.append("v\u00e9\u20ac\ud83d\ude00");
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    encoder.encode(
+        Collections.singletonMap("k", value.toString()),
+        new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8)));
+
+    assertThat(outputStream.toString(UTF_8.name()))
+        .isEqualTo("{\"k\":\"" + value + "\"}");
+  }
 }
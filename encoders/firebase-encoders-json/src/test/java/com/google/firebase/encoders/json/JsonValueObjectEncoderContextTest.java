@@ -24,6 +24,7 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.common.collect.Lists;
 import com.google.firebase.encoders.DataEncoder;
 import com.google.firebase.encoders.EncodingException;
+import com.google.firebase.encoders.FieldDescriptor;
 import com.google.firebase.encoders.ObjectEncoder;
 import com.google.firebase.encoders.ObjectEncoderContext;
 import com.google.firebase.encoders.ValueEncoder;
@@ -570,4 +571,65 @@ public class JsonValueObjectEncoderContextTest {
         new JsonDataEncoderBuilder().registerEncoder(DummyClass.class, objectEncoder).build();
     assertThrows(EncodingException.class, () -> encoder.encode(DummyClass.INSTANCE));
   }
+
+  @Test
+  public void testEncodingStrings_shouldEscapeLikeJsonWriter() {
+    ObjectEncoder<DummyClass> objectEncoder =
+        (o, ctx) ->
+            ctx.add("quote\"", "back\\slash\ttab\nnew\u0001line\u2028")
+                .add("unicode", "\u00e9\u4e2d\ud83d\ude00/");
+
+    String result =
+        new JsonDataEncoderBuilder()
+            .registerEncoder(DummyClass.class, objectEncoder)
+            .build()
+            .encode(DummyClass.INSTANCE);
+
+    assertThat(result)
+        .isEqualTo(
+            "{\"quote\\\"\":\"back\\\\slash\\ttab\\nnew\\u0001line\\u2028\","
+                + "\"unicode\":\"\u00e9\u4e2d\ud83d\ude00/\"}");
+  }
+
+  @Test
+  public void testEncodingFieldDescriptors_shouldProduceSameJsonAsNames() {
+    FieldDescriptor name = FieldDescriptor.of("name");
+    FieldDescriptor nested = FieldDescriptor.of("nested\"");
+    ObjectEncoder<DummyClass> objectEncoder =
+        (o, ctx) -> {
+          ctx.add(name, "value").add(name, 1).add(name, 2L).add(name, 1.5f).add(name, true);
+          ctx.nested(nested).add(name, null);
+        };
+    DataEncoder encoder =
+        new JsonDataEncoderBuilder().registerEncoder(DummyClass.class, objectEncoder).build();
+
+    String expected =
+        "{\"name\":\"value\",\"name\":1,\"name\":2,\"name\":1.5,\"name\":true,"
+            + "\"nested\\\"\":{\"name\":null}}";
+    assertThat(encoder.encode(DummyClass.INSTANCE)).isEqualTo(expected);
+    // The second encoding uses the cached field names.
+    assertThat(encoder.encode(DummyClass.INSTANCE)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testEncoding_fromWithinAnEncoder_shouldNotInterfere() {
+    DataEncoder innerEncoder =
+        new JsonDataEncoderBuilder()
+            .registerEncoder(InnerDummyClass.class, (o, ctx) -> ctx.add("inner", "class"))
+            .build();
+    ObjectEncoder<DummyClass> objectEncoder =
+        (o, ctx) ->
+            ctx.add("before", 1)
+                .add("json", innerEncoder.encode(InnerDummyClass.INSTANCE))
+                .add("after", 2);
+
+    String result =
+        new JsonDataEncoderBuilder()
+            .registerEncoder(DummyClass.class, objectEncoder)
+            .build()
+            .encode(DummyClass.INSTANCE);
+
+    assertThat(result)
+        .isEqualTo("{\"before\":1,\"json\":\"{\\\"inner\\\":\\\"class\\\"}\",\"after\":2}");
+  }
 }
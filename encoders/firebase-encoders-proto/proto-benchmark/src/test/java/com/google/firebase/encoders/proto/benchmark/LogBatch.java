@@ -0,0 +1,40 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto.benchmark;
+
+import com.google.firebase.encoders.annotations.Encodable;
+import com.google.firebase.encoders.proto.Protobuf;
+import java.util.List;
+
+@Encodable
+public class LogBatch {
+  private final String source;
+  private final List<LogEvent> events;
+
+  public LogBatch(String source, List<LogEvent> events) {
+    this.source = source;
+    this.events = events;
+  }
+
+  @Protobuf(tag = 1)
+  public String getSource() {
+    return source;
+  }
+
+  @Protobuf(tag = 2)
+  public List<LogEvent> getEvents() {
+    return events;
+  }
+}
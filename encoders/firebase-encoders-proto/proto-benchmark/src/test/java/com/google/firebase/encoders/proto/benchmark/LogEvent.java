@@ -0,0 +1,83 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto.benchmark;
+
+import com.google.firebase.encoders.annotations.Encodable;
+import com.google.firebase.encoders.proto.Protobuf;
+import com.google.firebase.encoders.proto.Protobuf.IntEncoding;
+import java.util.Map;
+
+@Encodable
+public class LogEvent {
+  private final long eventTimeMs;
+  private final long uptimeMs;
+  private final int eventCode;
+  private final int timezoneOffsetSeconds;
+  private final String name;
+  private final Map<String, String> attributes;
+  private final LogEvent cause;
+
+  public LogEvent(
+      long eventTimeMs,
+      long uptimeMs,
+      int eventCode,
+      int timezoneOffsetSeconds,
+      String name,
+      Map<String, String> attributes,
+      LogEvent cause) {
+    this.eventTimeMs = eventTimeMs;
+    this.uptimeMs = uptimeMs;
+    this.eventCode = eventCode;
+    this.timezoneOffsetSeconds = timezoneOffsetSeconds;
+    this.name = name;
+    this.attributes = attributes;
+    this.cause = cause;
+  }
+
+  @Protobuf(tag = 1)
+  public long getEventTimeMs() {
+    return eventTimeMs;
+  }
+
+  @Protobuf(tag = 2, intEncoding = IntEncoding.FIXED)
+  public long getUptimeMs() {
+    return uptimeMs;
+  }
+
+  @Protobuf(tag = 3)
+  public int getEventCode() {
+    return eventCode;
+  }
+
+  @Protobuf(tag = 4, intEncoding = IntEncoding.SIGNED)
+  public int getTimezoneOffsetSeconds() {
+    return timezoneOffsetSeconds;
+  }
+
+  @Protobuf(tag = 5)
+  public String getName() {
+    return name;
+  }
+
+  @Protobuf(tag = 6)
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  @Protobuf(tag = 7)
+  public LogEvent getCause() {
+    return cause;
+  }
+}
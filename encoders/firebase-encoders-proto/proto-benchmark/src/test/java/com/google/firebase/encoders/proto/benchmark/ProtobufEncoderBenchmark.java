@@ -0,0 +1,77 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto.benchmark;
+
+import com.google.firebase.encoders.proto.ProtobufEncoder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of encoding a batch of events, which writes every field of every event
+ * once to determine the sizes of the nested messages and once to write them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProtobufEncoderBenchmark {
+
+  @Param({"1", "100"})
+  public int eventCount;
+
+  private final ProtobufEncoder encoder =
+      ProtobufEncoder.builder().configureWith(AutoLogBatchEncoder.CONFIG).build();
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private LogBatch batch;
+
+  @Setup
+  public void setUp() {
+    List<LogEvent> events = new ArrayList<>();
+    for (int i = 0; i < eventCount; i++) {
+      Map<String, String> attributes = new HashMap<>();
+      attributes.put("screen", "main");
+      attributes.put("attempt", Integer.toString(i));
+      LogEvent cause =
+          new LogEvent(1_700_000_000_000L + i, 5_000L + i, 7, -3600, "cause", attributes, null);
+      events.add(
+          new LogEvent(
+              1_700_000_000_000L + i, 6_000L + i, 42, 3600, "event" + i, attributes, cause));
+    }
+    batch = new LogBatch("benchmark", events);
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    output.reset();
+    encoder.encode(batch, output);
+    return output.size();
+  }
+}
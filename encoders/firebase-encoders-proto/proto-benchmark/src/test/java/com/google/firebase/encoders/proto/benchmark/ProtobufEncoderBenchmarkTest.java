@@ -0,0 +1,34 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto.benchmark;
+
+import org.junit.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs {@link ProtobufEncoderBenchmark}. */
+public class ProtobufEncoderBenchmarkTest {
+
+  @Test
+  public void runProtobufEncoderBenchmark() throws Exception {
+    new Runner(
+            new OptionsBuilder()
+                .include(ProtobufEncoderBenchmark.class.getName())
+                // The benchmark runs in the test JVM, whose classpath a forked JVM can't rebuild.
+                .forks(0)
+                .build())
+        .run();
+  }
+}
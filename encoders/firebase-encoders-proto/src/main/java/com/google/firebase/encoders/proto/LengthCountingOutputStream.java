@@ -43,6 +43,11 @@ final class LengthCountingOutputStream extends OutputStream {
     length += len;
   }
 
+  /** Counts {@code length} bytes as written without writing them. */
+  void addLength(long length) {
+    this.length += length;
+  }
+
   long getLength() {
     return length;
   }
@@ -23,14 +23,13 @@ import com.google.firebase.encoders.ObjectEncoderContext;
 import com.google.firebase.encoders.ValueEncoder;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 final class ProtobufDataEncoderContext implements ObjectEncoderContext {
-  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int STRING_BUFFER_SIZE = 256;
 
   private OutputStream output;
   private final Map<Class<?>, ObjectEncoder<?>> objectEncoders;
@@ -39,6 +38,36 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
   private final ProtobufValueEncoderContext valueEncoderContext =
       new ProtobufValueEncoderContext(this);
 
+  /**
+   * The {@link Protobuf} config of the fields written so far, by identity of their descriptor.
+   * Descriptors are usually constants of the generated encoders, so the config of each field is
+   * only looked up once per encoded value, rather than on every write of both the sizing and the
+   * writing pass.
+   */
+  private final Map<FieldDescriptor, ProtobufField> protobufFields = new IdentityHashMap<>();
+
+  /**
+   * Set while the sizes of nested messages are being determined. Nested messages are length
+   * delimited, so the value is encoded once into this stream to record the size of every nested
+   * message before it is written to the actual output.
+   */
+  @Nullable private LengthCountingOutputStream sizingOutput;
+
+  /** The sizes of the nested messages of the value, in the order in which they are encoded. */
+  private long[] nestedSizes = new long[16];
+
+  /** The index of the first nested message after each nested message and its own descendants. */
+  private int[] nestedSubtreeEnds = new int[16];
+
+  private int nestedCount;
+  private int nextNested;
+
+  /** Scratch space for varints and fixed size values, so that writing them does not allocate. */
+  private final byte[] scratch = new byte[10];
+
+  /** Scratch space that strings are encoded into before they are written to the output. */
+  @Nullable private byte[] stringBuffer;
+
   private static final FieldDescriptor MAP_KEY_DESC =
       FieldDescriptor.builder("key").withProperty(AtProtobuf.builder().tag(1).build()).build();
 
@@ -112,12 +141,10 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
       if (skipDefault && seq.length() == 0) {
         return this;
       }
-      int tag = getTag(field);
+      int tag = getProtobufField(field).tag;
       int wire = 2;
       writeVarInt32((tag << 3) | wire);
-      byte[] bytes = seq.toString().getBytes(UTF_8);
-      writeVarInt32(bytes.length);
-      output.write(bytes);
+      writeString(seq.toString());
       return this;
     }
     if (obj instanceof Collection) {
@@ -165,7 +192,7 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
       if (skipDefault && bytes.length == 0) {
         return this;
       }
-      int tag = getTag(field);
+      int tag = getProtobufField(field).tag;
       int wire = 2;
       writeVarInt32((tag << 3) | wire);
       writeVarInt32(bytes.length);
@@ -206,10 +233,10 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
     if (skipDefault && value == 0) {
       return this;
     }
-    int tag = getTag(field);
+    int tag = getProtobufField(field).tag;
     int wire = 1;
     writeVarInt32((tag << 3) | wire);
-    output.write(allocateBuffer(8).putDouble(value).array());
+    writeFixed64(Double.doubleToRawLongBits(value));
     return this;
   }
 
@@ -225,10 +252,10 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
     if (skipDefault && value == 0) {
       return this;
     }
-    int tag = getTag(field);
+    int tag = getProtobufField(field).tag;
     int wire = 5;
     writeVarInt32((tag << 3) | wire);
-    output.write(allocateBuffer(4).putFloat(value).array());
+    writeFixed32(Float.floatToRawIntBits(value));
     return this;
   }
 
@@ -244,19 +271,19 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
     if (skipDefault && value == 0) {
       return this;
     }
-    Protobuf protobuf = getProtobuf(field);
-    switch (protobuf.intEncoding()) {
+    ProtobufField protobufField = getProtobufField(field);
+    switch (protobufField.intEncoding) {
       case DEFAULT:
-        writeVarInt32((protobuf.tag() << 3));
+        writeVarInt32((protobufField.tag << 3));
         writeVarInt32(value);
         break;
       case SIGNED:
-        writeVarInt32((protobuf.tag() << 3));
+        writeVarInt32((protobufField.tag << 3));
         writeVarInt32((value << 1) ^ (value >> 31));
         break;
       case FIXED:
-        writeVarInt32((protobuf.tag() << 3) | 5);
-        output.write(allocateBuffer(4).putInt(value).array());
+        writeVarInt32((protobufField.tag << 3) | 5);
+        writeFixed32(value);
         break;
     }
     return this;
@@ -274,19 +301,19 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
     if (skipDefault && value == 0) {
       return this;
     }
-    Protobuf protobuf = getProtobuf(field);
-    switch (protobuf.intEncoding()) {
+    ProtobufField protobufField = getProtobufField(field);
+    switch (protobufField.intEncoding) {
       case DEFAULT:
-        writeVarInt32((protobuf.tag() << 3));
+        writeVarInt32((protobufField.tag << 3));
         writeVarInt64(value);
         break;
       case SIGNED:
-        writeVarInt32((protobuf.tag() << 3));
+        writeVarInt32((protobufField.tag << 3));
         writeVarInt64((value << 1) ^ (value >> 63));
         break;
       case FIXED:
-        writeVarInt32((protobuf.tag() << 3) | 1);
-        output.write(allocateBuffer(8).putLong(value).array());
+        writeVarInt32((protobufField.tag << 3) | 1);
+        writeFixed64(value);
         break;
     }
     return this;
@@ -307,21 +334,46 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
   @NonNull
   @Override
   public ObjectEncoderContext inline(@Nullable Object value) throws IOException {
-    return encode(value);
+    if (value != null) {
+      getObjectEncoder(value).encode(value, this);
+    }
+    return this;
   }
 
+  /**
+   * Encodes the given value. The value is encoded twice: once to determine the sizes of all of its
+   * nested messages, and once to write it to the output.
+   */
   ProtobufDataEncoderContext encode(@Nullable Object value) throws IOException {
     if (value == null) {
       return this;
     }
+    ObjectEncoder<Object> objectEncoder = getObjectEncoder(value);
+
+    OutputStream originalStream = output;
+    sizingOutput = new LengthCountingOutputStream();
+    output = sizingOutput;
+    nestedCount = 0;
+    try {
+      objectEncoder.encode(value, this);
+    } finally {
+      output = originalStream;
+      sizingOutput = null;
+    }
+
+    nextNested = 0;
+    objectEncoder.encode(value, this);
+    return this;
+  }
+
+  private ObjectEncoder<Object> getObjectEncoder(Object value) {
     @SuppressWarnings("unchecked")
     ObjectEncoder<Object> objectEncoder =
         (ObjectEncoder<Object>) objectEncoders.get(value.getClass());
-    if (objectEncoder != null) {
-      objectEncoder.encode(value, this);
-      return this;
+    if (objectEncoder == null) {
+      throw new EncodingException("No encoder for " + value.getClass());
     }
-    throw new EncodingException("No encoder for " + value.getClass());
+    return objectEncoder;
   }
 
   @NonNull
@@ -339,33 +391,50 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
   private <T> ProtobufDataEncoderContext doEncode(
       ObjectEncoder<T> encoder, FieldDescriptor field, T obj, boolean skipDefault)
       throws IOException {
+    if (sizingOutput != null) {
+      // Encode the message first, so that its size is known when its header is counted. The order
+      // in which bytes are counted does not matter.
+      int index = reserveNestedSize();
+      long start = sizingOutput.getLength();
+      encoder.encode(obj, this);
+      long size = sizingOutput.getLength() - start;
+      nestedSizes[index] = size;
+      nestedSubtreeEnds[index] = nestedCount;
+      if (skipDefault && size == 0) {
+        return this;
+      }
+      writeHeader(field, size);
+      return this;
+    }
 
-    long size = determineSize(encoder, obj);
+    if (nextNested >= nestedCount) {
+      throw new EncodingException("Encoder produced a different message structure when encoded");
+    }
+    int index = nextNested++;
+    long size = nestedSizes[index];
     if (skipDefault && size == 0) {
+      // The message and its descendants are not written, so skip their sizes as well.
+      nextNested = nestedSubtreeEnds[index];
       return this;
     }
+    writeHeader(field, size);
+    encoder.encode(obj, this);
+    return this;
+  }
 
-    int tag = getTag(field);
+  private void writeHeader(FieldDescriptor field, long size) throws IOException {
+    int tag = getProtobufField(field).tag;
     int wire = 2;
     writeVarInt32((tag << 3) | wire);
     writeVarInt64(size);
-    encoder.encode(obj, this);
-    return this;
   }
 
-  private <T> long determineSize(ObjectEncoder<T> encoder, T obj) throws IOException {
-    // TODO(vkryachko): consider reusing these output streams to avoid allocations.
-    try (LengthCountingOutputStream out = new LengthCountingOutputStream()) {
-
-      OutputStream originalStream = output;
-      output = out;
-      try {
-        encoder.encode(obj, this);
-      } finally {
-        output = originalStream;
-      }
-      return out.getLength();
+  private int reserveNestedSize() {
+    if (nestedCount == nestedSizes.length) {
+      nestedSizes = Arrays.copyOf(nestedSizes, nestedCount * 2);
+      nestedSubtreeEnds = Arrays.copyOf(nestedSubtreeEnds, nestedCount * 2);
     }
+    return nestedCount++;
   }
 
   private <T> ProtobufDataEncoderContext doEncode(
@@ -376,39 +445,133 @@ final class ProtobufDataEncoderContext implements ObjectEncoderContext {
     return this;
   }
 
-  private static ByteBuffer allocateBuffer(int length) {
-    return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
-  }
-
-  private static int getTag(FieldDescriptor field) {
-    Protobuf protobuf = field.getProperty(Protobuf.class);
-    if (protobuf == null) {
-      throw new EncodingException("Field has no @Protobuf config");
-    }
-    return protobuf.tag();
-  }
-
-  private static Protobuf getProtobuf(FieldDescriptor field) {
-    Protobuf protobuf = field.getProperty(Protobuf.class);
-    if (protobuf == null) {
-      throw new EncodingException("Field has no @Protobuf config");
+  private ProtobufField getProtobufField(FieldDescriptor field) {
+    ProtobufField protobufField = protobufFields.get(field);
+    if (protobufField == null) {
+      Protobuf protobuf = field.getProperty(Protobuf.class);
+      if (protobuf == null) {
+        throw new EncodingException("Field has no @Protobuf config");
+      }
+      protobufField = new ProtobufField(protobuf.tag(), protobuf.intEncoding());
+      protobufFields.put(field, protobufField);
     }
-    return protobuf;
+    return protobufField;
   }
 
   private void writeVarInt32(int value) throws IOException {
+    int position = 0;
     while ((value & 0xFFFFFF80) != 0L) {
-      output.write((value & 0x7F) | 0x80);
+      scratch[position++] = (byte) ((value & 0x7F) | 0x80);
       value >>>= 7;
     }
-    output.write(value & 0x7F);
+    scratch[position++] = (byte) (value & 0x7F);
+    output.write(scratch, 0, position);
   }
 
   private void writeVarInt64(long value) throws IOException {
+    int position = 0;
     while ((value & 0xFFFFFFFFFFFFFF80L) != 0L) {
-      output.write(((int) value & 0x7F) | 0x80);
+      scratch[position++] = (byte) (((int) value & 0x7F) | 0x80);
       value >>>= 7;
     }
-    output.write((int) value & 0x7F);
+    scratch[position++] = (byte) ((int) value & 0x7F);
+    output.write(scratch, 0, position);
+  }
+
+  private void writeFixed32(int value) throws IOException {
+    for (int i = 0; i < 4; i++) {
+      scratch[i] = (byte) (value >>> (8 * i));
+    }
+    output.write(scratch, 0, 4);
+  }
+
+  private void writeFixed64(long value) throws IOException {
+    for (int i = 0; i < 8; i++) {
+      scratch[i] = (byte) (value >>> (8 * i));
+    }
+    output.write(scratch, 0, 8);
+  }
+
+  /**
+   * Writes the length prefixed UTF-8 encoding of the string. Produces the same bytes as {@code
+   * String.getBytes(UTF_8)}, including the replacement of unpaired surrogates with '?', without
+   * allocating an intermediate array.
+   */
+  private void writeString(String string) throws IOException {
+    int length = string.length();
+    int utf8Length = 0;
+    for (int i = 0; i < length; i++) {
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        utf8Length += 1;
+      } else if (c < 0x800) {
+        utf8Length += 2;
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(string.charAt(i + 1))) {
+          utf8Length += 4;
+          i++;
+        } else {
+          utf8Length += 1;
+        }
+      } else {
+        utf8Length += 3;
+      }
+    }
+    writeVarInt32(utf8Length);
+
+    if (sizingOutput != null) {
+      // Only the size is needed.
+      sizingOutput.addLength(utf8Length);
+      return;
+    }
+
+    if (stringBuffer == null) {
+      stringBuffer = new byte[STRING_BUFFER_SIZE];
+    }
+    byte[] buffer = stringBuffer;
+    int position = 0;
+    for (int i = 0; i < length; i++) {
+      if (position > buffer.length - 4) {
+        output.write(buffer, 0, position);
+        position = 0;
+      }
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xC0 | (c >>> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(string.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, string.charAt(++i));
+          buffer[position++] = (byte) (0xF0 | (codePoint >>> 18));
+          buffer[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+          buffer[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+          buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+          buffer[position++] = (byte) '?';
+        }
+      } else {
+        buffer[position++] = (byte) (0xE0 | (c >>> 12));
+        buffer[position++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    output.write(buffer, 0, position);
+  }
+
+  /** The {@link Protobuf} config of a field. */
+  private static final class ProtobufField {
+    final int tag;
+    final Protobuf.IntEncoding intEncoding;
+
+    ProtobufField(int tag, Protobuf.IntEncoding intEncoding) {
+      this.tag = tag;
+      this.intEncoding = intEncoding;
+    }
   }
 }
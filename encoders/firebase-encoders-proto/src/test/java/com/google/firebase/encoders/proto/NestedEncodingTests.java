@@ -0,0 +1,76 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto;
+
+import static com.google.common.truth.extensions.proto.ProtoTruth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.firebase.encoders.proto.pojos.Nested;
+import com.google.firebase.encoders.proto.tests.NestedProto;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class NestedEncodingTests {
+  @Test
+  public void encode_withEmptyNestedMessages_shouldSkipThemUnlessRepeated()
+      throws InvalidProtocolBufferException {
+    Nested empty = new Nested("", null, Collections.emptyList());
+    byte[] result =
+        new Nested(
+                "root",
+                new Nested("", empty, Collections.emptyList()),
+                ImmutableList.of(empty, new Nested("child", empty, ImmutableList.of(empty))))
+            .encode();
+
+    NestedProto parsed = NestedProto.parseFrom(result);
+
+    assertThat(parsed)
+        .isEqualTo(
+            NestedProto.newBuilder()
+                .setName("root")
+                .addChildren(NestedProto.getDefaultInstance())
+                .addChildren(
+                    NestedProto.newBuilder()
+                        .setName("child")
+                        .addChildren(NestedProto.getDefaultInstance()))
+                .build());
+  }
+
+  @Test
+  public void encode_withDeeplyNestedMessages_shouldEncodeAllLevels()
+      throws InvalidProtocolBufferException {
+    Nested nested = new Nested("leaf", null, Collections.emptyList());
+    NestedProto.Builder expected = NestedProto.newBuilder().setName("leaf");
+    // Every level of the tree refers to the level below it twice.
+    for (int i = 0; i < 10; i++) {
+      nested = new Nested("level" + i, nested, ImmutableList.of(nested));
+      expected =
+          NestedProto.newBuilder()
+              .setName("level" + i)
+              .setChild(expected.build())
+              .addChildren(expected.build());
+    }
+    for (int i = 0; i < 100; i++) {
+      nested = new Nested("chain" + i, nested, Collections.emptyList());
+      expected = NestedProto.newBuilder().setName("chain" + i).setChild(expected.build());
+    }
+
+    assertThat(NestedProto.parseFrom(nested.encode())).isEqualTo(expected.build());
+  }
+}
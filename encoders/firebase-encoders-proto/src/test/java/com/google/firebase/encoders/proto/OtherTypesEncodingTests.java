@@ -22,6 +22,7 @@ import com.google.firebase.encoders.proto.tests.OtherTypesProto;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -47,4 +48,24 @@ public class OtherTypesEncodingTests {
                 .setWrappedBool(true)
                 .build());
   }
+
+  @Test
+  public void encode_withMultiByteCharacters() throws InvalidProtocolBufferException {
+    StringBuilder str = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      str.append("a\u00e9\u4e2d\ud83d\ude00");
+    }
+    byte[] result = new OtherTypes(str.toString(), new byte[0], false, false).encode();
+    OtherTypesProto parsed = OtherTypesProto.parseFrom(result);
+    assertThat(parsed).isEqualTo(OtherTypesProto.newBuilder().setStr(str.toString()).build());
+  }
+
+  @Test
+  public void encode_withUnpairedSurrogate_shouldMatchStringGetBytes() {
+    String str = "a\ud83db\ude00";
+    byte[] result = new OtherTypes(str, new byte[0], false, false).encode();
+    byte[] expected = str.getBytes(Charset.forName("UTF-8"));
+    assertThat(result[1]).isEqualTo((byte) expected.length);
+    assertThat(Arrays.copyOfRange(result, 2, result.length)).isEqualTo(expected);
+  }
 }
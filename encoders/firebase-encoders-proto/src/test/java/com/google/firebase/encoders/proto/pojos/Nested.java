@@ -0,0 +1,55 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.encoders.proto.pojos;
+
+import com.google.firebase.encoders.annotations.Encodable;
+import com.google.firebase.encoders.proto.Protobuf;
+import com.google.firebase.encoders.proto.ProtobufEncoder;
+import java.util.List;
+
+@Encodable
+public class Nested {
+  private static final ProtobufEncoder ENCODER =
+      ProtobufEncoder.builder().configureWith(AutoNestedEncoder.CONFIG).build();
+
+  private final String name;
+  private final Nested child;
+  private final List<Nested> children;
+
+  public Nested(String name, Nested child, List<Nested> children) {
+    this.name = name;
+    this.child = child;
+    this.children = children;
+  }
+
+  @Protobuf(tag = 1)
+  public String getName() {
+    return name;
+  }
+
+  @Protobuf(tag = 2)
+  public Nested getChild() {
+    return child;
+  }
+
+  @Protobuf(tag = 3)
+  public List<Nested> getChildren() {
+    return children;
+  }
+
+  public byte[] encode() {
+    return ENCODER.encode(this);
+  }
+}
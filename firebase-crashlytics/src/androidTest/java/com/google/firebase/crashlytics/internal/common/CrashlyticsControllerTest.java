@@ -228,6 +228,25 @@ public class CrashlyticsControllerTest extends CrashlyticsTestCase {
         .persistFatalEvent(eq(fatal), eq(thread), eq(sessionId), anyLong());
   }
 
+  @SdkSuppress(minSdkVersion = 30) // ApplicationExitInfo
+  public void testFatalException_whenCaptureFails_callsSessionReportingCoordinatorPersistFatal()
+      throws Exception {
+    final String sessionId = "sessionId";
+    final Thread thread = Thread.currentThread();
+    final Throwable fatal = new OutOfMemoryError("Fatal");
+    final CrashlyticsController controller = createController();
+
+    when(mockSessionReportingCoordinator.listSortedOpenSessionIds())
+        .thenReturn(new TreeSet<>(Collections.singleton(sessionId)));
+    when(mockSessionReportingCoordinator.captureFatalEvent(eq(fatal), eq(thread), anyLong()))
+        .thenThrow(new OutOfMemoryError("Capture"));
+
+    controller.handleUncaughtException(testSettingsProvider, thread, fatal);
+
+    verify(mockSessionReportingCoordinator)
+        .persistFatalEvent(eq(fatal), eq(thread), eq(sessionId), anyLong());
+  }
+
   @Test
   @SdkSuppress(minSdkVersion = 30) // ApplicationExitInfo
   public void testOnDemandFatal_callLogFatalException() {
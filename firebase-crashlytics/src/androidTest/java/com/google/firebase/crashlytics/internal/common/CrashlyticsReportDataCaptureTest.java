@@ -41,6 +41,7 @@ import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.crashlytics.internal.DevelopmentPlatformProvider;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.Event.Application.Execution;
+import com.google.firebase.crashlytics.internal.persistence.FileStore;
 import com.google.firebase.crashlytics.internal.settings.Settings;
 import com.google.firebase.crashlytics.internal.settings.SettingsProvider;
 import com.google.firebase.crashlytics.internal.settings.TestSettings;
@@ -401,6 +402,47 @@ public class CrashlyticsReportDataCaptureTest {
     assertNotNull(event.getApp().getExecution().getSignal());
   }
 
+  @Test
+  public void testCaptureEvent_fromCrashCaptureFile_matchesCapturedThrowable() {
+    final IllegalStateException cause = new IllegalStateException("cause");
+    final RuntimeException eventException = new RuntimeException("fatal", cause);
+    final Thread eventThread = Thread.currentThread();
+    final String sessionId = "sessionId";
+    final CrashCaptureFile crashCaptureFile =
+        new CrashCaptureFile(context, new FileStore(ApplicationProvider.getApplicationContext()));
+
+    crashCaptureFile.reserve(sessionId);
+    assertNull(crashCaptureFile.read(sessionId));
+    assertTrue(crashCaptureFile.capture(eventException, eventThread, timestamp));
+
+    final CrashlyticsReport.Session.Event event =
+        dataCapture.captureEventData(
+            crashCaptureFile.read(sessionId),
+            eventType,
+            eventThreadImportance,
+            maxChainedExceptions);
+    crashCaptureFile.delete(sessionId);
+
+    assertEquals(eventType, event.getType());
+    assertEquals(timestamp, event.getTimestamp());
+    final List<Execution.Thread> threads = event.getApp().getExecution().getThreads();
+    assertTrue(threads.size() > 1);
+    final Execution.Thread firstThread = threads.get(0);
+    assertThread(firstThread, eventThread.getName(), eventThreadImportance);
+    for (int i = 1; i < threads.size(); ++i) {
+      assertThread(threads.get(i), 0);
+    }
+
+    final Execution.Exception builtException = event.getApp().getExecution().getException();
+    assertException(eventException, builtException, 0, eventThreadImportance);
+    assertArrayEquals(firstThread.getFrames().toArray(), builtException.getFrames().toArray());
+    assertException(cause, builtException.getCausedBy(), 0, eventThreadImportance);
+    assertNull(builtException.getCausedBy().getCausedBy());
+
+    assertNotNull(event.getApp().getCurrentProcessDetails());
+    assertNotNull(event.getDevice());
+  }
+
   @Test
   public void testCaptureEvent_noChainedExceptionsOneThread() {
     final RuntimeException eventException = new RuntimeException("fatal");
@@ -59,6 +59,7 @@ public class SessionReportingCoordinatorTest {
   @Mock private LogFileManager logFileManager;
   @Mock private UserMetadata reportMetadata;
   @Mock private IdManager idManager;
+  @Mock private CrashCaptureFile crashCaptureFile;
   @Mock private CrashlyticsReport mockReport;
   @Mock private CrashlyticsReport.Session.Event mockEvent;
   @Mock private CrashlyticsReport.Session.Event.Builder mockEventBuilder;
@@ -80,7 +81,8 @@ public class SessionReportingCoordinatorTest {
             reportSender,
             logFileManager,
             reportMetadata,
-            idManager);
+            idManager,
+            crashCaptureFile);
   }
 
   @Test
@@ -93,6 +95,7 @@ public class SessionReportingCoordinatorTest {
 
     verify(dataCapture).captureReportData(sessionId, timestamp);
     verify(reportPersistence).persistReport(mockReport);
+    verify(crashCaptureFile).reserve(sessionId);
   }
 
   @Test
@@ -113,6 +116,48 @@ public class SessionReportingCoordinatorTest {
         .captureEventData(
             mockException, mockThread, eventType, timestamp, 4, 8, expectedAllThreads);
     verify(reportPersistence).persistEvent(mockEvent, sessionId, expectedHighPriority);
+    verify(crashCaptureFile).delete(sessionId);
+  }
+
+  @Test
+  public void testCaptureFatalEvent_streamsEventIntoCrashCaptureFile() {
+    final long timestamp = System.currentTimeMillis();
+    when(crashCaptureFile.capture(mockException, mockThread, timestamp)).thenReturn(true);
+
+    assertTrue(reportingCoordinator.captureFatalEvent(mockException, mockThread, timestamp));
+    verify(dataCapture, never())
+        .captureEventData(
+            any(Throwable.class),
+            any(Thread.class),
+            anyString(),
+            anyLong(),
+            anyInt(),
+            anyInt(),
+            anyBoolean());
+  }
+
+  @Test
+  public void testCapturedFatalEvent_persistsHighPriorityEventAndDeletesCapture() {
+    final String sessionId = "testSessionId";
+    final CrashCaptureFile.CapturedCrash capturedCrash = new CrashCaptureFile.CapturedCrash();
+    when(crashCaptureFile.read(sessionId)).thenReturn(capturedCrash);
+    when(dataCapture.captureEventData(capturedCrash, "crash", 4, 8)).thenReturn(mockEvent);
+    mockEventInteractions();
+
+    reportingCoordinator.persistCapturedFatalEvent(sessionId, logFileManager, reportMetadata);
+
+    verify(reportPersistence).persistEvent(mockEvent, sessionId, true);
+    verify(crashCaptureFile).delete(sessionId);
+  }
+
+  @Test
+  public void testCapturedFatalEvent_withoutCapture_persistsNothing() {
+    final String sessionId = "testSessionId";
+    when(crashCaptureFile.read(sessionId)).thenReturn(null);
+
+    reportingCoordinator.persistCapturedFatalEvent(sessionId, logFileManager, reportMetadata);
+
+    verify(reportPersistence, never()).persistEvent(any(), anyString(), anyBoolean());
   }
 
   @Test
@@ -473,9 +518,9 @@ public class SessionReportingCoordinatorTest {
     final String sessionId = "testSessionId";
     reportingCoordinator.onBeginSession(sessionId, System.currentTimeMillis());
     final long endedAt = System.currentTimeMillis();
-    reportingCoordinator.finalizeSessions(endedAt, sessionId);
+    reportingCoordinator.finalizeSessions(endedAt, sessionId, /* inParallel= */ true);
 
-    verify(reportPersistence).finalizeReports(sessionId, endedAt);
+    verify(reportPersistence).finalizeReports(sessionId, endedAt, /* inParallel= */ true);
   }
 
   @Test
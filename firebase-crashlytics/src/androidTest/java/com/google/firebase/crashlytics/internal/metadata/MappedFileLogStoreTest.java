@@ -0,0 +1,117 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.crashlytics.internal.metadata;
+
+import com.google.firebase.crashlytics.internal.CrashlyticsTestCase;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+public class MappedFileLogStoreTest extends CrashlyticsTestCase {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MAX_LOG_SIZE = 100;
+
+  private File logFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    logFile = new File(getContext().getFilesDir(), "mappedLogFile.log");
+    logFile.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    logFile.delete();
+    super.tearDown();
+  }
+
+  public void testWrittenLogIsReadableAsQueueFile() throws Exception {
+    final MappedFileLogStore logStore = new MappedFileLogStore(logFile, MAX_LOG_SIZE);
+    // Writes enough entries to wrap around the end of the file several times.
+    for (int i = 0; i < 20; i++) {
+      logStore.writeToLog(i, "message " + i);
+    }
+    final String log = logStore.getLogAsString();
+    logStore.closeLogFile();
+
+    assertEquals(MAX_LOG_SIZE, logFile.length());
+    assertTrue(log.endsWith("19 message 19" + System.getProperty("line.separator")));
+    assertEquals(log, readQueueFile(logFile));
+  }
+
+  public void testLogIsKeptWhenReopened() throws Exception {
+    MappedFileLogStore logStore = new MappedFileLogStore(logFile, MAX_LOG_SIZE);
+    logStore.writeToLog(1, "first");
+    logStore.closeLogFile();
+
+    logStore = new MappedFileLogStore(logFile, MAX_LOG_SIZE);
+    logStore.writeToLog(2, "second");
+
+    final String lineSeparator = System.getProperty("line.separator");
+    assertEquals(
+        "1 first" + lineSeparator + "2 second" + lineSeparator, logStore.getLogAsString());
+    logStore.closeLogFile();
+  }
+
+  public void testQueueFileLogIsKept() throws Exception {
+    final QueueFile queueFile = new QueueFile(logFile);
+    queueFile.add("1 legacy\n".getBytes(UTF_8));
+    queueFile.add("2 legacy\n".getBytes(UTF_8));
+    queueFile.close();
+
+    final MappedFileLogStore logStore = new MappedFileLogStore(logFile, MAX_LOG_SIZE);
+    logStore.writeToLog(3, "current");
+    final String log = logStore.getLogAsString();
+    logStore.closeLogFile();
+
+    assertEquals("1 legacy\n2 legacy\n3 current" + System.getProperty("line.separator"), log);
+    assertEquals(log, readQueueFile(logFile));
+  }
+
+  public void testDeleteLogFile() throws Exception {
+    final MappedFileLogStore logStore = new MappedFileLogStore(logFile, MAX_LOG_SIZE);
+    logStore.writeToLog(1, "message");
+    logStore.deleteLogFile();
+
+    assertFalse(logFile.exists());
+    assertNull(logStore.getLogAsBytes());
+  }
+
+  private static String readQueueFile(File file) throws IOException {
+    final StringBuilder log = new StringBuilder();
+    final QueueFile queueFile = new QueueFile(file);
+    try {
+      queueFile.forEach(
+          new QueueFile.ElementReader() {
+            @Override
+            public void read(InputStream in, int length) throws IOException {
+              final byte[] entry = new byte[length];
+              try {
+                in.read(entry, 0, length);
+              } finally {
+                in.close();
+              }
+              log.append(new String(entry, UTF_8));
+            }
+          });
+    } finally {
+      queueFile.close();
+    }
+    return log.toString();
+  }
+}
@@ -20,6 +20,7 @@ import com.google.firebase.crashlytics.internal.CrashlyticsTestCase;
 import com.google.firebase.crashlytics.internal.common.CrashlyticsBackgroundWorker;
 import com.google.firebase.crashlytics.internal.persistence.FileStore;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -366,6 +367,68 @@ public class MetaDataStoreTest extends CrashlyticsTestCase {
     assertEquals(0, readKeys.size());
   }
 
+  public void testReadKeys_appliesJournal() {
+    storeUnderTest.writeKeyData(SESSION_ID_1, Collections.singletonMap(KEY_1, VALUE_1));
+    storeUnderTest.appendKeyData(SESSION_ID_1, Collections.singletonMap(KEY_1, VALUE_2), false);
+    storeUnderTest.appendKeyData(SESSION_ID_1, Collections.singletonMap(KEY_2, ESCAPED), false);
+
+    final Map<String, String> readKeys = storeUnderTest.readKeyData(SESSION_ID_1);
+
+    assertEquals(2, readKeys.size());
+    assertEquals(VALUE_2, readKeys.get(KEY_1));
+    assertEquals(ESCAPED, readKeys.get(KEY_2));
+  }
+
+  public void testReadKeys_skipsIncompleteJournalEntry() throws IOException {
+    storeUnderTest.appendKeyData(SESSION_ID_1, Collections.singletonMap(KEY_1, VALUE_1), false);
+    File journal = storeUnderTest.getKeysJournalFileForSession(SESSION_ID_1, false);
+    try (PrintWriter printWriter = new PrintWriter(new FileWriter(journal, true))) {
+      printWriter.print("{\"" + KEY_2 + "\":\"" + VALUE_2);
+    }
+
+    final Map<String, String> readKeys = storeUnderTest.readKeyData(SESSION_ID_1);
+
+    assertEquals(Collections.singletonMap(KEY_1, VALUE_1), readKeys);
+  }
+
+  public void testCompactKeys_mergesJournalIntoKeysFile() {
+    storeUnderTest.writeKeyData(SESSION_ID_1, Collections.singletonMap(KEY_1, VALUE_1));
+    storeUnderTest.appendKeyData(SESSION_ID_1, Collections.singletonMap(KEY_2, VALUE_2), false);
+
+    storeUnderTest.compactKeyData(SESSION_ID_1, false);
+
+    assertFalse(storeUnderTest.getKeysJournalFileForSession(SESSION_ID_1, false).exists());
+    final Map<String, String> readKeys = storeUnderTest.readKeyData(SESSION_ID_1);
+    assertEquals(2, readKeys.size());
+    assertEquals(VALUE_1, readKeys.get(KEY_1));
+    assertEquals(VALUE_2, readKeys.get(KEY_2));
+  }
+
+  public void testSetCustomKey_appendsChangedKeysToJournal() {
+    UserMetadata metadata = new UserMetadata(SESSION_ID_1, fileStore, worker);
+    metadata.setCustomKey(KEY_1, VALUE_1);
+    metadata.setCustomKey(KEY_2, VALUE_2);
+    metadata.setCustomKey(KEY_1, VALUE_3);
+
+    assertFalse(storeUnderTest.getKeysFileForSession(SESSION_ID_1).exists());
+    UserMetadata loaded = UserMetadata.loadFromExistingSession(SESSION_ID_1, fileStore, worker);
+    assertEquals(VALUE_3, loaded.getCustomKeys().get(KEY_1));
+    assertEquals(VALUE_2, loaded.getCustomKeys().get(KEY_2));
+  }
+
+  public void testSetCustomKey_compactsFullJournal() {
+    UserMetadata metadata = new UserMetadata(SESSION_ID_1, fileStore, worker);
+    for (int i = 0; i <= UserMetadata.MAX_JOURNAL_ENTRIES; i++) {
+      metadata.setCustomKey(KEY_1, VALUE_1 + i);
+    }
+
+    assertTrue(storeUnderTest.getKeysFileForSession(SESSION_ID_1).exists());
+    assertFalse(storeUnderTest.getKeysJournalFileForSession(SESSION_ID_1, false).exists());
+    assertEquals(
+        VALUE_1 + UserMetadata.MAX_JOURNAL_ENTRIES,
+        storeUnderTest.readKeyData(SESSION_ID_1).get(KEY_1));
+  }
+
   @Test
   public void testWriteReadRolloutState() throws Exception {
     storeUnderTest.writeRolloutState(SESSION_ID_1, ROLLOUTS_STATE);
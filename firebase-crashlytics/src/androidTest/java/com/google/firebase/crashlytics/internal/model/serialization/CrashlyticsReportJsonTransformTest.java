@@ -26,7 +26,9 @@ import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.Event.Application.Execution.Thread.Frame;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.User;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
@@ -114,6 +116,36 @@ public class CrashlyticsReportJsonTransformTest {
     assertThat(reifiedEvent).isEqualTo(testEvent);
   }
 
+  @Test
+  public void testWriteReportWithEventsJson_equalsReportWithEvents() throws IOException {
+    final CrashlyticsReport testReport = makeTestReport(false);
+    final Event testEvent = makeTestEvent();
+    final Event rolloutsEvent = makeRolloutsEvent();
+    final StringWriter writer = new StringWriter();
+
+    transform.writeReportWithEventsJson(
+        testReport,
+        Arrays.asList(transform.eventToJson(testEvent), transform.eventToJson(rolloutsEvent)),
+        writer);
+
+    assertEquals(
+        transform.reportToJson(testReport.withEvents(Arrays.asList(testEvent, rolloutsEvent))),
+        writer.toString());
+  }
+
+  @Test
+  public void testIsEventJson() {
+    final String testEventJson = transform.eventToJson(makeTestEvent());
+
+    assertTrue(transform.isEventJson(testEventJson));
+    assertFalse(transform.isEventJson(""));
+    assertFalse(transform.isEventJson("[]"));
+    assertFalse(transform.isEventJson("{}"));
+    assertFalse(transform.isEventJson("{\"timestamp\":\"later\"}"));
+    assertFalse(transform.isEventJson(testEventJson.substring(0, testEventJson.length() - 1)));
+    assertFalse(transform.isEventJson(testEventJson + "{}"));
+  }
+
   private static CrashlyticsReport makeTestReport(boolean useDevelopmentPlatform) {
     return CrashlyticsReport.builder()
         .setSdkVersion("sdkVersion")
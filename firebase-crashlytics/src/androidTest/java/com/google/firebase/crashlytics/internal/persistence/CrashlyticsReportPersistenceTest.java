@@ -35,6 +35,7 @@ import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.
 import com.google.firebase.crashlytics.internal.settings.Settings;
 import com.google.firebase.crashlytics.internal.settings.Settings.FeatureFlagData;
 import com.google.firebase.crashlytics.internal.settings.SettingsProvider;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -197,6 +198,66 @@ public class CrashlyticsReportPersistenceTest extends CrashlyticsTestCase {
         finalizedReport);
   }
 
+  public void testLoadFinalizedReports_reportWithMalformedEvent_returnsReportWithValidEvents()
+      throws IOException {
+    final String sessionId = "testSession";
+    final CrashlyticsReport testReport = makeTestReport(sessionId);
+    final CrashlyticsReport.Session.Event testEvent = makeTestEvent();
+    final CrashlyticsReport.Session.Event testEvent2 = makeTestEvent();
+
+    reportPersistence.persistReport(testReport);
+    reportPersistence.persistEvent(testEvent, sessionId);
+    reportPersistence.persistEvent(testEvent2, sessionId);
+    // An event file that was cut short, e.g. by a crash while writing it.
+    try (FileOutputStream output =
+        new FileOutputStream(fileStore.getSessionFile(sessionId, "event0000000002"))) {
+      output.write("{\"timestamp\":1,\"type\":".getBytes("UTF-8"));
+    }
+
+    final long endedAt = System.currentTimeMillis();
+
+    reportPersistence.finalizeReports("skippedSession", endedAt);
+
+    final List<CrashlyticsReportWithSessionId> finalizedReports =
+        reportPersistence.loadFinalizedReports();
+    assertEquals(1, finalizedReports.size());
+    assertEquals(
+        testReport
+            .withSessionEndFields(endedAt, false, null)
+            .withAppQualitySessionId(APP_QUALITY_SESSION_ID)
+            .withEvents(Arrays.asList(testEvent, testEvent2)),
+        finalizedReports.get(0).getReport());
+  }
+
+  public void testLoadFinalizedReports_reportWithIncompleteEvent_returnsReportWithValidEvents()
+      throws IOException {
+    final String sessionId = "testSession";
+    final CrashlyticsReport testReport = makeTestReport(sessionId);
+    final CrashlyticsReport.Session.Event testEvent = makeTestEvent();
+
+    reportPersistence.persistReport(testReport);
+    reportPersistence.persistEvent(testEvent, sessionId);
+    // A well-formed JSON object that is missing the required fields of an event.
+    try (FileOutputStream output =
+        new FileOutputStream(fileStore.getSessionFile(sessionId, "event0000000001"))) {
+      output.write("{}".getBytes("UTF-8"));
+    }
+
+    final long endedAt = System.currentTimeMillis();
+
+    reportPersistence.finalizeReports("skippedSession", endedAt);
+
+    final List<CrashlyticsReportWithSessionId> finalizedReports =
+        reportPersistence.loadFinalizedReports();
+    assertEquals(1, finalizedReports.size());
+    assertEquals(
+        testReport
+            .withSessionEndFields(endedAt, false, null)
+            .withAppQualitySessionId(APP_QUALITY_SESSION_ID)
+            .withEvents(Collections.singletonList(testEvent)),
+        finalizedReports.get(0).getReport());
+  }
+
   public void
       testLoadFinalizedReports_reportsWithEventsInMultipleSessions_returnsReportsWithProperEvents() {
     final String sessionId1 = "testSession1";
@@ -241,7 +302,7 @@ public class CrashlyticsReportPersistenceTest extends CrashlyticsTestCase {
 
     final long endedAt = System.currentTimeMillis();
 
-    reportPersistence.finalizeReports("skippedSession", endedAt);
+    reportPersistence.finalizeReports("skippedSession", endedAt, /* inParallel= */ true);
 
     final List<CrashlyticsReportWithSessionId> finalizedReports =
         reportPersistence.loadFinalizedReports();
@@ -256,7 +317,7 @@ public class CrashlyticsReportPersistenceTest extends CrashlyticsTestCase {
 
     final long endedAt = System.currentTimeMillis();
 
-    reportPersistence.finalizeReports("skippedSession", endedAt);
+    reportPersistence.finalizeReports("skippedSession", endedAt, /* inParallel= */ true);
 
     final List<CrashlyticsReportWithSessionId> finalizedReports =
         reportPersistence.loadFinalizedReports();
@@ -277,6 +338,35 @@ public class CrashlyticsReportPersistenceTest extends CrashlyticsTestCase {
     }
   }
 
+  public void testFinalizeReports_finalizesEverySessionWithItsOwnEvents() {
+    final long endedAt = System.currentTimeMillis();
+    final List<String> sessionIds = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final String sessionId = "testSession" + i;
+      sessionIds.add(sessionId);
+      reportPersistence.persistReport(makeTestReport(sessionId));
+      reportPersistence.persistEvent(makeTestEvent("type", sessionId + "-1"), sessionId);
+      reportPersistence.persistEvent(makeTestEvent("type", sessionId + "-2"), sessionId);
+    }
+
+    reportPersistence.finalizeReports("skippedSession", endedAt, /* inParallel= */ true);
+
+    final List<CrashlyticsReportWithSessionId> finalizedReports =
+        reportPersistence.loadFinalizedReports();
+    assertEquals(8, finalizedReports.size());
+    for (CrashlyticsReportWithSessionId finalizedReport : finalizedReports) {
+      final String sessionId = finalizedReport.getSessionId();
+      assertTrue(sessionIds.remove(sessionId));
+      final List<Event> events = finalizedReport.getReport().getSession().getEvents();
+      assertEquals(2, events.size());
+      assertEquals(
+          sessionId + "-1", events.get(0).getApp().getExecution().getException().getReason());
+      assertEquals(
+          sessionId + "-2", events.get(1).getApp().getExecution().getException().getReason());
+    }
+    assertTrue(reportPersistence.getOpenSessionIds().isEmpty());
+  }
+
   public void testFinalizeReports_skipsCappingCurrentSession() throws IOException {
     for (int i = 0; i < 16; i++) {
       persistReportWithEvent(reportPersistence, "testSession" + i, true);
@@ -0,0 +1,437 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.crashlytics.internal.common;
+
+import android.content.Context;
+import android.os.Environment;
+import androidx.annotation.Nullable;
+import com.google.firebase.crashlytics.internal.Logger;
+import com.google.firebase.crashlytics.internal.ProcessDetailsProvider;
+import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.Event.Application.ProcessDetails;
+import com.google.firebase.crashlytics.internal.persistence.FileStore;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file, reserved when a session opens, that a fatal event is streamed into at crash time.
+ *
+ * <p>Capturing a fatal event normally builds the full report object graph and serializes it to
+ * JSON, which needs memory that the dying process might not have. Instead, the crash handler
+ * writes the exception chain, the threads and a snapshot of the device state directly into the
+ * reserved, memory-mapped file, which needs no memory beyond the stack traces themselves. The event
+ * is built from the file when the session is closed on the next launch.
+ *
+ * <p>The file consists of a header, holding the format version and the number of committed bytes,
+ * followed by a sequence of records. A record is only committed once it has been written
+ * completely, so a capture that runs out of space or fails part way keeps every complete record.
+ */
+@SuppressWarnings("KotlinInternal")
+class CrashCaptureFile {
+
+  static final String CRASH_CAPTURE_FILE_NAME = "crash-capture";
+
+  /** The size of the reserved file, enough for several hundred stack frames. */
+  static final int CAPTURE_FILE_SIZE = 256 * 1024;
+
+  private static final int VERSION = 1;
+  private static final int HEADER_LENGTH = 8;
+
+  /** The maximum number of frames captured for each thread other than the crashing thread. */
+  private static final int MAX_THREAD_FRAMES = 128;
+
+  /** The maximum number of frames captured for each exception in the chain. */
+  private static final int MAX_EXCEPTION_FRAMES = 1024;
+
+  private static final byte RECORD_EVENT = 1;
+  private static final byte RECORD_PROCESS = 2;
+  private static final byte RECORD_DEVICE = 3;
+  private static final byte RECORD_EXCEPTION = 4;
+  private static final byte RECORD_THREAD = 5;
+
+  private final Context context;
+  private final FileStore fileStore;
+  private final ProcessDetailsProvider processDetailsProvider = ProcessDetailsProvider.INSTANCE;
+
+  /** The mapped file of the current session, written to by the crashing thread. */
+  @Nullable private volatile MappedByteBuffer reserved;
+
+  /** Whether the last record written did not fit into the reserved file. */
+  private boolean overflowed;
+
+  CrashCaptureFile(Context context, FileStore fileStore) {
+    this.context = context;
+    this.fileStore = fileStore;
+  }
+
+  /** Reserves the capture file of a newly opened session. */
+  void reserve(String sessionId) {
+    reserved = null;
+    final File file = fileStore.getSessionFile(sessionId, CRASH_CAPTURE_FILE_NAME);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(CAPTURE_FILE_SIZE);
+      // The mapping stays valid after the file is closed.
+      final MappedByteBuffer buffer =
+          raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CAPTURE_FILE_SIZE);
+      buffer.putInt(0, VERSION);
+      buffer.putInt(4, 0);
+      reserved = buffer;
+    } catch (IOException e) {
+      Logger.getLogger().w("Could not reserve the crash capture file for session " + sessionId, e);
+    }
+  }
+
+  /**
+   * Streams a fatal event into the reserved file of the current session, and returns whether at
+   * least the exception was captured. Must only be called once, by the crashing thread.
+   */
+  boolean capture(Throwable event, Thread eventThread, long timestampSeconds) {
+    final MappedByteBuffer buffer = reserved;
+    if (buffer == null) {
+      return false;
+    }
+    reserved = null;
+    buffer.position(HEADER_LENGTH);
+    overflowed = false;
+
+    // Every step below can run out of memory. Whatever was committed until then is kept.
+    try {
+      final int orientation = context.getResources().getConfiguration().orientation;
+      putByte(buffer, RECORD_EVENT);
+      putLong(buffer, timestampSeconds);
+      putInt(buffer, orientation);
+      putString(buffer, eventThread.getName());
+      if (!commit(buffer)) {
+        return false;
+      }
+    } catch (Throwable t) {
+      rollback(buffer);
+      return false;
+    }
+    try {
+      captureProcess(buffer);
+    } catch (Throwable t) {
+      rollback(buffer);
+    }
+    try {
+      captureDevice(buffer);
+    } catch (Throwable t) {
+      rollback(buffer);
+    }
+
+    boolean exceptionCaptured = false;
+    try {
+      for (Throwable throwable = event; throwable != null; throwable = throwable.getCause()) {
+        putByte(buffer, RECORD_EXCEPTION);
+        putString(buffer, throwable.getClass().getName());
+        putString(buffer, throwable.getLocalizedMessage());
+        putFrames(buffer, throwable.getStackTrace(), MAX_EXCEPTION_FRAMES);
+        if (!commit(buffer)) {
+          break;
+        }
+        exceptionCaptured = true;
+      }
+    } catch (Throwable t) {
+      rollback(buffer);
+    }
+    if (!exceptionCaptured) {
+      return false;
+    }
+
+    try {
+      for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+        if (entry.getKey().equals(eventThread)) {
+          continue;
+        }
+        putByte(buffer, RECORD_THREAD);
+        putString(buffer, entry.getKey().getName());
+        putFrames(buffer, entry.getValue(), MAX_THREAD_FRAMES);
+        if (!commit(buffer)) {
+          break;
+        }
+      }
+    } catch (Throwable t) {
+      // The event is still reported, with the crashing thread only.
+      rollback(buffer);
+    }
+    return true;
+  }
+
+  /** Returns whether a fatal event was captured in the given session. */
+  boolean hasCapture(String sessionId) {
+    final File file = fileStore.getSessionFile(sessionId, CRASH_CAPTURE_FILE_NAME);
+    if (!file.exists()) {
+      return false;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      return raf.length() >= HEADER_LENGTH && raf.readInt() == VERSION && raf.readInt() > 0;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Returns the fatal event captured in the given session, or null if none was captured. */
+  @Nullable
+  CapturedCrash read(String sessionId) {
+    final File file = fileStore.getSessionFile(sessionId, CRASH_CAPTURE_FILE_NAME);
+    if (!file.exists()) {
+      return null;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      if (raf.length() < HEADER_LENGTH || raf.readInt() != VERSION) {
+        return null;
+      }
+      final int length = raf.readInt();
+      if (length == 0 || HEADER_LENGTH + length > raf.length()) {
+        return null;
+      }
+      final ByteBuffer buffer =
+          raf.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, length);
+      return readRecords(buffer);
+    } catch (IOException | RuntimeException e) {
+      Logger.getLogger().w("Could not read the crash capture file for session " + sessionId, e);
+      return null;
+    }
+  }
+
+  /** Deletes the capture file of the given session, once its event has been persisted. */
+  void delete(String sessionId) {
+    fileStore.getSessionFile(sessionId, CRASH_CAPTURE_FILE_NAME).delete();
+  }
+
+  private void captureProcess(MappedByteBuffer buffer) {
+    final ProcessDetails processDetails = processDetailsProvider.getCurrentProcessDetails(context);
+    putByte(buffer, RECORD_PROCESS);
+    putString(buffer, processDetails.getProcessName());
+    putInt(buffer, processDetails.getPid());
+    putInt(buffer, processDetails.getImportance());
+    putByte(buffer, (byte) (processDetails.isDefaultProcess() ? 1 : 0));
+    commit(buffer);
+  }
+
+  private void captureDevice(MappedByteBuffer buffer) {
+    final BatteryState battery = BatteryState.get(context);
+    final Float batteryLevel = battery.getBatteryLevel();
+    final long usedRamBytes =
+        CommonUtils.calculateTotalRamInBytes(context)
+            - CommonUtils.calculateFreeRamInBytes(context);
+    final long diskUsedBytes =
+        CommonUtils.calculateUsedDiskSpaceInBytes(Environment.getDataDirectory().getPath());
+
+    putByte(buffer, RECORD_DEVICE);
+    putFloat(buffer, batteryLevel != null ? batteryLevel : Float.NaN);
+    putInt(buffer, battery.getBatteryVelocity());
+    putByte(buffer, (byte) (CommonUtils.getProximitySensorEnabled(context) ? 1 : 0));
+    putLong(buffer, usedRamBytes > 0 ? usedRamBytes : 0);
+    putLong(buffer, diskUsedBytes);
+    commit(buffer);
+  }
+
+  private void putFrames(MappedByteBuffer buffer, StackTraceElement[] frames, int maxFrames) {
+    final int count = Math.min(frames.length, maxFrames);
+    putInt(buffer, count);
+    for (int i = 0; i < count; i++) {
+      final StackTraceElement frame = frames[i];
+      putString(buffer, frame.getClassName());
+      putString(buffer, frame.getMethodName());
+      putString(buffer, frame.getFileName());
+      putInt(buffer, frame.getLineNumber());
+    }
+  }
+
+  /**
+   * Commits the record written since the last commit, and returns whether it fit into the file.
+   * A record that did not fit is dropped.
+   */
+  private boolean commit(MappedByteBuffer buffer) {
+    if (overflowed) {
+      rollback(buffer);
+      return false;
+    }
+    buffer.putInt(4, buffer.position() - HEADER_LENGTH);
+    return true;
+  }
+
+  /** Drops the record written since the last commit. */
+  private void rollback(MappedByteBuffer buffer) {
+    buffer.position(HEADER_LENGTH + buffer.getInt(4));
+    overflowed = false;
+  }
+
+  // The put methods never throw, so that running out of space does not allocate an exception.
+
+  private void putByte(MappedByteBuffer buffer, byte value) {
+    if (ensureRemaining(buffer, 1)) {
+      buffer.put(value);
+    }
+  }
+
+  private void putInt(MappedByteBuffer buffer, int value) {
+    if (ensureRemaining(buffer, 4)) {
+      buffer.putInt(value);
+    }
+  }
+
+  private void putLong(MappedByteBuffer buffer, long value) {
+    if (ensureRemaining(buffer, 8)) {
+      buffer.putLong(value);
+    }
+  }
+
+  private void putFloat(MappedByteBuffer buffer, float value) {
+    if (ensureRemaining(buffer, 4)) {
+      buffer.putFloat(value);
+    }
+  }
+
+  /** Writes a string as its UTF-16 chars, which does not need an encoded copy of the string. */
+  private void putString(MappedByteBuffer buffer, @Nullable String value) {
+    if (value == null) {
+      putInt(buffer, -1);
+      return;
+    }
+    final int length = value.length();
+    if (!ensureRemaining(buffer, 4 + 2 * length)) {
+      return;
+    }
+    buffer.putInt(length);
+    for (int i = 0; i < length; i++) {
+      buffer.putChar(value.charAt(i));
+    }
+  }
+
+  private boolean ensureRemaining(MappedByteBuffer buffer, int count) {
+    if (overflowed || buffer.remaining() < count) {
+      overflowed = true;
+      return false;
+    }
+    return true;
+  }
+
+  private static CapturedCrash readRecords(ByteBuffer buffer) {
+    final CapturedCrash crash = new CapturedCrash();
+    while (buffer.hasRemaining()) {
+      final byte type = buffer.get();
+      switch (type) {
+        case RECORD_EVENT:
+          crash.timestampSeconds = buffer.getLong();
+          crash.orientation = buffer.getInt();
+          crash.threadName = readString(buffer);
+          break;
+        case RECORD_PROCESS:
+          crash.processName = readString(buffer);
+          crash.pid = buffer.getInt();
+          crash.importance = buffer.getInt();
+          crash.isDefaultProcess = buffer.get() != 0;
+          crash.hasProcessDetails = true;
+          break;
+        case RECORD_DEVICE:
+          final float batteryLevel = buffer.getFloat();
+          crash.batteryLevel = Float.isNaN(batteryLevel) ? null : (double) batteryLevel;
+          crash.batteryVelocity = buffer.getInt();
+          crash.proximityOn = buffer.get() != 0;
+          crash.ramUsed = buffer.getLong();
+          crash.diskUsed = buffer.getLong();
+          break;
+        case RECORD_EXCEPTION:
+          crash.exceptions.add(
+              new CapturedThrowable(readString(buffer), readString(buffer), readFrames(buffer)));
+          break;
+        case RECORD_THREAD:
+          crash.threads.add(new CapturedThread(readString(buffer), readFrames(buffer)));
+          break;
+        default:
+          throw new IllegalStateException("Unknown crash capture record: " + type);
+      }
+    }
+    return crash.exceptions.isEmpty() ? null : crash;
+  }
+
+  private static StackTraceElement[] readFrames(ByteBuffer buffer) {
+    final StackTraceElement[] frames = new StackTraceElement[buffer.getInt()];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] =
+          new StackTraceElement(
+              readString(buffer), readString(buffer), readString(buffer), buffer.getInt());
+    }
+    return frames;
+  }
+
+  @Nullable
+  private static String readString(ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    final char[] chars = new char[length];
+    buffer.asCharBuffer().get(chars);
+    buffer.position(buffer.position() + 2 * length);
+    return new String(chars);
+  }
+
+  /** A fatal event read from a crash capture file. */
+  static final class CapturedCrash {
+    long timestampSeconds;
+    int orientation;
+    String threadName;
+
+    boolean hasProcessDetails;
+    String processName;
+    int pid;
+    int importance;
+    boolean isDefaultProcess;
+
+    @Nullable Double batteryLevel;
+    int batteryVelocity;
+    boolean proximityOn;
+    long ramUsed;
+    long diskUsed;
+
+    /** The exception chain, starting with the fatal exception. */
+    final List<CapturedThrowable> exceptions = new ArrayList<>();
+
+    /** The threads other than the crashing thread. */
+    final List<CapturedThread> threads = new ArrayList<>();
+  }
+
+  static final class CapturedThrowable {
+    final String className;
+    @Nullable final String localizedMessage;
+    final StackTraceElement[] stacktrace;
+
+    CapturedThrowable(
+        String className, @Nullable String localizedMessage, StackTraceElement[] stacktrace) {
+      this.className = className;
+      this.localizedMessage = localizedMessage;
+      this.stacktrace = stacktrace;
+    }
+  }
+
+  static final class CapturedThread {
+    final String name;
+    final StackTraceElement[] stacktrace;
+
+    CapturedThread(String name, StackTraceElement[] stacktrace) {
+      this.name = name;
+      this.stacktrace = stacktrace;
+    }
+  }
+}
@@ -194,6 +194,11 @@ class CrashlyticsController {
     // reflect when we get around to executing the task later.
     final long timestampMillis = System.currentTimeMillis();
 
+    // Stream the event into the file reserved for it before anything else, so that it can be
+    // reported on the next launch even if handling it below fails, e.g. because memory ran out.
+    final boolean isCaptured =
+        !isOnDemand && captureFatalEvent(ex, thread, getTimestampSeconds(timestampMillis));
+
     final Task<Void> handleUncaughtExceptionTask =
         backgroundWorker.submitTask(
             new Callable<Task<Void>>() {
@@ -211,6 +216,14 @@ class CrashlyticsController {
                 // We've fatally crashed, so write the marker file that indicates a crash occurred.
                 crashMarker.create();
 
+                if (isCaptured && isOutOfMemoryError(ex)) {
+                  // Building the event needs memory that the process does not have. The captured
+                  // event is persisted when the session is closed on the next launch.
+                  Logger.getLogger().d("Deferring the fatal event to the next launch.");
+                  doWriteAppExceptionMarker(timestampMillis);
+                  return Tasks.forResult(null);
+                }
+
                 reportingCoordinator.persistFatalEvent(
                     ex, thread, currentSessionId, timestampSeconds);
 
@@ -265,6 +278,18 @@ class CrashlyticsController {
     }
   }
 
+  /**
+   * Captures the fatal event into the crash capture file, and returns whether it was captured. A
+   * failed capture must not keep the event from being persisted the regular way.
+   */
+  private boolean captureFatalEvent(Throwable ex, Thread thread, long timestampSeconds) {
+    try {
+      return reportingCoordinator.captureFatalEvent(ex, thread, timestampSeconds);
+    } catch (Throwable t) {
+      return false;
+    }
+  }
+
   // endregion
 
   // This method returns a promise that is resolved with a wrapped action once the user has
@@ -607,6 +632,8 @@ class CrashlyticsController {
 
     final String mostRecentSessionIdToClose = sortedOpenSessions.get(offset);
 
+    writeCapturedFatalEventIfPresent(mostRecentSessionIdToClose);
+
     if (settingsProvider.getSettingsSync().featureFlagData.collectAnrs) {
       writeApplicationExitInfoEventIfRelevant(mostRecentSessionIdToClose);
     } else {
@@ -632,7 +659,11 @@ class CrashlyticsController {
       sessionsSubscriber.setSessionId(/* sessionId= */ null);
     }
 
-    reportingCoordinator.finalizeSessions(getCurrentTimestampSeconds(), currentSessionId);
+    // The previous sessions are only finalized in parallel on startup, when the current session is
+    // skipped. Threads are not started while handling a crash, since that may fail, for example
+    // when the crash was caused by running out of memory.
+    reportingCoordinator.finalizeSessions(
+        getCurrentTimestampSeconds(), currentSessionId, /* inParallel= */ skipCurrentSession);
   }
 
   // endregion
@@ -717,6 +748,8 @@ class CrashlyticsController {
     }
 
     doWriteAppExceptionMarker(eventTime);
+    // The keys file is sent as is, so it must include the keys that are still in its journal.
+    UserMetadata.compactKeyData(previousSessionId, fileStore);
     List<NativeSessionFile> nativeSessionFiles =
         getNativeSessionFiles(
             nativeSessionFileProvider,
@@ -922,6 +955,27 @@ class CrashlyticsController {
 
   // endregion
 
+  /** If a fatal event was captured for the session but never persisted, persists that event. */
+  private void writeCapturedFatalEventIfPresent(String sessionId) {
+    if (!reportingCoordinator.hasCapturedFatalEvent(sessionId)) {
+      return;
+    }
+    final LogFileManager relevantSessionLogManager = new LogFileManager(fileStore, sessionId);
+    final UserMetadata relevantUserMetadata =
+        UserMetadata.loadFromExistingSession(sessionId, fileStore, backgroundWorker);
+    reportingCoordinator.persistCapturedFatalEvent(
+        sessionId, relevantSessionLogManager, relevantUserMetadata);
+  }
+
+  private static boolean isOutOfMemoryError(Throwable ex) {
+    for (Throwable throwable = ex; throwable != null; throwable = throwable.getCause()) {
+      if (throwable instanceof OutOfMemoryError) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   // region ApplicationExitInfo
 
   /** If an ApplicationExitInfo exists relevant to the session, writes that event. */
@@ -120,6 +120,76 @@ public class CrashlyticsReportDataCapture {
         .build();
   }
 
+  /** Builds the event of a fatal crash that was streamed into a crash capture file. */
+  Event captureEventData(
+      CrashCaptureFile.CapturedCrash crash,
+      String type,
+      int eventThreadImportance,
+      int maxChainedExceptions) {
+    TrimmedThrowableData trimmedEvent = null;
+    for (int i = crash.exceptions.size() - 1; i >= 0; i--) {
+      final CrashCaptureFile.CapturedThrowable throwable = crash.exceptions.get(i);
+      trimmedEvent =
+          makeTrimmedThrowableData(
+              throwable.className,
+              throwable.localizedMessage,
+              throwable.stacktrace,
+              trimmedEvent,
+              stackTraceTrimmingStrategy);
+    }
+
+    final List<Execution.Thread> threadsList = new ArrayList<>();
+    threadsList.add(
+        populateThreadData(crash.threadName, trimmedEvent.stacktrace, eventThreadImportance));
+    for (CrashCaptureFile.CapturedThread thread : crash.threads) {
+      threadsList.add(
+          populateThreadData(
+              thread.name, stackTraceTrimmingStrategy.getTrimmedStackTrace(thread.stacktrace), 0));
+    }
+
+    final Execution execution =
+        Execution.builder()
+            .setThreads(Collections.unmodifiableList(threadsList))
+            .setException(
+                populateExceptionData(trimmedEvent, eventThreadImportance, maxChainedExceptions))
+            .setSignal(populateSignalData())
+            .setBinaries(populateBinaryImagesList())
+            .build();
+
+    Boolean isBackground = null;
+    ProcessDetails currentProcessDetails = null;
+    if (crash.hasProcessDetails) {
+      currentProcessDetails =
+          processDetailsProvider.buildProcessDetails(
+              crash.processName, crash.pid, crash.importance, crash.isDefaultProcess);
+      if (crash.importance > 0) {
+        isBackground =
+            crash.importance != ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+      }
+    }
+
+    return Event.builder()
+        .setType(type)
+        .setTimestamp(crash.timestampSeconds)
+        .setApp(
+            Event.Application.builder()
+                .setBackground(isBackground)
+                .setCurrentProcessDetails(currentProcessDetails)
+                .setUiOrientation(crash.orientation)
+                .setExecution(execution)
+                .build())
+        .setDevice(
+            Event.Device.builder()
+                .setBatteryLevel(crash.batteryLevel)
+                .setBatteryVelocity(crash.batteryVelocity)
+                .setProximityOn(crash.proximityOn)
+                .setOrientation(crash.orientation)
+                .setRamUsed(crash.ramUsed)
+                .setDiskUsed(crash.diskUsed)
+                .build())
+        .build();
+  }
+
   public Event captureAnrEventData(CrashlyticsReport.ApplicationExitInfo applicationExitInfo) {
     // This is not the orientation of the device at the time of ANR.
     // It's filtered out when the backend processes it.
@@ -361,8 +431,13 @@ public class CrashlyticsReportDataCapture {
 
   private Execution.Thread populateThreadData(
       Thread thread, StackTraceElement[] stacktrace, int importance) {
+    return populateThreadData(thread.getName(), stacktrace, importance);
+  }
+
+  private Execution.Thread populateThreadData(
+      String name, StackTraceElement[] stacktrace, int importance) {
     return Execution.Thread.builder()
-        .setName(thread.getName())
+        .setName(name)
         .setImportance(importance)
         .setFrames(populateFramesList(stacktrace, importance))
         .build();
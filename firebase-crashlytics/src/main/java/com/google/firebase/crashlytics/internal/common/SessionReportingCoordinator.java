@@ -76,8 +76,15 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
         new CrashlyticsReportPersistence(fileStore, settingsProvider, sessionsSubscriber);
     final DataTransportCrashlyticsReportSender reportSender =
         DataTransportCrashlyticsReportSender.create(context, settingsProvider, onDemandCounter);
+    final CrashCaptureFile crashCaptureFile = new CrashCaptureFile(context, fileStore);
     return new SessionReportingCoordinator(
-        dataCapture, reportPersistence, reportSender, logFileManager, userMetadata, idManager);
+        dataCapture,
+        reportPersistence,
+        reportSender,
+        logFileManager,
+        userMetadata,
+        idManager,
+        crashCaptureFile);
   }
 
   private final CrashlyticsReportDataCapture dataCapture;
@@ -86,6 +93,7 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
   private final LogFileManager logFileManager;
   private final UserMetadata reportMetadata;
   private final IdManager idManager;
+  private final CrashCaptureFile crashCaptureFile;
 
   SessionReportingCoordinator(
       CrashlyticsReportDataCapture dataCapture,
@@ -93,13 +101,15 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
       DataTransportCrashlyticsReportSender reportsSender,
       LogFileManager logFileManager,
       UserMetadata reportMetadata,
-      IdManager idManager) {
+      IdManager idManager,
+      CrashCaptureFile crashCaptureFile) {
     this.dataCapture = dataCapture;
     this.reportPersistence = reportPersistence;
     this.reportsSender = reportsSender;
     this.logFileManager = logFileManager;
     this.reportMetadata = reportMetadata;
     this.idManager = idManager;
+    this.crashCaptureFile = crashCaptureFile;
   }
 
   @Override
@@ -108,6 +118,7 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
         dataCapture.captureReportData(sessionId, timestampSeconds);
 
     reportPersistence.persistReport(capturedReport);
+    crashCaptureFile.reserve(sessionId);
   }
 
   @Override
@@ -129,6 +140,50 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
       @NonNull Throwable event, @NonNull Thread thread, @NonNull String sessionId, long timestamp) {
     Logger.getLogger().v("Persisting fatal event for session " + sessionId);
     persistEvent(event, thread, sessionId, EVENT_TYPE_CRASH, timestamp, true);
+    // The event no longer needs to be built from the crash capture file.
+    crashCaptureFile.delete(sessionId);
+  }
+
+  /**
+   * Streams a fatal event into the crash capture file reserved for the current session, without
+   * building or encoding the event. This only needs a little memory, so it works when the process
+   * has run out of memory. Returns whether the event was captured.
+   */
+  public boolean captureFatalEvent(
+      @NonNull Throwable event, @NonNull Thread thread, long timestamp) {
+    return crashCaptureFile.capture(event, thread, timestamp);
+  }
+
+  /** Returns whether a fatal event was streamed into the crash capture file of the session. */
+  public boolean hasCapturedFatalEvent(String sessionId) {
+    return crashCaptureFile.hasCapture(sessionId);
+  }
+
+  /**
+   * Persists the fatal event that was streamed into the crash capture file of a previous session,
+   * if there is one.
+   */
+  public void persistCapturedFatalEvent(
+      String sessionId,
+      LogFileManager logFileManagerForSession,
+      UserMetadata userMetadataForSession) {
+    final CrashCaptureFile.CapturedCrash capturedCrash = crashCaptureFile.read(sessionId);
+    if (capturedCrash == null) {
+      return;
+    }
+
+    Logger.getLogger().d("Persisting captured fatal event for session " + sessionId);
+
+    final CrashlyticsReport.Session.Event capturedEvent =
+        dataCapture.captureEventData(
+            capturedCrash, EVENT_TYPE_CRASH, EVENT_THREAD_IMPORTANCE, MAX_CHAINED_EXCEPTION_DEPTH);
+    CrashlyticsReport.Session.Event eventWithLogsAndCustomKeys =
+        addLogsAndCustomKeysToEvent(
+            capturedEvent, logFileManagerForSession, userMetadataForSession);
+    CrashlyticsReport.Session.Event eventWithRolloutsState =
+        addRolloutsStateToEvent(eventWithLogsAndCustomKeys, userMetadataForSession);
+    reportPersistence.persistEvent(eventWithRolloutsState, sessionId, true);
+    crashCaptureFile.delete(sessionId);
   }
 
   public void persistNonFatalEvent(
@@ -189,9 +244,13 @@ public class SessionReportingCoordinator implements CrashlyticsLifecycleEvents {
   /**
    * Creates finalized reports for all sessions besides the given session. If the given session is
    * null, all sessions will be finalized.
+   *
+   * @param inParallel whether the sessions may be finalized on a pool of threads, which is not safe
+   *     while handling a crash.
    */
-  public void finalizeSessions(long timestamp, @Nullable String currentSessionId) {
-    reportPersistence.finalizeReports(currentSessionId, timestamp);
+  public void finalizeSessions(
+      long timestamp, @Nullable String currentSessionId, boolean inParallel) {
+    reportPersistence.finalizeReports(currentSessionId, timestamp, inParallel);
   }
 
   public SortedSet<String> listSortedOpenSessionIds() {
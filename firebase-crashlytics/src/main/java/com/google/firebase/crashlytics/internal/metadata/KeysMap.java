@@ -16,19 +16,23 @@ package com.google.firebase.crashlytics.internal.metadata;
 
 import androidx.annotation.NonNull;
 import com.google.firebase.crashlytics.internal.Logger;
-import com.google.firebase.crashlytics.internal.common.CommonUtils;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Handles any key/values for metadata. */
 class KeysMap {
 
-  // We use synchronized methods in this class rather than a ConcurrentHashMap because the
-  // getKeys() method would need to return a defensive copy in either case. So using the standard
-  // HashMap with synchronized access is more straightforward, and enables us to continue allowing
-  // NULL values.
-  private final Map<String, String> keys = new HashMap<>();
+  // Keys are set from any thread, often many times a second, so this class does not lock. Null
+  // values are stored as empty strings, which allows using a ConcurrentHashMap.
+  private final ConcurrentMap<String, String> keys = new ConcurrentHashMap<>();
+
+  // The number of entries in keys, including entries that are about to be added. Reserving an
+  // entry before adding it keeps the map within maxEntries when keys are added concurrently.
+  private final AtomicInteger entryCount = new AtomicInteger();
   private final int maxEntries;
   private final int maxEntryLength;
 
@@ -39,39 +43,31 @@ class KeysMap {
 
   /** @return defensive, unmodifiable copy of the key/value pairs. */
   @NonNull
-  public synchronized Map<String, String> getKeys() {
+  public Map<String, String> getKeys() {
     return Collections.unmodifiableMap(new HashMap<String, String>(keys));
   }
 
-  public synchronized boolean setKey(String key, String value) {
+  public boolean setKey(String key, String value) {
     String sanitizedKey = sanitizeKey(key);
-    // The entry can be added if we're under the size limit or we're updating an existing entry
-    if (keys.size() < maxEntries || keys.containsKey(sanitizedKey)) {
-      String santitizedAttribute = sanitizeString(value, maxEntryLength);
-      if (CommonUtils.nullSafeEquals(keys.get(sanitizedKey), santitizedAttribute)) {
-        return false;
-      }
-      keys.put(sanitizedKey, value == null ? "" : santitizedAttribute);
+    if (putKey(sanitizedKey, value)) {
       return true;
     }
-    Logger.getLogger()
-        .w(
-            "Ignored entry \""
-                + key
-                + "\" when adding custom keys. Maximum allowable: "
-                + maxEntries);
+    if (!keys.containsKey(sanitizedKey)) {
+      Logger.getLogger()
+          .w(
+              "Ignored entry \""
+                  + key
+                  + "\" when adding custom keys. Maximum allowable: "
+                  + maxEntries);
+    }
     return false;
   }
 
-  public synchronized void setKeys(Map<String, String> keysAndValues) {
+  public void setKeys(Map<String, String> keysAndValues) {
     int nOverLimit = 0;
     for (Map.Entry<String, String> entry : keysAndValues.entrySet()) {
       String sanitizedKey = sanitizeKey(entry.getKey());
-      // The entry can be added if we're under the size limit or we're updating an existing entry
-      if (keys.size() < maxEntries || keys.containsKey(sanitizedKey)) {
-        String value = entry.getValue();
-        keys.put(sanitizedKey, value == null ? "" : sanitizeString(value, maxEntryLength));
-      } else {
+      if (!putKey(sanitizedKey, entry.getValue()) && !keys.containsKey(sanitizedKey)) {
         ++nOverLimit;
       }
     }
@@ -86,6 +82,48 @@ class KeysMap {
     }
   }
 
+  /**
+   * Sets the value of the key, returning true if the key is new or its value changed, and false if
+   * the value is unchanged or the key is new but the map is full.
+   */
+  private boolean putKey(String sanitizedKey, String value) {
+    String sanitizedValue = value == null ? "" : sanitizeString(value, maxEntryLength);
+    while (true) {
+      String currentValue = keys.get(sanitizedKey);
+      if (currentValue != null) {
+        // Updating an existing entry is always allowed.
+        if (currentValue.equals(sanitizedValue)) {
+          return false;
+        }
+        if (keys.replace(sanitizedKey, currentValue, sanitizedValue)) {
+          return true;
+        }
+        continue;
+      }
+      // The entry can be added if we're under the size limit.
+      if (!reserveEntry()) {
+        return false;
+      }
+      if (keys.putIfAbsent(sanitizedKey, sanitizedValue) == null) {
+        return true;
+      }
+      // Another thread added the key in the meantime, so retry as an update.
+      entryCount.decrementAndGet();
+    }
+  }
+
+  private boolean reserveEntry() {
+    while (true) {
+      int count = entryCount.get();
+      if (count >= maxEntries) {
+        return false;
+      }
+      if (entryCount.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
   /** Checks that the key is not null then sanitizes it. */
   private String sanitizeKey(String key) {
     if (key == null) {
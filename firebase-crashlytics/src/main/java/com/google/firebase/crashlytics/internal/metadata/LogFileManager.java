@@ -80,7 +80,7 @@ public class LogFileManager {
 
   /** package-private for testing */
   void setLogFile(File workingFile, int maxLogSize) {
-    currentLog = new QueueFileLogStore(workingFile, maxLogSize);
+    currentLog = new MappedFileLogStore(workingFile, maxLogSize);
   }
 
   private File getWorkingFileForSession(String sessionId) {
@@ -0,0 +1,446 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.crashlytics.internal.metadata;
+
+import com.google.firebase.crashlytics.internal.Logger;
+import com.google.firebase.crashlytics.internal.common.CommonUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which manages the storage of log entries in a memory-mapped ring buffer of a fixed size.
+ *
+ * <p>The file has the format of a {@link QueueFile}, with one element per log entry, so that it can
+ * be read by previous versions of the SDK. Unlike a QueueFile, log entries are written to memory
+ * that is mapped to the file rather than synchronously to disk. The OS writes the memory to the
+ * file even if the app crashes, so log entries are not lost, but writing them does not block on
+ * disk I/O. Like QueueFile, an entry is only committed by the final write of the file header.
+ *
+ * <p>Log files of previous versions of the SDK, which start small and grow as entries are added,
+ * are rewritten to the fixed size the first time they are opened.
+ */
+class MappedFileLogStore implements FileLogStore {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  /** Length of the file header, see {@link QueueFile}. */
+  private static final int HEADER_LENGTH = 16;
+
+  /** Length of the header of every element, which holds the length of its data. */
+  private static final int ELEMENT_HEADER_LENGTH = 4;
+
+  private final File workingFile;
+  private final int maxLogSize;
+
+  private MappedByteBuffer logBuffer;
+
+  // The state of the ring buffer, as stored in the file header.
+  private int fileLength;
+  private int elementCount;
+  private int firstPosition;
+  private int lastPosition;
+
+  /** The data lengths of the first and last elements. */
+  private int firstLength;
+
+  private int lastLength;
+
+  /** Buffer for element headers. */
+  private final byte[] elementHeader = new byte[ELEMENT_HEADER_LENGTH];
+
+  MappedFileLogStore(File workingFile, int maxLogSize) {
+    this.workingFile = workingFile;
+    this.maxLogSize = maxLogSize;
+  }
+
+  @Override
+  public void writeToLog(long timestamp, String msg) {
+    openLogFile();
+    doWriteToLog(timestamp, msg);
+  }
+
+  @Override
+  public byte[] getLogAsBytes() {
+    if (!workingFile.exists()) {
+      return null;
+    }
+
+    // Reopen if the file exists
+    openLogFile();
+
+    if (logBuffer == null) {
+      // There was an error opening the file.
+      return null;
+    }
+
+    final byte[] logBytes =
+        new byte[usedBytes() - HEADER_LENGTH - elementCount * ELEMENT_HEADER_LENGTH];
+    int offset = 0;
+    int position = firstPosition;
+    for (int i = 0; i < elementCount; i++) {
+      final int length = readElementLength(position);
+      ringRead(position + ELEMENT_HEADER_LENGTH, logBytes, offset, length);
+      offset += length;
+      position = wrapPosition(position + ELEMENT_HEADER_LENGTH + length);
+    }
+    return logBytes;
+  }
+
+  @Override
+  public String getLogAsString() {
+    final byte[] logBytes = getLogAsBytes();
+    return (logBytes != null) ? new String(logBytes, UTF_8) : null;
+  }
+
+  @Override
+  public void closeLogFile() {
+    // A mapped buffer cannot be unmapped explicitly, it is unmapped once it is garbage collected.
+    logBuffer = null;
+  }
+
+  @Override
+  public void deleteLogFile() {
+    closeLogFile();
+    workingFile.delete();
+  }
+
+  private void openLogFile() {
+    if (logBuffer != null) {
+      return;
+    }
+    try {
+      try {
+        openOrCreateLogFile();
+      } catch (IOException e) {
+        // The log entries of a corrupt file can't be recovered, so logging starts over.
+        Logger.getLogger().w("Recreating corrupt log file: " + workingFile, e);
+        initialize(workingFile, maxLogSize);
+        mapLogFile();
+      }
+    } catch (IOException e) {
+      Logger.getLogger().e("Could not open log file: " + workingFile, e);
+      logBuffer = null;
+    }
+  }
+
+  /** Maps the log file, creating it or upgrading the log file of a previous version first. */
+  private void openOrCreateLogFile() throws IOException {
+    if (workingFile.exists() && readFileLength() < maxLogSize) {
+      upgradeLogFile();
+    }
+    if (!workingFile.exists()) {
+      initialize(workingFile, maxLogSize);
+    }
+    mapLogFile();
+  }
+
+  /** Returns the file length in the header of the log file. */
+  private int readFileLength() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(workingFile, "r")) {
+      return file.length() < HEADER_LENGTH ? 0 : file.readInt();
+    }
+  }
+
+  /** Rewrites a log file that is smaller than the maximum log size, so that it can be mapped. */
+  private void upgradeLogFile() throws IOException {
+    final List<byte[]> entries = new ArrayList<>();
+    QueueFile queueFile = null;
+    try {
+      queueFile = new QueueFile(workingFile);
+      queueFile.forEach(
+          new QueueFile.ElementReader() {
+            @Override
+            public void read(InputStream in, int length) throws IOException {
+              final byte[] entry = new byte[length];
+              try {
+                in.read(entry, 0, length);
+              } finally {
+                in.close();
+              }
+              entries.add(entry);
+            }
+          });
+    } catch (RuntimeException e) {
+      // QueueFile trusts the positions and lengths in the file.
+      throw new IOException("Corrupt log file", e);
+    } finally {
+      CommonUtils.closeOrLog(queueFile, "There was a problem closing the Crashlytics log file.");
+    }
+
+    final File upgradedFile = new File(workingFile.getPath() + ".upgrade");
+    initialize(upgradedFile, maxLogSize);
+    MappedFileLogStore upgradedStore = new MappedFileLogStore(upgradedFile, maxLogSize);
+    upgradedStore.mapLogFile();
+    for (byte[] entry : entries) {
+      upgradedStore.append(entry);
+    }
+    upgradedStore.closeLogFile();
+
+    // A rename is atomic.
+    if (!upgradedFile.renameTo(workingFile)) {
+      throw new IOException("Rename failed!");
+    }
+  }
+
+  /** Atomically initializes a new, empty log file of the given length. */
+  private static void initialize(File file, int fileLength) throws IOException {
+    // Use a temp file so we don't leave a partially-initialized file.
+    final File tempFile = new File(file.getPath() + ".tmp");
+    try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+      raf.setLength(fileLength);
+      raf.seek(0);
+      raf.writeInt(fileLength);
+      raf.writeInt(0);
+      raf.writeInt(0);
+      raf.writeInt(0);
+    }
+
+    if (!tempFile.renameTo(file)) {
+      throw new IOException("Rename failed!");
+    }
+  }
+
+  /**
+   * Maps the log file and reads its header.
+   *
+   * @throws IOException if the file can't be mapped, or its header or elements are corrupt.
+   */
+  private void mapLogFile() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(workingFile, "rw")) {
+      final int length = raf.readInt();
+      if (length < HEADER_LENGTH || length > raf.length()) {
+        throw new IOException(
+            "File is truncated. Expected length: " + length + ", Actual length: " + raf.length());
+      }
+      // The mapping stays valid after the file is closed.
+      logBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    fileLength = logBuffer.getInt(0);
+    elementCount = logBuffer.getInt(4);
+    firstPosition = logBuffer.getInt(8);
+    lastPosition = logBuffer.getInt(12);
+    try {
+      readElements();
+    } catch (IOException e) {
+      logBuffer = null;
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the lengths of the first and last elements, after checking that all elements fit in the
+   * file and are chained from the first to the last position, so that no read can go out of bounds.
+   */
+  private void readElements() throws IOException {
+    if (elementCount == 0) {
+      return;
+    }
+    if (elementCount < 0 || !isValidPosition(firstPosition) || !isValidPosition(lastPosition)) {
+      throw new IOException(
+          "Corrupt header. Element count: "
+              + elementCount
+              + ", first position: "
+              + firstPosition
+              + ", last position: "
+              + lastPosition);
+    }
+
+    int position = firstPosition;
+    int used = HEADER_LENGTH;
+    for (int i = 0; i < elementCount; i++) {
+      final int length = readElementLength(position);
+      if (length < 0 || length > fileLength - used - ELEMENT_HEADER_LENGTH) {
+        throw new IOException("Corrupt element at " + position + ". Length: " + length);
+      }
+      used += ELEMENT_HEADER_LENGTH + length;
+      if (i == 0) {
+        firstLength = length;
+      }
+      if (i == elementCount - 1) {
+        lastLength = length;
+      } else {
+        position = wrapPosition(position + ELEMENT_HEADER_LENGTH + length);
+      }
+    }
+
+    if (position != lastPosition || used != usedBytes()) {
+      throw new IOException("Corrupt header. The last element is not at " + lastPosition);
+    }
+  }
+
+  private boolean isValidPosition(int position) {
+    return position >= HEADER_LENGTH && position < fileLength;
+  }
+
+  private void doWriteToLog(long timestamp, String msg) {
+    if (logBuffer == null) {
+      return;
+    }
+    if (msg == null) {
+      msg = "null";
+    }
+
+    // This is a bit of a strange area. We want to truncate extremely long messages because
+    // writing a message which is larger than the permitted file size has the effect of
+    // forcing all other messages out of the file, and then the remaining new message is
+    // also too large, and is also removed. Thus we wind up with an empty log.
+    //
+    // The message length is measured in characters, while the max file size is in bytes. We
+    // truncate the message character count at 1/4 of the max log size in bytes. This is
+    // because languages like Japanese use 3 bytes per character. When you take into account
+    // that Tape also introduces per-file and per-message overhead in storage, I decided on
+    // 1/4 rather than 1/3 as the cut-off.
+    //
+    // In practice this means that english messages can be up to 16000+ characters long, and
+    // And Japanese messages can be up to 5000+ characters long.
+    //
+    // We could rewrite this to measure both cut-offs in bytes, but it makes the logic here
+    // much more complex, so I took this approximate approach for now.
+    final int quarterMaxLogSize = maxLogSize / 4;
+
+    if (msg.length() > quarterMaxLogSize) {
+      msg = "..." + msg.substring(msg.length() - quarterMaxLogSize);
+    }
+
+    final StringBuilder entry = new StringBuilder(msg.length() + 24);
+    entry.append(timestamp).append(' ');
+    for (int i = 0; i < msg.length(); i++) {
+      final char c = msg.charAt(i);
+      entry.append(c == '\r' || c == '\n' ? ' ' : c);
+    }
+    entry.append(LINE_SEPARATOR);
+
+    append(entry.toString().getBytes(UTF_8));
+  }
+
+  /** Appends an element, removing the oldest elements to keep the log below the max size. */
+  private void append(byte[] data) {
+    final int elementLength = ELEMENT_HEADER_LENGTH + data.length;
+    if (HEADER_LENGTH + elementLength > Math.min(maxLogSize, fileLength)) {
+      Logger.getLogger().w("Dropping a log entry that is larger than the log file.");
+      return;
+    }
+    while (elementCount > 0 && usedBytes() + elementLength > Math.min(maxLogSize, fileLength)) {
+      removeFirst();
+    }
+
+    final int position =
+        elementCount == 0
+            ? HEADER_LENGTH
+            : wrapPosition(lastPosition + ELEMENT_HEADER_LENGTH + lastLength);
+    writeInt(elementHeader, data.length);
+    ringWrite(position, elementHeader, 0, ELEMENT_HEADER_LENGTH);
+    ringWrite(position + ELEMENT_HEADER_LENGTH, data, 0, data.length);
+
+    if (elementCount == 0) {
+      firstPosition = position;
+      firstLength = data.length;
+    }
+    lastPosition = position;
+    lastLength = data.length;
+    elementCount++;
+    // Commit the addition.
+    writeHeader();
+  }
+
+  private void removeFirst() {
+    if (elementCount == 1) {
+      elementCount = 0;
+      firstPosition = 0;
+      lastPosition = 0;
+    } else {
+      firstPosition = wrapPosition(firstPosition + ELEMENT_HEADER_LENGTH + firstLength);
+      firstLength = readElementLength(firstPosition);
+      elementCount--;
+    }
+    writeHeader();
+  }
+
+  private void writeHeader() {
+    logBuffer.putInt(4, elementCount);
+    logBuffer.putInt(8, firstPosition);
+    logBuffer.putInt(12, lastPosition);
+  }
+
+  /** Returns the number of used bytes, including the file header. */
+  private int usedBytes() {
+    if (elementCount == 0) {
+      return HEADER_LENGTH;
+    }
+
+    final int endOfLast = lastPosition + ELEMENT_HEADER_LENGTH + lastLength;
+    if (lastPosition >= firstPosition) {
+      // Contiguous queue.
+      return endOfLast - firstPosition + HEADER_LENGTH;
+    } else {
+      // The queue wraps.
+      return endOfLast + fileLength - firstPosition;
+    }
+  }
+
+  private int readElementLength(int position) {
+    ringRead(position, elementHeader, 0, ELEMENT_HEADER_LENGTH);
+    return ((elementHeader[0] & 0xff) << 24)
+        + ((elementHeader[1] & 0xff) << 16)
+        + ((elementHeader[2] & 0xff) << 8)
+        + (elementHeader[3] & 0xff);
+  }
+
+  private static void writeInt(byte[] buffer, int value) {
+    buffer[0] = (byte) (value >> 24);
+    buffer[1] = (byte) (value >> 16);
+    buffer[2] = (byte) (value >> 8);
+    buffer[3] = (byte) value;
+  }
+
+  /** Wraps the position if it exceeds the end of the file. */
+  private int wrapPosition(int position) {
+    return position < fileLength ? position : HEADER_LENGTH + position - fileLength;
+  }
+
+  /** Writes bytes to the given position, wrapping around the end of the file if necessary. */
+  private void ringWrite(int position, byte[] buffer, int offset, int count) {
+    position = wrapPosition(position);
+    final int beforeEof = Math.min(count, fileLength - position);
+    logBuffer.position(position);
+    logBuffer.put(buffer, offset, beforeEof);
+    if (beforeEof < count) {
+      logBuffer.position(HEADER_LENGTH);
+      logBuffer.put(buffer, offset + beforeEof, count - beforeEof);
+    }
+  }
+
+  /** Reads bytes from the given position, wrapping around the end of the file if necessary. */
+  private void ringRead(int position, byte[] buffer, int offset, int count) {
+    position = wrapPosition(position);
+    final int beforeEof = Math.min(count, fileLength - position);
+    logBuffer.position(position);
+    logBuffer.get(buffer, offset, beforeEof);
+    if (beforeEof < count) {
+      logBuffer.position(HEADER_LENGTH);
+      logBuffer.get(buffer, offset + beforeEof, count - beforeEof);
+    }
+  }
+}
@@ -19,11 +19,13 @@ import androidx.annotation.Nullable;
 import com.google.firebase.crashlytics.internal.Logger;
 import com.google.firebase.crashlytics.internal.common.CommonUtils;
 import com.google.firebase.crashlytics.internal.persistence.FileStore;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
@@ -105,6 +107,8 @@ class MetaDataStore {
       writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), UTF_8));
       writer.write(keyDataString);
       writer.flush();
+      // The key data now includes every entry of the journal.
+      safeDeleteJournal(getKeysJournalFileForSession(sessionId, isInternal));
     } catch (Exception e) {
       Logger.getLogger().w("Error serializing key/value metadata.", e);
       safeDeleteCorruptFile(f);
@@ -113,6 +117,38 @@ class MetaDataStore {
     }
   }
 
+  /**
+   * Appends the given key/values to the journal of the key data, which costs the same no matter how
+   * many keys the session has. The journal is applied to the key data when it is read, and merged
+   * into the key data file when the key data is written in full.
+   */
+  public void appendKeyData(
+      String sessionId, Map<String, String> changedKeyData, boolean isInternal) {
+    final File f = getKeysJournalFileForSession(sessionId, isInternal);
+    Writer writer = null;
+    try {
+      // Every entry is a single line, since JSON escapes line breaks in strings.
+      final String keyDataString = keysDataToJson(changedKeyData);
+      writer =
+          new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(f, /* append= */ true), UTF_8));
+      writer.write(keyDataString);
+      writer.write('\n');
+      writer.flush();
+    } catch (Exception e) {
+      Logger.getLogger().w("Error appending key/value metadata.", e);
+    } finally {
+      CommonUtils.closeOrLog(writer, "Failed to close key/value metadata journal.");
+    }
+  }
+
+  /** Merges the journal of the key data into the key data file, if there is a journal. */
+  public void compactKeyData(String sessionId, boolean isInternal) {
+    if (getKeysJournalFileForSession(sessionId, isInternal).exists()) {
+      writeKeyData(sessionId, readKeyData(sessionId, isInternal), isInternal);
+    }
+  }
+
   public Map<String, String> readKeyData(String sessionId) {
     return readKeyData(sessionId, false);
   }
@@ -120,6 +156,33 @@ class MetaDataStore {
   Map<String, String> readKeyData(String sessionId, boolean isInternal) {
     final File f =
         isInternal ? getInternalKeysFileForSession(sessionId) : getKeysFileForSession(sessionId);
+    final File journal = getKeysJournalFileForSession(sessionId, isInternal);
+    if (!journal.exists()) {
+      return readKeyDataFile(f);
+    }
+
+    final Map<String, String> keyData = new HashMap<>(readKeyDataFile(f));
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        try {
+          keyData.putAll(jsonToKeysData(line));
+        } catch (JSONException e) {
+          // The last entry is incomplete if the process died while appending it.
+          Logger.getLogger().w("Skipping corrupt key/value metadata journal entry.", e);
+        }
+      }
+    } catch (Exception e) {
+      Logger.getLogger().w("Error reading key/value metadata journal.", e);
+    } finally {
+      CommonUtils.closeOrLog(reader, "Failed to close key/value metadata journal.");
+    }
+    return keyData;
+  }
+
+  private Map<String, String> readKeyDataFile(File f) {
     if (!f.exists() || f.length() == 0) {
       safeDeleteCorruptFile(f);
       return Collections.emptyMap();
@@ -197,6 +260,15 @@ class MetaDataStore {
     return fileStore.getSessionFile(sessionId, UserMetadata.INTERNAL_KEYDATA_FILENAME);
   }
 
+  @NonNull
+  public File getKeysJournalFileForSession(String sessionId, boolean isInternal) {
+    return fileStore.getSessionFile(
+        sessionId,
+        isInternal
+            ? UserMetadata.INTERNAL_KEYDATA_JOURNAL_FILENAME
+            : UserMetadata.KEYDATA_JOURNAL_FILENAME);
+  }
+
   @NonNull
   public File getRolloutsStateForSession(String sessionId) {
     return fileStore.getSessionFile(sessionId, UserMetadata.ROLLOUTS_STATE_FILENAME);
@@ -270,6 +342,12 @@ class MetaDataStore {
     return !json.isNull(key) ? json.optString(key, null) : null;
   }
 
+  private static void safeDeleteJournal(File file) {
+    if (file.exists() && !file.delete()) {
+      Logger.getLogger().w("Could not delete key/value metadata journal: " + file.getPath());
+    }
+  }
+
   private static void safeDeleteCorruptFile(File file) {
     if (file.exists() && file.delete()) {
       Logger.getLogger().i("Deleted corrupt file: " + file.getAbsolutePath());
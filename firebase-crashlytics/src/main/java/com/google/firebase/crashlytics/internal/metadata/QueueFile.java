@@ -191,8 +191,8 @@ class QueueFile implements Closeable {
     if (position == 0) {
       return Element.NULL;
     }
-    raf.seek(position);
-    return new Element(position, raf.readInt());
+    ringRead(position, buffer, 0, Element.HEADER_LENGTH);
+    return new Element(position, readInt(buffer, 0));
   }
 
   /** Atomically initializes a new file. */
@@ -21,9 +21,12 @@ import com.google.firebase.crashlytics.internal.common.CommonUtils;
 import com.google.firebase.crashlytics.internal.common.CrashlyticsBackgroundWorker;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport;
 import com.google.firebase.crashlytics.internal.persistence.FileStore;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicMarkableReference;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -37,6 +40,8 @@ public class UserMetadata {
   public static final String USERDATA_FILENAME = "user-data";
   public static final String KEYDATA_FILENAME = "keys";
   public static final String INTERNAL_KEYDATA_FILENAME = "internal-keys";
+  public static final String KEYDATA_JOURNAL_FILENAME = "keys-journal";
+  public static final String INTERNAL_KEYDATA_JOURNAL_FILENAME = "internal-keys-journal";
 
   public static final String ROLLOUTS_STATE_FILENAME = "rollouts-state";
 
@@ -46,21 +51,21 @@ public class UserMetadata {
 
   @VisibleForTesting public static final int MAX_ROLLOUT_ASSIGNMENTS = 128;
 
+  /** The number of journal entries after which the key data is written in full. */
+  @VisibleForTesting public static final int MAX_JOURNAL_ENTRIES = 256;
+
   private final MetaDataStore metaDataStore;
   private final CrashlyticsBackgroundWorker backgroundWorker;
   private String sessionIdentifier;
 
-  // The following references contain a marker bit, which is true if the data maintained in the
-  // associated reference has been serialized since the last time it was updated.
-  // Design note: Though these are backed by AtomicMarkableReference classes, we occassionally
-  // need to synchronize on the objects themselves, as not all required operations are avaialable
-  // as atomic APIs.
   private final SerializeableKeysMap customKeys = new SerializeableKeysMap(false);
   private final SerializeableKeysMap internalKeys = new SerializeableKeysMap(true);
 
   private final RolloutAssignmentList rolloutsState =
       new RolloutAssignmentList(MAX_ROLLOUT_ASSIGNMENTS);
 
+  // The following reference contains a marker bit, which is true if the user id has not been
+  // serialized since the last time it was updated.
   private final AtomicMarkableReference<String> userId = new AtomicMarkableReference<>(null, false);
 
   @Nullable
@@ -68,14 +73,24 @@ public class UserMetadata {
     return new MetaDataStore(fileStore).readUserId(sessionId);
   }
 
+  /**
+   * Merges the journals of the key data of a previous session into its key data files, for readers
+   * of the files that do not apply the journals.
+   */
+  public static void compactKeyData(String sessionId, FileStore fileStore) {
+    MetaDataStore store = new MetaDataStore(fileStore);
+    store.compactKeyData(sessionId, false);
+    store.compactKeyData(sessionId, true);
+  }
+
   public static UserMetadata loadFromExistingSession(
       String sessionId, FileStore fileStore, CrashlyticsBackgroundWorker backgroundWorker) {
     MetaDataStore store = new MetaDataStore(fileStore);
     UserMetadata metadata = new UserMetadata(sessionId, fileStore, backgroundWorker);
     // We don't use the set methods in this class, because they will attempt to re-serialize the
     // data, which is unnecessary because we just read them from disk.
-    metadata.customKeys.map.getReference().setKeys(store.readKeyData(sessionId, false));
-    metadata.internalKeys.map.getReference().setKeys(store.readKeyData(sessionId, true));
+    metadata.customKeys.map.setKeys(store.readKeyData(sessionId, false));
+    metadata.internalKeys.map.setKeys(store.readKeyData(sessionId, true));
     metadata.userId.set(store.readUserId(sessionId), false);
     metadata.rolloutsState.updateRolloutAssignmentList(store.readRolloutsState(sessionId));
     return metadata;
@@ -105,6 +120,9 @@ public class UserMetadata {
       if (!keyData.isEmpty()) {
         metaDataStore.writeKeyData(sessionId, keyData);
       }
+      // Changed keys are journaled relative to what the new session has on disk.
+      customKeys.setPersistedKeys(keyData);
+      internalKeys.setPersistedKeys(Collections.<String, String>emptyMap());
       if (!rolloutAssignments.isEmpty()) {
         metaDataStore.writeRolloutState(sessionId, rolloutAssignments);
       }
@@ -218,54 +236,65 @@ public class UserMetadata {
   }
 
   /**
-   * Helper class to maintain & asynchronously cache key data asynchronously in case of a
-   * non-graceful process exit. Instances will only schedule one serialization task at a time,
-   * because a queued task will always write the latest copy of the data when the task executes.
+   * Helper class to maintain & asynchronously cache key data in case of a non-graceful process
+   * exit. Setting keys never blocks: the keys are kept in a lock-free map, and instances only
+   * schedule one serialization task at a time, because a queued task will always write the latest
+   * copy of the data when the task executes.
+   *
+   * <p>The task appends only the keys that changed since the previous task to a journal, so the
+   * cost of persisting an update does not depend on the number of keys. Every {@link
+   * #MAX_JOURNAL_ENTRIES} entries, the journal is compacted by writing all keys at once.
    */
   private class SerializeableKeysMap {
-    final AtomicMarkableReference<KeysMap> map;
+    final KeysMap map;
+    private final AtomicBoolean isDirty = new AtomicBoolean(false);
     private final AtomicReference<Callable<Void>> queuedSerializer = new AtomicReference<>(null);
     private final boolean isInternal;
 
+    // Only accessed from the background worker.
+    private Map<String, String> persistedKeys = Collections.emptyMap();
+    private int journalEntries = 0;
+
     public SerializeableKeysMap(boolean isInternal) {
       this.isInternal = isInternal;
-      KeysMap keysMap =
+      this.map =
           new KeysMap(MAX_ATTRIBUTES, isInternal ? MAX_INTERNAL_KEY_SIZE : MAX_ATTRIBUTE_SIZE);
-      this.map = new AtomicMarkableReference<>(keysMap, false);
     }
 
     public Map<String, String> getKeys() {
-      return map.getReference().getKeys();
+      return map.getKeys();
     }
 
     public boolean setKey(String key, String value) {
-      synchronized (this) {
-        // If the <key, value> pair has not changed, the marker can remain unchanged and we don't
-        // need to schedule an update task.
-        if (!map.getReference().setKey(key, value)) {
-          return false;
-        }
-        map.set(map.getReference(), true);
+      // If the <key, value> pair has not changed, we don't need to schedule an update task.
+      if (!map.setKey(key, value)) {
+        return false;
       }
       scheduleSerializationTaskIfNeeded();
       return true;
     }
 
     public void setKeys(Map<String, String> keysAndValues) {
-      synchronized (this) {
-        map.getReference().setKeys(keysAndValues);
-        // Always assume at least one value was updated when setKeys(...) is used, so set the
-        // marker bit to true.
-        map.set(map.getReference(), true);
-      }
+      map.setKeys(keysAndValues);
+      // Always assume at least one value was updated when setKeys(...) is used.
       scheduleSerializationTaskIfNeeded();
     }
 
+    /** Records that the given keys were written in full to the current session. */
+    void setPersistedKeys(Map<String, String> keyData) {
+      persistedKeys = keyData;
+      journalEntries = 0;
+    }
+
     private void scheduleSerializationTaskIfNeeded() {
+      // Mark the keys dirty before checking for a queued task, so that either the queued task sees
+      // the mark or a new task is scheduled.
+      isDirty.set(true);
+
       Callable<Void> newCallable =
           () -> {
             queuedSerializer.set(null);
-            serializeIfMarked();
+            serializeIfDirty();
             return null;
           };
 
@@ -278,26 +307,34 @@ public class UserMetadata {
 
     /**
      * Helper function that should only be called from the Callable in
-     * scheduleSerializationTaskIfNeeded It will write the key data iff map's marker bit is true. If
-     * so, it sets the marker bit to false, so the serialized data is guaranteed to contain all
-     * updates until the next time the marker is flipped to true.
+     * scheduleSerializationTaskIfNeeded. It will write the key data iff it changed since the last
+     * time it was written, appending the changed keys to the journal or compacting the journal.
      *
-     * <p>If there's nothing to serialize (i.e., the marker bit is false), this method does nothing.
+     * <p>If there's nothing to serialize (i.e., the keys are not dirty), this method does nothing.
      */
-    private void serializeIfMarked() {
-      Map<String, String> keyData = null;
-      // Lock while checking and updating the marker bit
-      // Unfortunately there's no API that allows us to do this in one atomic call.
-      synchronized (this) {
-        if (map.isMarked()) {
-          keyData = map.getReference().getKeys();
-          map.set(map.getReference(), false);
+    private void serializeIfDirty() {
+      if (!isDirty.getAndSet(false)) {
+        return;
+      }
+      final Map<String, String> keyData = map.getKeys();
+      final Map<String, String> changedKeyData = new HashMap<>();
+      for (Map.Entry<String, String> entry : keyData.entrySet()) {
+        if (!entry.getValue().equals(persistedKeys.get(entry.getKey()))) {
+          changedKeyData.put(entry.getKey(), entry.getValue());
         }
       }
-      // Release the lock before doing the actual write.
-      if (keyData != null) {
+      if (changedKeyData.isEmpty()) {
+        return;
+      }
+
+      if (journalEntries < MAX_JOURNAL_ENTRIES) {
+        metaDataStore.appendKeyData(sessionIdentifier, changedKeyData, isInternal);
+        journalEntries++;
+      } else {
         metaDataStore.writeKeyData(sessionIdentifier, keyData, isInternal);
+        journalEntries = 0;
       }
+      persistedKeys = keyData;
     }
   }
 }
@@ -16,7 +16,9 @@ package com.google.firebase.crashlytics.internal.model.serialization;
 
 import android.util.Base64;
 import android.util.JsonReader;
+import android.util.JsonToken;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import com.google.firebase.crashlytics.internal.model.AutoCrashlyticsReportEncoder;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.ApplicationExitInfo.BuildIdMappingForArch;
@@ -25,7 +27,9 @@ import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.
 import com.google.firebase.encoders.DataEncoder;
 import com.google.firebase.encoders.json.JsonDataEncoderBuilder;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +42,9 @@ public class CrashlyticsReportJsonTransform {
           .ignoreNullValues(true)
           .build();
 
+  /** The JSON of the events of a session without events. */
+  private static final String EMPTY_EVENTS_JSON = "\"events\":[]";
+
   @NonNull
   public String reportToJson(@NonNull CrashlyticsReport report) {
     return CRASHLYTICS_REPORT_JSON_ENCODER.encode(report);
@@ -48,6 +55,77 @@ public class CrashlyticsReportJsonTransform {
     return CRASHLYTICS_REPORT_JSON_ENCODER.encode(event);
   }
 
+  /**
+   * Writes the JSON of a report whose session has the given JSON encoded events.
+   *
+   * <p>The events are copied as they are, instead of being encoded again. Use {@link
+   * #isEventJson(String)} to check that they are complete first.
+   */
+  @VisibleForTesting
+  void writeReportWithEventsJson(
+      @NonNull CrashlyticsReport report, @NonNull List<String> eventsJson, @NonNull Writer writer)
+      throws IOException {
+    writeReportWithEventsJson(
+        report,
+        eventsWriter -> {
+          for (int i = 0; i < eventsJson.size(); i++) {
+            if (i > 0) {
+              eventsWriter.write(',');
+            }
+            eventsWriter.write(eventsJson.get(i));
+          }
+        },
+        writer);
+  }
+
+  /**
+   * Writes the JSON of a report whose session has the events written by the given {@link
+   * EventsJsonWriter}, so that the events never need to be held in memory all at once.
+   */
+  public void writeReportWithEventsJson(
+      @NonNull CrashlyticsReport report,
+      @NonNull EventsJsonWriter eventsJsonWriter,
+      @NonNull Writer writer)
+      throws IOException {
+    // Quotes within JSON strings are escaped, so the events of the session are the only place
+    // where the empty events can occur in the report.
+    final String reportJson = reportToJson(report.withEvents(Collections.emptyList()));
+    final int emptyEventsIndex = reportJson.indexOf(EMPTY_EVENTS_JSON);
+    if (emptyEventsIndex < 0) {
+      throw new IOException("Could not find the events of the report's session");
+    }
+    // Insert the events between the brackets of the empty events.
+    final int eventsStart = emptyEventsIndex + EMPTY_EVENTS_JSON.length() - 1;
+    writer.write(reportJson, 0, eventsStart);
+    eventsJsonWriter.writeEventsJson(writer);
+    writer.write(reportJson, eventsStart, reportJson.length() - eventsStart);
+  }
+
+  /**
+   * Returns whether the given JSON is a single, complete event, that can be read back as part of a
+   * report.
+   */
+  @VisibleForTesting
+  boolean isEventJson(@NonNull String json) {
+    return isEventJson(new StringReader(json));
+  }
+
+  /**
+   * Returns whether the JSON read from the given reader is a single, complete event, that can be
+   * read back as part of a report. The reader is closed.
+   *
+   * <p>The event is parsed to validate it, but the parsed event is discarded, so that the JSON can
+   * be copied into the report as it is.
+   */
+  public boolean isEventJson(@NonNull Reader json) {
+    try (JsonReader jsonReader = new JsonReader(json)) {
+      parseEvent(jsonReader);
+      return jsonReader.peek() == JsonToken.END_DOCUMENT;
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      return false;
+    }
+  }
+
   @NonNull
   public String applicationExitInfoToJson(
       @NonNull CrashlyticsReport.ApplicationExitInfo applicationExitInfo) {
@@ -919,6 +997,12 @@ public class CrashlyticsReportJsonTransform {
     return Collections.unmodifiableList(objects);
   }
 
+  /** Writes JSON encoded events into the events of a report. */
+  public interface EventsJsonWriter {
+    /** Writes the JSON objects of the events to the given writer, separated by commas. */
+    void writeEventsJson(@NonNull Writer writer) throws IOException;
+  }
+
   private interface ObjectParser<T> {
     T parse(@NonNull JsonReader jsonReader) throws IOException;
   }
@@ -14,15 +14,16 @@
 
 package com.google.firebase.crashlytics.internal.persistence;
 
+import android.annotation.SuppressLint;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.google.firebase.crashlytics.internal.Logger;
 import com.google.firebase.crashlytics.internal.common.CrashlyticsAppQualitySessionsSubscriber;
 import com.google.firebase.crashlytics.internal.common.CrashlyticsReportWithSessionId;
+import com.google.firebase.crashlytics.internal.common.ExecutorUtils;
 import com.google.firebase.crashlytics.internal.metadata.UserMetadata;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport;
 import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session;
-import com.google.firebase.crashlytics.internal.model.CrashlyticsReport.Session.Event;
 import com.google.firebase.crashlytics.internal.model.serialization.CrashlyticsReportJsonTransform;
 import com.google.firebase.crashlytics.internal.settings.SettingsProvider;
 import java.io.ByteArrayOutputStream;
@@ -31,7 +32,10 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,6 +45,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -53,6 +62,8 @@ public class CrashlyticsReportPersistence {
   private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   private static final int MAX_OPEN_SESSIONS = 8;
+  private static final int MAX_FINALIZE_THREADS = 4;
+  private static final String FINALIZE_THREAD_NAME = "Crashlytics Report Finalizer";
 
   private static final String REPORT_FILE_NAME = "report";
   // We use the lastModified timestamp of this file to quickly store and access the startTime in ms
@@ -183,18 +194,36 @@ public class CrashlyticsReportPersistence {
   }
 
   /**
-   * Finalizes all open sessions except for the current session ID
+   * Finalizes all open sessions except for the current session ID, on the calling thread.
    *
    * @param currentSessionId current session ID (to skip). If this is null, all open sessions will
    *     be finalized.
    */
   public void finalizeReports(@Nullable String currentSessionId, long sessionEndTime) {
+    finalizeReports(currentSessionId, sessionEndTime, /* inParallel= */ false);
+  }
+
+  /**
+   * Finalizes all open sessions except for the current session ID
+   *
+   * @param currentSessionId current session ID (to skip). If this is null, all open sessions will
+   *     be finalized.
+   * @param inParallel whether the sessions may be finalized on a pool of threads. Should not be set
+   *     while handling a crash, when starting threads is not safe.
+   */
+  public void finalizeReports(
+      @Nullable String currentSessionId, long sessionEndTime, boolean inParallel) {
     Collection<String> sessions = capAndGetOpenSessions(currentSessionId);
-    for (String sessionId : sessions) {
-      Logger.getLogger().v("Finalizing report for session " + sessionId);
-      synthesizeReport(sessionId, sessionEndTime);
-      // TODO: log deleted or failed
-      fileStore.deleteSessionFiles(sessionId);
+    final int threadCount =
+        Math.min(
+            sessions.size(),
+            Math.min(MAX_FINALIZE_THREADS, Runtime.getRuntime().availableProcessors()));
+    if (inParallel && threadCount > 1) {
+      finalizeReportsInParallel(sessions, sessionEndTime, threadCount);
+    } else {
+      for (String sessionId : sessions) {
+        finalizeReport(sessionId, sessionEndTime);
+      }
     }
     capFinalizedReports();
   }
@@ -230,6 +259,55 @@ public class CrashlyticsReportPersistence {
     return allReports;
   }
 
+  /**
+   * Finalizes the given sessions on a bounded pool of threads, since the files of every session are
+   * independent of each other, and waits for all of them to be finalized. If threads can't be
+   * started, the remaining sessions are finalized on the calling thread.
+   */
+  private void finalizeReportsInParallel(
+      Collection<String> sessionIds, long sessionEndTime, int threadCount) {
+    // The pool only lives for the duration of this call.
+    @SuppressLint("ThreadPoolCreation")
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threadCount, ExecutorUtils.getNamedThreadFactory(FINALIZE_THREAD_NAME));
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      boolean canSubmit = true;
+      for (String sessionId : sessionIds) {
+        if (canSubmit) {
+          try {
+            futures.add(executor.submit(() -> finalizeReport(sessionId, sessionEndTime)));
+            continue;
+          } catch (OutOfMemoryError | RejectedExecutionException e) {
+            Logger.getLogger().w("Could not start thread to finalize reports", e);
+            canSubmit = false;
+          }
+        }
+        finalizeReport(sessionId, sessionEndTime);
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Logger.getLogger().w("Could not finalize report", e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Logger.getLogger().w("Interrupted while finalizing reports", e);
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void finalizeReport(String sessionId, long sessionEndTime) {
+    Logger.getLogger().v("Finalizing report for session " + sessionId);
+    synthesizeReport(sessionId, sessionEndTime);
+    // TODO: log deleted or failed
+    fileStore.deleteSessionFiles(sessionId);
+  }
+
   private SortedSet<String> capAndGetOpenSessions(@Nullable String currentSessionId) {
     fileStore.cleanupPreviousFileSystems();
 
@@ -296,13 +374,19 @@ public class CrashlyticsReportPersistence {
 
     Collections.sort(eventFiles);
 
-    final List<Event> events = new ArrayList<>();
+    // The events are streamed into the report as JSON, without encoding them again or holding them
+    // in memory. Each event is still validated, since a single incomplete event would otherwise
+    // make the whole report unreadable when it is loaded for sending.
+    final List<File> eventsJsonFiles = new ArrayList<>();
     boolean isHighPriorityReport = false;
 
     for (File eventFile : eventFiles) {
       try {
-        Event event = TRANSFORM.eventFromJson(readTextFile(eventFile));
-        events.add(event);
+        if (!TRANSFORM.isEventJson(newTextFileReader(eventFile))) {
+          Logger.getLogger().w("Could not add invalid event to report for " + eventFile);
+          continue;
+        }
+        eventsJsonFiles.add(eventFile);
         isHighPriorityReport = isHighPriorityReport || isHighPriorityEventFile(eventFile.getName());
       } catch (IOException e) {
         Logger.getLogger().w("Could not add event to report for " + eventFile, e);
@@ -310,7 +394,7 @@ public class CrashlyticsReportPersistence {
     }
 
     // b/168902195
-    if (events.isEmpty()) {
+    if (eventsJsonFiles.isEmpty()) {
       Logger.getLogger().w("Could not parse event files for session " + sessionId);
       return;
     }
@@ -320,7 +404,12 @@ public class CrashlyticsReportPersistence {
 
     File reportFile = fileStore.getSessionFile(sessionId, REPORT_FILE_NAME);
     synthesizeReportFile(
-        reportFile, events, sessionEndTime, isHighPriorityReport, userId, appQualitySessionId);
+        reportFile,
+        eventsJsonFiles,
+        sessionEndTime,
+        isHighPriorityReport,
+        userId,
+        appQualitySessionId);
   }
 
   private void synthesizeNativeReportFile(
@@ -345,7 +434,7 @@ public class CrashlyticsReportPersistence {
 
   private void synthesizeReportFile(
       @NonNull File reportFile,
-      @NonNull List<Event> events,
+      @NonNull List<File> eventsJsonFiles,
       long sessionEndTime,
       boolean isHighPriorityReport,
       @Nullable String userId,
@@ -355,8 +444,7 @@ public class CrashlyticsReportPersistence {
           TRANSFORM
               .reportFromJson(readTextFile(reportFile))
               .withSessionEndFields(sessionEndTime, isHighPriorityReport, userId)
-              .withAppQualitySessionId(appQualitySessionId)
-              .withEvents(events);
+              .withAppQualitySessionId(appQualitySessionId);
       final Session session = report.getSession();
 
       if (session == null) {
@@ -370,7 +458,15 @@ public class CrashlyticsReportPersistence {
           isHighPriorityReport
               ? fileStore.getPriorityReport(session.getIdentifier())
               : fileStore.getReport(session.getIdentifier());
-      writeTextFile(finalizedReportFile, TRANSFORM.reportToJson(report));
+      try (Writer writer =
+          new OutputStreamWriter(new FileOutputStream(finalizedReportFile), UTF_8)) {
+        TRANSFORM.writeReportWithEventsJson(
+            report, eventsWriter -> copyTextFiles(eventsJsonFiles, eventsWriter), writer);
+      } catch (IOException e) {
+        // Don't leave a partially written report behind to be sent.
+        finalizedReportFile.delete();
+        throw e;
+      }
     } catch (IOException e) {
       Logger.getLogger().w("Could not synthesize final report file for " + reportFile, e);
     }
@@ -437,6 +533,28 @@ public class CrashlyticsReportPersistence {
     }
   }
 
+  @NonNull
+  private static Reader newTextFileReader(@NonNull File file) throws IOException {
+    return new InputStreamReader(new FileInputStream(file), UTF_8);
+  }
+
+  /** Copies the text of the given files to the writer, separated by commas. */
+  private static void copyTextFiles(@NonNull List<File> files, @NonNull Writer writer)
+      throws IOException {
+    final char[] readBuffer = new char[8192];
+    for (int i = 0; i < files.size(); i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      try (Reader reader = newTextFileReader(files.get(i))) {
+        int read;
+        while ((read = reader.read(readBuffer)) > 0) {
+          writer.write(readBuffer, 0, read);
+        }
+      }
+    }
+  }
+
   /**
    * Deletes files from the list until the list size is equal to the maximum. If list is already
    * correctly sized, no files are deleted. List should be sorted in the order in which files should
@@ -61,4 +61,15 @@ public class TrimmedThrowableData {
 
     return trimmedThrowableData;
   }
+
+  /** Creates a TrimmedThrowableData from the parts of a throwable, e.g. after reading them back. */
+  public static TrimmedThrowableData makeTrimmedThrowableData(
+      String className,
+      String localizedMessage,
+      StackTraceElement[] stacktrace,
+      @Nullable TrimmedThrowableData cause,
+      StackTraceTrimmingStrategy trimmingStrategy) {
+    return new TrimmedThrowableData(
+        localizedMessage, className, trimmingStrategy.getTrimmedStackTrace(stacktrace), cause);
+  }
 }
@@ -52,6 +52,7 @@ public class SessionReportingCoordinatorRobolectricTest {
   @Mock private LogFileManager logFileManager;
   @Mock private UserMetadata reportMetadata;
   @Mock private IdManager idManager;
+  @Mock private CrashCaptureFile crashCaptureFile;
   @Mock private CrashlyticsReport.Session.Event mockEvent;
   @Mock private CrashlyticsReport.Session.Event.Builder mockEventBuilder;
   @Mock private CrashlyticsReport.Session.Event.Application mockEventApp;
@@ -72,7 +73,8 @@ public class SessionReportingCoordinatorRobolectricTest {
             reportSender,
             logFileManager,
             reportMetadata,
-            idManager);
+            idManager,
+            crashCaptureFile);
     mockEventInteractions();
   }
 
@@ -43,6 +43,7 @@ public final class FirebaseFirestoreSettings {
 
     private long cacheSizeBytes;
     private LocalCacheSettings cacheSettings;
+    private boolean queryTargetSharingEnabled;
 
     private boolean usedLegacyCacheSettings = false;
 
@@ -64,6 +65,7 @@ public final class FirebaseFirestoreSettings {
       sslEnabled = settings.sslEnabled;
       persistenceEnabled = settings.persistenceEnabled;
       cacheSizeBytes = settings.cacheSizeBytes;
+      queryTargetSharingEnabled = settings.queryTargetSharingEnabled;
       if (!persistenceEnabled || cacheSizeBytes != DEFAULT_CACHE_SIZE_BYTES) {
         usedLegacyCacheSettings = true;
       }
@@ -183,6 +185,20 @@ public final class FirebaseFirestoreSettings {
       return this;
     }
 
+    /**
+     * Enables or disables serving a query from the watch target of an active listen whose results
+     * contain the query's results, for example the same query with a larger limit, instead of
+     * opening a watch target for the query. The default is to open a watch target for every
+     * distinct query.
+     *
+     * @return A settings object that shares watch targets as specified by the given {@code value}.
+     */
+    @NonNull
+    public Builder setQueryTargetSharingEnabled(boolean value) {
+      this.queryTargetSharingEnabled = value;
+      return this;
+    }
+
     /** @return the host of the Cloud Firestore backend. */
     @NonNull
     public String getHost() {
@@ -214,6 +230,11 @@ public final class FirebaseFirestoreSettings {
       return cacheSizeBytes;
     }
 
+    /** @return boolean indicating whether queries may share the watch target of a wider query. */
+    public boolean isQueryTargetSharingEnabled() {
+      return queryTargetSharingEnabled;
+    }
+
     @NonNull
     public FirebaseFirestoreSettings build() {
       if (!this.sslEnabled && this.host.equals(DEFAULT_HOST)) {
@@ -228,6 +249,7 @@ public final class FirebaseFirestoreSettings {
   private final boolean sslEnabled;
   private final boolean persistenceEnabled;
   private final long cacheSizeBytes;
+  private final boolean queryTargetSharingEnabled;
 
   private LocalCacheSettings cacheSettings;
 
@@ -238,6 +260,7 @@ public final class FirebaseFirestoreSettings {
     persistenceEnabled = builder.persistenceEnabled;
     cacheSizeBytes = builder.cacheSizeBytes;
     cacheSettings = builder.cacheSettings;
+    queryTargetSharingEnabled = builder.queryTargetSharingEnabled;
   }
 
   @Override
@@ -250,6 +273,7 @@ public final class FirebaseFirestoreSettings {
     if (sslEnabled != that.sslEnabled) return false;
     if (persistenceEnabled != that.persistenceEnabled) return false;
     if (cacheSizeBytes != that.cacheSizeBytes) return false;
+    if (queryTargetSharingEnabled != that.queryTargetSharingEnabled) return false;
     if (!host.equals(that.host)) return false;
     return Objects.equals(cacheSettings, that.cacheSettings);
   }
@@ -261,6 +285,7 @@ public final class FirebaseFirestoreSettings {
     result = 31 * result + (persistenceEnabled ? 1 : 0);
     result = 31 * result + (int) (cacheSizeBytes ^ (cacheSizeBytes >>> 32));
     result = 31 * result + (cacheSettings != null ? cacheSettings.hashCode() : 0);
+    result = 31 * result + (queryTargetSharingEnabled ? 1 : 0);
     return result;
   }
 
@@ -294,6 +319,14 @@ public final class FirebaseFirestoreSettings {
     return sslEnabled;
   }
 
+  /**
+   * Returns whether queries may be served from the watch target of an active listen whose results
+   * contain theirs, instead of opening a watch target of their own.
+   */
+  public boolean isQueryTargetSharingEnabled() {
+    return queryTargetSharingEnabled;
+  }
+
   /**
    * Returns whether or not to use local persistent storage.
    *
@@ -28,6 +28,7 @@ import androidx.annotation.Nullable;
  */
 public final class MemoryCacheSettings implements LocalCacheSettings {
   private MemoryGarbageCollectorSettings gcSettings;
+  private boolean compactDocumentStorage;
 
   /** Returns a new instance of {@link MemoryCacheSettings.Builder} with default configurations. */
   @NonNull
@@ -35,13 +36,15 @@ public final class MemoryCacheSettings implements LocalCacheSettings {
     return new MemoryCacheSettings.Builder();
   }
 
-  private MemoryCacheSettings(MemoryGarbageCollectorSettings settings) {
+  private MemoryCacheSettings(
+      MemoryGarbageCollectorSettings settings, boolean compactDocumentStorage) {
     gcSettings = settings;
+    this.compactDocumentStorage = compactDocumentStorage;
   }
 
   @Override
   public int hashCode() {
-    return gcSettings.hashCode();
+    return 31 * gcSettings.hashCode() + (compactDocumentStorage ? 1 : 0);
   }
 
   @Override
@@ -49,13 +52,18 @@ public final class MemoryCacheSettings implements LocalCacheSettings {
     if (this == obj) return true;
     if (obj == null || getClass() != obj.getClass()) return false;
 
-    return getGarbageCollectorSettings()
-        .equals(((MemoryCacheSettings) obj).getGarbageCollectorSettings());
+    MemoryCacheSettings that = (MemoryCacheSettings) obj;
+    return compactDocumentStorage == that.compactDocumentStorage
+        && getGarbageCollectorSettings().equals(that.getGarbageCollectorSettings());
   }
 
   @Override
   public String toString() {
-    return "MemoryCacheSettings{gcSettings=" + getGarbageCollectorSettings() + "}";
+    return "MemoryCacheSettings{gcSettings="
+        + getGarbageCollectorSettings()
+        + ", compactDocumentStorage="
+        + compactDocumentStorage
+        + "}";
   }
 
   /** Returns the {@link MemoryGarbageCollectorSettings} object used to configure the SDK cache. */
@@ -64,16 +72,25 @@ public final class MemoryCacheSettings implements LocalCacheSettings {
     return gcSettings;
   }
 
+  /**
+   * Returns whether cached documents are kept in a compact, serialized form. See {@link
+   * Builder#setCompactDocumentStorage(boolean)}.
+   */
+  public boolean isCompactDocumentStorageEnabled() {
+    return compactDocumentStorage;
+  }
+
   /** A Builder for creating {@code MemoryCacheSettings} instance. */
   public static class Builder {
     private MemoryGarbageCollectorSettings gcSettings = MemoryEagerGcSettings.newBuilder().build();
+    private boolean compactDocumentStorage = false;
 
     private Builder() {}
 
     /** Creates a {@code MemoryCacheSettings} instance. */
     @NonNull
     public MemoryCacheSettings build() {
-      return new MemoryCacheSettings(gcSettings);
+      return new MemoryCacheSettings(gcSettings, compactDocumentStorage);
     }
 
     /** Uses the given garbage collector settings to configure memory cache. */
@@ -82,5 +99,23 @@ public final class MemoryCacheSettings implements LocalCacheSettings {
       this.gcSettings = gcSettings;
       return this;
     }
+
+    /**
+     * Configures whether cached documents are kept in a compact, serialized form. Compact storage
+     * significantly reduces the memory used by the cache, at the cost of decoding documents when
+     * they are read. Recently read documents are kept decoded.
+     *
+     * <p>When used with {@link MemoryLruGcSettings}, the cache size is measured as the exact
+     * serialized size of the cached documents.
+     *
+     * <p>Compact storage is disabled by default.
+     *
+     * @return this {@code Builder} instance.
+     */
+    @NonNull
+    public Builder setCompactDocumentStorage(boolean enabled) {
+      this.compactDocumentStorage = enabled;
+      return this;
+    }
   }
 }
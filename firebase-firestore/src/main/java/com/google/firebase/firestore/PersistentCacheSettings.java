@@ -36,9 +36,11 @@ public final class PersistentCacheSettings implements LocalCacheSettings {
   }
 
   private final long sizeBytes;
+  private final boolean concurrentReadsEnabled;
 
-  private PersistentCacheSettings(long sizeBytes) {
+  private PersistentCacheSettings(long sizeBytes, boolean concurrentReadsEnabled) {
     this.sizeBytes = sizeBytes;
+    this.concurrentReadsEnabled = concurrentReadsEnabled;
   }
 
   @Override
@@ -48,17 +50,24 @@ public final class PersistentCacheSettings implements LocalCacheSettings {
 
     PersistentCacheSettings that = (PersistentCacheSettings) o;
 
-    return sizeBytes == that.sizeBytes;
+    return sizeBytes == that.sizeBytes && concurrentReadsEnabled == that.concurrentReadsEnabled;
   }
 
   @Override
   public int hashCode() {
-    return (int) (sizeBytes ^ (sizeBytes >>> 32));
+    int result = (int) (sizeBytes ^ (sizeBytes >>> 32));
+    result = 31 * result + (concurrentReadsEnabled ? 1 : 0);
+    return result;
   }
 
   @Override
   public String toString() {
-    return "PersistentCacheSettings{" + "sizeBytes=" + sizeBytes + '}';
+    return "PersistentCacheSettings{"
+        + "sizeBytes="
+        + sizeBytes
+        + ", concurrentReadsEnabled="
+        + concurrentReadsEnabled
+        + '}';
   }
 
   /**
@@ -74,10 +83,19 @@ public final class PersistentCacheSettings implements LocalCacheSettings {
     return sizeBytes;
   }
 
+  /**
+   * Returns whether cache-only document reads may run concurrently with other cache operations.
+   * See {@link Builder#setConcurrentReadsEnabled(boolean)}.
+   */
+  public boolean isConcurrentReadsEnabled() {
+    return concurrentReadsEnabled;
+  }
+
   /** A Builder for creating {@code PersistentCacheSettings} instance. */
   public static class Builder {
 
     private long sizeBytes = FirebaseFirestoreSettings.DEFAULT_CACHE_SIZE_BYTES;
+    private boolean concurrentReadsEnabled = false;
 
     private Builder() {}
 
@@ -98,10 +116,35 @@ public final class PersistentCacheSettings implements LocalCacheSettings {
       return this;
     }
 
+    /**
+     * Configures whether single-document reads with {@link Source#CACHE}, such as {@link
+     * DocumentReference#get(Source)}, may run concurrently with other cache operations, such as
+     * applying updates from the backend. If enabled, the on-disk cache is opened in write-ahead
+     * logging mode, and such reads are served on a background thread unless a local write is
+     * pending or being committed at the same time.
+     *
+     * <p>Query reads with {@link Source#CACHE} and all writes are still serialized with the other
+     * cache operations.
+     *
+     * <p>If enabled, the on-disk cache is no longer locked exclusively, so a second process that
+     * uses persistence is not rejected. Sharing the cache between processes is not supported,
+     * since the SDK does not coordinate its in-memory state across processes. Only a single process
+     * of your app should use persistence.
+     *
+     * <p>Concurrent reads are disabled by default.
+     *
+     * @return this {@code Builder} instance.
+     */
+    @NonNull
+    public Builder setConcurrentReadsEnabled(boolean enabled) {
+      this.concurrentReadsEnabled = enabled;
+      return this;
+    }
+
     /** Creates a {@code PersistentCacheSettings} instance from this builder instance. */
     @NonNull
     public PersistentCacheSettings build() {
-      return new PersistentCacheSettings(sizeBytes);
+      return new PersistentCacheSettings(sizeBytes, concurrentReadsEnabled);
     }
   }
 }
@@ -1139,7 +1139,8 @@ public class Query {
     checkNotNull(listener, "Provided EventListener must not be null.");
     return addSnapshotListenerInternal(
         options.getExecutor(),
-        internalOptions(options.getMetadataChanges(), options.getSource()),
+        internalOptions(
+            options.getMetadataChanges(), options.getSource(), options.getCoalescingWindowMillis()),
         options.getActivity(),
         listener);
   }
@@ -1264,16 +1265,17 @@ public class Query {
 
   /** Converts the public API options object to the internal options object. */
   private static ListenOptions internalOptions(MetadataChanges metadataChanges) {
-    return internalOptions(metadataChanges, ListenSource.DEFAULT);
+    return internalOptions(metadataChanges, ListenSource.DEFAULT, /* coalescingWindowMs= */ 0);
   }
 
   private static ListenOptions internalOptions(
-      MetadataChanges metadataChanges, ListenSource source) {
+      MetadataChanges metadataChanges, ListenSource source, long coalescingWindowMs) {
     ListenOptions internalOptions = new ListenOptions();
     internalOptions.includeDocumentMetadataChanges = (metadataChanges == MetadataChanges.INCLUDE);
     internalOptions.includeQueryMetadataChanges = (metadataChanges == MetadataChanges.INCLUDE);
     internalOptions.waitForSyncWhenOnline = false;
     internalOptions.source = source;
+    internalOptions.coalescingWindowMs = coalescingWindowMs;
     return internalOptions;
   }
 }
@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore;
 
+import static com.google.firebase.firestore.util.Preconditions.checkArgument;
 import static com.google.firebase.firestore.util.Preconditions.checkNotNull;
 
 import android.app.Activity;
@@ -40,11 +41,15 @@ public final class SnapshotListenOptions {
   /** The activity to scope the listener to. */
   private final Activity activity;
 
+  /** The window within which consecutive snapshots are coalesced. */
+  private final long coalescingWindowMillis;
+
   private SnapshotListenOptions(Builder builder) {
     this.metadataChanges = builder.metadataChanges;
     this.source = builder.source;
     this.executor = builder.executor;
     this.activity = builder.activity;
+    this.coalescingWindowMillis = builder.coalescingWindowMillis;
   }
 
   /**
@@ -88,12 +93,22 @@ public final class SnapshotListenOptions {
     return activity;
   }
 
+  /**
+   * Returns the window in milliseconds within which consecutive snapshots are coalesced into one.
+   *
+   * @return The coalescing window, or 0 if every snapshot is delivered.
+   */
+  public long getCoalescingWindowMillis() {
+    return coalescingWindowMillis;
+  }
+
   /** Builder for constructing {@link SnapshotListenOptions} instances. */
   public static class Builder {
     private MetadataChanges metadataChanges = MetadataChanges.EXCLUDE;
     private ListenSource source = ListenSource.DEFAULT;
     private Executor executor = Executors.DEFAULT_CALLBACK_EXECUTOR;
     private Activity activity = null;
+    private long coalescingWindowMillis = 0;
 
     public Builder() {}
 
@@ -150,6 +165,24 @@ public final class SnapshotListenOptions {
       return this;
     }
 
+    /**
+     * Sets a window within which consecutive snapshots are coalesced. The listener is called at
+     * most once per window, with a snapshot that contains only the net document changes since the
+     * previously delivered snapshot. The first snapshot is always delivered immediately.
+     *
+     * <p>A window of 16 milliseconds limits snapshots to roughly one per frame on a 60 Hz display.
+     * By default, the window is 0 and every snapshot is delivered.
+     *
+     * @param coalescingWindowMillis The coalescing window in milliseconds.
+     * @return This Builder instance to allow chaining of method calls.
+     */
+    @NonNull
+    public Builder setCoalescingWindowMillis(long coalescingWindowMillis) {
+      checkArgument(coalescingWindowMillis >= 0, "coalescingWindowMillis must not be negative.");
+      this.coalescingWindowMillis = coalescingWindowMillis;
+      return this;
+    }
+
     /**
      * Constructs a {@link SnapshotListenOptions} instance using the current settings in this
      * Builder.
@@ -170,7 +203,8 @@ public final class SnapshotListenOptions {
     return metadataChanges == that.metadataChanges
         && source == that.source
         && executor.equals(that.executor)
-        && activity.equals(that.activity);
+        && activity.equals(that.activity)
+        && coalescingWindowMillis == that.coalescingWindowMillis;
   }
 
   @Override
@@ -179,6 +213,7 @@ public final class SnapshotListenOptions {
     result = 31 * result + source.hashCode();
     result = 31 * result + executor.hashCode();
     result = 31 * result + (activity != null ? activity.hashCode() : 0);
+    result = 31 * result + (int) (coalescingWindowMillis ^ (coalescingWindowMillis >>> 32));
     return result;
   }
 
@@ -193,6 +228,8 @@ public final class SnapshotListenOptions {
         + executor
         + ", activity="
         + activity
+        + ", coalescingWindowMillis="
+        + coalescingWindowMillis
         + '}';
   }
 }
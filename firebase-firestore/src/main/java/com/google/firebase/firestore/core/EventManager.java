@@ -67,6 +67,9 @@ public final class EventManager implements SyncEngineCallback {
 
     /** Sets the source the query listens to. */
     public ListenSource source = ListenSource.DEFAULT;
+
+    /** Coalesce snapshots raised within this many milliseconds. Zero disables coalescing. */
+    public long coalescingWindowMs;
   }
 
   private final SyncEngine syncEngine;
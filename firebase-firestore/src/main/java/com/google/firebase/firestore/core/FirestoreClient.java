@@ -47,6 +47,7 @@ import com.google.firebase.firestore.remote.GrpcMetadataProvider;
 import com.google.firebase.firestore.remote.RemoteSerializer;
 import com.google.firebase.firestore.remote.RemoteStore;
 import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.Executors;
 import com.google.firebase.firestore.util.Function;
 import com.google.firebase.firestore.util.Logger;
 import com.google.firestore.v1.Value;
@@ -55,6 +56,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FirestoreClient is a top-level class that constructs and owns all of the pieces of the client SDK
@@ -80,6 +82,16 @@ public final class FirestoreClient {
   @Nullable private Scheduler indexBackfillScheduler;
   @Nullable private Scheduler gcScheduler;
 
+  /** Completed once all components have been created on the worker queue. */
+  private final TaskCompletionSource<Void> initialization = new TaskCompletionSource<>();
+
+  /**
+   * The number of local changes, such as writes and bundle loads, that have been scheduled but not
+   * yet applied to the local store. Cache reads only bypass the worker queue when there are none,
+   * so that they observe the changes made before them.
+   */
+  private final AtomicInteger pendingLocalChanges = new AtomicInteger();
+
   public FirestoreClient(
       final Context context,
       DatabaseInfo databaseInfo,
@@ -172,6 +184,9 @@ public final class FirestoreClient {
   public QueryListener listen(
       Query query, ListenOptions options, EventListener<ViewSnapshot> listener) {
     this.verifyNotTerminated();
+    if (options.coalescingWindowMs > 0) {
+      listener = new SnapshotCoalescer(asyncQueue, options.coalescingWindowMs, listener);
+    }
     QueryListener queryListener = new QueryListener(query, options, listener);
     asyncQueue.enqueueAndForget(() -> eventManager.addQueryListener(queryListener));
     return queryListener;
@@ -187,23 +202,50 @@ public final class FirestoreClient {
   @SuppressLint("TaskMainThread")
   public Task<Document> getDocumentFromLocalCache(DocumentKey docKey) {
     this.verifyNotTerminated();
-    return asyncQueue
-        .enqueue(() -> localStore.readDocument(docKey))
-        .continueWith(
-            (result) -> {
-              Document document = result.getResult();
-              if (document.isFoundDocument()) {
-                return document;
-              } else if (document.isNoDocument()) {
-                return null;
-              } else {
-                throw new FirebaseFirestoreException(
-                    "Failed to get document from cache. (However, this document may exist on the "
-                        + "server. Run again without setting source to CACHE to attempt "
-                        + "to retrieve the document from the server.)",
-                    Code.UNAVAILABLE);
-              }
-            });
+    Task<Document> readTask;
+    if (canReadConcurrently()) {
+      // Falls back to the worker queue if the local store changed while the document was read.
+      readTask =
+          Tasks.call(
+                  Executors.BACKGROUND_EXECUTOR, () -> localStore.readDocumentConcurrently(docKey))
+              .continueWithTask(
+                  Executors.DIRECT_EXECUTOR,
+                  (result) -> {
+                    Document document = result.getResult();
+                    return document != null
+                        ? Tasks.forResult(document)
+                        : asyncQueue.enqueue(() -> localStore.readDocument(docKey));
+                  });
+    } else {
+      readTask = asyncQueue.enqueue(() -> localStore.readDocument(docKey));
+    }
+    return readTask.continueWith(
+        (result) -> {
+          Document document = result.getResult();
+          if (document.isFoundDocument()) {
+            return document;
+          } else if (document.isNoDocument()) {
+            return null;
+          } else {
+            throw new FirebaseFirestoreException(
+                "Failed to get document from cache. (However, this document may exist on the "
+                    + "server. Run again without setting source to CACHE to attempt "
+                    + "to retrieve the document from the server.)",
+                Code.UNAVAILABLE);
+          }
+        });
+  }
+
+  /**
+   * Returns whether a cache read can be served off the worker queue. This requires the client to be
+   * initialized and not terminated, the persistence layer to support concurrent reads and no local
+   * changes to be pending, since those might not be visible to the read otherwise.
+   */
+  private boolean canReadConcurrently() {
+    return initialization.getTask().isComplete()
+        && !asyncQueue.isShuttingDown()
+        && localStore.isConcurrentReadEnabled()
+        && pendingLocalChanges.get() == 0;
   }
 
   public Task<ViewSnapshot> getDocumentsFromLocalCache(Query query) {
@@ -221,10 +263,26 @@ public final class FirestoreClient {
   public Task<Void> write(final List<Mutation> mutations) {
     this.verifyNotTerminated();
     final TaskCompletionSource<Void> source = new TaskCompletionSource<>();
-    asyncQueue.enqueueAndForget(() -> syncEngine.writeMutations(mutations, source));
+    enqueueLocalChange(() -> syncEngine.writeMutations(mutations, source));
     return source.getTask();
   }
 
+  /**
+   * Schedules a change of the local store, which cache reads that are requested after it must
+   * observe (see {@link #canReadConcurrently}).
+   */
+  private void enqueueLocalChange(Runnable change) {
+    pendingLocalChanges.incrementAndGet();
+    asyncQueue.enqueueAndForget(
+        () -> {
+          try {
+            change.run();
+          } finally {
+            pendingLocalChanges.decrementAndGet();
+          }
+        });
+  }
+
   /** Tries to execute the transaction in updateFunction. */
   public <TResult> Task<TResult> transaction(
       TransactionOptions options, Function<Transaction, Task<TResult>> updateFunction) {
@@ -298,6 +356,8 @@ public final class FirestoreClient {
       indexBackfillScheduler = indexBackfiller.getScheduler();
       indexBackfillScheduler.start();
     }
+
+    initialization.setResult(null);
   }
 
   public void addSnapshotsInSyncListener(EventListener<Void> listener) {
@@ -308,7 +368,7 @@ public final class FirestoreClient {
   public void loadBundle(InputStream bundleData, LoadBundleTask resultTask) {
     verifyNotTerminated();
     BundleReader bundleReader = new BundleReader(bundleSerializer, bundleData);
-    asyncQueue.enqueueAndForget(() -> syncEngine.loadBundle(bundleReader, resultTask));
+    enqueueLocalChange(() -> syncEngine.loadBundle(bundleReader, resultTask));
   }
 
   public Task<Query> getNamedQuery(String queryName) {
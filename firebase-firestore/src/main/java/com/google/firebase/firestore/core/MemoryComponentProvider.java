@@ -75,15 +75,32 @@ public class MemoryComponentProvider extends ComponentProvider {
     return false;
   }
 
+  private boolean isCompactDocumentStorageEnabled(FirebaseFirestoreSettings settings) {
+    if (settings.getCacheSettings() != null
+        && settings.getCacheSettings() instanceof MemoryCacheSettings) {
+      MemoryCacheSettings memorySettings = (MemoryCacheSettings) settings.getCacheSettings();
+      return memorySettings.isCompactDocumentStorageEnabled();
+    }
+
+    return false;
+  }
+
   @Override
   protected Persistence createPersistence(Configuration configuration) {
+    boolean compact = isCompactDocumentStorageEnabled(settings);
     if (isMemoryLruGcEnabled(settings)) {
       LocalSerializer serializer = new LocalSerializer(getRemoteSerializer());
       LruGarbageCollector.Params params =
           LruGarbageCollector.Params.WithCacheSizeBytes(settings.getCacheSizeBytes());
-      return MemoryPersistence.createLruGcMemoryPersistence(params, serializer);
+      return compact
+          ? MemoryPersistence.createCompactLruGcMemoryPersistence(params, serializer)
+          : MemoryPersistence.createLruGcMemoryPersistence(params, serializer);
     }
 
+    if (compact) {
+      return MemoryPersistence.createCompactEagerGcMemoryPersistence(
+          new LocalSerializer(getRemoteSerializer()));
+    }
     return MemoryPersistence.createEagerGcMemoryPersistence();
   }
 
@@ -104,7 +121,8 @@ public class MemoryComponentProvider extends ComponentProvider {
         getLocalStore(),
         getRemoteStore(),
         configuration.initialUser,
-        configuration.maxConcurrentLimboResolutions);
+        configuration.maxConcurrentLimboResolutions,
+        settings.isQueryTargetSharingEnabled());
   }
 
   /**
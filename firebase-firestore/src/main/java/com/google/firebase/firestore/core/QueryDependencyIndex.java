@@ -0,0 +1,144 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.model.FieldPath;
+import com.google.firebase.firestore.model.ResourcePath;
+import com.google.firebase.firestore.model.mutation.FieldTransform;
+import com.google.firebase.firestore.model.mutation.Mutation;
+import com.google.firebase.firestore.model.mutation.PatchMutation;
+import com.google.firebase.firestore.model.mutation.Precondition;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index from collection ids and document fields to the active queries that filter or
+ * order on them.
+ *
+ * <p>SyncEngine uses the index to find the queries whose results can change when a local write
+ * only updates a known set of fields of existing documents. All other queries only need to update
+ * the documents that are already part of their views.
+ */
+final class QueryDependencyIndex {
+  /** The active queries, indexed by collection id and by the fields they depend on. */
+  private final Map<String, Map<FieldPath, Set<Query>>> queriesByCollectionAndField =
+      new HashMap<>();
+
+  void addQuery(Query query) {
+    Map<FieldPath, Set<Query>> queriesByField = queriesByCollectionAndField.get(collectionId(query));
+    if (queriesByField == null) {
+      queriesByField = new HashMap<>();
+      queriesByCollectionAndField.put(collectionId(query), queriesByField);
+    }
+    for (FieldPath field : dependentFields(query)) {
+      Set<Query> queries = queriesByField.get(field);
+      if (queries == null) {
+        queries = new HashSet<>();
+        queriesByField.put(field, queries);
+      }
+      queries.add(query);
+    }
+  }
+
+  void removeQuery(Query query) {
+    Map<FieldPath, Set<Query>> queriesByField = queriesByCollectionAndField.get(collectionId(query));
+    if (queriesByField == null) {
+      return;
+    }
+    for (FieldPath field : dependentFields(query)) {
+      Set<Query> queries = queriesByField.get(field);
+      if (queries != null) {
+        queries.remove(query);
+        if (queries.isEmpty()) {
+          queriesByField.remove(field);
+        }
+      }
+    }
+    if (queriesByField.isEmpty()) {
+      queriesByCollectionAndField.remove(collectionId(query));
+    }
+  }
+
+  /**
+   * Returns the queries that documents changed by the given mutations can start or stop matching,
+   * or change position in. Returns null if this cannot be determined, in which case all queries
+   * must be re-evaluated.
+   */
+  @Nullable
+  Set<Query> getAffectedQueries(List<Mutation> mutations) {
+    Set<Query> affectedQueries = new HashSet<>();
+    for (Mutation mutation : mutations) {
+      // Only updates of existing documents change a known set of fields. Other mutations can
+      // create or delete documents.
+      if (!(mutation instanceof PatchMutation) || !requiresExistingDocument(mutation)) {
+        return null;
+      }
+
+      Map<FieldPath, Set<Query>> queriesByField =
+          queriesByCollectionAndField.get(mutation.getKey().getCollectionGroup());
+      if (queriesByField == null) {
+        continue;
+      }
+
+      List<FieldPath> changedFields =
+          new ArrayList<>(((PatchMutation) mutation).getFieldMask().getMask());
+      for (FieldTransform transform : mutation.getFieldTransforms()) {
+        changedFields.add(transform.getFieldPath());
+      }
+
+      for (Map.Entry<FieldPath, Set<Query>> entry : queriesByField.entrySet()) {
+        for (FieldPath changedField : changedFields) {
+          // A change to a parent or a child of a field can change the value of the field.
+          if (entry.getKey().isPrefixOf(changedField) || changedField.isPrefixOf(entry.getKey())) {
+            affectedQueries.addAll(entry.getValue());
+            break;
+          }
+        }
+      }
+    }
+    return affectedQueries;
+  }
+
+  private static boolean requiresExistingDocument(Mutation mutation) {
+    Precondition precondition = mutation.getPrecondition();
+    return Boolean.TRUE.equals(precondition.getExists()) || precondition.getUpdateTime() != null;
+  }
+
+  private static String collectionId(Query query) {
+    if (query.isCollectionGroupQuery()) {
+      return query.getCollectionGroup();
+    }
+    ResourcePath path = query.getPath();
+    return query.isDocumentQuery() ? path.getSegment(path.length() - 2) : path.getLastSegment();
+  }
+
+  private static Set<FieldPath> dependentFields(Query query) {
+    Set<FieldPath> fields = new HashSet<>();
+    for (Filter filter : query.getFilters()) {
+      for (FieldFilter fieldFilter : filter.getFlattenedFilters()) {
+        fields.add(fieldFilter.getField());
+      }
+    }
+    for (OrderBy orderBy : query.getNormalizedOrderBy()) {
+      fields.add(orderBy.getField());
+    }
+    return fields;
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.firebase.firestore.core;
 
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
 import com.google.firebase.firestore.local.IndexBackfiller;
 import com.google.firebase.firestore.local.LocalSerializer;
 import com.google.firebase.firestore.local.LruDelegate;
@@ -52,6 +53,15 @@ public class SQLiteComponentProvider extends MemoryComponentProvider {
         configuration.databaseInfo.getPersistenceKey(),
         configuration.databaseInfo.getDatabaseId(),
         serializer,
-        params);
+        params,
+        isConcurrentReadsEnabled(settings));
+  }
+
+  private boolean isConcurrentReadsEnabled(FirebaseFirestoreSettings settings) {
+    if (settings.getCacheSettings() instanceof PersistentCacheSettings) {
+      return ((PersistentCacheSettings) settings.getCacheSettings()).isConcurrentReadsEnabled();
+    }
+
+    return false;
   }
 }
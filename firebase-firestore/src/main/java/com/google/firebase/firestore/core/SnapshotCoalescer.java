@@ -0,0 +1,141 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import static com.google.firebase.firestore.util.Util.compareIntegers;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.AsyncQueue.DelayedTask;
+import com.google.firebase.firestore.util.AsyncQueue.TimerId;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An EventListener that throttles the ViewSnapshots raised by a QueryListener so that at most one
+ * snapshot is delivered per coalescing window. Snapshots raised within the window are merged, so
+ * that the delivered snapshot only contains the net document changes.
+ *
+ * <p>Like QueryListener, this class expects to be called on the worker queue only.
+ */
+class SnapshotCoalescer implements EventListener<ViewSnapshot> {
+  private final AsyncQueue asyncQueue;
+  private final long windowMs;
+  private final EventListener<ViewSnapshot> listener;
+
+  /** The merged snapshot that has not been delivered yet. */
+  private @Nullable ViewSnapshot pendingSnapshot;
+
+  /** The last snapshot that was delivered to the listener. */
+  private @Nullable ViewSnapshot lastSnapshot;
+
+  private @Nullable DelayedTask flushTask;
+  private long lastDeliveryTimeMs;
+
+  SnapshotCoalescer(AsyncQueue asyncQueue, long windowMs, EventListener<ViewSnapshot> listener) {
+    this.asyncQueue = asyncQueue;
+    this.windowMs = windowMs;
+    this.listener = listener;
+  }
+
+  @Override
+  public void onEvent(@Nullable ViewSnapshot snapshot, @Nullable FirebaseFirestoreException error) {
+    if (error != null) {
+      cancelFlush();
+      pendingSnapshot = null;
+      listener.onEvent(null, error);
+      return;
+    }
+
+    pendingSnapshot = pendingSnapshot == null ? snapshot : merge(pendingSnapshot, snapshot);
+    if (flushTask != null) {
+      return;
+    }
+
+    long delayMs = lastDeliveryTimeMs + windowMs - System.currentTimeMillis();
+    if (lastSnapshot == null || delayMs <= 0) {
+      flush();
+    } else {
+      flushTask = asyncQueue.enqueueAfterDelay(TimerId.SNAPSHOT_COALESCING, delayMs, this::flush);
+    }
+  }
+
+  private void flush() {
+    flushTask = null;
+    ViewSnapshot snapshot = pendingSnapshot;
+    pendingSnapshot = null;
+    if (snapshot == null || isNoop(snapshot)) {
+      return;
+    }
+
+    lastDeliveryTimeMs = System.currentTimeMillis();
+    lastSnapshot = snapshot;
+    listener.onEvent(snapshot, null);
+  }
+
+  private void cancelFlush() {
+    if (flushTask != null) {
+      flushTask.cancel();
+      flushTask = null;
+    }
+  }
+
+  /** Returns whether the merged snapshot does not change anything the listener has seen. */
+  private boolean isNoop(ViewSnapshot snapshot) {
+    return lastSnapshot != null
+        && snapshot.getChanges().isEmpty()
+        && snapshot.isFromCache() == lastSnapshot.isFromCache()
+        && snapshot.hasPendingWrites() == lastSnapshot.hasPendingWrites();
+  }
+
+  /**
+   * Merges two consecutive snapshots into one that transitions from the documents of the first
+   * snapshot's predecessor to the documents of the second snapshot.
+   */
+  static ViewSnapshot merge(ViewSnapshot first, ViewSnapshot second) {
+    DocumentViewChangeSet changeSet = new DocumentViewChangeSet();
+    for (DocumentViewChange change : first.getChanges()) {
+      changeSet.addChange(change);
+    }
+    for (DocumentViewChange change : second.getChanges()) {
+      changeSet.addChange(change);
+    }
+
+    Query query = second.getQuery();
+    List<DocumentViewChange> changes = changeSet.getChanges();
+    Collections.sort(
+        changes,
+        (DocumentViewChange o1, DocumentViewChange o2) -> {
+          int typeComp = compareIntegers(View.changeTypeOrder(o1), View.changeTypeOrder(o2));
+          if (typeComp != 0) {
+            return typeComp;
+          }
+          return query.comparator().compare(o1.getDocument(), o2.getDocument());
+        });
+
+    return new ViewSnapshot(
+        query,
+        second.getDocuments(),
+        first.getOldDocuments(),
+        changes,
+        second.isFromCache(),
+        second.getMutatedKeys(),
+        first.didSyncStateChange() || second.didSyncStateChange(),
+        second.excludesMetadataChanges(),
+        second.hasCachedResults());
+  }
+}
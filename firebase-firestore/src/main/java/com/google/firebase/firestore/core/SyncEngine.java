@@ -43,6 +43,7 @@ import com.google.firebase.firestore.local.ReferenceSet;
 import com.google.firebase.firestore.local.TargetData;
 import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.FieldPath;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.SnapshotVersion;
 import com.google.firebase.firestore.model.mutation.Mutation;
@@ -62,10 +63,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -128,8 +131,20 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
   /** Queries mapped to active targets, indexed by target id. */
   private final Map<Integer, List<Query>> queriesByTarget;
 
+  /**
+   * Queries that are served from the target of a wider query rather than from their own target,
+   * mapped to the query whose target they share.
+   */
+  private final Map<Query, Query> subsumingQueries;
+
+  /** The fields that the active queries filter or order on. */
+  private final QueryDependencyIndex queryDependencyIndex;
+
   private final int maxConcurrentLimboResolutions;
 
+  /** Whether queries may be served from the target of an active query that subsumes them. */
+  private final boolean queryTargetSharingEnabled;
+
   /**
    * The keys of documents that are in limbo for which we haven't yet started a limbo resolution
    * query.
@@ -165,13 +180,17 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
       LocalStore localStore,
       RemoteStore remoteStore,
       User initialUser,
-      int maxConcurrentLimboResolutions) {
+      int maxConcurrentLimboResolutions,
+      boolean queryTargetSharingEnabled) {
     this.localStore = localStore;
     this.remoteStore = remoteStore;
     this.maxConcurrentLimboResolutions = maxConcurrentLimboResolutions;
+    this.queryTargetSharingEnabled = queryTargetSharingEnabled;
 
     queryViewsByQuery = new HashMap<>();
     queriesByTarget = new HashMap<>();
+    subsumingQueries = new HashMap<>();
+    queryDependencyIndex = new QueryDependencyIndex();
 
     enqueuedLimboResolutions = new LinkedHashSet<>();
     activeLimboTargetsByKey = new HashMap<>();
@@ -204,7 +223,15 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     assertCallback("listen");
     hardAssert(!queryViewsByQuery.containsKey(query), "We already listen to query: %s", query);
 
-    TargetData targetData = localStore.allocateTarget(query.toTarget());
+    Query subsumingQuery =
+        queryTargetSharingEnabled && shouldListenToRemote ? findSubsumingQuery(query) : null;
+    if (subsumingQuery != null) {
+      subsumingQueries.put(query, subsumingQuery);
+    }
+
+    TargetData targetData =
+        localStore.allocateTarget(
+            subsumingQuery != null ? subsumingQuery.toTarget() : query.toTarget());
 
     ViewSnapshot viewSnapshot =
         initializeViewAndComputeSnapshot(
@@ -218,6 +245,78 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     return targetData.getTargetId();
   }
 
+  /**
+   * Returns an actively watched query whose results are a superset of the given query's results,
+   * or null if there is none. The given query can then be served by filtering the documents of
+   * that query's target locally, without a watch target of its own.
+   */
+  @Nullable
+  private Query findSubsumingQuery(Query query) {
+    if (query.isDocumentQuery()) {
+      return null;
+    }
+
+    Target target = query.toTarget();
+    Query subsumingQuery = null;
+    for (QueryView queryView : queryViewsByQuery.values()) {
+      Query candidate = subsumingQueries.get(queryView.getQuery());
+      if (candidate == null) {
+        candidate = queryView.getQuery();
+      }
+      if (candidate.toTarget().equals(target)) {
+        // The query can already share a target without filtering.
+        return null;
+      }
+      if (subsumingQuery == null
+          && remoteStore.getTargetDataForTarget(queryView.getTargetId()) != null
+          && subsumes(candidate, query)) {
+        subsumingQuery = candidate;
+      }
+    }
+    return subsumingQuery;
+  }
+
+  /**
+   * Returns whether every document that matches {@code query} also matches {@code wider}, such
+   * that the target of {@code wider} contains all documents needed to compute {@code query}.
+   */
+  @VisibleForTesting
+  static boolean subsumes(Query wider, Query query) {
+    if (wider.isDocumentQuery()
+        || !wider.getPath().equals(query.getPath())
+        || !Objects.equals(wider.getCollectionGroup(), query.getCollectionGroup())
+        || wider.getStartAt() != null
+        || wider.getEndAt() != null) {
+      return false;
+    }
+
+    if (!wider.hasLimit()) {
+      // Additional filters, orderings, cursors and limits can only narrow the result set. Since
+      // ordering by a field excludes documents without that field, the query must also be ordered
+      // by every field that the wider query is explicitly ordered by.
+      Set<FieldPath> orderByFields = new HashSet<>();
+      for (OrderBy orderBy : query.getNormalizedOrderBy()) {
+        orderByFields.add(orderBy.getField());
+      }
+      for (OrderBy orderBy : wider.getExplicitOrderBy()) {
+        if (!orderByFields.contains(orderBy.getField())) {
+          return false;
+        }
+      }
+      return query.getFilters().containsAll(wider.getFilters());
+    }
+
+    // A limited query contains the first (or last) documents of a smaller limit with the same
+    // filters and ordering.
+    return query.hasLimit()
+        && query.getLimitType() == wider.getLimitType()
+        && query.getLimit() <= wider.getLimit()
+        && query.getStartAt() == null
+        && query.getEndAt() == null
+        && query.getFilters().equals(wider.getFilters())
+        && query.getNormalizedOrderBy().equals(wider.getNormalizedOrderBy());
+  }
+
   private ViewSnapshot initializeViewAndComputeSnapshot(
       Query query, int targetId, ByteString resumeToken) {
     QueryResult queryResult = localStore.executeQuery(query, /* usePreviousResults= */ true);
@@ -238,13 +337,19 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     // TODO(wuandy): Investigate if we can extract the logic of view change computation and
     // update tracked limbo in one place, and have both emitNewSnapsAndNotifyLocalStore
     // and here to call that.
-    View view = new View(query, queryResult.getRemoteKeys());
+    // A query that is served from a wider target tracks the remote keys of that target.
+    ImmutableSortedSet<DocumentKey> remoteKeys =
+        subsumingQueries.containsKey(query)
+            ? localStore.getRemoteDocumentKeys(targetId)
+            : queryResult.getRemoteKeys();
+    View view = new View(query, remoteKeys);
     View.DocumentChanges viewDocChanges = view.computeDocChanges(queryResult.getDocuments());
     ViewChange viewChange = view.applyChanges(viewDocChanges, synthesizedCurrentChange);
     updateTrackedLimboDocuments(viewChange.getLimboChanges(), targetId);
 
     QueryView queryView = new QueryView(query, targetId, view);
     queryViewsByQuery.put(query, queryView);
+    queryDependencyIndex.addQuery(query);
 
     if (!queriesByTarget.containsKey(targetId)) {
       // Most likely there will only be one query mapping to a target, so construct the
@@ -265,7 +370,10 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     hardAssert(
         queryViewsByQuery.containsKey(query), "This is the first listen to query: %s", query);
 
-    TargetData targetData = localStore.allocateTarget(query.toTarget());
+    Query subsumingQuery = subsumingQueries.get(query);
+    TargetData targetData =
+        localStore.allocateTarget(
+            subsumingQuery != null ? subsumingQuery.toTarget() : query.toTarget());
     remoteStore.listen(targetData);
   }
 
@@ -280,6 +388,8 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     hardAssert(queryView != null, "Trying to stop listening to a query not found");
 
     queryViewsByQuery.remove(query);
+    subsumingQueries.remove(query);
+    queryDependencyIndex.removeQuery(query);
 
     int targetId = queryView.getTargetId();
     List<Query> targetQueries = queriesByTarget.get(targetId);
@@ -324,7 +434,10 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     LocalDocumentsResult result = localStore.writeLocally(mutations);
     addUserCallback(result.getBatchId(), userTask);
 
-    emitNewSnapsAndNotifyLocalStore(result.getDocuments(), /* remoteEvent= */ null);
+    emitNewSnapsAndNotifyLocalStore(
+        result.getDocuments(),
+        /* remoteEvent= */ null,
+        queryDependencyIndex.getAffectedQueries(mutations));
     remoteStore.fillWritePipeline();
   }
 
@@ -638,6 +751,8 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
   private void removeAndCleanupTarget(int targetId, Status status) {
     for (Query query : queriesByTarget.get(targetId)) {
       queryViewsByQuery.remove(query);
+      subsumingQueries.remove(query);
+      queryDependencyIndex.removeQuery(query);
       if (!status.isOk()) {
         syncEngineListener.onError(query, status);
         logErrorIfInteresting(status, "Listen for %s failed", query);
@@ -655,6 +770,17 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
     }
   }
 
+  private static ImmutableSortedMap<DocumentKey, Document> retainDocumentsInView(
+      ImmutableSortedMap<DocumentKey, Document> changes, View view) {
+    ImmutableSortedMap<DocumentKey, Document> result = changes;
+    for (Map.Entry<DocumentKey, Document> entry : changes) {
+      if (!view.containsDocument(entry.getKey())) {
+        result = result.remove(entry.getKey());
+      }
+    }
+    return result;
+  }
+
   private void removeLimboTarget(DocumentKey key) {
     enqueuedLimboResolutions.remove(key);
     // It's possible that the target already got removed because the query failed. In that case,
@@ -674,13 +800,34 @@ public class SyncEngine implements RemoteStore.RemoteStoreCallback {
    */
   private void emitNewSnapsAndNotifyLocalStore(
       ImmutableSortedMap<DocumentKey, Document> changes, @Nullable RemoteEvent remoteEvent) {
+    emitNewSnapsAndNotifyLocalStore(changes, remoteEvent, /* affectedQueries= */ null);
+  }
+
+  /**
+   * Computes a new snapshot from the changes and calls the registered callback with the new
+   * snapshot. If {@code affectedQueries} is set, all other queries only update the changed
+   * documents that are already part of their views.
+   */
+  private void emitNewSnapsAndNotifyLocalStore(
+      ImmutableSortedMap<DocumentKey, Document> changes,
+      @Nullable RemoteEvent remoteEvent,
+      @Nullable Set<Query> affectedQueries) {
     List<ViewSnapshot> newSnapshots = new ArrayList<>();
     List<LocalViewChanges> documentChangesInAllViews = new ArrayList<>();
 
     for (Map.Entry<Query, QueryView> entry : queryViewsByQuery.entrySet()) {
       QueryView queryView = entry.getValue();
       View view = queryView.getView();
-      View.DocumentChanges viewDocChanges = view.computeDocChanges(changes);
+      ImmutableSortedMap<DocumentKey, Document> viewChanges = changes;
+      if (affectedQueries != null && !affectedQueries.contains(queryView.getQuery())) {
+        // The changes did not touch any field that the query filters or orders on, so documents
+        // that are not in the view cannot have started to match it.
+        viewChanges = retainDocumentsInView(changes, view);
+        if (viewChanges.isEmpty()) {
+          continue;
+        }
+      }
+      View.DocumentChanges viewDocChanges = view.computeDocChanges(viewChanges);
       if (viewDocChanges.needsRefill()) {
         // The query has a limit and some docs were removed/updated, so we need to re-run the query
         // against the local store to make sure we didn't lose any good docs that had been past the
@@ -431,6 +431,11 @@ public class View {
     return true;
   }
 
+  /** Returns whether the document with the given key is part of the view's current results. */
+  boolean containsDocument(DocumentKey key) {
+    return documentSet.contains(key);
+  }
+
   ImmutableSortedSet<DocumentKey> getLimboDocuments() {
     return limboDocuments;
   }
@@ -444,7 +449,7 @@ public class View {
   }
 
   /** Helper function to determine order of changes */
-  private static int changeTypeOrder(DocumentViewChange change) {
+  static int changeTypeOrder(DocumentViewChange change) {
     switch (change.getType()) {
       case ADDED:
         return 1;
@@ -0,0 +1,200 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.util.Assert.hardAssert;
+
+import com.google.protobuf.CodedInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Byte storage for serialized documents. Records are packed into large segments so that the memory
+ * cache retains a handful of big arrays instead of an object graph per document.
+ *
+ * <p>Every record is addressed by a handle that encodes its segment index and offset. A segment is
+ * returned to a small pool once all of its records have been removed, and {@link #compactInto}
+ * can be used to rewrite the live records when the arena becomes fragmented.
+ */
+final class DocumentArena {
+  /** The default size of a segment. Records larger than this get a dedicated segment. */
+  static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+
+  /** The maximum number of empty segments that are retained for reuse. */
+  private static final int MAX_POOLED_SEGMENTS = 4;
+
+  /** Every record is prefixed with its length as a 4 byte big-endian integer. */
+  private static final int HEADER_SIZE = 4;
+
+  private final int segmentSize;
+  private final List<byte[]> segments = new ArrayList<>();
+  private final ArrayDeque<byte[]> segmentPool = new ArrayDeque<>();
+  private final ArrayDeque<Integer> freeSegmentIndices = new ArrayDeque<>();
+  private int[] liveBytesPerSegment = new int[8];
+
+  private int currentSegment = -1;
+  private int writeOffset;
+  private long liveBytes;
+  private long allocatedBytes;
+
+  DocumentArena() {
+    this(DEFAULT_SEGMENT_SIZE);
+  }
+
+  DocumentArena(int segmentSize) {
+    hardAssert(segmentSize > HEADER_SIZE, "Segment size must be larger than the record header");
+    this.segmentSize = segmentSize;
+  }
+
+  /** Appends the given record and returns a handle that can be used to read it back. */
+  long add(byte[] record) {
+    int size = HEADER_SIZE + record.length;
+    if (currentSegment == -1 || writeOffset + size > segments.get(currentSegment).length) {
+      startSegment(size);
+    }
+
+    byte[] segment = segments.get(currentSegment);
+    int offset = writeOffset;
+    segment[offset] = (byte) (record.length >>> 24);
+    segment[offset + 1] = (byte) (record.length >>> 16);
+    segment[offset + 2] = (byte) (record.length >>> 8);
+    segment[offset + 3] = (byte) record.length;
+    System.arraycopy(record, 0, segment, offset + HEADER_SIZE, record.length);
+
+    writeOffset += size;
+    liveBytesPerSegment[currentSegment] += size;
+    liveBytes += size;
+    return toHandle(currentSegment, offset);
+  }
+
+  /** Returns a stream over the record with the given handle without copying it. */
+  CodedInputStream newInputStream(long handle) {
+    byte[] segment = segments.get(segmentIndex(handle));
+    int offset = offset(handle);
+    return CodedInputStream.newInstance(segment, offset + HEADER_SIZE, readLength(segment, offset));
+  }
+
+  /** Releases the record with the given handle. The handle must not be used afterwards. */
+  void remove(long handle) {
+    int index = segmentIndex(handle);
+    byte[] segment = segments.get(index);
+    int size = HEADER_SIZE + readLength(segment, offset(handle));
+
+    liveBytesPerSegment[index] -= size;
+    liveBytes -= size;
+    hardAssert(liveBytesPerSegment[index] >= 0, "Record removed twice from segment %s", index);
+
+    if (liveBytesPerSegment[index] == 0) {
+      releaseSegment(index);
+    }
+  }
+
+  /**
+   * Copies the record with the given handle into {@code other} and returns its handle there. The
+   * record is not removed from this arena.
+   */
+  long compactInto(DocumentArena other, long handle) {
+    byte[] segment = segments.get(segmentIndex(handle));
+    int offset = offset(handle);
+    byte[] record = new byte[readLength(segment, offset)];
+    System.arraycopy(segment, offset + HEADER_SIZE, record, 0, record.length);
+    return other.add(record);
+  }
+
+  /** Returns the number of bytes held by live records, including their headers. */
+  long getLiveBytes() {
+    return liveBytes;
+  }
+
+  /** Returns the number of bytes held by all allocated segments. */
+  long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Returns whether removed records waste enough space that the live records should be copied into
+   * a fresh arena.
+   */
+  boolean isFragmented() {
+    return allocatedBytes - liveBytes > Math.max(liveBytes, segmentSize);
+  }
+
+  private void startSegment(int minSize) {
+    int previousSegment = currentSegment;
+    currentSegment = -1;
+    if (previousSegment != -1 && liveBytesPerSegment[previousSegment] == 0) {
+      releaseSegment(previousSegment);
+    }
+
+    byte[] segment;
+    if (minSize <= segmentSize && !segmentPool.isEmpty()) {
+      segment = segmentPool.pop();
+    } else {
+      segment = new byte[Math.max(segmentSize, minSize)];
+    }
+    allocatedBytes += segment.length;
+
+    Integer index = freeSegmentIndices.poll();
+    if (index == null) {
+      index = segments.size();
+      segments.add(segment);
+      if (index == liveBytesPerSegment.length) {
+        int[] grown = new int[liveBytesPerSegment.length * 2];
+        System.arraycopy(liveBytesPerSegment, 0, grown, 0, liveBytesPerSegment.length);
+        liveBytesPerSegment = grown;
+      }
+    } else {
+      segments.set(index, segment);
+    }
+
+    currentSegment = index;
+    writeOffset = 0;
+  }
+
+  private void releaseSegment(int index) {
+    if (index == currentSegment) {
+      // Keep appending to the current segment from the start rather than allocating a new one.
+      writeOffset = 0;
+      return;
+    }
+
+    byte[] segment = segments.set(index, null);
+    allocatedBytes -= segment.length;
+    if (segment.length == segmentSize && segmentPool.size() < MAX_POOLED_SEGMENTS) {
+      segmentPool.push(segment);
+    }
+    freeSegmentIndices.add(index);
+  }
+
+  private static int readLength(byte[] segment, int offset) {
+    return ((segment[offset] & 0xFF) << 24)
+        | ((segment[offset + 1] & 0xFF) << 16)
+        | ((segment[offset + 2] & 0xFF) << 8)
+        | (segment[offset + 3] & 0xFF);
+  }
+
+  private static long toHandle(int segmentIndex, int offset) {
+    return ((long) segmentIndex << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private static int segmentIndex(long handle) {
+    return (int) (handle >>> 32);
+  }
+
+  private static int offset(long handle) {
+    return (int) handle;
+  }
+}
@@ -126,8 +126,11 @@ public final class LocalStore implements BundleCallback {
   /** The last known state of all referenced documents according to the backend. */
   private final RemoteDocumentCache remoteDocuments;
 
-  /** The current state of all referenced documents, reflecting local changes. */
-  private LocalDocumentsView localDocuments;
+  /**
+   * The current state of all referenced documents, reflecting local changes. Volatile since it may
+   * be read by concurrent document reads (see {@link #isConcurrentReadEnabled}).
+   */
+  private volatile LocalDocumentsView localDocuments;
 
   /** Performs queries over the localDocuments (and potentially maintains indexes). */
   private final QueryEngine queryEngine;
@@ -652,6 +655,26 @@ public final class LocalStore implements BundleCallback {
     return localDocuments.getDocument(key);
   }
 
+  /**
+   * Returns whether {@link #readDocumentConcurrently} may be called off the worker queue,
+   * concurrently with other operations of the local store.
+   */
+  public boolean isConcurrentReadEnabled() {
+    return persistence.isConcurrentReadEnabled();
+  }
+
+  /**
+   * Returns the current value of a document with a given key, like {@link #readDocument}, but reads
+   * it off the worker queue.
+   *
+   * @return The document, or null if it has to be read on the worker queue instead, since the
+   *     local store changed while it was read.
+   */
+  @Nullable
+  public Document readDocumentConcurrently(DocumentKey key) {
+    return persistence.runConcurrentRead(() -> localDocuments.getDocument(key));
+  }
+
   /**
    * Assigns the given target an internal ID so that its results can be pinned so they don't get
    * GC'd. A query must be allocated in the local store before the store can be used to manage its
@@ -18,7 +18,6 @@ import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import android.util.SparseArray;
 import com.google.firebase.firestore.core.ListenSequence;
-import com.google.firebase.firestore.model.Document;
 import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.util.Consumer;
 import java.util.ArrayList;
@@ -119,8 +118,7 @@ class MemoryLruReferenceDelegate implements ReferenceDelegate, LruDelegate {
   public int removeOrphanedDocuments(long upperBound) {
     MemoryRemoteDocumentCache cache = persistence.getRemoteDocumentCache();
     List<DocumentKey> docsToRemove = new ArrayList<>();
-    for (Document doc : cache.getDocuments()) {
-      DocumentKey key = doc.getKey();
+    for (DocumentKey key : cache.getDocumentKeys()) {
       if (!isPinned(key, upperBound)) {
         docsToRemove.add(key);
         orphanedSequenceNumbers.remove(key);
@@ -188,9 +186,9 @@ class MemoryLruReferenceDelegate implements ReferenceDelegate, LruDelegate {
 
   @Override
   public long getByteSize() {
-    // Note that this method is only used for testing because this delegate is only
-    // used for testing. The algorithm here (loop through everything, serialize it
-    // and count bytes) is inefficient and inexact, but won't run in production.
+    // The algorithm here (loop through everything, serialize it and count bytes) is
+    // inefficient and inexact. With compact document storage, the remote document
+    // cache, which usually dominates, reports its exact size without serializing.
     long count = 0;
     count += persistence.getTargetCache().getByteSize(serializer);
     count += persistence.getRemoteDocumentCache().getByteSize(serializer);
@@ -43,27 +43,56 @@ public final class MemoryPersistence extends Persistence {
   private boolean started;
 
   public static MemoryPersistence createEagerGcMemoryPersistence() {
-    MemoryPersistence persistence = new MemoryPersistence();
+    MemoryPersistence persistence = new MemoryPersistence(new MemoryRemoteDocumentCache());
     persistence.setReferenceDelegate(new MemoryEagerReferenceDelegate(persistence));
     return persistence;
   }
 
   public static MemoryPersistence createLruGcMemoryPersistence(
       LruGarbageCollector.Params params, LocalSerializer serializer) {
-    MemoryPersistence persistence = new MemoryPersistence();
+    MemoryPersistence persistence = new MemoryPersistence(new MemoryRemoteDocumentCache());
+    persistence.setReferenceDelegate(
+        new MemoryLruReferenceDelegate(persistence, params, serializer));
+    return persistence;
+  }
+
+  /**
+   * Creates an eager GC persistence that stores remote documents in serialized form. See {@link
+   * MemoryRemoteDocumentCache}.
+   */
+  public static MemoryPersistence createCompactEagerGcMemoryPersistence(
+      LocalSerializer serializer) {
+    MemoryPersistence persistence =
+        new MemoryPersistence(
+            new MemoryRemoteDocumentCache(
+                serializer, MemoryRemoteDocumentCache.DEFAULT_DECODED_CACHE_SIZE));
+    persistence.setReferenceDelegate(new MemoryEagerReferenceDelegate(persistence));
+    return persistence;
+  }
+
+  /**
+   * Creates an LRU GC persistence that stores remote documents in serialized form. See {@link
+   * MemoryRemoteDocumentCache}.
+   */
+  public static MemoryPersistence createCompactLruGcMemoryPersistence(
+      LruGarbageCollector.Params params, LocalSerializer serializer) {
+    MemoryPersistence persistence =
+        new MemoryPersistence(
+            new MemoryRemoteDocumentCache(
+                serializer, MemoryRemoteDocumentCache.DEFAULT_DECODED_CACHE_SIZE));
     persistence.setReferenceDelegate(
         new MemoryLruReferenceDelegate(persistence, params, serializer));
     return persistence;
   }
 
   /** Use static helpers to instantiate */
-  private MemoryPersistence() {
+  private MemoryPersistence(MemoryRemoteDocumentCache remoteDocumentCache) {
     globalsCache = new MemoryGlobalsCache();
     mutationQueues = new HashMap<>();
     indexManager = new MemoryIndexManager();
     targetCache = new MemoryTargetCache(this);
     bundleCache = new MemoryBundleCache();
-    remoteDocumentCache = new MemoryRemoteDocumentCache();
+    this.remoteDocumentCache = remoteDocumentCache;
     overlays = new HashMap<>();
   }
 
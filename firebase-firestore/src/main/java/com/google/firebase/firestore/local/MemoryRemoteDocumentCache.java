@@ -15,10 +15,13 @@
 package com.google.firebase.firestore.local;
 
 import static com.google.firebase.firestore.model.DocumentCollections.emptyDocumentMap;
+import static com.google.firebase.firestore.util.Assert.fail;
 import static com.google.firebase.firestore.util.Assert.hardAssert;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.firebase.Timestamp;
 import com.google.firebase.database.collection.ImmutableSortedMap;
 import com.google.firebase.firestore.core.Query;
 import com.google.firebase.firestore.model.Document;
@@ -26,24 +29,70 @@ import com.google.firebase.firestore.model.DocumentKey;
 import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
 import com.google.firebase.firestore.model.MutableDocument;
 import com.google.firebase.firestore.model.SnapshotVersion;
+import com.google.firebase.firestore.util.Function;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nonnull;
 
-/** In-memory cache of remote documents. */
+/**
+ * In-memory cache of remote documents.
+ *
+ * <p>By default, documents are retained as model objects. In compact mode, documents are instead
+ * serialized into a {@link DocumentArena} and decoded on read, with a small LRU cache of documents
+ * recently read by key on top.
+ */
 final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
 
-  /** Underlying cache of documents and their read times. */
+  /** The number of decoded documents that are retained in compact mode. */
+  static final int DEFAULT_DECODED_CACHE_SIZE = 100;
+
+  /** The size of the read time that prefixes every record in compact mode (seconds and nanos). */
+  private static final int READ_TIME_SIZE = 12;
+
+  /** Underlying cache of documents and their read times. Unused in compact mode. */
   private ImmutableSortedMap<DocumentKey, Document> docs;
 
+  /** The arena handles of all documents. Only used in compact mode. */
+  private ImmutableSortedMap<DocumentKey, Long> handles;
+
+  @Nullable private final LocalSerializer serializer;
+  @Nullable private DocumentArena arena;
+  @Nullable private final Map<DocumentKey, MutableDocument> decodedDocs;
+
   /** Manages the collection group index. */
   private IndexManager indexManager;
 
+  /** Creates a cache that retains documents as model objects. */
   MemoryRemoteDocumentCache() {
     docs = emptyDocumentMap();
+    serializer = null;
+    decodedDocs = null;
+  }
+
+  /** Creates a cache that stores documents in serialized form. */
+  MemoryRemoteDocumentCache(LocalSerializer serializer, int decodedCacheSize) {
+    this.handles = emptyHandleMap();
+    this.serializer = serializer;
+    this.arena = new DocumentArena();
+    this.decodedDocs =
+        new LinkedHashMap<DocumentKey, MutableDocument>(
+            decodedCacheSize, /* loadFactor= */ 0.75f, /* accessOrder= */ true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<DocumentKey, MutableDocument> eldest) {
+            return size() > decodedCacheSize;
+          }
+        };
+  }
+
+  private boolean isCompact() {
+    return arena != null;
   }
 
   @Override
@@ -57,7 +106,17 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
     hardAssert(
         !readTime.equals(SnapshotVersion.NONE),
         "Cannot add document to the RemoteDocumentCache with a read time of zero");
-    docs = docs.insert(document.getKey(), document.mutableCopy().setReadTime(readTime));
+    if (isCompact()) {
+      DocumentKey key = document.getKey();
+      Long existing = handles.get(key);
+      if (existing != null) {
+        arena.remove(existing);
+      }
+      handles = handles.insert(key, arena.add(encode(document, readTime)));
+      decodedDocs.remove(key);
+    } else {
+      docs = docs.insert(document.getKey(), document.mutableCopy().setReadTime(readTime));
+    }
 
     indexManager.addToCollectionParentIndex(document.getKey().getCollectionPath());
   }
@@ -68,15 +127,34 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
 
     ImmutableSortedMap<DocumentKey, Document> deletedDocs = emptyDocumentMap();
     for (DocumentKey key : keys) {
-      docs = docs.remove(key);
+      if (isCompact()) {
+        Long handle = handles.get(key);
+        if (handle != null) {
+          arena.remove(handle);
+          handles = handles.remove(key);
+          decodedDocs.remove(key);
+        }
+      } else {
+        docs = docs.remove(key);
+      }
       deletedDocs =
           deletedDocs.insert(key, MutableDocument.newNoDocument(key, SnapshotVersion.NONE));
     }
     indexManager.updateIndexEntries(deletedDocs);
+
+    if (isCompact() && arena.isFragmented()) {
+      compactArena();
+    }
   }
 
   @Override
   public MutableDocument get(DocumentKey key) {
+    if (isCompact()) {
+      Long handle = handles.get(key);
+      return handle != null
+          ? decode(key, handle).mutableCopy()
+          : MutableDocument.newInvalidDocument(key);
+    }
     Document doc = docs.get(key);
     return doc != null ? doc.mutableCopy() : MutableDocument.newInvalidDocument(key);
   }
@@ -103,16 +181,40 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
       IndexOffset offset,
       @Nonnull Set<DocumentKey> mutatedKeys,
       @Nullable QueryContext context) {
+    if (isCompact()) {
+      // Scans bypass the decoded document cache, as they would otherwise evict the documents of
+      // point lookups with documents that are unlikely to be read again soon.
+      return scanDocumentsMatchingQuery(handles, this::decodeRecord, query, offset, mutatedKeys);
+    }
+    return scanDocumentsMatchingQuery(docs, doc -> doc, query, offset, mutatedKeys);
+  }
+
+  @Override
+  public Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
+      Query query, IndexOffset offset, @Nonnull Set<DocumentKey> mutatedKeys) {
+    return getDocumentsMatchingQuery(query, offset, mutatedKeys, /*context*/ null);
+  }
+
+  /**
+   * Returns the documents of the query's collection that match the query, reading each one from
+   * the given map with {@code decoder}. Documents in subcollections are skipped before they are
+   * decoded, and only matching documents are copied into the result.
+   */
+  private static <V> Map<DocumentKey, MutableDocument> scanDocumentsMatchingQuery(
+      ImmutableSortedMap<DocumentKey, V> entries,
+      Function<V, ? extends Document> decoder,
+      Query query,
+      IndexOffset offset,
+      Set<DocumentKey> mutatedKeys) {
     Map<DocumentKey, MutableDocument> result = new HashMap<>();
 
     // Documents are ordered by key, so we can use a prefix scan to narrow down the documents
     // we need to match the query against.
     DocumentKey prefix = DocumentKey.fromPath(query.getPath().append(""));
-    Iterator<Map.Entry<DocumentKey, Document>> iterator = docs.iteratorFrom(prefix);
+    Iterator<Map.Entry<DocumentKey, V>> iterator = entries.iteratorFrom(prefix);
 
     while (iterator.hasNext()) {
-      Map.Entry<DocumentKey, Document> entry = iterator.next();
-      Document doc = entry.getValue();
+      Map.Entry<DocumentKey, V> entry = iterator.next();
 
       DocumentKey key = entry.getKey();
       if (!query.getPath().isPrefixOf(key.getPath())) {
@@ -125,6 +227,8 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
         continue;
       }
 
+      Document doc = decoder.apply(entry.getValue());
+
       if (IndexOffset.fromDocument(doc).compareTo(offset) <= 0) {
         // The document sorts before the offset.
         continue;
@@ -140,42 +244,110 @@ final class MemoryRemoteDocumentCache implements RemoteDocumentCache {
     return result;
   }
 
-  @Override
-  public Map<DocumentKey, MutableDocument> getDocumentsMatchingQuery(
-      Query query, IndexOffset offset, @Nonnull Set<DocumentKey> mutatedKeys) {
-    return getDocumentsMatchingQuery(query, offset, mutatedKeys, /*context*/ null);
-  }
-
-  Iterable<Document> getDocuments() {
-    return new DocumentIterable();
+  /** Returns the keys of all documents in the cache. */
+  Iterable<DocumentKey> getDocumentKeys() {
+    return isCompact() ? new KeyIterable<>(handles) : new KeyIterable<>(docs);
   }
 
   long getByteSize(LocalSerializer serializer) {
+    if (isCompact()) {
+      // The arena tracks the exact size of the serialized documents.
+      return arena.getLiveBytes();
+    }
+
     long count = 0;
-    for (Document doc : new DocumentIterable()) {
-      count += serializer.encodeMaybeDocument(doc).getSerializedSize();
+    for (Map.Entry<DocumentKey, Document> entry : docs) {
+      count += serializer.encodeMaybeDocument(entry.getValue()).getSerializedSize();
     }
     return count;
   }
 
+  /** Serializes the document and its read time into a single record. */
+  private byte[] encode(MutableDocument document, SnapshotVersion readTime) {
+    com.google.firebase.firestore.proto.MaybeDocument proto =
+        serializer.encodeMaybeDocument(document);
+    byte[] record = new byte[READ_TIME_SIZE + proto.getSerializedSize()];
+    CodedOutputStream output = CodedOutputStream.newInstance(record);
+    try {
+      output.writeFixed64NoTag(readTime.getTimestamp().getSeconds());
+      output.writeFixed32NoTag(readTime.getTimestamp().getNanoseconds());
+      proto.writeTo(output);
+      output.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw fail("MemoryRemoteDocumentCache failed to encode document: %s", e);
+    }
+    return record;
+  }
+
   /**
-   * A proxy that exposes an iterator over the current set of documents in the RemoteDocumentCache.
+   * Decodes the document with the given handle for a point lookup, consulting the decoded document
+   * cache first and adding the document to it.
    */
-  private class DocumentIterable implements Iterable<Document> {
+  private MutableDocument decode(DocumentKey key, long handle) {
+    MutableDocument document = decodedDocs.get(key);
+    if (document == null) {
+      document = decodeRecord(handle);
+      decodedDocs.put(key, document);
+    }
+    return document;
+  }
+
+  /** Decodes the document with the given handle from the arena. */
+  private MutableDocument decodeRecord(long handle) {
+    CodedInputStream input = arena.newInputStream(handle);
+    try {
+      long seconds = input.readFixed64();
+      int nanos = input.readFixed32();
+      return serializer
+          .decodeMaybeDocument(com.google.firebase.firestore.proto.MaybeDocument.parseFrom(input))
+          .setReadTime(new SnapshotVersion(new Timestamp(seconds, nanos)));
+    } catch (IOException e) {
+      throw fail("MemoryRemoteDocumentCache failed to decode document: %s", e);
+    }
+  }
+
+  @VisibleForTesting
+  int getDecodedDocumentCount() {
+    return decodedDocs.size();
+  }
+
+  /** Copies all live documents into a fresh arena, releasing the space of removed documents. */
+  private void compactArena() {
+    DocumentArena compacted = new DocumentArena();
+    ImmutableSortedMap<DocumentKey, Long> compactedHandles = emptyHandleMap();
+    for (Map.Entry<DocumentKey, Long> entry : handles) {
+      compactedHandles =
+          compactedHandles.insert(entry.getKey(), arena.compactInto(compacted, entry.getValue()));
+    }
+    arena = compacted;
+    handles = compactedHandles;
+  }
+
+  private static ImmutableSortedMap<DocumentKey, Long> emptyHandleMap() {
+    return ImmutableSortedMap.Builder.emptyMap(DocumentKey.comparator());
+  }
+
+  /** A proxy that exposes an iterator over the keys of the given document map. */
+  private static class KeyIterable<V> implements Iterable<DocumentKey> {
+    private final ImmutableSortedMap<DocumentKey, V> map;
+
+    KeyIterable(ImmutableSortedMap<DocumentKey, V> map) {
+      this.map = map;
+    }
+
     @NonNull
     @Override
-    public Iterator<Document> iterator() {
-      Iterator<Map.Entry<DocumentKey, Document>> iterator =
-          MemoryRemoteDocumentCache.this.docs.iterator();
-      return new Iterator<Document>() {
+    public Iterator<DocumentKey> iterator() {
+      Iterator<Map.Entry<DocumentKey, V>> iterator = map.iterator();
+      return new Iterator<DocumentKey>() {
         @Override
         public boolean hasNext() {
           return iterator.hasNext();
         }
 
         @Override
-        public Document next() {
-          return iterator.next().getValue();
+        public DocumentKey next() {
+          return iterator.next().getKey();
         }
       };
     }
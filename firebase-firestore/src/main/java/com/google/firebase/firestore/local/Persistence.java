@@ -14,6 +14,7 @@
 
 package com.google.firebase.firestore.local;
 
+import androidx.annotation.Nullable;
 import com.google.firebase.firestore.auth.User;
 import com.google.firebase.firestore.util.Supplier;
 
@@ -67,6 +68,26 @@ public abstract class Persistence {
 
   public abstract boolean isStarted();
 
+  /**
+   * Returns whether document reads may be performed off the worker queue, concurrently with
+   * transactions, using {@link #runConcurrentRead}.
+   */
+  boolean isConcurrentReadEnabled() {
+    return false;
+  }
+
+  /**
+   * Performs a read off the worker queue, concurrently with transactions. The read is not wrapped
+   * in a transaction, so its result is only returned if no transaction committed while it ran, i.e.
+   * if all of its reads observed the same committed state.
+   *
+   * @return The result of the read, or null if it has to be performed on the worker queue instead.
+   */
+  @Nullable
+  <T> T runConcurrentRead(Supplier<T> operation) {
+    return null;
+  }
+
   // Visible for testing purposes.
   public abstract ReferenceDelegate getReferenceDelegate();
 
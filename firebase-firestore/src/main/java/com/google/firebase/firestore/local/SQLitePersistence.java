@@ -47,6 +47,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A SQLite-backed instance of Persistence.
@@ -105,6 +106,12 @@ public final class SQLitePersistence extends Persistence {
         public void onRollback() {}
       };
 
+  /**
+   * Incremented before and after each transaction ends, so that it is odd while a transaction
+   * commits. Concurrent reads compare it before and after they run to detect commits.
+   */
+  private final AtomicLong commitSequence = new AtomicLong();
+
   private SQLiteDatabase db;
   private boolean started;
 
@@ -115,9 +122,36 @@ public final class SQLitePersistence extends Persistence {
       LocalSerializer serializer,
       LruGarbageCollector.Params params) {
     this(
+        context,
+        persistenceKey,
+        databaseId,
         serializer,
         params,
-        new OpenHelper(context, serializer, databaseName(persistenceKey, databaseId)));
+        /* concurrentReadsEnabled= */ false);
+  }
+
+  /**
+   * Creates a SQLitePersistence. If {@code concurrentReadsEnabled} is true, the database is opened
+   * in write-ahead logging mode without an exclusive lock, which lets SQLiteDatabase serve reads
+   * from other threads on a pool of secondary connections while transactions continue to run on
+   * the worker queue.
+   */
+  public SQLitePersistence(
+      Context context,
+      String persistenceKey,
+      DatabaseId databaseId,
+      LocalSerializer serializer,
+      LruGarbageCollector.Params params,
+      boolean concurrentReadsEnabled) {
+    this(
+        serializer,
+        params,
+        new OpenHelper(
+            context,
+            serializer,
+            databaseName(persistenceKey, databaseId),
+            SQLiteSchema.VERSION,
+            concurrentReadsEnabled));
   }
 
   public SQLitePersistence(
@@ -165,6 +199,32 @@ public final class SQLitePersistence extends Persistence {
     return started;
   }
 
+  @Override
+  boolean isConcurrentReadEnabled() {
+    return opener.concurrentReadsEnabled;
+  }
+
+  @Override
+  @Nullable
+  <T> T runConcurrentRead(Supplier<T> operation) {
+    long sequence = commitSequence.get();
+    if (!opener.concurrentReadsEnabled || sequence % 2 != 0) {
+      return null;
+    }
+
+    T value;
+    try {
+      value = operation.get();
+    } catch (RuntimeException e) {
+      // The database may have been closed by a concurrent shutdown. The read is retried on the
+      // worker queue, which reports the actual failure.
+      Logger.debug(TAG, "Concurrent read failed: %s", e);
+      return null;
+    }
+
+    return commitSequence.get() == sequence ? value : null;
+  }
+
   @Override
   public SQLiteLruReferenceDelegate getReferenceDelegate() {
     return referenceDelegate;
@@ -220,7 +280,7 @@ public final class SQLitePersistence extends Persistence {
       // Note that an exception in operation.run() will prevent this code from running.
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      endTransaction();
     }
   }
 
@@ -235,11 +295,20 @@ public final class SQLitePersistence extends Persistence {
       // Note that an exception in operation.run() will prevent this code from running.
       db.setTransactionSuccessful();
     } finally {
-      db.endTransaction();
+      endTransaction();
     }
     return value;
   }
 
+  private void endTransaction() {
+    commitSequence.incrementAndGet();
+    try {
+      db.endTransaction();
+    } finally {
+      commitSequence.incrementAndGet();
+    }
+  }
+
   public static void clearPersistence(Context context, DatabaseId databaseId, String persistenceKey)
       throws FirebaseFirestoreException {
     String databaseName = SQLitePersistence.databaseName(persistenceKey, databaseId);
@@ -300,22 +369,32 @@ public final class SQLitePersistence extends Persistence {
    * early as possible. On Jelly Bean devices and above (some 98% of devices at time of writing)
    * this happens naturally during onConfigure. On pre-Jelly Bean devices all other methods ensure
    * that the configuration is applied before any action is taken.
+   *
+   * <p>If concurrent reads are enabled, the database is instead opened in write-ahead logging mode
+   * with normal locking, so that readers on other connections are not blocked by the writer.
    */
   @VisibleForTesting
   static class OpenHelper extends SQLiteOpenHelper {
 
     private final LocalSerializer serializer;
+    private final boolean concurrentReadsEnabled;
     private boolean configured;
 
-    private OpenHelper(Context context, LocalSerializer serializer, String databaseName) {
-      this(context, serializer, databaseName, SQLiteSchema.VERSION);
-    }
-
     @VisibleForTesting
     OpenHelper(
         Context context, LocalSerializer serializer, String databaseName, int schemaVersion) {
+      this(context, serializer, databaseName, schemaVersion, /* concurrentReadsEnabled= */ false);
+    }
+
+    private OpenHelper(
+        Context context,
+        LocalSerializer serializer,
+        String databaseName,
+        int schemaVersion,
+        boolean concurrentReadsEnabled) {
       super(context, databaseName, null, schemaVersion);
       this.serializer = serializer;
+      this.concurrentReadsEnabled = concurrentReadsEnabled;
     }
 
     @Override
@@ -323,8 +402,14 @@ public final class SQLitePersistence extends Persistence {
       // Note that this is only called automatically by the SQLiteOpenHelper base class on Jelly
       // Bean and above.
       configured = true;
-      Cursor cursor = db.rawQuery("PRAGMA locking_mode = EXCLUSIVE", new String[0]);
-      cursor.close();
+      if (concurrentReadsEnabled) {
+        // SQLiteDatabase maintains a pool of read connections for databases in WAL mode and uses
+        // them for queries that run outside of a transaction on another thread.
+        db.enableWriteAheadLogging();
+      } else {
+        Cursor cursor = db.rawQuery("PRAGMA locking_mode = EXCLUSIVE", new String[0]);
+        cursor.close();
+      }
     }
 
     /**
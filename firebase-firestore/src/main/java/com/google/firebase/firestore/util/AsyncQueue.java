@@ -85,7 +85,10 @@ public class AsyncQueue {
     CONNECTIVITY_ATTEMPT_TIMER,
 
     /** A timer used to periodically attempt index backfill. */
-    INDEX_BACKFILL
+    INDEX_BACKFILL,
+
+    /** A timer used to deliver snapshots that were coalesced for a snapshot listener. */
+    SNAPSHOT_COALESCING
   }
 
   /**
@@ -0,0 +1,96 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import static com.google.firebase.firestore.testutil.TestUtil.deleteMutation;
+import static com.google.firebase.firestore.testutil.TestUtil.field;
+import static com.google.firebase.firestore.testutil.TestUtil.filter;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.mergeMutation;
+import static com.google.firebase.firestore.testutil.TestUtil.orderBy;
+import static com.google.firebase.firestore.testutil.TestUtil.patchMutation;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+import static com.google.firebase.firestore.testutil.TestUtil.setMutation;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class QueryDependencyIndexTest {
+
+  @Test
+  public void testReturnsQueriesThatDependOnChangedFields() {
+    Query byOwner = query("rooms").filter(filter("owner", "==", "Jonny"));
+    Query byLikes = query("rooms").orderBy(orderBy("likes"));
+    Query byNestedLikes = query("rooms").filter(filter("stats.likes", ">", 10));
+    Query otherCollection = query("users").orderBy(orderBy("likes"));
+
+    QueryDependencyIndex index = new QueryDependencyIndex();
+    index.addQuery(byOwner);
+    index.addQuery(byLikes);
+    index.addQuery(byNestedLikes);
+    index.addQuery(otherCollection);
+
+    assertEquals(
+        new HashSet<>(singletonList(byLikes)),
+        index.getAffectedQueries(singletonList(patchMutation("rooms/eros", map("likes", 1)))));
+    assertEquals(
+        new HashSet<>(singletonList(byNestedLikes)),
+        index.getAffectedQueries(singletonList(patchMutation("rooms/eros", map("stats", 1)))));
+    assertEquals(
+        new HashSet<>(asList(byOwner, byLikes)),
+        index.getAffectedQueries(
+            asList(
+                patchMutation("rooms/eros", map("owner", "Jonny")),
+                patchMutation("rooms/hades", map("likes", 2)))));
+    assertEquals(
+        emptySet(),
+        index.getAffectedQueries(singletonList(patchMutation("rooms/eros", map("name", "a")))));
+  }
+
+  @Test
+  public void testMutationsThatCanCreateOrDeleteDocumentsAffectAllQueries() {
+    QueryDependencyIndex index = new QueryDependencyIndex();
+    index.addQuery(query("rooms").orderBy(orderBy("likes")));
+
+    assertNull(index.getAffectedQueries(singletonList(setMutation("rooms/eros", map("a", 1)))));
+    assertNull(index.getAffectedQueries(singletonList(deleteMutation("rooms/eros"))));
+    assertNull(
+        index.getAffectedQueries(
+            singletonList(mergeMutation("rooms/eros", map("a", 1), singletonList(field("a"))))));
+  }
+
+  @Test
+  public void testRemovedQueriesAreNotAffected() {
+    Query byLikes = query("rooms").orderBy(orderBy("likes"));
+
+    QueryDependencyIndex index = new QueryDependencyIndex();
+    index.addQuery(byLikes);
+    index.removeQuery(byLikes);
+
+    assertEquals(
+        emptySet(),
+        index.getAffectedQueries(singletonList(patchMutation("rooms/eros", map("likes", 1)))));
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.docUpdates;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.path;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.firebase.firestore.core.DocumentViewChange.Type;
+import com.google.firebase.firestore.model.DocumentKey;
+import com.google.firebase.firestore.model.MutableDocument;
+import com.google.firebase.firestore.util.AsyncQueue;
+import com.google.firebase.firestore.util.AsyncQueue.TimerId;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SnapshotCoalescerTest {
+  private static ViewSnapshot applyChanges(View view, MutableDocument... docs) {
+    return view.applyChanges(view.computeDocChanges(docUpdates(docs))).getSnapshot();
+  }
+
+  @Test
+  public void testMergesNetChanges() {
+    Query query = Query.atPath(path("rooms"));
+    MutableDocument doc1 = doc("rooms/eros", 1, map("name", "eros"));
+    MutableDocument doc2 = doc("rooms/hades", 2, map("name", "hades"));
+    MutableDocument doc1prime = doc("rooms/eros", 3, map("name", "eros", "owner", "Jonny"));
+    MutableDocument doc3 = doc("rooms/other", 4, map("name", "other"));
+
+    View view = new View(query, DocumentKey.emptyKeySet());
+    ViewSnapshot snap1 = applyChanges(view, doc1);
+    ViewSnapshot snap2 = applyChanges(view, doc2, doc1prime);
+    ViewSnapshot snap3 = applyChanges(view, doc3);
+
+    ViewSnapshot merged = SnapshotCoalescer.merge(SnapshotCoalescer.merge(snap1, snap2), snap3);
+
+    assertEquals(snap1.getOldDocuments(), merged.getOldDocuments());
+    assertEquals(snap3.getDocuments(), merged.getDocuments());
+    assertEquals(
+        asList(
+            DocumentViewChange.create(Type.ADDED, doc1prime),
+            DocumentViewChange.create(Type.ADDED, doc2),
+            DocumentViewChange.create(Type.ADDED, doc3)),
+        merged.getChanges());
+  }
+
+  @Test
+  public void testCoalescesSnapshotsWithinWindow() throws Exception {
+    AsyncQueue asyncQueue = new AsyncQueue();
+    List<ViewSnapshot> accum = new ArrayList<>();
+    SnapshotCoalescer coalescer =
+        new SnapshotCoalescer(
+            asyncQueue,
+            /* windowMs= */ 60_000,
+            (value, error) -> {
+              assertNull(error);
+              accum.add(value);
+            });
+
+    Query query = Query.atPath(path("rooms"));
+    MutableDocument doc1 = doc("rooms/eros", 1, map("name", "eros"));
+    MutableDocument doc2 = doc("rooms/hades", 2, map("name", "hades"));
+    MutableDocument doc2prime = doc("rooms/hades", 3, map("name", "hades", "owner", "Jonny"));
+
+    View view = new View(query, DocumentKey.emptyKeySet());
+    ViewSnapshot snap1 = applyChanges(view, doc1);
+    ViewSnapshot snap2 = applyChanges(view, doc2);
+    ViewSnapshot snap3 = applyChanges(view, doc2prime);
+
+    asyncQueue.runSync(
+        () -> {
+          coalescer.onEvent(snap1, null);
+          coalescer.onEvent(snap2, null);
+          coalescer.onEvent(snap3, null);
+        });
+
+    // The first snapshot is delivered right away, the others wait for the window to elapse.
+    assertEquals(asList(snap1), accum);
+    assertTrue(asyncQueue.containsDelayedTask(TimerId.SNAPSHOT_COALESCING));
+
+    asyncQueue.runDelayedTasksUntil(TimerId.SNAPSHOT_COALESCING);
+
+    assertEquals(2, accum.size());
+    assertEquals(snap3.getDocuments(), accum.get(1).getDocuments());
+    assertEquals(
+        asList(DocumentViewChange.create(Type.ADDED, doc2prime)), accum.get(1).getChanges());
+    assertFalse(asyncQueue.containsDelayedTask(TimerId.SNAPSHOT_COALESCING));
+  }
+}
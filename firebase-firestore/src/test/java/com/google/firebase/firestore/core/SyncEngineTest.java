@@ -0,0 +1,81 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.core;
+
+import static com.google.firebase.firestore.testutil.TestUtil.bound;
+import static com.google.firebase.firestore.testutil.TestUtil.filter;
+import static com.google.firebase.firestore.testutil.TestUtil.orderBy;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Tests the target subsumption rules of SyncEngine. */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SyncEngineTest {
+
+  @Test
+  public void testUnlimitedQuerySubsumesNarrowerQueries() {
+    Query wider = query("rooms").filter(filter("owner", "==", "Jonny"));
+
+    assertTrue(SyncEngine.subsumes(wider, wider.limitToFirst(10)));
+    assertTrue(SyncEngine.subsumes(wider, wider.filter(filter("size", ">", 2))));
+    assertTrue(
+        SyncEngine.subsumes(
+            wider, wider.orderBy(orderBy("name")).startAt(bound(true, "a")).limitToLast(3)));
+
+    assertFalse(SyncEngine.subsumes(wider, query("rooms")));
+    assertFalse(SyncEngine.subsumes(wider, query("other").filter(filter("owner", "==", "Jonny"))));
+    assertFalse(SyncEngine.subsumes(wider, query("rooms/eros")));
+  }
+
+  @Test
+  public void testOrderByExcludesDocumentsWithoutTheField() {
+    Query wider = query("rooms").orderBy(orderBy("name"));
+
+    assertTrue(SyncEngine.subsumes(wider, wider.limitToFirst(10)));
+    assertTrue(SyncEngine.subsumes(wider, query("rooms").filter(filter("name", ">", "a"))));
+    assertFalse(SyncEngine.subsumes(wider, query("rooms").limitToFirst(10)));
+    assertFalse(SyncEngine.subsumes(wider, query("rooms").orderBy(orderBy("size"))));
+  }
+
+  @Test
+  public void testLimitQuerySubsumesSmallerLimits() {
+    Query wider = query("rooms").orderBy(orderBy("name")).limitToFirst(20);
+
+    assertTrue(SyncEngine.subsumes(wider, wider.limitToFirst(10)));
+    assertTrue(SyncEngine.subsumes(wider, wider.limitToFirst(20)));
+
+    assertFalse(SyncEngine.subsumes(wider, wider.limitToFirst(30)));
+    assertFalse(SyncEngine.subsumes(wider, wider.limitToLast(10)));
+    assertFalse(SyncEngine.subsumes(wider, wider.startAt(bound(true, "a")).limitToFirst(10)));
+    assertFalse(SyncEngine.subsumes(wider, wider.filter(filter("size", "==", 2)).limitToFirst(5)));
+    assertFalse(
+        SyncEngine.subsumes(
+            wider, query("rooms").orderBy(orderBy("name", "desc")).limitToFirst(10)));
+  }
+
+  @Test
+  public void testQueryWithCursorsDoesNotSubsume() {
+    Query wider = query("rooms").orderBy(orderBy("name")).startAt(bound(true, "a"));
+
+    assertFalse(SyncEngine.subsumes(wider, wider.limitToFirst(10)));
+  }
+}
@@ -0,0 +1,54 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.query;
+import static org.junit.Assert.assertEquals;
+
+import com.google.firebase.firestore.model.FieldIndex.IndexOffset;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class CompactMemoryRemoteDocumentCacheTest extends RemoteDocumentCacheTestCase {
+
+  @Override
+  Persistence getPersistence() {
+    return PersistenceTestHelpers.createCompactEagerGCMemoryPersistence();
+  }
+
+  @Test
+  public void testQueryScansDoNotCacheDecodedDocuments() {
+    MemoryRemoteDocumentCache cache = (MemoryRemoteDocumentCache) remoteDocumentCache;
+    addTestDocumentAtPath("a/1");
+    addTestDocumentAtPath("a/2");
+    addTestDocumentAtPath("a/3");
+
+    assertEquals(
+        3,
+        cache
+            .getDocumentsMatchingQuery(query("a"), IndexOffset.NONE, Collections.emptySet())
+            .size());
+    assertEquals(0, cache.getDecodedDocumentCount());
+
+    cache.get(key("a/1"));
+    assertEquals(1, cache.getDecodedDocumentCount());
+  }
+}
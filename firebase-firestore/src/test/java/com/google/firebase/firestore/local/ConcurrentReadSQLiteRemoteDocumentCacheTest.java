@@ -0,0 +1,98 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static com.google.firebase.firestore.testutil.TestUtil.doc;
+import static com.google.firebase.firestore.testutil.TestUtil.key;
+import static com.google.firebase.firestore.testutil.TestUtil.map;
+import static com.google.firebase.firestore.testutil.TestUtil.version;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.firebase.firestore.model.MutableDocument;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public final class ConcurrentReadSQLiteRemoteDocumentCacheTest
+    extends RemoteDocumentCacheTestCase {
+
+  private SQLitePersistence persistence;
+
+  @Override
+  Persistence getPersistence() {
+    persistence = PersistenceTestHelpers.createSQLitePersistenceWithConcurrentReads();
+    return persistence;
+  }
+
+  @Test
+  public void testReadsCommittedDocumentsFromOtherThread() throws Exception {
+    assertTrue(persistence.isConcurrentReadEnabled());
+
+    MutableDocument document = doc("coll/doc", 1, map("foo", "bar"));
+    persistence.runTransaction("add", () -> remoteDocumentCache.add(document, version(1)));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<MutableDocument> read =
+          executor.submit(() -> remoteDocumentCache.get(key("coll/doc")));
+      assertEquals(document, read.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testConcurrentReadReturnsResultIfNothingCommitted() {
+    MutableDocument document = doc("coll/doc", 1, map("foo", "bar"));
+    persistence.runTransaction("add", () -> remoteDocumentCache.add(document, version(1)));
+
+    assertEquals(
+        document, persistence.runConcurrentRead(() -> remoteDocumentCache.get(key("coll/doc"))));
+  }
+
+  @Test
+  public void testConcurrentReadIsDiscardedIfTransactionCommitted() {
+    MutableDocument document = doc("coll/doc", 1, map("foo", "bar"));
+
+    MutableDocument read =
+        persistence.runConcurrentRead(
+            () -> {
+              MutableDocument before = remoteDocumentCache.get(key("coll/doc"));
+              persistence.runTransaction("add", () -> remoteDocumentCache.add(document, version(1)));
+              return before;
+            });
+
+    assertNull(read);
+  }
+
+  @Test
+  public void testConcurrentReadIsDiscardedIfItFails() {
+    MutableDocument read =
+        persistence.runConcurrentRead(
+            () -> {
+              throw new IllegalStateException("database closed");
+            });
+
+    assertNull(read);
+  }
+}
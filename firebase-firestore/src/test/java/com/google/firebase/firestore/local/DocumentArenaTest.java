@@ -0,0 +1,97 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.firestore.local;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.CodedInputStream;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DocumentArenaTest {
+
+  private static byte[] read(DocumentArena arena, long handle) throws IOException {
+    CodedInputStream input = arena.newInputStream(handle);
+    return input.readRawBytes(input.getBytesUntilLimit());
+  }
+
+  @Test
+  public void testReadsBackRecords() throws IOException {
+    DocumentArena arena = new DocumentArena(64);
+    long first = arena.add(new byte[] {1, 2, 3});
+    long second = arena.add(new byte[] {4, 5});
+
+    assertArrayEquals(new byte[] {1, 2, 3}, read(arena, first));
+    assertArrayEquals(new byte[] {4, 5}, read(arena, second));
+    assertEquals(4 + 3 + 4 + 2, arena.getLiveBytes());
+  }
+
+  @Test
+  public void testSpillsIntoNewSegments() throws IOException {
+    DocumentArena arena = new DocumentArena(16);
+    long first = arena.add(new byte[10]);
+    long second = arena.add(new byte[10]);
+    long large = arena.add(new byte[40]);
+
+    assertEquals(10, read(arena, first).length);
+    assertEquals(10, read(arena, second).length);
+    assertEquals(40, read(arena, large).length);
+    assertEquals(16 + 16 + 44, arena.getAllocatedBytes());
+  }
+
+  @Test
+  public void testReleasesEmptySegments() {
+    DocumentArena arena = new DocumentArena(16);
+    long first = arena.add(new byte[10]);
+    arena.add(new byte[10]);
+
+    arena.remove(first);
+
+    assertEquals(14, arena.getLiveBytes());
+    assertEquals(16, arena.getAllocatedBytes());
+  }
+
+  @Test
+  public void testCompactsIntoNewArena() throws IOException {
+    DocumentArena arena = new DocumentArena(32);
+    long[] handles = new long[8];
+    for (int i = 0; i < handles.length; i++) {
+      handles[i] = arena.add(new byte[] {(byte) i, (byte) i, (byte) i, (byte) i});
+    }
+    for (int i = 0; i < handles.length; i++) {
+      if (i % 4 != 3) {
+        arena.remove(handles[i]);
+      }
+    }
+    assertTrue(arena.isFragmented());
+
+    DocumentArena compacted = new DocumentArena(32);
+    for (int i = 3; i < handles.length; i += 4) {
+      long handle = arena.compactInto(compacted, handles[i]);
+      byte[] expected = new byte[] {(byte) i, (byte) i, (byte) i, (byte) i};
+      assertArrayEquals(expected, read(compacted, handle));
+    }
+    assertEquals(arena.getLiveBytes(), compacted.getLiveBytes());
+    assertFalse(compacted.isFragmented());
+  }
+}
@@ -52,6 +52,23 @@ public final class PersistenceTestHelpers {
     return openSQLitePersistence(nextSQLiteDatabaseName(), LruGarbageCollector.Params.Default());
   }
 
+  /** Creates and starts a new SQLitePersistence instance that allows concurrent reads. */
+  public static SQLitePersistence createSQLitePersistenceWithConcurrentReads() {
+    DatabaseId databaseId = DatabaseId.forProject("projectId");
+    LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
+    Context context = ApplicationProvider.getApplicationContext();
+    SQLitePersistence persistence =
+        new SQLitePersistence(
+            context,
+            nextSQLiteDatabaseName(),
+            databaseId,
+            serializer,
+            LruGarbageCollector.Params.Default(),
+            /* concurrentReadsEnabled= */ true);
+    persistence.start();
+    return persistence;
+  }
+
   public static SQLitePersistence createSQLitePersistenceForVersion(
       String databaseName, int version) {
     return openSQLitePersistence(version, databaseName, LruGarbageCollector.Params.Default());
@@ -71,6 +88,26 @@ public final class PersistenceTestHelpers {
     return persistence;
   }
 
+  /** Creates and starts a new MemoryPersistence instance with compact document storage. */
+  public static MemoryPersistence createCompactEagerGCMemoryPersistence() {
+    DatabaseId databaseId = DatabaseId.forProject("projectId");
+    LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
+    MemoryPersistence persistence =
+        MemoryPersistence.createCompactEagerGcMemoryPersistence(serializer);
+    persistence.start();
+    return persistence;
+  }
+
+  public static MemoryPersistence createCompactLRUMemoryPersistence(
+      LruGarbageCollector.Params params) {
+    DatabaseId databaseId = DatabaseId.forProject("projectId");
+    LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
+    MemoryPersistence persistence =
+        MemoryPersistence.createCompactLruGcMemoryPersistence(params, serializer);
+    persistence.start();
+    return persistence;
+  }
+
   public static MemoryPersistence createLRUMemoryPersistence(LruGarbageCollector.Params params) {
     DatabaseId databaseId = DatabaseId.forProject("projectId");
     LocalSerializer serializer = new LocalSerializer(new RemoteSerializer(databaseId));
@@ -0,0 +1,39 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.metrics;
+
+import org.junit.Test;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs {@link CounterBenchmark} with increasing numbers of threads. */
+public class CounterBenchmarkTest {
+
+  private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+  @Test
+  public void runCounterBenchmark() throws Exception {
+    for (int threads : THREAD_COUNTS) {
+      new Runner(
+              new OptionsBuilder()
+                  .include(CounterBenchmark.class.getName())
+                  .threads(threads)
+                  // The benchmark runs in the test JVM, whose classpath a forked JVM can't rebuild.
+                  .forks(0)
+                  .build())
+          .run();
+    }
+  }
+}
@@ -22,6 +22,7 @@ import com.google.firebase.perf.application.AppStateMonitor;
 import com.google.firebase.perf.config.ConfigResolver;
 import com.google.firebase.perf.metrics.AppStartTrace;
 import com.google.firebase.perf.session.SessionManager;
+import com.google.firebase.perf.transport.TransportManager;
 import java.util.concurrent.Executor;
 
 /**
@@ -41,6 +42,9 @@ public class FirebasePerfEarly {
     ConfigResolver configResolver = ConfigResolver.getInstance();
     configResolver.setApplicationContext(context);
 
+    // Store the events logged before Firebase Performance is initialized on disk.
+    TransportManager.getInstance().setApplicationContext(context);
+
     AppStateMonitor appStateMonitor = AppStateMonitor.getInstance();
     appStateMonitor.registerActivityLifecycleCallbacks(context);
     appStateMonitor.registerForAppColdStart(new FirebasePerformanceInitializer());
@@ -28,6 +28,7 @@ import com.google.firebase.perf.config.ConfigurationConstants.FragmentSamplingRa
 import com.google.firebase.perf.config.ConfigurationConstants.LogSourceName;
 import com.google.firebase.perf.config.ConfigurationConstants.NetworkEventCountBackground;
 import com.google.firebase.perf.config.ConfigurationConstants.NetworkEventCountForeground;
+import com.google.firebase.perf.config.ConfigurationConstants.NetworkRequestAggregationEnabled;
 import com.google.firebase.perf.config.ConfigurationConstants.NetworkRequestSamplingRate;
 import com.google.firebase.perf.config.ConfigurationConstants.RateLimitSec;
 import com.google.firebase.perf.config.ConfigurationConstants.SdkDisabledVersions;
@@ -839,6 +840,41 @@ public class ConfigResolver {
     return config.getDefault();
   }
 
+  /**
+   * Returns whether network requests should be aggregated into one summary metric per URL pattern,
+   * HTTP method and response code, instead of being logged one by one.
+   */
+  public boolean getIsNetworkRequestAggregationEnabled() {
+    // Order of precedence is:
+    // 1. If the value exists in Android Manifest, return this value.
+    // 2. If the value exists through Firebase Remote Config, cache and return this value.
+    // 3. If the value exists in device cache, return this value.
+    // 4. Otherwise, return default value.
+    NetworkRequestAggregationEnabled config = NetworkRequestAggregationEnabled.getInstance();
+
+    // 1. Reads value in Android Manifest (it is set by developers during build time).
+    Optional<Boolean> metadataValue = getMetadataBoolean(config);
+    if (metadataValue.isAvailable()) {
+      return metadataValue.get();
+    }
+
+    // 2. Reads value from Firebase Remote Config, saves this value in cache layer if valid.
+    Optional<Boolean> rcValue = getRemoteConfigBoolean(config);
+    if (rcValue.isAvailable()) {
+      deviceCacheManager.setValue(config.getDeviceCacheFlag(), rcValue.get());
+      return rcValue.get();
+    }
+
+    // 3. Reads value from cache layer.
+    Optional<Boolean> deviceCacheValue = getDeviceCacheBoolean(config);
+    if (deviceCacheValue.isAvailable()) {
+      return deviceCacheValue.get();
+    }
+
+    // 4. Returns default value if there is no valid value from above approaches.
+    return config.getDefault();
+  }
+
   // endregion
 
   // Helper functions for interaction with Metadata layer.
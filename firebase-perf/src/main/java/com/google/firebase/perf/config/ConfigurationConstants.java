@@ -726,4 +726,40 @@ final class ConfigurationConstants {
       return "experiment_app_start_ttid";
     }
   }
+
+  protected static final class NetworkRequestAggregationEnabled
+      extends ConfigurationFlag<Boolean> {
+    private static NetworkRequestAggregationEnabled instance;
+
+    private NetworkRequestAggregationEnabled() {
+      super();
+    }
+
+    protected static synchronized NetworkRequestAggregationEnabled getInstance() {
+      if (instance == null) {
+        instance = new NetworkRequestAggregationEnabled();
+      }
+      return instance;
+    }
+
+    @Override
+    protected Boolean getDefault() {
+      return false;
+    }
+
+    @Override
+    protected String getRemoteConfigFlag() {
+      return "fpr_network_request_aggregation_enabled";
+    }
+
+    @Override
+    protected String getDeviceCacheFlag() {
+      return "com.google.firebase.perf.NetworkRequestAggregationEnabled";
+    }
+
+    @Override
+    protected String getMetadataFlag() {
+      return "firebase_performance_network_request_aggregation_enabled";
+    }
+  }
 }
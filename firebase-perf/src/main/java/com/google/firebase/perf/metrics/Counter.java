@@ -17,17 +17,19 @@ package com.google.firebase.perf.metrics;
 import android.os.Parcel;
 import android.os.Parcelable;
 import androidx.annotation.NonNull;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Counter helps to log occurrences of a specific event within a {@link Trace}
  *
+ * <p>The count is striped, so that threads incrementing the same counter do not contend with each
+ * other. Reading the count sums the stripes.
+ *
  * @hide
  */
 public class Counter implements Parcelable {
 
   private final String name;
-  private final AtomicLong count;
+  private final StripedLong count;
 
   /**
    * Creates a Counter with given name.
@@ -36,12 +38,12 @@ public class Counter implements Parcelable {
    */
   public Counter(@NonNull String name) {
     this.name = name;
-    count = new AtomicLong(0);
+    count = new StripedLong(0);
   }
 
   private Counter(Parcel in) {
     name = in.readString();
-    count = new AtomicLong(in.readLong());
+    count = new StripedLong(in.readLong());
   }
 
   /**
@@ -50,7 +52,7 @@ public class Counter implements Parcelable {
    * @param counts A number by which the counter is incremented.
    */
   public void increment(long counts) {
-    count.addAndGet(counts);
+    count.add(counts);
   }
 
   /**
@@ -69,7 +71,7 @@ public class Counter implements Parcelable {
    * @return Current count of this counter.
    */
   long getCount() {
-    return count.get();
+    return count.sum();
   }
 
   /**
@@ -90,7 +92,7 @@ public class Counter implements Parcelable {
    */
   public void writeToParcel(Parcel out, int flags) {
     out.writeString(name);
-    out.writeLong(count.get());
+    out.writeLong(count.sum());
   }
 
   /**
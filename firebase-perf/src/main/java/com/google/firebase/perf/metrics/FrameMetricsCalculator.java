@@ -19,23 +19,43 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.FrameMetricsAggregator;
 import com.google.firebase.perf.util.Constants;
+import java.util.Arrays;
 
 /**
- * FrameMetricsCalculator helps calculate total frames, slow frames, and frozen frames from metrics
- * collected by {@link FrameMetricsAggregator}
+ * FrameMetricsCalculator helps calculate total frames, slow frames, frozen frames, and the
+ * distribution of frame durations from metrics collected by {@link FrameMetricsAggregator}
  *
  * @hide
  */
 public class FrameMetricsCalculator {
+
+  /**
+   * Lower bounds (in milliseconds) of the fixed buckets that frame durations are counted in.
+   * Buckets are 1ms wide below 50ms so that the percentiles of smooth frames are exact, and get
+   * wider for slower frames.
+   */
+  private static final int[] FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS =
+      createFrameDurationBucketLowerBounds();
+
+  static final int FRAME_DURATION_BUCKET_COUNT = FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS.length;
+
   public static class PerfFrameMetrics {
     int totalFrames = 0;
     int slowFrames = 0;
     int frozenFrames = 0;
+    // Number of frames in each bucket of FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS.
+    final int[] frameDurationCounts;
 
     public PerfFrameMetrics(int totalFrames, int slowFrames, int frozenFrames) {
+      this(totalFrames, slowFrames, frozenFrames, new int[FRAME_DURATION_BUCKET_COUNT]);
+    }
+
+    PerfFrameMetrics(
+        int totalFrames, int slowFrames, int frozenFrames, @NonNull int[] frameDurationCounts) {
       this.totalFrames = totalFrames;
       this.slowFrames = slowFrames;
       this.frozenFrames = frozenFrames;
+      this.frameDurationCounts = frameDurationCounts;
     }
 
     public int getFrozenFrames() {
@@ -50,6 +70,32 @@ public class FrameMetricsCalculator {
       return totalFrames;
     }
 
+    /**
+     * Returns the given percentile of the frame durations, as the lower bound of the bucket that
+     * contains it.
+     *
+     * @param percentile the percentile to get, between 0 and 100.
+     * @return the percentile in milliseconds, or 0 if no frame durations were recorded.
+     */
+    public int getFrameDurationPercentileMs(double percentile) {
+      long frames = 0;
+      for (int count : frameDurationCounts) {
+        frames += count;
+      }
+      if (frames <= 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(frames * percentile / 100));
+      long seen = 0;
+      for (int i = 0; i < FRAME_DURATION_BUCKET_COUNT; i++) {
+        seen += frameDurationCounts[i];
+        if (seen >= rank) {
+          return FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS[i];
+        }
+      }
+      return FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS[FRAME_DURATION_BUCKET_COUNT - 1];
+    }
+
     /**
      * Subtracts frame-time counts of the argument object (that) from the current object (this).
      *
@@ -60,13 +106,18 @@ public class FrameMetricsCalculator {
       int newTotalFrames = this.totalFrames - that.getTotalFrames();
       int newSlowFrames = this.slowFrames - that.getSlowFrames();
       int newFrozenFrames = this.frozenFrames - that.getFrozenFrames();
-      return new PerfFrameMetrics(newTotalFrames, newSlowFrames, newFrozenFrames);
+      int[] newFrameDurationCounts = new int[FRAME_DURATION_BUCKET_COUNT];
+      for (int i = 0; i < FRAME_DURATION_BUCKET_COUNT; i++) {
+        newFrameDurationCounts[i] = this.frameDurationCounts[i] - that.frameDurationCounts[i];
+      }
+      return new PerfFrameMetrics(
+          newTotalFrames, newSlowFrames, newFrozenFrames, newFrameDurationCounts);
     }
   }
 
   /**
-   * Calculate total frames, slow frames, and frozen frames from SparseIntArray[] recorded by {@link
-   * FrameMetricsAggregator}.
+   * Calculate total frames, slow frames, frozen frames, and the frame duration distribution from
+   * SparseIntArray[] recorded by {@link FrameMetricsAggregator}.
    *
    * @param arr the metrics data collected by {@link FrameMetricsAggregator#getMetrics()}
    * @return the frame metrics
@@ -75,6 +126,7 @@ public class FrameMetricsCalculator {
     int totalFrames = 0;
     int slowFrames = 0;
     int frozenFrames = 0;
+    int[] frameDurationCounts = new int[FRAME_DURATION_BUCKET_COUNT];
 
     if (arr != null) {
       SparseIntArray frameTimes = arr[FrameMetricsAggregator.TOTAL_INDEX];
@@ -83,6 +135,7 @@ public class FrameMetricsCalculator {
           int frameTime = frameTimes.keyAt(i);
           int numFrames = frameTimes.valueAt(i);
           totalFrames += numFrames;
+          frameDurationCounts[getFrameDurationBucketIndex(frameTime)] += numFrames;
           if (frameTime > Constants.FROZEN_FRAME_TIME) {
             // Frozen frames mean the app appear frozen.  The recommended thresholds is 700ms
             frozenFrames += numFrames;
@@ -95,6 +148,32 @@ public class FrameMetricsCalculator {
       }
     }
     // Only incrementMetric if corresponding metric is non-zero.
-    return new PerfFrameMetrics(totalFrames, slowFrames, frozenFrames);
+    return new PerfFrameMetrics(totalFrames, slowFrames, frozenFrames, frameDurationCounts);
+  }
+
+  private static int getFrameDurationBucketIndex(int frameTimeMs) {
+    int index = Arrays.binarySearch(FRAME_DURATION_BUCKET_LOWER_BOUNDS_MS, frameTimeMs);
+    // When not found, binarySearch returns (-(insertion point) - 1), and the bucket that contains
+    // the frame time is the one before the insertion point.
+    return index >= 0 ? index : Math.max(0, -index - 2);
+  }
+
+  private static int[] createFrameDurationBucketLowerBounds() {
+    int[] lowerBounds = new int[76];
+    int i = 0;
+    for (int ms = 0; ms < 50; ms++) {
+      lowerBounds[i++] = ms;
+    }
+    for (int ms = 50; ms < 100; ms += 5) {
+      lowerBounds[i++] = ms;
+    }
+    for (int ms = 100; ms < Constants.FROZEN_FRAME_TIME; ms += 50) {
+      lowerBounds[i++] = ms;
+    }
+    lowerBounds[i++] = Constants.FROZEN_FRAME_TIME;
+    lowerBounds[i++] = 1000;
+    lowerBounds[i++] = 2000;
+    lowerBounds[i] = 5000;
+    return lowerBounds;
   }
 }
@@ -0,0 +1,109 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+//
+// You may obtain a copy of the License at
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long value that many threads can add to without contending on the same cache line, similar to
+ * {@code java.util.concurrent.atomic.LongAdder}, which is only available from API level 24.
+ *
+ * <p>Additions go to a base value until two threads collide on it. From then on, every thread adds
+ * to one of several cells picked by its thread id, each on a cache line of its own. Reading the
+ * value sums the base and all cells, so reads are more expensive than additions and are best done
+ * once, when the value is reported.
+ */
+final class StripedLong {
+
+  // Number of longs between two cells, so that every cell is on a 64 byte cache line of its own.
+  private static final int CELL_STRIDE = 8;
+  private static final int MAX_CELLS = 64;
+  private static final int CELL_COUNT = cellCount(Runtime.getRuntime().availableProcessors());
+
+  private final AtomicLong base;
+
+  // Created on the first collision. The first and last stride are padding, so that the cells do
+  // not share a cache line with the array header or the object that follows the array.
+  private volatile AtomicLongArray cells;
+
+  StripedLong(long initialValue) {
+    base = new AtomicLong(initialValue);
+  }
+
+  /** Adds the given value. Never allocates, except when two threads first collide. */
+  void add(long value) {
+    AtomicLongArray cells = this.cells;
+    if (cells == null) {
+      long current = base.get();
+      if (base.compareAndSet(current, current + value)) {
+        return;
+      }
+      cells = getOrCreateCells();
+    }
+    cells.getAndAdd(cellIndex(), value);
+  }
+
+  /**
+   * Returns the sum of all additions. Additions that happen concurrently with this call may or may
+   * not be included.
+   */
+  long sum() {
+    long sum = base.get();
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 1; i <= CELL_COUNT; i++) {
+        sum += cells.get(i * CELL_STRIDE);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Sets the value. This is not atomic with respect to concurrent additions, which may or may not
+   * be included in the value afterwards.
+   */
+  void set(long value) {
+    AtomicLongArray cells = this.cells;
+    if (cells != null) {
+      for (int i = 1; i <= CELL_COUNT; i++) {
+        cells.set(i * CELL_STRIDE, 0);
+      }
+    }
+    base.set(value);
+  }
+
+  private synchronized AtomicLongArray getOrCreateCells() {
+    if (cells == null) {
+      cells = new AtomicLongArray((CELL_COUNT + 2) * CELL_STRIDE);
+    }
+    return cells;
+  }
+
+  private static int cellIndex() {
+    // Thread ids are handed out sequentially, so concurrently running threads rarely share a cell.
+    int cell = (int) Thread.currentThread().getId() & (CELL_COUNT - 1);
+    return (cell + 1) * CELL_STRIDE;
+  }
+
+  /** Returns the smallest power of two that is at least the number of processors. */
+  private static int cellCount(int processors) {
+    int count = 1;
+    while (count < processors && count < MAX_CELLS) {
+      count <<= 1;
+    }
+    return count;
+  }
+}
@@ -45,6 +45,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** Trace allows you to set beginning and end of a certain action in your app. */
 public class Trace extends AppStateUpdateHandler
@@ -59,7 +60,7 @@ public class Trace extends AppStateUpdateHandler
   private final GaugeManager gaugeManager;
   private final String name;
 
-  private final Map<String, Counter> counterNameToCounterMap;
+  private final ConcurrentMap<String, Counter> counterNameToCounterMap;
   private final Map<String, String> customAttributesMap;
 
   // TODO(b/177317027): Consider using a Set to avoid adding same PerfSession object
@@ -125,7 +126,7 @@ public class Trace extends AppStateUpdateHandler
       Timer startTime,
       Timer endTime,
       @Nullable List<Trace> subtraces,
-      @Nullable Map<String, Counter> counters,
+      @Nullable ConcurrentMap<String, Counter> counters,
       @Nullable Map<String, String> attributes) {
     this.parent = parent;
     this.name = name.trim();
@@ -311,8 +312,13 @@ public class Trace extends AppStateUpdateHandler
   private Counter obtainOrCreateCounterByName(@NonNull String counterName) {
     Counter counter = counterNameToCounterMap.get(counterName);
     if (counter == null) {
-      counter = new Counter(counterName);
-      counterNameToCounterMap.put(counterName, counter);
+      // Don't replace a counter that another thread created in the meantime, or its increments
+      // would be lost.
+      Counter newCounter = new Counter(counterName);
+      counter = counterNameToCounterMap.putIfAbsent(counterName, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
     }
     return counter;
   }
@@ -328,6 +334,15 @@ public class Trace extends AppStateUpdateHandler
    */
   @Keep
   public void incrementMetric(@NonNull String metricName, long incrementBy) {
+    // Fast path for metrics that already exist: counters are only created for valid names, so the
+    // name needs neither validation nor trimming, and incrementing doesn't allocate.
+    Counter existingCounter = metricName != null ? counterNameToCounterMap.get(metricName) : null;
+    if (existingCounter != null && isActive()) {
+      existingCounter.increment(incrementBy);
+      logIncrementedMetric(metricName, existingCounter);
+      return;
+    }
+
     String err = validateMetricName(metricName);
     if (err != null) {
       logger.error("Cannot increment metric '%s'. Metric name is invalid.(%s)", metricName, err);
@@ -348,8 +363,15 @@ public class Trace extends AppStateUpdateHandler
     // thread-safer
     Counter counter = obtainOrCreateCounterByName(metricName.trim());
     counter.increment(incrementBy);
-    logger.debug(
-        "Incrementing metric '%s' to %d on trace '%s'", metricName, counter.getCount(), name);
+    logIncrementedMetric(metricName, counter);
+  }
+
+  private void logIncrementedMetric(@NonNull String metricName, @NonNull Counter counter) {
+    // Checked first, since reading the count sums all its stripes.
+    if (logger.isLogcatEnabled()) {
+      logger.debug(
+          "Incrementing metric '%s' to %d on trace '%s'", metricName, counter.getCount(), name);
+    }
   }
 
   /**
@@ -25,10 +25,8 @@ import androidx.annotation.VisibleForTesting;
 import com.google.firebase.perf.logging.AndroidLogger;
 import com.google.firebase.perf.util.Timer;
 import com.google.firebase.perf.v1.CpuMetricReading;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.RandomAccessFile;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -36,11 +34,15 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * This class collects CPU Gauge metrics and queues them up on its ConcurrentLinkedQueue. It is the
- * responsibility of the GaugeManager to drain this queue periodically.
+ * This class collects CPU Gauge metrics and queues them up on its {@link
+ * CpuMetricReadingRingBuffer}. It is the responsibility of the GaugeManager to drain this queue
+ * periodically.
+ *
+ * <p>Collecting a reading doesn't allocate: the /proc/[pid]/stat file is kept open and parsed in
+ * place from a reused buffer, and the reading is recorded into preallocated arrays.
  *
  * <p>The class methods are not generally thread safe, but it is thread safe to read and write to
- * the ConcurrentLinkedQueue.
+ * the queue.
  */
 public class CpuGaugeCollector {
 
@@ -67,24 +69,39 @@ public class CpuGaugeCollector {
   private static final int CUTIME_POSITION_IN_PROC_PID_STAT = 15;
   private static final int CSTIME_POSITION_IN_PROC_PID_STAT = 16;
 
+  // The values up to cstime fit comfortably, since the process name is at most 16 characters.
+  private static final int PROC_PID_STAT_BUFFER_SIZE = 512;
+
+  // Readings are drained about every 20 readings, so this leaves plenty of room for flushes that
+  // are late. If it fills up anyway, the oldest readings are dropped.
+  private static final int MAX_BUFFERED_READINGS = 200;
+
   // We need this to convert a double seconds value to a long microseconds value without losing too
   // much precision through rounding.
   // This utility isn't provided by TimeUnits.SECONDS.toMicros() - it only accepts longs.
   private static final long MICROSECONDS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
 
   /* This is populated by CpuGaugeCollector but it's drained by GaugeManager.*/
-  public final ConcurrentLinkedQueue<CpuMetricReading> cpuMetricReadings;
+  final CpuMetricReadingRingBuffer cpuMetricReadings;
   private final ScheduledExecutorService cpuMetricCollectorExecutor;
   private final String procFileName;
   private final long clockTicksPerSecond;
 
+  // Only accessed from the cpuMetricCollectorExecutor thread. The file stays open between readings
+  // and is re-read from the start, which makes the kernel regenerate its contents.
+  @Nullable private RandomAccessFile procFile = null;
+  private final byte[] procFileBuffer = new byte[PROC_PID_STAT_BUFFER_SIZE];
+  // The values from utime to cstime, which are consecutive in the file.
+  private final long[] procFileValues =
+      new long[CSTIME_POSITION_IN_PROC_PID_STAT - UTIME_POSITION_IN_PROC_PID_STAT + 1];
+
   @Nullable private ScheduledFuture cpuMetricCollectorJob = null;
   private long cpuMetricCollectionRateMs = UNSET_CPU_METRIC_COLLECTION_RATE;
 
   // TODO(b/258263016): Migrate to go/firebase-android-executors
   @SuppressLint("ThreadPoolCreation")
   CpuGaugeCollector() {
-    cpuMetricReadings = new ConcurrentLinkedQueue<>();
+    cpuMetricReadings = new CpuMetricReadingRingBuffer(MAX_BUFFERED_READINGS);
     cpuMetricCollectorExecutor = Executors.newSingleThreadScheduledExecutor();
 
     int pid = android.os.Process.myPid();
@@ -98,7 +115,7 @@ public class CpuGaugeCollector {
       ScheduledExecutorService cpuMetricCollectorExecutor,
       String fakeProcFileName,
       long clockTicksPerSecond) {
-    cpuMetricReadings = new ConcurrentLinkedQueue<>();
+    cpuMetricReadings = new CpuMetricReadingRingBuffer(MAX_BUFFERED_READINGS);
     this.cpuMetricCollectorExecutor = cpuMetricCollectorExecutor;
     procFileName = fakeProcFileName;
     this.clockTicksPerSecond = clockTicksPerSecond;
@@ -164,12 +181,7 @@ public class CpuGaugeCollector {
     try {
       cpuMetricCollectorJob =
           cpuMetricCollectorExecutor.scheduleAtFixedRate(
-              () -> {
-                CpuMetricReading currCpuReading = syncCollectCpuMetric(referenceTime);
-                if (currCpuReading != null) {
-                  cpuMetricReadings.add(currCpuReading);
-                }
-              },
+              () -> syncCollectCpuMetric(referenceTime),
               /* initialDelay */ 0,
               cpuMetricCollectionRate,
               TimeUnit.MILLISECONDS);
@@ -183,12 +195,7 @@ public class CpuGaugeCollector {
       @SuppressWarnings("FutureReturnValueIgnored")
       ScheduledFuture unusedFuture =
           cpuMetricCollectorExecutor.schedule(
-              () -> {
-                CpuMetricReading currCpuReading = syncCollectCpuMetric(referenceTime);
-                if (currCpuReading != null) {
-                  cpuMetricReadings.add(currCpuReading);
-                }
-              },
+              () -> syncCollectCpuMetric(referenceTime),
               /* initialDelay */ 0,
               TimeUnit.MILLISECONDS);
     } catch (RejectedExecutionException e) {
@@ -196,34 +203,120 @@ public class CpuGaugeCollector {
     }
   }
 
-  @Nullable
-  private CpuMetricReading syncCollectCpuMetric(Timer referenceTime) {
+  /** Collects a reading into {@link #cpuMetricReadings}, unless the file can't be read. */
+  private void syncCollectCpuMetric(Timer referenceTime) {
     if (referenceTime == null) {
-      return null;
+      return;
     }
 
-    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(procFileName))) {
+    try {
       long cpuMetricTimestampUs = referenceTime.getCurrentTimestampMicros();
-      String procPidStatFileContents = bufferedReader.readLine();
-      String[] procFileTokens = procPidStatFileContents.split(" ");
+      int length = readProcFile();
+      if (!parseProcFileValues(length)) {
+        logger.warn("Unexpected '/proc/[pid]/stat' file format encountered");
+        return;
+      }
 
-      long utime = Long.parseLong(procFileTokens[UTIME_POSITION_IN_PROC_PID_STAT]);
-      long cutime = Long.parseLong(procFileTokens[CUTIME_POSITION_IN_PROC_PID_STAT]);
+      long utime = getProcFileValue(UTIME_POSITION_IN_PROC_PID_STAT);
+      long cutime = getProcFileValue(CUTIME_POSITION_IN_PROC_PID_STAT);
 
-      long stime = Long.parseLong(procFileTokens[STIME_POSITION_IN_PROC_PID_STAT]);
-      long cstime = Long.parseLong(procFileTokens[CSTIME_POSITION_IN_PROC_PID_STAT]);
+      long stime = getProcFileValue(STIME_POSITION_IN_PROC_PID_STAT);
+      long cstime = getProcFileValue(CSTIME_POSITION_IN_PROC_PID_STAT);
 
-      return CpuMetricReading.newBuilder()
-          .setClientTimeUs(cpuMetricTimestampUs)
-          .setSystemTimeUs(convertClockTicksToMicroseconds(stime + cstime))
-          .setUserTimeUs(convertClockTicksToMicroseconds(utime + cutime))
-          .build();
+      cpuMetricReadings.record(
+          cpuMetricTimestampUs,
+          /* userTimeUs= */ convertClockTicksToMicroseconds(utime + cutime),
+          /* systemTimeUs= */ convertClockTicksToMicroseconds(stime + cstime));
     } catch (IOException e) {
       logger.warn("Unable to read 'proc/[pid]/stat' file: " + e.getMessage());
-    } catch (ArrayIndexOutOfBoundsException | NumberFormatException | NullPointerException e) {
-      logger.warn("Unexpected '/proc/[pid]/stat' file format encountered: " + e.getMessage());
+      closeProcFile();
+    }
+  }
+
+  /**
+   * Reads the /proc/[pid]/stat file from the start into {@link #procFileBuffer}, opening it if
+   * needed.
+   *
+   * @return The number of bytes read.
+   */
+  private int readProcFile() throws IOException {
+    if (procFile == null) {
+      procFile = new RandomAccessFile(procFileName, "r");
+    }
+    procFile.seek(0);
+    int length = 0;
+    while (length < procFileBuffer.length) {
+      int read = procFile.read(procFileBuffer, length, procFileBuffer.length - length);
+      if (read <= 0) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  private void closeProcFile() {
+    if (procFile != null) {
+      try {
+        procFile.close();
+      } catch (IOException e) {
+        // Nothing to do, the file is reopened for the next reading.
+      }
+      procFile = null;
+    }
+  }
+
+  /**
+   * Parses the values from utime to cstime out of the first {@code length} bytes of {@link
+   * #procFileBuffer} into {@link #procFileValues}, without allocating.
+   *
+   * @return Whether the values were found and are numbers.
+   */
+  private boolean parseProcFileValues(int length) {
+    // The second value is the process name in parentheses, which may itself contain spaces and
+    // parentheses, so counting starts after the last closing parenthesis.
+    int position = length - 1;
+    while (position >= 0 && procFileBuffer[position] != ')') {
+      position--;
+    }
+    if (position < 0) {
+      return false;
     }
-    return null;
+    position++;
+
+    for (int index = 2; index <= CSTIME_POSITION_IN_PROC_PID_STAT; index++) {
+      if (position >= length || procFileBuffer[position] != ' ') {
+        return false;
+      }
+      position++;
+
+      int start = position;
+      long value = 0;
+      boolean isNumber = true;
+      while (position < length
+          && procFileBuffer[position] != ' '
+          && procFileBuffer[position] != '\n') {
+        byte digit = procFileBuffer[position];
+        if (digit < '0' || digit > '9') {
+          isNumber = false;
+        } else {
+          value = value * 10 + (digit - '0');
+        }
+        position++;
+      }
+
+      if (index >= UTIME_POSITION_IN_PROC_PID_STAT) {
+        if (!isNumber || position == start) {
+          return false;
+        }
+        procFileValues[index - UTIME_POSITION_IN_PROC_PID_STAT] = value;
+      }
+    }
+    return true;
+  }
+
+  private long getProcFileValue(int positionInProcPidStat) {
+    return procFileValues[positionInProcPidStat - UTIME_POSITION_IN_PROC_PID_STAT];
   }
 
   private long getClockTicksPerSecond() {
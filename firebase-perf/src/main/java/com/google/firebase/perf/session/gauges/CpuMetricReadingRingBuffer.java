@@ -0,0 +1,58 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.session.gauges;
+
+import androidx.annotation.NonNull;
+import com.google.firebase.perf.v1.CpuMetricReading;
+
+/** A {@link GaugeReadingRingBuffer} of {@link CpuMetricReading}s. */
+final class CpuMetricReadingRingBuffer extends GaugeReadingRingBuffer<CpuMetricReading> {
+
+  private final long[] clientTimesUs;
+  private final long[] userTimesUs;
+  private final long[] systemTimesUs;
+
+  CpuMetricReadingRingBuffer(int capacity) {
+    super(capacity);
+    clientTimesUs = new long[capacity];
+    userTimesUs = new long[capacity];
+    systemTimesUs = new long[capacity];
+  }
+
+  /** Records a reading without allocating. */
+  synchronized void record(long clientTimeUs, long userTimeUs, long systemTimeUs) {
+    int slot = claimSlot();
+    clientTimesUs[slot] = clientTimeUs;
+    userTimesUs[slot] = userTimeUs;
+    systemTimesUs[slot] = systemTimeUs;
+  }
+
+  @Override
+  protected void writeSlot(int slot, @NonNull CpuMetricReading reading) {
+    clientTimesUs[slot] = reading.getClientTimeUs();
+    userTimesUs[slot] = reading.getUserTimeUs();
+    systemTimesUs[slot] = reading.getSystemTimeUs();
+  }
+
+  @NonNull
+  @Override
+  protected CpuMetricReading readSlot(int slot) {
+    return CpuMetricReading.newBuilder()
+        .setClientTimeUs(clientTimesUs[slot])
+        .setUserTimeUs(userTimesUs[slot])
+        .setSystemTimeUs(systemTimesUs[slot])
+        .build();
+  }
+}
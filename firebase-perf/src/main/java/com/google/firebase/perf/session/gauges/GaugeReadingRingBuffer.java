@@ -0,0 +1,105 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.session.gauges;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A fixed capacity queue of gauge readings, which subclasses store in preallocated primitive arrays
+ * indexed by slot, so that recording a reading doesn't allocate. Reading protos are only built
+ * when the queue is drained.
+ *
+ * <p>When the queue is full, recording a reading overwrites the oldest one. All methods are
+ * synchronized on the queue, which subclasses must also hold while writing to a slot.
+ *
+ * @param <T> The type of the reading proto.
+ */
+abstract class GaugeReadingRingBuffer<T> extends AbstractQueue<T> {
+
+  private final int capacity;
+  private int head;
+  private int size;
+
+  GaugeReadingRingBuffer(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns the slot to write a new reading to, dropping the oldest reading if the queue is full.
+   * Must be called while holding the lock of this queue.
+   */
+  protected final int claimSlot() {
+    int slot = (head + size) % capacity;
+    if (size == capacity) {
+      head = (head + 1) % capacity;
+    } else {
+      size++;
+    }
+    return slot;
+  }
+
+  /** Writes the given reading to the slot. */
+  protected abstract void writeSlot(int slot, @NonNull T reading);
+
+  /** Builds the reading in the slot. */
+  @NonNull
+  protected abstract T readSlot(int slot);
+
+  @Override
+  public synchronized boolean offer(@NonNull T reading) {
+    writeSlot(claimSlot(), reading);
+    return true;
+  }
+
+  @Nullable
+  @Override
+  public synchronized T poll() {
+    if (size == 0) {
+      return null;
+    }
+    T reading = readSlot(head);
+    head = (head + 1) % capacity;
+    size--;
+    return reading;
+  }
+
+  @Nullable
+  @Override
+  public synchronized T peek() {
+    return size == 0 ? null : readSlot(head);
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  /** Returns an iterator over a snapshot of the readings, which doesn't support removal. */
+  @NonNull
+  @Override
+  public synchronized Iterator<T> iterator() {
+    List<T> readings = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      readings.add(readSlot((head + i) % capacity));
+    }
+    return Collections.unmodifiableList(readings).iterator();
+  }
+}
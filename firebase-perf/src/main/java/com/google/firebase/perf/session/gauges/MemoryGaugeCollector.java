@@ -22,7 +22,6 @@ import com.google.firebase.perf.util.StorageUnit;
 import com.google.firebase.perf.util.Timer;
 import com.google.firebase.perf.util.Utils;
 import com.google.firebase.perf.v1.AndroidMemoryReading;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -30,11 +29,12 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * This class collects Memory Gauge metrics and queues them up on its ConcurrentLinkedQueue. It is
- * the responsibility of the GaugeManager to drain this queue periodically.
+ * This class collects Memory Gauge metrics and queues them up on its {@link
+ * MemoryMetricReadingRingBuffer}, without allocating. It is the responsibility of the GaugeManager
+ * to drain this queue periodically.
  *
  * <p>The class methods are not generally thread safe, but it is thread safe to read and write to
- * the ConcurrentLinkedQueue.
+ * the queue.
  */
 public class MemoryGaugeCollector {
 
@@ -45,9 +45,13 @@ public class MemoryGaugeCollector {
   // this value is set for the memoryMetricCollectionRateMs, we do not collect Memory Metrics.
   private static final int UNSET_MEMORY_METRIC_COLLECTION_RATE = -1;
 
+  // Readings are drained about every 20 readings, so this leaves plenty of room for flushes that
+  // are late. If it fills up anyway, the oldest readings are dropped.
+  private static final int MAX_BUFFERED_READINGS = 200;
+
   private final ScheduledExecutorService memoryMetricCollectorExecutor;
   /* This is populated by MemoryGaugeCollector but it's drained by GaugeManager.*/
-  public final ConcurrentLinkedQueue<AndroidMemoryReading> memoryMetricReadings;
+  final MemoryMetricReadingRingBuffer memoryMetricReadings;
   private final Runtime runtime;
 
   @Nullable private ScheduledFuture memoryMetricCollectorJob = null;
@@ -62,7 +66,7 @@ public class MemoryGaugeCollector {
   @VisibleForTesting
   MemoryGaugeCollector(ScheduledExecutorService memoryMetricCollectorExecutor, Runtime runtime) {
     this.memoryMetricCollectorExecutor = memoryMetricCollectorExecutor;
-    memoryMetricReadings = new ConcurrentLinkedQueue<>();
+    memoryMetricReadings = new MemoryMetricReadingRingBuffer(MAX_BUFFERED_READINGS);
     this.runtime = runtime;
   }
 
@@ -125,12 +129,7 @@ public class MemoryGaugeCollector {
     try {
       memoryMetricCollectorJob =
           memoryMetricCollectorExecutor.scheduleAtFixedRate(
-              () -> {
-                AndroidMemoryReading memoryReading = syncCollectMemoryMetric(referenceTime);
-                if (memoryReading != null) {
-                  memoryMetricReadings.add(memoryReading);
-                }
-              },
+              () -> syncCollectMemoryMetric(referenceTime),
               /* initialDelay */ 0,
               /* period= */ memoryMetricCollectionRate,
               TimeUnit.MILLISECONDS);
@@ -144,12 +143,7 @@ public class MemoryGaugeCollector {
       @SuppressWarnings("FutureReturnValueIgnored")
       ScheduledFuture unusedFuture =
           memoryMetricCollectorExecutor.schedule(
-              () -> {
-                AndroidMemoryReading memoryReading = syncCollectMemoryMetric(referenceTime);
-                if (memoryReading != null) {
-                  memoryMetricReadings.add(memoryReading);
-                }
-              },
+              () -> syncCollectMemoryMetric(referenceTime),
               /* initialDelay */ 0,
               TimeUnit.MILLISECONDS);
     } catch (RejectedExecutionException e) {
@@ -157,18 +151,15 @@ public class MemoryGaugeCollector {
     }
   }
 
-  @Nullable
-  private AndroidMemoryReading syncCollectMemoryMetric(Timer referenceTime) {
+  /** Collects a reading into {@link #memoryMetricReadings}. */
+  private void syncCollectMemoryMetric(Timer referenceTime) {
     if (referenceTime == null) {
-      return null;
+      return;
     }
 
     long memoryMetricTimestampUs = referenceTime.getCurrentTimestampMicros();
 
-    return AndroidMemoryReading.newBuilder()
-        .setClientTimeUs(memoryMetricTimestampUs)
-        .setUsedAppJavaHeapMemoryKb(getCurrentUsedAppJavaHeapMemoryKb())
-        .build();
+    memoryMetricReadings.record(memoryMetricTimestampUs, getCurrentUsedAppJavaHeapMemoryKb());
   }
 
   /**
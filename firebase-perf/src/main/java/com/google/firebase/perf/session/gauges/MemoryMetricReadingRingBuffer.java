@@ -0,0 +1,53 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.session.gauges;
+
+import androidx.annotation.NonNull;
+import com.google.firebase.perf.v1.AndroidMemoryReading;
+
+/** A {@link GaugeReadingRingBuffer} of {@link AndroidMemoryReading}s. */
+final class MemoryMetricReadingRingBuffer extends GaugeReadingRingBuffer<AndroidMemoryReading> {
+
+  private final long[] clientTimesUs;
+  private final int[] usedAppJavaHeapMemoriesKb;
+
+  MemoryMetricReadingRingBuffer(int capacity) {
+    super(capacity);
+    clientTimesUs = new long[capacity];
+    usedAppJavaHeapMemoriesKb = new int[capacity];
+  }
+
+  /** Records a reading without allocating. */
+  synchronized void record(long clientTimeUs, int usedAppJavaHeapMemoryKb) {
+    int slot = claimSlot();
+    clientTimesUs[slot] = clientTimeUs;
+    usedAppJavaHeapMemoriesKb[slot] = usedAppJavaHeapMemoryKb;
+  }
+
+  @Override
+  protected void writeSlot(int slot, @NonNull AndroidMemoryReading reading) {
+    clientTimesUs[slot] = reading.getClientTimeUs();
+    usedAppJavaHeapMemoriesKb[slot] = reading.getUsedAppJavaHeapMemoryKb();
+  }
+
+  @NonNull
+  @Override
+  protected AndroidMemoryReading readSlot(int slot) {
+    return AndroidMemoryReading.newBuilder()
+        .setClientTimeUs(clientTimesUs[slot])
+        .setUsedAppJavaHeapMemoryKb(usedAppJavaHeapMemoriesKb[slot])
+        .build();
+  }
+}
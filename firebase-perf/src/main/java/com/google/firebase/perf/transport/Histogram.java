@@ -0,0 +1,164 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+//
+// You may obtain a copy of the License at
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import androidx.annotation.NonNull;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram records the distribution of non-negative values, such as the response times of the
+ * network requests aggregated by the {@link NetworkRequestMetricAggregator}, in constant memory no
+ * matter how many values are recorded.
+ *
+ * <p>The buckets are log-linear: every power of two is split into 8 linear sub-buckets, so that
+ * the width of a bucket is at most 12.5% of the values in it, and values below 8 are exact.
+ * Recording a value is lock-free and never allocates, and histograms can be merged by adding their
+ * buckets.
+ */
+final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // The largest value, Long.MAX_VALUE, falls into the last sub-bucket of the power of two 2^62.
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong min;
+  private final AtomicLong max;
+
+  /** Creates an empty Histogram. */
+  Histogram() {
+    counts = new AtomicLongArray(BUCKET_COUNT);
+    min = new AtomicLong(Long.MAX_VALUE);
+    max = new AtomicLong(Long.MIN_VALUE);
+  }
+
+  /**
+   * Records a value in this histogram. Negative values are recorded as 0.
+   *
+   * @param value The value to be recorded.
+   */
+  void record(long value) {
+    value = Math.max(0, value);
+    counts.getAndIncrement(getBucketIndex(value));
+    updateMin(value);
+    updateMax(value);
+  }
+
+  /**
+   * Adds all values recorded in the other histogram to this histogram.
+   *
+   * @param other The histogram to be merged into this one.
+   */
+  void merge(@NonNull Histogram other) {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.getAndAdd(i, count);
+      }
+    }
+    updateMin(other.min.get());
+    updateMax(other.max.get());
+  }
+
+  /**
+   * Get the number of recorded values. Values that are recorded concurrently with this call may or
+   * may not be included.
+   *
+   * @return Number of values recorded in this histogram.
+   */
+  long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Get the largest recorded value.
+   *
+   * @return Largest value recorded in this histogram, or 0 if it is empty.
+   */
+  long getMax() {
+    long max = this.max.get();
+    return max == Long.MIN_VALUE ? 0 : max;
+  }
+
+  /**
+   * Get the given percentile of the recorded values, as the middle of the bucket that contains it,
+   * bounded by the smallest and largest recorded value.
+   *
+   * @param percentile The percentile to get, between 0 and 100.
+   * @return The percentile, or 0 if this histogram is empty.
+   */
+  long getPercentile(double percentile) {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long min = this.min.get();
+    long max = this.max.get();
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        long lowerBound = getLowerBound(i);
+        long middle = lowerBound + (getUpperBound(i) - lowerBound) / 2;
+        return Math.min(max, Math.max(min, middle));
+      }
+    }
+    return max;
+  }
+
+  private void updateMin(long value) {
+    long current = min.get();
+    while (value < current && !min.compareAndSet(current, value)) {
+      current = min.get();
+    }
+  }
+
+  private void updateMax(long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  private static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  private static long getLowerBound(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKET_COUNT;
+    return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  /** Returns the largest value in the bucket, without overflowing for the last bucket. */
+  private static long getUpperBound(int index) {
+    return index + 1 < BUCKET_COUNT ? getLowerBound(index + 1) - 1 : Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,278 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.firebase.perf.util.Clock;
+import com.google.firebase.perf.util.Timer;
+import com.google.firebase.perf.v1.ApplicationProcessState;
+import com.google.firebase.perf.v1.NetworkRequestMetric;
+import com.google.firebase.perf.v1.PerfMetric;
+import com.google.firebase.perf.v1.PerfSession;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import okhttp3.HttpUrl;
+
+/**
+ * Aggregates {@link NetworkRequestMetric}s over a time window into one summary metric per URL
+ * pattern, HTTP method and response code, so that high request rates are reported as latency
+ * distributions instead of being dropped by the {@link RateLimiter}.
+ *
+ * <p>The response times of every bucket are folded into a {@link Histogram}. The summary of a
+ * bucket is a {@link NetworkRequestMetric} of its URL pattern whose response time is the median
+ * response time, and whose custom attributes hold the number of requests and further percentiles.
+ *
+ * <p>A summary stands for {@link #ATTRIBUTE_COUNT} requests, but is logged as a single {@link
+ * NetworkRequestMetric}. Request counts and rates are only correct if the backend weighs each
+ * summary by that attribute, which is why aggregation is off unless it is enabled through {@link
+ * com.google.firebase.perf.config.ConfigResolver#getIsNetworkRequestAggregationEnabled()}.
+ *
+ * <p>This class is not thread safe, and is only used on the executor of the {@link
+ * TransportManager}.
+ */
+final class NetworkRequestMetricAggregator {
+
+  /** Custom attribute of a summary with the number of requests that it aggregates. */
+  static final String ATTRIBUTE_COUNT = "_agg_count";
+
+  /** Custom attribute of a summary with the 90th percentile of the response times. */
+  static final String ATTRIBUTE_P90_US = "_agg_p90_us";
+
+  /** Custom attribute of a summary with the 99th percentile of the response times. */
+  static final String ATTRIBUTE_P99_US = "_agg_p99_us";
+
+  /** Custom attribute of a summary with the maximum response time. */
+  static final String ATTRIBUTE_MAX_US = "_agg_max_us";
+
+  private static final String URL_PATTERN_WILDCARD = "*";
+
+  // Requests that don't fit into one of this many buckets are logged on their own.
+  private static final int MAX_BUCKETS = 100;
+  private static final int MAX_SESSIONS_PER_BUCKET = 10;
+
+  private final Clock clock;
+  private final long windowMicros;
+  private final Map<String, Bucket> buckets = new LinkedHashMap<>();
+  @Nullable private Timer windowStart;
+
+  // Incremented whenever the window is flushed.
+  private int window;
+
+  NetworkRequestMetricAggregator(@NonNull Clock clock, long windowMicros) {
+    this.clock = clock;
+    this.windowMicros = windowMicros;
+  }
+
+  /**
+   * Adds the given request to the current window.
+   *
+   * @return whether the request was aggregated. If not, the request should be logged on its own.
+   */
+  boolean add(
+      @NonNull NetworkRequestMetric networkRequestMetric,
+      @NonNull ApplicationProcessState appState) {
+    // Custom attributes can't be merged, and requests without a response can't be bucketed.
+    if (!networkRequestMetric.hasHttpResponseCode()
+        || !networkRequestMetric.hasTimeToResponseCompletedUs()
+        || networkRequestMetric.getCustomAttributesCount() > 0) {
+      return false;
+    }
+
+    String urlPattern = getUrlPattern(networkRequestMetric.getUrl());
+    String key =
+        urlPattern
+            + ' '
+            + networkRequestMetric.getHttpMethod().getNumber()
+            + ' '
+            + networkRequestMetric.getHttpResponseCode()
+            + ' '
+            + appState.getNumber();
+    Bucket bucket = buckets.get(key);
+    if (bucket == null) {
+      if (buckets.size() >= MAX_BUCKETS) {
+        return false;
+      }
+      bucket = new Bucket(urlPattern, networkRequestMetric, appState);
+      buckets.put(key, bucket);
+    }
+    if (windowStart == null) {
+      windowStart = clock.getTime();
+    }
+    bucket.add(networkRequestMetric);
+    return true;
+  }
+
+  /** Returns whether requests were aggregated since the last flush. */
+  boolean isWindowOpen() {
+    return windowStart != null;
+  }
+
+  /**
+   * Returns the number of the current window, which changes whenever it is flushed. A flush that is
+   * scheduled for a window uses this to tell whether the window was flushed already.
+   */
+  int getWindow() {
+    return window;
+  }
+
+  /** Returns whether requests were aggregated for at least the length of the window. */
+  boolean isWindowElapsed() {
+    return windowStart != null && windowStart.getDurationMicros(clock.getTime()) >= windowMicros;
+  }
+
+  /** Returns the summaries of all buckets, and starts a new window. */
+  @NonNull
+  List<PendingPerfEvent> flush() {
+    List<PendingPerfEvent> summaries = new ArrayList<>(buckets.size());
+    for (Bucket bucket : buckets.values()) {
+      summaries.add(
+          new PendingPerfEvent(
+              PerfMetric.newBuilder().setNetworkRequestMetric(bucket.toSummary()),
+              bucket.appState));
+    }
+    buckets.clear();
+    windowStart = null;
+    window++;
+    return summaries;
+  }
+
+  /**
+   * Returns the URL with path segments that look like identifiers, such as numbers or UUIDs,
+   * replaced by a wildcard. The query was already stripped by the {@link
+   * com.google.firebase.perf.metrics.NetworkRequestMetricBuilder}.
+   */
+  @VisibleForTesting
+  @NonNull
+  static String getUrlPattern(@NonNull String url) {
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    if (httpUrl == null) {
+      return url;
+    }
+
+    List<String> pathSegments = httpUrl.pathSegments();
+    HttpUrl.Builder builder = null;
+    for (int i = 0; i < pathSegments.size(); i++) {
+      if (isIdentifier(pathSegments.get(i))) {
+        if (builder == null) {
+          builder = httpUrl.newBuilder();
+        }
+        builder.setPathSegment(i, URL_PATTERN_WILDCARD);
+      }
+    }
+    return builder == null ? url : builder.build().toString();
+  }
+
+  /** Returns whether the path segment is a number, or a long hexadecimal id such as a UUID. */
+  private static boolean isIdentifier(@NonNull String pathSegment) {
+    if (pathSegment.isEmpty()) {
+      return false;
+    }
+    boolean isNumber = true;
+    boolean isHexadecimal = true;
+    boolean hasDigit = false;
+    for (int i = 0; i < pathSegment.length(); i++) {
+      char c = pathSegment.charAt(i);
+      boolean isDigit = c >= '0' && c <= '9';
+      hasDigit |= isDigit;
+      isNumber &= isDigit;
+      isHexadecimal &= isDigit || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-';
+    }
+    return isNumber || (isHexadecimal && hasDigit && pathSegment.length() >= 16);
+  }
+
+  /** The requests of one URL pattern, HTTP method, response code and app state in a window. */
+  private static final class Bucket {
+    private final String urlPattern;
+    private final NetworkRequestMetric.HttpMethod httpMethod;
+    private final int httpResponseCode;
+    private final ApplicationProcessState appState;
+
+    private final Histogram responseTimes = new Histogram();
+    private final Map<String, PerfSession> perfSessions = new LinkedHashMap<>();
+    private long clientStartTimeUs = Long.MAX_VALUE;
+    private long requestPayloadBytes;
+    private int requestPayloadCount;
+    private long responsePayloadBytes;
+    private int responsePayloadCount;
+    @Nullable private String responseContentType;
+
+    Bucket(
+        @NonNull String urlPattern,
+        @NonNull NetworkRequestMetric firstRequest,
+        @NonNull ApplicationProcessState appState) {
+      this.urlPattern = urlPattern;
+      this.httpMethod = firstRequest.getHttpMethod();
+      this.httpResponseCode = firstRequest.getHttpResponseCode();
+      this.appState = appState;
+    }
+
+    void add(@NonNull NetworkRequestMetric request) {
+      responseTimes.record(request.getTimeToResponseCompletedUs());
+      clientStartTimeUs = Math.min(clientStartTimeUs, request.getClientStartTimeUs());
+      if (request.hasRequestPayloadBytes()) {
+        requestPayloadBytes += request.getRequestPayloadBytes();
+        requestPayloadCount++;
+      }
+      if (request.hasResponsePayloadBytes()) {
+        responsePayloadBytes += request.getResponsePayloadBytes();
+        responsePayloadCount++;
+      }
+      if (responseContentType == null && request.hasResponseContentType()) {
+        responseContentType = request.getResponseContentType();
+      }
+      for (PerfSession perfSession : request.getPerfSessionsList()) {
+        if (perfSessions.size() >= MAX_SESSIONS_PER_BUCKET) {
+          break;
+        }
+        if (!perfSessions.containsKey(perfSession.getSessionId())) {
+          perfSessions.put(perfSession.getSessionId(), perfSession);
+        }
+      }
+    }
+
+    @NonNull
+    NetworkRequestMetric toSummary() {
+      NetworkRequestMetric.Builder summary =
+          NetworkRequestMetric.newBuilder()
+              .setUrl(urlPattern)
+              .setHttpMethod(httpMethod)
+              .setHttpResponseCode(httpResponseCode)
+              .setClientStartTimeUs(clientStartTimeUs)
+              .setTimeToResponseCompletedUs(responseTimes.getPercentile(50))
+              .putCustomAttributes(ATTRIBUTE_COUNT, Long.toString(responseTimes.getCount()))
+              .putCustomAttributes(
+                  ATTRIBUTE_P90_US, Long.toString(responseTimes.getPercentile(90)))
+              .putCustomAttributes(
+                  ATTRIBUTE_P99_US, Long.toString(responseTimes.getPercentile(99)))
+              .putCustomAttributes(ATTRIBUTE_MAX_US, Long.toString(responseTimes.getMax()))
+              .addAllPerfSessions(perfSessions.values());
+      // Payload sizes are averaged, so that they still describe a single request.
+      if (requestPayloadCount > 0) {
+        summary.setRequestPayloadBytes(requestPayloadBytes / requestPayloadCount);
+      }
+      if (responsePayloadCount > 0) {
+        summary.setResponsePayloadBytes(responsePayloadBytes / responsePayloadCount);
+      }
+      if (responseContentType != null) {
+        summary.setResponseContentType(responseContentType);
+      }
+      return summary.build();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import com.google.firebase.perf.logging.AndroidLogger;
+import com.google.firebase.perf.v1.ApplicationProcessState;
+import com.google.firebase.perf.v1.PerfMetric;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the {@link PendingPerfEvent}s that are logged before the {@link TransportManager} is
+ * initialized in a file, so that they are not lost if the process dies before then.
+ *
+ * <p>The file starts with the version of the app and the SDK that stored the events, since the
+ * events are logged with the {@link com.google.firebase.perf.v1.ApplicationInfo} of the process
+ * that reads them. Each event is then appended as the number of its {@link
+ * ApplicationProcessState}, followed by the length and the bytes of its {@link PerfMetric}. An
+ * event that was only partially written (for example because the process died while writing it)
+ * is ignored when reading.
+ *
+ * @implNote This class is not thread safe, it's only accessed from the executor thread of the
+ *     {@link TransportManager}. The file must not be shared with other processes.
+ */
+final class PendingPerfEventStore {
+
+  private static final AndroidLogger logger = AndroidLogger.getInstance();
+
+  private final File file;
+  private final String appVersion;
+  private final long maxSizeBytes;
+
+  /**
+   * @param appVersion identifies the version of the app and the SDK, events stored by any other
+   *     version are dropped when reading.
+   */
+  PendingPerfEventStore(@NonNull File file, @NonNull String appVersion, long maxSizeBytes) {
+    this.file = file;
+    this.appVersion = appVersion;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Appends the {@code pendingPerfEvent} to the file.
+   *
+   * @return whether the event was stored, which is not the case if the file would exceed its
+   *     maximum size or can't be written.
+   */
+  @WorkerThread
+  boolean add(@NonNull PendingPerfEvent pendingPerfEvent) {
+    byte[] perfMetricBytes = pendingPerfEvent.perfMetricBuilder.build().toByteArray();
+    long fileLength = file.length();
+
+    // Encodes the whole record first, so that it's appended to the file with a single write.
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(record)) {
+      if (fileLength == 0) {
+        out.writeUTF(appVersion);
+      }
+      out.writeInt(pendingPerfEvent.appState.getNumber());
+      out.writeInt(perfMetricBytes.length);
+      out.write(perfMetricBytes);
+
+    } catch (IOException e) {
+      // Can't happen when writing to memory.
+      return false;
+    }
+
+    if (fileLength + record.size() > maxSizeBytes) {
+      logger.debug("Pending events file is full, not storing the event.");
+      return false;
+    }
+
+    try (FileOutputStream out = new FileOutputStream(file, /* append= */ true)) {
+      record.writeTo(out);
+      return true;
+
+    } catch (IOException e) {
+      logger.debug("Unable to store the pending event: %s", e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Returns the stored events in the order they were added, and deletes the file. Events stored by
+   * another version of the app or the SDK are dropped.
+   */
+  @NonNull
+  @WorkerThread
+  List<PendingPerfEvent> drain() {
+    List<PendingPerfEvent> pendingPerfEvents = new ArrayList<>();
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      String storedAppVersion = in.readUTF();
+      if (!appVersion.equals(storedAppVersion)) {
+        throw new IOException("Events were stored by version " + storedAppVersion);
+      }
+
+      while (true) {
+        ApplicationProcessState appState = ApplicationProcessState.forNumber(in.readInt());
+        int perfMetricLength = in.readInt();
+        if (perfMetricLength < 0 || perfMetricLength > maxSizeBytes) {
+          throw new IOException("Invalid event length " + perfMetricLength);
+        }
+        byte[] perfMetricBytes = new byte[perfMetricLength];
+        in.readFully(perfMetricBytes);
+
+        pendingPerfEvents.add(
+            new PendingPerfEvent(
+                PerfMetric.parseFrom(perfMetricBytes).toBuilder(),
+                appState != null
+                    ? appState
+                    : ApplicationProcessState.APPLICATION_PROCESS_STATE_UNKNOWN));
+      }
+
+    } catch (FileNotFoundException | EOFException e) {
+      // There are no (more) stored events.
+
+    } catch (IOException e) {
+      logger.debug("Unable to read the remaining pending events: %s", e.getMessage());
+    }
+
+    if (file.exists() && !file.delete()) {
+      logger.debug("Unable to delete the pending events file.");
+    }
+
+    return pendingPerfEvents;
+  }
+}
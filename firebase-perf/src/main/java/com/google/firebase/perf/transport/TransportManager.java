@@ -14,13 +14,18 @@
 
 package com.google.firebase.perf.transport;
 
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 import android.annotation.SuppressLint;
+import android.app.ActivityManager;
+import android.app.Application;
 import android.content.Context;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.os.Build;
+import android.os.Process;
 import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -40,6 +45,7 @@ import com.google.firebase.perf.logging.AndroidLogger;
 import com.google.firebase.perf.logging.ConsoleUrlGenerator;
 import com.google.firebase.perf.metrics.validator.PerfMetricValidator;
 import com.google.firebase.perf.session.SessionManager;
+import com.google.firebase.perf.util.Clock;
 import com.google.firebase.perf.util.Constants;
 import com.google.firebase.perf.util.Constants.CounterNames;
 import com.google.firebase.perf.util.Rate;
@@ -51,17 +57,18 @@ import com.google.firebase.perf.v1.NetworkRequestMetric;
 import com.google.firebase.perf.v1.PerfMetric;
 import com.google.firebase.perf.v1.PerfMetricOrBuilder;
 import com.google.firebase.perf.v1.TraceMetric;
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.text.DecimalFormat;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -91,9 +98,7 @@ public class TransportManager implements AppStateCallback {
   //  of Singletons.
   private static final TransportManager instance = new TransportManager();
 
-  // Core pool size 0 allows threads to shut down if they're idle
-  private static final int CORE_POOL_SIZE = 0;
-  private static final int MAX_POOL_SIZE = 1; // Only need single thread
+  private static final int POOL_SIZE = 1; // Only need single thread
 
   // Allows for in-memory caching of events while the TransportManager is not initialized
   private static final String KEY_AVAILABLE_TRACES_FOR_CACHING = "KEY_AVAILABLE_TRACES_FOR_CACHING";
@@ -104,18 +109,32 @@ public class TransportManager implements AppStateCallback {
   private static final int MAX_TRACE_METRICS_CACHE_SIZE = 50;
   private static final int MAX_NETWORK_REQUEST_METRICS_CACHE_SIZE = 50;
   private static final int MAX_GAUGE_METRICS_CACHE_SIZE = 50;
+  // Length of the windows over which network requests are aggregated, when enabled.
+  private static final long NETWORK_REQUEST_AGGREGATION_WINDOW_MICROS = MINUTES.toMicros(1);
   private final Map<String, Integer> cacheMap;
   private final ConcurrentLinkedQueue<PendingPerfEvent> pendingEventsQueue =
       new ConcurrentLinkedQueue<>();
+  // Events logged before the TransportManager is initialized are stored in a file instead when
+  // the application context is available, so that they survive the process dying before then.
+  // Each process of the app has its own file, named after the process.
+  private static final String PENDING_EVENTS_FILE_NAME_PREFIX = "firebase_perf_pending_events_";
+  private static final long MAX_PENDING_EVENTS_FILE_SIZE_BYTES = 256 * 1024;
+
+  // Only accessed from the executorService thread.
+  @Nullable private PendingPerfEventStore pendingEventsStore;
 
   private final AtomicBoolean isTransportInitialized = new AtomicBoolean(false);
 
+  // Only accessed from the executorService thread.
+  private final NetworkRequestMetricAggregator networkRequestMetricAggregator =
+      new NetworkRequestMetricAggregator(new Clock(), NETWORK_REQUEST_AGGREGATION_WINDOW_MICROS);
+
   private FirebaseApp firebaseApp;
   @Nullable private FirebasePerformance firebasePerformance;
   private FirebaseInstallationsApi firebaseInstallationsApi;
   private Provider<TransportFactory> flgTransportFactoryProvider;
   private FlgTransport flgTransport;
-  private ExecutorService executorService;
+  private ScheduledExecutorService executorService;
   private Context appContext;
   private ConfigResolver configResolver;
   private RateLimiter rateLimiter;
@@ -129,17 +148,15 @@ public class TransportManager implements AppStateCallback {
   // TODO(b/258263016): Migrate to go/firebase-android-executors
   @SuppressLint("ThreadPoolCreation")
   private TransportManager() {
-    // MAX_POOL_SIZE must always be 1. We only allow one thread in this Executor. The reason
-    // we specifically use a ThreadPoolExecutor rather than generating one from ExecutorService
-    // because ThreadPoolExecutor provides the keepAliveTime timeout mechanism. If any threads
-    // in excess of CORE_POOL_SIZE is idle for more than keepAliveTime, thread is shut down.
-    this.executorService =
-        new ThreadPoolExecutor(
-            CORE_POOL_SIZE,
-            MAX_POOL_SIZE,
-            /* keepAliveTime= */ 10,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>());
+    // POOL_SIZE must always be 1. We only allow one thread in this Executor. The reason we
+    // specifically use a ScheduledThreadPoolExecutor rather than generating one from Executors is
+    // that it provides the keepAliveTime timeout mechanism, and allows the flush of aggregated
+    // network requests to be scheduled. The thread is shut down once it is idle for more than
+    // keepAliveTime and no task is scheduled.
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(POOL_SIZE);
+    executor.setKeepAliveTime(/* time= */ 10, TimeUnit.SECONDS);
+    executor.allowCoreThreadTimeOut(true);
+    this.executorService = executor;
 
     cacheMap = new ConcurrentHashMap<>();
     cacheMap.put(KEY_AVAILABLE_TRACES_FOR_CACHING, MAX_TRACE_METRICS_CACHE_SIZE);
@@ -162,7 +179,7 @@ public class TransportManager implements AppStateCallback {
       RateLimiter rateLimiter,
       AppStateMonitor appStateMonitor,
       FlgTransport flgTransport,
-      ExecutorService executorService) {
+      ScheduledExecutorService executorService) {
 
     this.firebaseApp = firebaseApp;
     this.projectId = firebaseApp.getOptions().getProjectId();
@@ -175,6 +192,8 @@ public class TransportManager implements AppStateCallback {
     this.appStateMonitor = appStateMonitor;
     this.flgTransport = flgTransport;
     this.executorService = executorService;
+    // Discard the requests aggregated by earlier tests.
+    networkRequestMetricAggregator.flush();
 
     // Re-init the cache, otherwise the cache might get consumed/exhausted after a few tests
     cacheMap.put(KEY_AVAILABLE_TRACES_FOR_CACHING, MAX_TRACE_METRICS_CACHE_SIZE);
@@ -208,6 +227,43 @@ public class TransportManager implements AppStateCallback {
     this.executorService.execute(this::syncInit);
   }
 
+  /**
+   * Sets the application context, which allows the events logged before the TransportManager is
+   * initialized to be stored on disk rather than only in memory. Events stored by an earlier
+   * process that died before initialization are logged once the TransportManager is initialized.
+   *
+   * <p>Should be called as early as possible during the app start.
+   */
+  public void setApplicationContext(@NonNull Context appContext) {
+    // Run in background thread as it accesses the disk
+    executorService.execute(
+        () -> {
+          String processName = getProcessName(appContext);
+          if (processName == null) {
+            // The file can't be told apart from the files of the other processes of the app.
+            return;
+          }
+
+          File file =
+              new File(
+                  appContext.getNoBackupFilesDir(), PENDING_EVENTS_FILE_NAME_PREFIX + processName);
+          if (!ConfigResolver.getInstance().isPerformanceMonitoringEnabled()) {
+            // Don't keep events on disk that would never be dispatched anyway.
+            file.delete();
+            return;
+          }
+
+          // The events are logged with the app info of this process, so only the events stored
+          // by the same version of the app and the SDK are kept.
+          String appVersion = getVersionName(appContext) + "/" + BuildConfig.FIREPERF_VERSION_NAME;
+          pendingEventsStore =
+              new PendingPerfEventStore(file, appVersion, MAX_PENDING_EVENTS_FILE_SIZE_BYTES);
+          if (isInitialized()) {
+            syncLogPendingEvents();
+          }
+        });
+  }
+
   /** To avoid blocking user thread, initialization should be run from executorService thread. */
   @WorkerThread
   private void syncInit() {
@@ -239,14 +295,8 @@ public class TransportManager implements AppStateCallback {
     // Initialize before dispatching pending events
     isTransportInitialized.set(true);
 
-    // Log any pending events which were queued and waiting for the Transport to initialize
-    while (!pendingEventsQueue.isEmpty()) {
-      PendingPerfEvent pendingPerfEvent = pendingEventsQueue.poll();
-      if (pendingPerfEvent != null) {
-        executorService.execute(
-            () -> syncLog(pendingPerfEvent.perfMetricBuilder, pendingPerfEvent.appState));
-      }
-    }
+    // Log any pending events which were stored or queued waiting for the Transport to initialize
+    executorService.execute(this::syncLogPendingEvents);
   }
 
   @Override
@@ -261,6 +311,11 @@ public class TransportManager implements AppStateCallback {
       // Configures a new rate for the Token Bucket rate limiter.
       // TODO(b/172008563): RateLimiter should be self aware of the Application State changes.
       executorService.execute(() -> rateLimiter.changeRate(isForegroundState));
+
+      // Report the aggregated requests before the app may be killed in the background.
+      if (newAppState == ApplicationProcessState.BACKGROUND) {
+        executorService.execute(this::flushAggregatedNetworkRequests);
+      }
     }
   }
 
@@ -362,6 +417,24 @@ public class TransportManager implements AppStateCallback {
 
   // region Transport Private APIs
 
+  /**
+   * Logs the events which were stored or queued while waiting for the Transport to initialize, in
+   * a single task rather than one task per event.
+   */
+  @WorkerThread
+  private void syncLogPendingEvents() {
+    if (pendingEventsStore != null) {
+      for (PendingPerfEvent pendingPerfEvent : pendingEventsStore.drain()) {
+        syncLog(pendingPerfEvent.perfMetricBuilder, pendingPerfEvent.appState);
+      }
+    }
+
+    PendingPerfEvent pendingPerfEvent;
+    while ((pendingPerfEvent = pendingEventsQueue.poll()) != null) {
+      syncLog(pendingPerfEvent.perfMetricBuilder, pendingPerfEvent.appState);
+    }
+  }
+
   @WorkerThread
   private void syncLog(PerfMetric.Builder perfMetricBuilder, ApplicationProcessState appState) {
     if (!isInitialized()) {
@@ -370,12 +443,63 @@ public class TransportManager implements AppStateCallback {
             "Transport is not initialized yet, %s will be queued for to be dispatched later",
             getLogcatMsg(perfMetricBuilder));
 
-        pendingEventsQueue.add(new PendingPerfEvent(perfMetricBuilder, appState));
+        PendingPerfEvent pendingPerfEvent = new PendingPerfEvent(perfMetricBuilder, appState);
+        if (pendingEventsStore == null || !pendingEventsStore.add(pendingPerfEvent)) {
+          pendingEventsQueue.add(pendingPerfEvent);
+        }
       }
 
       return;
     }
 
+    if (perfMetricBuilder.hasNetworkRequestMetric()
+        && configResolver.getIsNetworkRequestAggregationEnabled()) {
+      if (networkRequestMetricAggregator.isWindowElapsed()) {
+        flushAggregatedNetworkRequests();
+      }
+      NetworkRequestMetric networkRequestMetric = perfMetricBuilder.getNetworkRequestMetric();
+      boolean opensWindow = !networkRequestMetricAggregator.isWindowOpen();
+      if (networkRequestMetricAggregator.add(networkRequestMetric, appState)) {
+        if (opensWindow) {
+          scheduleAggregatedNetworkRequestsFlush(networkRequestMetricAggregator.getWindow());
+        }
+        return;
+      }
+    }
+
+    dispatchIfAllowed(perfMetricBuilder, appState);
+  }
+
+  /**
+   * Schedules the summaries of the given window to be logged once it ends, so that they are not
+   * held back until a later request arrives or the app goes to the background.
+   */
+  @WorkerThread
+  private void scheduleAggregatedNetworkRequestsFlush(int window) {
+    executorService.schedule(
+        () -> {
+          // The window may have been flushed already, in which case a later window is not cut
+          // short.
+          if (networkRequestMetricAggregator.getWindow() == window) {
+            flushAggregatedNetworkRequests();
+          }
+        },
+        NETWORK_REQUEST_AGGREGATION_WINDOW_MICROS,
+        MICROSECONDS);
+  }
+
+  /** Logs the summaries of the network requests that were aggregated so far. */
+  @WorkerThread
+  private void flushAggregatedNetworkRequests() {
+    List<PendingPerfEvent> summaries = networkRequestMetricAggregator.flush();
+    for (PendingPerfEvent summary : summaries) {
+      dispatchIfAllowed(summary.perfMetricBuilder, summary.appState);
+    }
+  }
+
+  @WorkerThread
+  private void dispatchIfAllowed(
+      PerfMetric.Builder perfMetricBuilder, ApplicationProcessState appState) {
     PerfMetric perfMetric = setApplicationInfoAndBuild(perfMetricBuilder, appState);
 
     if (isAllowedToDispatch(perfMetric)) {
@@ -493,6 +617,31 @@ public class TransportManager implements AppStateCallback {
     }
   }
 
+  /** Returns the name of the current process, or null if it can't be determined. */
+  @Nullable
+  private static String getProcessName(final Context appContext) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+      return Application.getProcessName();
+    }
+
+    ActivityManager activityManager =
+        (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+    if (activityManager == null) {
+      return null;
+    }
+    List<ActivityManager.RunningAppProcessInfo> appProcesses =
+        activityManager.getRunningAppProcesses();
+    if (appProcesses != null) {
+      int pid = Process.myPid();
+      for (ActivityManager.RunningAppProcessInfo appProcess : appProcesses) {
+        if (appProcess.pid == pid) {
+          return appProcess.processName;
+        }
+      }
+    }
+    return null;
+  }
+
   /**
    * Sets the {@link ApplicationInfo} to the {@code perfMetricBuilder} and generates the {@link
    * PerfMetric}.
@@ -676,6 +825,11 @@ public class TransportManager implements AppStateCallback {
     applicationInfoBuilder.clearAppInstanceId();
   }
 
+  @VisibleForTesting
+  void setPendingEventsStore(@Nullable PendingPerfEventStore pendingEventsStore) {
+    this.pendingEventsStore = pendingEventsStore;
+  }
+
   @VisibleForTesting
   protected ConcurrentLinkedQueue<PendingPerfEvent> getPendingEventsQueue() {
     return new ConcurrentLinkedQueue<>(pendingEventsQueue);
@@ -96,7 +96,10 @@ public class Constants {
     TRACE_STARTED_NOT_STOPPED("_tsns"),
     FRAMES_TOTAL("_fr_tot"),
     FRAMES_SLOW("_fr_slo"),
-    FRAMES_FROZEN("_fr_fzn");
+    FRAMES_FROZEN("_fr_fzn"),
+    FRAMES_DURATION_P50("_fr_p50"),
+    FRAMES_DURATION_P90("_fr_p90"),
+    FRAMES_DURATION_P99("_fr_p99");
 
     private String mName;
 
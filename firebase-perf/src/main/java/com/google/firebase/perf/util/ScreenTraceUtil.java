@@ -23,7 +23,8 @@ public class ScreenTraceUtil {
   private static final AndroidLogger logger = AndroidLogger.getInstance();
 
   /**
-   * Set the metrics of total frames, slow frames, and frozen frames for the given screen trace.
+   * Set the metrics of total frames, slow frames, frozen frames, and the 50th, 90th and 99th
+   * percentile of frame durations (in milliseconds) for the given screen trace.
    *
    * @param screenTrace a screen trace
    * @param perfFrameMetrics frame metrics calculated by {@link
@@ -44,6 +45,12 @@ public class ScreenTraceUtil {
       screenTrace.putMetric(
           Constants.CounterNames.FRAMES_FROZEN.toString(), perfFrameMetrics.getFrozenFrames());
     }
+    putFrameDurationPercentile(
+        screenTrace, Constants.CounterNames.FRAMES_DURATION_P50, perfFrameMetrics, 50);
+    putFrameDurationPercentile(
+        screenTrace, Constants.CounterNames.FRAMES_DURATION_P90, perfFrameMetrics, 90);
+    putFrameDurationPercentile(
+        screenTrace, Constants.CounterNames.FRAMES_DURATION_P99, perfFrameMetrics, 99);
     logger.debug(
         "Screen trace: "
             + screenTrace.getName()
@@ -52,7 +59,25 @@ public class ScreenTraceUtil {
             + " _fr_slo:"
             + perfFrameMetrics.getSlowFrames()
             + " _fr_fzn:"
-            + perfFrameMetrics.getFrozenFrames());
+            + perfFrameMetrics.getFrozenFrames()
+            + " _fr_p50:"
+            + perfFrameMetrics.getFrameDurationPercentileMs(50)
+            + " _fr_p90:"
+            + perfFrameMetrics.getFrameDurationPercentileMs(90)
+            + " _fr_p99:"
+            + perfFrameMetrics.getFrameDurationPercentileMs(99));
     return screenTrace;
   }
+
+  private static void putFrameDurationPercentile(
+      Trace screenTrace,
+      Constants.CounterNames counterName,
+      PerfFrameMetrics perfFrameMetrics,
+      double percentile) {
+    // Only putMetric if the percentile is greater than zero, as it is 0 without frame durations.
+    long frameDurationMs = perfFrameMetrics.getFrameDurationPercentileMs(percentile);
+    if (frameDurationMs > 0) {
+      screenTrace.putMetric(counterName.toString(), frameDurationMs);
+    }
+  }
 }
@@ -174,6 +174,20 @@ public class FrameMetricsRecorderTest extends FirebasePerformanceTestBase {
     assertThat(result.get().getFrozenFrames()).isEqualTo(3);
   }
 
+  @Test
+  public void startAndStopSubTrace_duringActivityRecording_returnsFrameDurationsOfSubTrace() {
+    Fragment fragment = new Fragment();
+    recorder.start();
+    stubFrameMetricsAggregatorData(fma, new int[][] {{1, 1}, {17, 1}});
+    recorder.startFragment(fragment);
+    stubFrameMetricsAggregatorData(fma, new int[][] {{1, 1}, {17, 1}, {20, 4}, {800, 1}});
+    Optional<PerfFrameMetrics> result = recorder.stopFragment(fragment);
+    assertThat(result.isAvailable()).isTrue();
+    // Only the frames of 20ms and 800ms were rendered during the sub-trace.
+    assertThat(result.get().getFrameDurationPercentileMs(50)).isEqualTo(20);
+    assertThat(result.get().getFrameDurationPercentileMs(99)).isEqualTo(700);
+  }
+
   @Test
   public void startAndStopSubTrace_whenTwoSubTracesOverlap_returnsCorrectResults() {
     Fragment fragment1 = new Fragment();
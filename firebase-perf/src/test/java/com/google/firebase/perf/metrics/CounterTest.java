@@ -76,6 +76,25 @@ public class CounterTest {
     assertThat(counter1.getCount()).isEqualTo(3);
   }
 
+  @Test
+  public void testIncrementFromManyThreads() throws Exception {
+    Counter counter1 = new Counter(COUNTER_1);
+    incrementFromThreads(counter1, /* threadCount= */ 8, /* incrementsPerThread= */ 10000);
+
+    assertThat(counter1.getCount()).isEqualTo(80000);
+  }
+
+  @Test
+  public void testSetCountAfterIncrementsFromManyThreads() throws Exception {
+    Counter counter1 = new Counter(COUNTER_1);
+    incrementFromThreads(counter1, /* threadCount= */ 8, /* incrementsPerThread= */ 10000);
+
+    counter1.setCount(5);
+    assertThat(counter1.getCount()).isEqualTo(5);
+    counter1.increment(1);
+    assertThat(counter1.getCount()).isEqualTo(6);
+  }
+
   @Test
   public void testParcel() {
     Counter counter1 = new Counter(COUNTER_1);
@@ -98,4 +117,22 @@ public class CounterTest {
     p1.recycle();
     p2.recycle();
   }
+
+  private static void incrementFromThreads(
+      Counter counter, int threadCount, int incrementsPerThread) throws InterruptedException {
+    Thread[] threads = new Thread[threadCount];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < incrementsPerThread; j++) {
+                  counter.increment(1);
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
 }
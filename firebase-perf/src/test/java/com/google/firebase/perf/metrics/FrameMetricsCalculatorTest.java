@@ -114,4 +114,50 @@ public class FrameMetricsCalculatorTest {
     assertThat(metrics.getSlowFrames()).isEqualTo(0);
     assertThat(metrics.getFrozenFrames()).isEqualTo(0);
   }
+
+  @Test
+  public void calculateFrameMetrics_validSparseIntArray_returnsExactPercentilesOfFastFrames() {
+    // The key value pair means (duration, num_of_samples).
+    SparseIntArray sparseIntArray = new SparseIntArray();
+    sparseIntArray.append(8, 50);
+    sparseIntArray.append(16, 40);
+    sparseIntArray.append(33, 10);
+    SparseIntArray[] arr = new SparseIntArray[1];
+    arr[FrameMetricsAggregator.TOTAL_INDEX] = sparseIntArray;
+
+    FrameMetricsCalculator.PerfFrameMetrics metrics =
+        FrameMetricsCalculator.calculateFrameMetrics(arr);
+
+    assertThat(metrics.getFrameDurationPercentileMs(50)).isEqualTo(8);
+    assertThat(metrics.getFrameDurationPercentileMs(90)).isEqualTo(16);
+    assertThat(metrics.getFrameDurationPercentileMs(99)).isEqualTo(33);
+  }
+
+  @Test
+  public void calculateFrameMetrics_slowFrames_returnsLowerBoundOfPercentileBucket() {
+    // The key value pair means (duration, num_of_samples).
+    SparseIntArray sparseIntArray = new SparseIntArray();
+    sparseIntArray.append(57, 1);
+    sparseIntArray.append(420, 1);
+    sparseIntArray.append(1500, 1);
+    sparseIntArray.append(60000, 1);
+    SparseIntArray[] arr = new SparseIntArray[1];
+    arr[FrameMetricsAggregator.TOTAL_INDEX] = sparseIntArray;
+
+    FrameMetricsCalculator.PerfFrameMetrics metrics =
+        FrameMetricsCalculator.calculateFrameMetrics(arr);
+
+    assertThat(metrics.getFrameDurationPercentileMs(25)).isEqualTo(55);
+    assertThat(metrics.getFrameDurationPercentileMs(50)).isEqualTo(400);
+    assertThat(metrics.getFrameDurationPercentileMs(75)).isEqualTo(1000);
+    assertThat(metrics.getFrameDurationPercentileMs(100)).isEqualTo(5000);
+  }
+
+  @Test
+  public void getFrameDurationPercentileMs_noFrameDurations_returnsZero() {
+    FrameMetricsCalculator.PerfFrameMetrics metrics =
+        new FrameMetricsCalculator.PerfFrameMetrics(10, 2, 1);
+
+    assertThat(metrics.getFrameDurationPercentileMs(50)).isEqualTo(0);
+  }
 }
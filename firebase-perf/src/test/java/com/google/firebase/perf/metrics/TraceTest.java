@@ -270,6 +270,32 @@ public class TraceTest extends FirebasePerformanceTestBase {
     verify(mockTransportManager).log(arguments.capture(), nullable(ApplicationProcessState.class));
   }
 
+  @Test
+  public void testIncrementingCounterFromManyThreads() throws Exception {
+    Trace trace = new Trace(TRACE_1, mockTransportManager, mockClock, mockAppStateMonitor);
+    trace.start();
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 1000; j++) {
+                  trace.incrementMetric(METRIC_1, 1);
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    trace.stop();
+
+    verify(mockTransportManager).log(arguments.capture(), nullable(ApplicationProcessState.class));
+    assertThat(arguments.getValue().getCountersMap()).containsEntry(METRIC_1, 8000L);
+  }
+
   @Test
   public void testIncrementingCounterByNegativeValue() {
     Trace trace = new Trace(TRACE_1, mockTransportManager, mockClock, mockAppStateMonitor);
@@ -130,7 +130,7 @@ public final class CpuGaugeCollectorTest {
     testGaugeCollector.startCollecting(500, new Timer());
     fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
 
-    deleteFakeProcFile();
+    // Rewrite the file in place, like the kernel updates /proc/[pid]/stat.
     createFakeFileToEmulateProcPidStat("200", "200", "400", "400");
     fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
 
@@ -159,7 +159,7 @@ public final class CpuGaugeCollectorTest {
     testGaugeCollector.startCollecting(500, new Timer());
     fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
 
-    deleteFakeProcFile();
+    // Rewrite the file in place, like the kernel updates /proc/[pid]/stat.
     createFakeFileToEmulateProcPidStat("200", "200", "400", "400");
     fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
 
@@ -222,6 +222,34 @@ public final class CpuGaugeCollectorTest {
     assertThat(testGaugeCollector.cpuMetricReadings).hasSize(0);
   }
 
+  @Test
+  public void testCollectingCpuMetricParsesProcFileWithSpacesInProcessName() throws IOException {
+    createFakeFileWithContents(
+        procFileContents("200", "200", "400", "400")
+            .replace("(someversionofprocessname)", "(some (process) name)"));
+
+    testGaugeCollector.startCollecting(500, new Timer());
+    fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
+
+    CpuMetricReading recordedReading = testGaugeCollector.cpuMetricReadings.poll();
+    assertThat(recordedReading.getSystemTimeUs())
+        .isEqualTo(convertClockTicksToMicroseconds(800, fakeClockTicksPerSecond));
+    assertThat(recordedReading.getUserTimeUs())
+        .isEqualTo(convertClockTicksToMicroseconds(400, fakeClockTicksPerSecond));
+  }
+
+  @Test
+  public void testCollectingCpuMetricRecoversAfterProcFileCouldNotBeRead() throws IOException {
+    deleteFakeProcFile();
+    testGaugeCollector.startCollecting(500, new Timer());
+    fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
+    assertThat(testGaugeCollector.cpuMetricReadings).isEmpty();
+
+    createFakeFileToEmulateProcPidStat("200", "200", "400", "400");
+    fakeScheduledExecutorService.simulateSleepExecutingAtMostOneTask();
+    assertThat(testGaugeCollector.cpuMetricReadings).hasSize(1);
+  }
+
   @Test
   public void testCollectCpuMetricContainsApproximatelyCorrectTimestamp() {
     Timer testTimer = new Timer();
@@ -0,0 +1,92 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.session.gauges;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.firebase.perf.v1.AndroidMemoryReading;
+import com.google.firebase.perf.v1.CpuMetricReading;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link GaugeReadingRingBuffer} and its subclasses. */
+@RunWith(RobolectricTestRunner.class)
+public class GaugeReadingRingBufferTest {
+
+  @Test
+  public void testRecordedReadingsArePolledInOrder() {
+    CpuMetricReadingRingBuffer readings = new CpuMetricReadingRingBuffer(/* capacity= */ 4);
+    readings.record(/* clientTimeUs= */ 1, /* userTimeUs= */ 10, /* systemTimeUs= */ 100);
+    readings.record(/* clientTimeUs= */ 2, /* userTimeUs= */ 20, /* systemTimeUs= */ 200);
+
+    assertThat(readings).hasSize(2);
+    assertThat(readings.poll()).isEqualTo(createCpuMetricReading(1, 10, 100));
+    assertThat(readings.poll()).isEqualTo(createCpuMetricReading(2, 20, 200));
+    assertThat(readings.poll()).isNull();
+    assertThat(readings).isEmpty();
+  }
+
+  @Test
+  public void testRecordingIntoFullBufferDropsOldestReading() {
+    MemoryMetricReadingRingBuffer readings = new MemoryMetricReadingRingBuffer(/* capacity= */ 2);
+    readings.record(/* clientTimeUs= */ 1, /* usedAppJavaHeapMemoryKb= */ 10);
+    readings.record(/* clientTimeUs= */ 2, /* usedAppJavaHeapMemoryKb= */ 20);
+    readings.record(/* clientTimeUs= */ 3, /* usedAppJavaHeapMemoryKb= */ 30);
+
+    assertThat(readings)
+        .containsExactly(createAndroidMemoryReading(2, 20), createAndroidMemoryReading(3, 30))
+        .inOrder();
+  }
+
+  @Test
+  public void testAddedReadingsAreStoredInTheBuffer() {
+    CpuMetricReadingRingBuffer readings = new CpuMetricReadingRingBuffer(/* capacity= */ 2);
+    CpuMetricReading reading = createCpuMetricReading(1, 10, 100);
+
+    readings.add(reading);
+
+    assertThat(readings.peek()).isEqualTo(reading);
+    assertThat(readings).hasSize(1);
+  }
+
+  @Test
+  public void testBufferCanBeReusedAfterWrappingAround() {
+    MemoryMetricReadingRingBuffer readings = new MemoryMetricReadingRingBuffer(/* capacity= */ 3);
+    for (int i = 0; i < 10; i++) {
+      readings.record(/* clientTimeUs= */ i, /* usedAppJavaHeapMemoryKb= */ i);
+      assertThat(readings.poll()).isEqualTo(createAndroidMemoryReading(i, i));
+    }
+
+    assertThat(readings).isEmpty();
+  }
+
+  private static CpuMetricReading createCpuMetricReading(
+      long clientTimeUs, long userTimeUs, long systemTimeUs) {
+    return CpuMetricReading.newBuilder()
+        .setClientTimeUs(clientTimeUs)
+        .setUserTimeUs(userTimeUs)
+        .setSystemTimeUs(systemTimeUs)
+        .build();
+  }
+
+  private static AndroidMemoryReading createAndroidMemoryReading(
+      long clientTimeUs, int usedAppJavaHeapMemoryKb) {
+    return AndroidMemoryReading.newBuilder()
+        .setClientTimeUs(clientTimeUs)
+        .setUsedAppJavaHeapMemoryKb(usedAppJavaHeapMemoryKb)
+        .build();
+  }
+}
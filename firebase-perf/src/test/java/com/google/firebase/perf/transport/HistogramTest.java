@@ -0,0 +1,135 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+//
+// You may obtain a copy of the License at
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link Histogram}. */
+@RunWith(RobolectricTestRunner.class)
+public class HistogramTest {
+
+  @Test
+  public void testEmptyHistogram() {
+    Histogram histogram = new Histogram();
+
+    assertThat(histogram.getCount()).isEqualTo(0);
+    assertThat(histogram.getMax()).isEqualTo(0);
+    assertThat(histogram.getPercentile(50)).isEqualTo(0);
+  }
+
+  @Test
+  public void testSingleValueIsExact() {
+    Histogram histogram = new Histogram();
+    histogram.record(12345);
+
+    assertThat(histogram.getCount()).isEqualTo(1);
+    assertThat(histogram.getPercentile(50)).isEqualTo(12345);
+    assertThat(histogram.getPercentile(99)).isEqualTo(12345);
+    assertThat(histogram.getMax()).isEqualTo(12345);
+  }
+
+  @Test
+  public void testPercentilesAreWithinBucketPrecision() {
+    Histogram histogram = new Histogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(1000);
+    assertThat(histogram.getMax()).isEqualTo(1_000_000);
+    assertThat((double) histogram.getPercentile(50)).isWithin(500_000 * 0.125).of(500_000);
+    assertThat((double) histogram.getPercentile(95)).isWithin(950_000 * 0.125).of(950_000);
+    assertThat((double) histogram.getPercentile(99)).isWithin(990_000 * 0.125).of(990_000);
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    Histogram histogram = new Histogram();
+    for (long i = 0; i < 8; i++) {
+      histogram.record(i);
+    }
+
+    assertThat(histogram.getPercentile(25)).isEqualTo(1);
+    assertThat(histogram.getPercentile(50)).isEqualTo(3);
+    assertThat(histogram.getPercentile(100)).isEqualTo(7);
+  }
+
+  @Test
+  public void testNegativeValueIsRecordedAsZero() {
+    Histogram histogram = new Histogram();
+    histogram.record(-5);
+
+    assertThat(histogram.getCount()).isEqualTo(1);
+    assertThat(histogram.getPercentile(50)).isEqualTo(0);
+  }
+
+  @Test
+  public void testMerge() {
+    Histogram histogram1 = new Histogram();
+    Histogram histogram2 = new Histogram();
+    for (long i = 1; i <= 50; i++) {
+      histogram1.record(i);
+      histogram2.record(i + 50);
+    }
+
+    histogram1.merge(histogram2);
+
+    assertThat(histogram1.getCount()).isEqualTo(100);
+    assertThat(histogram1.getMax()).isEqualTo(100);
+    assertThat((double) histogram1.getPercentile(50)).isWithin(50 * 0.125).of(50);
+    assertThat(histogram2.getCount()).isEqualTo(50);
+  }
+
+  @Test
+  public void testRecordFromManyThreads() throws Exception {
+    Histogram histogram = new Histogram();
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      long value = (i + 1) * 100;
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 1000; j++) {
+                  histogram.record(value);
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(8000);
+    assertThat(histogram.getMax()).isEqualTo(800);
+  }
+
+  @Test
+  public void testLargestValues() {
+    Histogram histogram = new Histogram();
+    histogram.record(1L << 62);
+    histogram.record(Long.MAX_VALUE);
+
+    assertThat(histogram.getCount()).isEqualTo(2);
+    assertThat(histogram.getPercentile(50)).isAtLeast(1L << 62);
+    // The middle of the last bucket, which starts at 15 * 2^59.
+    assertThat(histogram.getPercentile(100)).isAtLeast(15L << 59);
+    assertThat(histogram.getMax()).isEqualTo(Long.MAX_VALUE);
+  }
+}
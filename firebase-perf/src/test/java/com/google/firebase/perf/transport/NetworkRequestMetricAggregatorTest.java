@@ -0,0 +1,202 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.google.firebase.perf.util.Clock;
+import com.google.firebase.perf.util.Timer;
+import com.google.firebase.perf.v1.ApplicationProcessState;
+import com.google.firebase.perf.v1.NetworkRequestMetric;
+import com.google.firebase.perf.v1.NetworkRequestMetric.HttpMethod;
+import com.google.firebase.perf.v1.PerfSession;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link NetworkRequestMetricAggregator}. */
+@RunWith(RobolectricTestRunner.class)
+public class NetworkRequestMetricAggregatorTest {
+
+  private static final long WINDOW_MICROS = MINUTES.toMicros(1);
+  private static final ApplicationProcessState FOREGROUND = ApplicationProcessState.FOREGROUND;
+  private static final ApplicationProcessState BACKGROUND = ApplicationProcessState.BACKGROUND;
+
+  @Mock private Clock mockClock;
+
+  private long currentTime;
+  private NetworkRequestMetricAggregator aggregator;
+
+  @Before
+  public void setUp() {
+    currentTime = 1;
+    initMocks(this);
+    doAnswer((Answer<Timer>) invocationOnMock -> new Timer(currentTime)).when(mockClock).getTime();
+    aggregator = new NetworkRequestMetricAggregator(mockClock, WINDOW_MICROS);
+  }
+
+  @Test
+  public void add_requestsOfSameBucket_flushesOneSummary() {
+    assertThat(aggregator.add(createRequest("https://a.com/users/1", 200, 100), FOREGROUND))
+        .isTrue();
+    assertThat(aggregator.add(createRequest("https://a.com/users/2", 200, 300), FOREGROUND))
+        .isTrue();
+    assertThat(aggregator.add(createRequest("https://a.com/users/3", 200, 200), FOREGROUND))
+        .isTrue();
+
+    List<PendingPerfEvent> summaries = aggregator.flush();
+
+    assertThat(summaries).hasSize(1);
+    assertThat(summaries.get(0).appState).isEqualTo(FOREGROUND);
+    NetworkRequestMetric summary = summaries.get(0).perfMetricBuilder.getNetworkRequestMetric();
+    assertThat(summary.getUrl()).isEqualTo("https://a.com/users/*");
+    assertThat(summary.getHttpMethod()).isEqualTo(HttpMethod.GET);
+    assertThat(summary.getHttpResponseCode()).isEqualTo(200);
+    assertThat(summary.getTimeToResponseCompletedUs()).isEqualTo(200);
+    assertThat(summary.getCustomAttributesMap())
+        .containsEntry(NetworkRequestMetricAggregator.ATTRIBUTE_COUNT, "3");
+    assertThat(summary.getCustomAttributesMap())
+        .containsEntry(NetworkRequestMetricAggregator.ATTRIBUTE_MAX_US, "300");
+  }
+
+  @Test
+  public void add_requestsWithDifferentResponseCodes_flushesOneSummaryPerCode() {
+    aggregator.add(createRequest("https://a.com/users", 200, 100), FOREGROUND);
+    aggregator.add(createRequest("https://a.com/users", 404, 100), FOREGROUND);
+    aggregator.add(createRequest("https://a.com/users", 200, 100), BACKGROUND);
+
+    assertThat(aggregator.flush()).hasSize(3);
+  }
+
+  @Test
+  public void add_requestsWithPayloadsAndSessions_averagesPayloadsAndDeduplicatesSessions() {
+    aggregator.add(
+        createRequest("https://a.com", 200, 100).toBuilder()
+            .setClientStartTimeUs(20)
+            .setResponsePayloadBytes(10)
+            .addPerfSessions(PerfSession.newBuilder().setSessionId("session"))
+            .build(),
+        FOREGROUND);
+    aggregator.add(
+        createRequest("https://a.com", 200, 100).toBuilder()
+            .setClientStartTimeUs(10)
+            .setResponsePayloadBytes(30)
+            .addPerfSessions(PerfSession.newBuilder().setSessionId("session"))
+            .build(),
+        FOREGROUND);
+
+    NetworkRequestMetric summary =
+        aggregator.flush().get(0).perfMetricBuilder.getNetworkRequestMetric();
+
+    assertThat(summary.getClientStartTimeUs()).isEqualTo(10);
+    assertThat(summary.getResponsePayloadBytes()).isEqualTo(20);
+    assertThat(summary.hasRequestPayloadBytes()).isFalse();
+    assertThat(summary.getPerfSessionsCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_requestWithoutResponseCode_isNotAggregated() {
+    NetworkRequestMetric request =
+        createRequest("https://a.com", 200, 100).toBuilder().clearHttpResponseCode().build();
+
+    assertThat(aggregator.add(request, FOREGROUND)).isFalse();
+    assertThat(aggregator.flush()).isEmpty();
+  }
+
+  @Test
+  public void add_requestWithCustomAttributes_isNotAggregated() {
+    NetworkRequestMetric request =
+        createRequest("https://a.com", 200, 100).toBuilder()
+            .putCustomAttributes("key", "value")
+            .build();
+
+    assertThat(aggregator.add(request, FOREGROUND)).isFalse();
+    assertThat(aggregator.flush()).isEmpty();
+  }
+
+  @Test
+  public void add_moreBucketsThanAllowed_doesNotAggregateNewBuckets() {
+    for (int i = 0; i < 100; i++) {
+      assertThat(aggregator.add(createRequest("https://a.com/" + i, 200, 100), FOREGROUND))
+          .isTrue();
+    }
+
+    assertThat(aggregator.add(createRequest("https://b.com", 200, 100), FOREGROUND)).isFalse();
+    assertThat(aggregator.add(createRequest("https://a.com/1", 200, 100), FOREGROUND)).isTrue();
+  }
+
+  @Test
+  public void isWindowElapsed_isTrueOnlyAfterWindowSinceFirstRequest() {
+    assertThat(aggregator.isWindowElapsed()).isFalse();
+
+    currentTime += WINDOW_MICROS;
+    aggregator.add(createRequest("https://a.com", 200, 100), FOREGROUND);
+    assertThat(aggregator.isWindowElapsed()).isFalse();
+
+    currentTime += WINDOW_MICROS - 1;
+    assertThat(aggregator.isWindowElapsed()).isFalse();
+
+    currentTime += 1;
+    assertThat(aggregator.isWindowElapsed()).isTrue();
+
+    aggregator.flush();
+    assertThat(aggregator.isWindowElapsed()).isFalse();
+  }
+
+  @Test
+  public void isWindowOpen_isTrueFromFirstRequestUntilFlush() {
+    int window = aggregator.getWindow();
+    assertThat(aggregator.isWindowOpen()).isFalse();
+
+    aggregator.add(createRequest("https://a.com", 200, 100), FOREGROUND);
+    assertThat(aggregator.isWindowOpen()).isTrue();
+    assertThat(aggregator.getWindow()).isEqualTo(window);
+
+    aggregator.flush();
+    assertThat(aggregator.isWindowOpen()).isFalse();
+    assertThat(aggregator.getWindow()).isNotEqualTo(window);
+  }
+
+  @Test
+  public void getUrlPattern_replacesIdentifiersWithWildcards() {
+    assertThat(NetworkRequestMetricAggregator.getUrlPattern("https://a.com/users/123/posts"))
+        .isEqualTo("https://a.com/users/*/posts");
+    assertThat(
+            NetworkRequestMetricAggregator.getUrlPattern(
+                "https://a.com/items/123e4567-e89b-12d3-a456-426614174000"))
+        .isEqualTo("https://a.com/items/*");
+    assertThat(NetworkRequestMetricAggregator.getUrlPattern("https://a.com/v1/deadbeef"))
+        .isEqualTo("https://a.com/v1/deadbeef");
+    assertThat(NetworkRequestMetricAggregator.getUrlPattern("notAUrl")).isEqualTo("notAUrl");
+  }
+
+  private static NetworkRequestMetric createRequest(
+      String url, int httpResponseCode, long timeToResponseCompletedUs) {
+    return NetworkRequestMetric.newBuilder()
+        .setUrl(url)
+        .setHttpMethod(HttpMethod.GET)
+        .setHttpResponseCode(httpResponseCode)
+        .setClientStartTimeUs(100L)
+        .setTimeToResponseCompletedUs(timeToResponseCompletedUs)
+        .build();
+  }
+}
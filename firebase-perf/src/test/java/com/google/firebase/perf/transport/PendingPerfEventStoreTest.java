@@ -0,0 +1,159 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.perf.transport;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.perf.v1.ApplicationProcessState;
+import com.google.firebase.perf.v1.NetworkRequestMetric;
+import com.google.firebase.perf.v1.NetworkRequestMetric.HttpMethod;
+import com.google.firebase.perf.v1.PerfMetric;
+import com.google.firebase.perf.v1.TraceMetric;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/** Unit tests for {@link PendingPerfEventStore}. */
+@RunWith(RobolectricTestRunner.class)
+public class PendingPerfEventStoreTest {
+
+  private static final String APP_VERSION = "1.0/21.0.1";
+
+  private File file;
+
+  @Before
+  public void setUp() {
+    Context context = ApplicationProvider.getApplicationContext();
+    file = new File(context.getCacheDir(), "pending_events");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testStoredEventsAreDrainedInOrder() {
+    PendingPerfEventStore store =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 1024);
+    PerfMetric.Builder trace = createTrace("trace");
+    PerfMetric.Builder networkRequest = createNetworkRequest("https://www.google.com");
+
+    assertThat(store.add(new PendingPerfEvent(trace, ApplicationProcessState.FOREGROUND)))
+        .isTrue();
+    assertThat(store.add(new PendingPerfEvent(networkRequest, ApplicationProcessState.BACKGROUND)))
+        .isTrue();
+
+    // Reads the events with a new store, as if the process had restarted.
+    List<PendingPerfEvent> pendingPerfEvents =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 1024).drain();
+
+    assertThat(pendingPerfEvents).hasSize(2);
+    assertThat(pendingPerfEvents.get(0).perfMetricBuilder.build()).isEqualTo(trace.build());
+    assertThat(pendingPerfEvents.get(0).appState).isEqualTo(ApplicationProcessState.FOREGROUND);
+    assertThat(pendingPerfEvents.get(1).perfMetricBuilder.build())
+        .isEqualTo(networkRequest.build());
+    assertThat(pendingPerfEvents.get(1).appState).isEqualTo(ApplicationProcessState.BACKGROUND);
+  }
+
+  @Test
+  public void testDrainDeletesTheFile() {
+    PendingPerfEventStore store =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 1024);
+    store.add(new PendingPerfEvent(createTrace("trace"), ApplicationProcessState.FOREGROUND));
+
+    assertThat(store.drain()).hasSize(1);
+    assertThat(file.exists()).isFalse();
+    assertThat(store.drain()).isEmpty();
+  }
+
+  @Test
+  public void testEventIsNotStoredWhenFileIsFull() {
+    PendingPerfEventStore store =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 64);
+
+    assertThat(
+            store.add(
+                new PendingPerfEvent(createTrace("trace1"), ApplicationProcessState.FOREGROUND)))
+        .isTrue();
+    assertThat(
+            store.add(
+                new PendingPerfEvent(
+                    createTrace("a_trace_with_a_name_long_enough_to_fill_the_file"),
+                    ApplicationProcessState.FOREGROUND)))
+        .isFalse();
+
+    assertThat(store.drain()).hasSize(1);
+  }
+
+  @Test
+  public void testEventsStoredByAnotherVersionAreDropped() {
+    new PendingPerfEventStore(file, "0.9/21.0.1", /* maxSizeBytes= */ 1024)
+        .add(new PendingPerfEvent(createTrace("trace"), ApplicationProcessState.FOREGROUND));
+
+    PendingPerfEventStore store =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 1024);
+
+    assertThat(store.drain()).isEmpty();
+    assertThat(file.exists()).isFalse();
+  }
+
+  @Test
+  public void testPartiallyWrittenEventIsIgnored() throws IOException {
+    PendingPerfEventStore store =
+        new PendingPerfEventStore(file, APP_VERSION, /* maxSizeBytes= */ 1024);
+    store.add(new PendingPerfEvent(createTrace("trace"), ApplicationProcessState.FOREGROUND));
+    try (FileOutputStream out = new FileOutputStream(file, /* append= */ true)) {
+      // The app state and part of the length of an event.
+      out.write(new byte[] {0, 0, 0, 1, 0, 0});
+    }
+
+    List<PendingPerfEvent> pendingPerfEvents = store.drain();
+
+    assertThat(pendingPerfEvents).hasSize(1);
+    assertThat(pendingPerfEvents.get(0).perfMetricBuilder.getTraceMetric().getName())
+        .isEqualTo("trace");
+    assertThat(file.exists()).isFalse();
+  }
+
+  private static PerfMetric.Builder createTrace(String name) {
+    return PerfMetric.newBuilder()
+        .setTraceMetric(
+            TraceMetric.newBuilder()
+                .setName(name)
+                .setClientStartTimeUs(1000)
+                .setDurationUs(2000)
+                .putCounters("counter", 3));
+  }
+
+  private static PerfMetric.Builder createNetworkRequest(String url) {
+    return PerfMetric.newBuilder()
+        .setNetworkRequestMetric(
+            NetworkRequestMetric.newBuilder()
+                .setUrl(url)
+                .setHttpMethod(HttpMethod.GET)
+                .setHttpResponseCode(200)
+                .setClientStartTimeUs(1000)
+                .setTimeToResponseCompletedUs(2000));
+  }
+}
@@ -54,6 +54,7 @@ import com.google.firebase.perf.v1.PerfMetric;
 import com.google.firebase.perf.v1.PerfSession;
 import com.google.firebase.perf.v1.TraceMetric;
 import com.google.testing.timing.FakeScheduledExecutorService;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -104,6 +105,8 @@ public class TransportManagerTest extends FirebasePerformanceTestBase {
 
   @After
   public void tearDown() {
+    testTransportManager.setPendingEventsStore(null);
+    getPendingEventsFile().delete();
     reset(mockFirebaseInstallationsApi);
     FirebaseApp.clearInstancesForTest();
   }
@@ -1390,6 +1393,142 @@ public class TransportManagerTest extends FirebasePerformanceTestBase {
 
   // endregion
 
+  // region Network Request Aggregation
+
+  @Test
+  public void validNetworkMetrics_aggregationDisabled_areLoggedOneByOne() {
+    when(mockConfigResolver.getIsNetworkRequestAggregationEnabled()).thenReturn(false);
+
+    testTransportManager.log(createValidNetworkRequestMetric());
+    testTransportManager.log(createValidNetworkRequestMetric());
+    fakeExecutorService.runAll();
+
+    verify(mockFlgTransport, times(2)).log(ArgumentMatchers.any());
+  }
+
+  @Test
+  public void validNetworkMetrics_aggregationEnabled_areLoggedAsOneSummaryInBackground() {
+    when(mockConfigResolver.getIsNetworkRequestAggregationEnabled()).thenReturn(true);
+
+    testTransportManager.log(createValidNetworkRequestMetric());
+    testTransportManager.log(createValidNetworkRequestMetric());
+    testTransportManager.log(createValidNetworkRequestMetric());
+    fakeExecutorService.runAll();
+    assertThat(getLastLoggedEvent(never())).isNull();
+
+    testTransportManager.onUpdateAppState(ApplicationProcessState.BACKGROUND);
+    fakeExecutorService.runAll();
+
+    PerfMetric loggedPerfMetric = getLastLoggedEvent(times(1));
+    assertThat(loggedPerfMetric.getNetworkRequestMetric().getUrl())
+        .isEqualTo(createValidNetworkRequestMetric().getUrl());
+    assertThat(loggedPerfMetric.getNetworkRequestMetric().getCustomAttributesMap())
+        .containsEntry(NetworkRequestMetricAggregator.ATTRIBUTE_COUNT, "3");
+  }
+
+  @Test
+  public void validNetworkMetrics_aggregationEnabled_areLoggedAsOneSummaryAfterWindow() {
+    when(mockConfigResolver.getIsNetworkRequestAggregationEnabled()).thenReturn(true);
+
+    testTransportManager.log(createValidNetworkRequestMetric());
+    testTransportManager.log(createValidNetworkRequestMetric());
+    fakeExecutorService.runAll();
+    assertThat(getLastLoggedEvent(never())).isNull();
+
+    // Runs the flush that was scheduled when the window opened.
+    fakeExecutorService.simulateSleepExecutingAtMostOneTask();
+
+    PerfMetric loggedPerfMetric = getLastLoggedEvent(times(1));
+    assertThat(loggedPerfMetric.getNetworkRequestMetric().getCustomAttributesMap())
+        .containsEntry(NetworkRequestMetricAggregator.ATTRIBUTE_COUNT, "2");
+  }
+
+  @Test
+  public void validNetworkMetrics_windowFlushedInBackground_scheduledFlushDoesNotCutNextWindow() {
+    when(mockConfigResolver.getIsNetworkRequestAggregationEnabled()).thenReturn(true);
+
+    testTransportManager.log(createValidNetworkRequestMetric());
+    fakeExecutorService.runAll();
+    testTransportManager.onUpdateAppState(ApplicationProcessState.BACKGROUND);
+    fakeExecutorService.runAll();
+    getLastLoggedEvent(times(1));
+    clearLastLoggedEvents();
+
+    testTransportManager.log(createValidNetworkRequestMetric());
+    fakeExecutorService.runAll();
+
+    // Runs the flush that was scheduled for the first window.
+    fakeExecutorService.simulateSleepExecutingAtMostOneTask();
+    assertThat(getLastLoggedEvent(never())).isNull();
+  }
+
+  // endregion
+
+  // region Pending Events Store
+
+  @Test
+  public void validTraceMetric_transportNotInitialized_isStoredAndLoggedAfterInitialization() {
+    initializeTransport(false);
+    testTransportManager.setPendingEventsStore(
+        new PendingPerfEventStore(getPendingEventsFile(), "version", /* maxSizeBytes= */ 1024));
+    TraceMetric validTrace = createValidTraceMetric();
+    testTransportManager.log(validTrace, ApplicationProcessState.BACKGROUND);
+
+    fakeExecutorService.runAll();
+    assertThat(getLastLoggedEvent(never())).isNull();
+    assertThat(testTransportManager.getPendingEventsQueue().isEmpty()).isTrue();
+    assertThat(getPendingEventsFile().exists()).isTrue();
+
+    initializeTransport(true);
+    fakeExecutorService.runAll();
+
+    PerfMetric loggedPerfMetric = getLastLoggedEvent(times(1));
+    assertThat(loggedPerfMetric.getTraceMetric()).isEqualTo(validTrace);
+    validateApplicationInfo(loggedPerfMetric, ApplicationProcessState.BACKGROUND);
+    assertThat(getPendingEventsFile().exists()).isFalse();
+  }
+
+  @Test
+  public void validTraceMetric_storedByEarlierProcess_isLoggedAfterInitialization() {
+    TraceMetric validTrace = createValidTraceMetric();
+    new PendingPerfEventStore(getPendingEventsFile(), "version", /* maxSizeBytes= */ 1024)
+        .add(
+            new PendingPerfEvent(
+                PerfMetric.newBuilder().setTraceMetric(validTrace),
+                ApplicationProcessState.FOREGROUND));
+
+    initializeTransport(false);
+    testTransportManager.setPendingEventsStore(
+        new PendingPerfEventStore(getPendingEventsFile(), "version", /* maxSizeBytes= */ 1024));
+    initializeTransport(true);
+    fakeExecutorService.runAll();
+
+    PerfMetric loggedPerfMetric = getLastLoggedEvent(times(1));
+    assertThat(loggedPerfMetric.getTraceMetric()).isEqualTo(validTrace);
+    validateApplicationInfo(loggedPerfMetric, ApplicationProcessState.FOREGROUND);
+    assertThat(getPendingEventsFile().exists()).isFalse();
+  }
+
+  @Test
+  public void validTraceMetric_pendingEventsFileIsFull_isQueuedInMemory() {
+    initializeTransport(false);
+    testTransportManager.setPendingEventsStore(
+        new PendingPerfEventStore(getPendingEventsFile(), "version", /* maxSizeBytes= */ 0));
+    testTransportManager.log(createValidTraceMetric());
+
+    fakeExecutorService.runAll();
+    assertThat(testTransportManager.getPendingEventsQueue().size()).isEqualTo(1);
+    assertThat(getPendingEventsFile().exists()).isFalse();
+
+    initializeTransport(true);
+    fakeExecutorService.runAll();
+
+    assertThat(getLastLoggedEvent(times(1)).getTraceMetric()).isEqualTo(createValidTraceMetric());
+    assertThat(testTransportManager.getPendingEventsQueue().isEmpty()).isTrue();
+  }
+
+  // endregion
+
   // region Helper Methods
 
   private void initializeTransport(boolean shouldInitialize) {
@@ -1425,6 +1564,11 @@ public class TransportManagerTest extends FirebasePerformanceTestBase {
     }
   }
 
+  private static File getPendingEventsFile() {
+    Context context = ApplicationProvider.getApplicationContext();
+    return new File(context.getCacheDir(), "pending_events");
+  }
+
   private void clearInstallationsIdFromCache() {
     testTransportManager.clearAppInstanceId();
   }
@@ -69,8 +69,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 final class CctTransportBackend implements TransportBackend {
 
@@ -82,6 +83,7 @@ final class CctTransportBackend implements TransportBackend {
   private static final String ACCEPT_ENCODING_HEADER_KEY = "Accept-Encoding";
   private static final String CONTENT_ENCODING_HEADER_KEY = "Content-Encoding";
   private static final String GZIP_CONTENT_ENCODING = "gzip";
+  private static final int GZIP_BUFFER_SIZE = 8192;
   private static final String CONTENT_TYPE_HEADER_KEY = "Content-Type";
   static final String API_KEY_HEADER_KEY = "X-Goog-Api-Key";
   private static final String COOKIE_HEADER_KEY = "Cookie";
@@ -106,6 +108,9 @@ final class CctTransportBackend implements TransportBackend {
 
   private final DataEncoder dataEncoder = BatchedLogRequest.createDataEncoder();
 
+  /** A deflater that is reused by subsequent requests, to avoid reallocating its native state. */
+  private final AtomicReference<Deflater> idleDeflater = new AtomicReference<>();
+
   private final ConnectivityManager connectivityManager;
   private final Context applicationContext;
   final URL endPoint;
@@ -345,8 +350,14 @@ final class CctTransportBackend implements TransportBackend {
       connection.setRequestProperty(API_KEY_HEADER_KEY, request.apiKey);
     }
 
+    // Stream the compressed body as it is encoded. Without a streaming mode HttpURLConnection
+    // buffers the whole body in memory to compute its Content-Length. The events of the request,
+    // including their payloads, are still held in memory while they are encoded.
+    connection.setChunkedStreamingMode(0);
+
+    Deflater deflater = obtainDeflater();
     try (OutputStream conn = connection.getOutputStream();
-        OutputStream outputStream = new GZIPOutputStream(conn)) {
+        OutputStream outputStream = new GzipOutputStream(conn, deflater, GZIP_BUFFER_SIZE)) {
       // note: it's very important to use a BufferedWriter for efficient use of resources as the
       // JsonWriter often writes one character at a time.
       dataEncoder.encode(
@@ -357,6 +368,8 @@ final class CctTransportBackend implements TransportBackend {
     } catch (EncodingException | IOException e) {
       Logging.e(LOG_TAG, "Couldn't encode request, returning with 400", e);
       return new HttpResponse(400, null, 0);
+    } finally {
+      recycleDeflater(deflater);
     }
 
     int responseCode = connection.getResponseCode();
@@ -382,6 +395,21 @@ final class CctTransportBackend implements TransportBackend {
     }
   }
 
+  private Deflater obtainDeflater() {
+    Deflater deflater = idleDeflater.getAndSet(null);
+    if (deflater == null) {
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, /* nowrap= */ true);
+    }
+    return deflater;
+  }
+
+  private void recycleDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!idleDeflater.compareAndSet(null, deflater)) {
+      deflater.end();
+    }
+  }
+
   private static InputStream maybeUnGzip(InputStream input, String contentEncoding)
       throws IOException {
     if (GZIP_CONTENT_ENCODING.equals(contentEncoding)) {
@@ -0,0 +1,67 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.cct;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes gzip compressed data using a caller-provided {@link Deflater}.
+ *
+ * <p>Unlike {@link java.util.zip.GZIPOutputStream}, which allocates (and frees) a native deflater
+ * for every stream, this allows the deflater to be reused across requests. The deflater must use
+ * the {@code nowrap} mode, is not ended when the stream is closed and must be {@link
+ * Deflater#reset() reset} before it is reused.
+ */
+final class GzipOutputStream extends DeflaterOutputStream {
+  private static final byte[] HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0,
+  };
+
+  private final CRC32 crc = new CRC32();
+  private boolean finished;
+
+  GzipOutputStream(OutputStream out, Deflater deflater, int bufferSize) throws IOException {
+    super(out, deflater, bufferSize);
+    out.write(HEADER);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    super.write(b, off, len);
+    crc.update(b, off, len);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    super.finish();
+    writeIntLe((int) crc.getValue());
+    writeIntLe((int) def.getBytesRead());
+    finished = true;
+  }
+
+  private void writeIntLe(int value) throws IOException {
+    out.write(value);
+    out.write(value >> 8);
+    out.write(value >> 16);
+    out.write(value >> 24);
+  }
+}
@@ -48,9 +48,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 import java.util.zip.GZIPOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
@@ -812,6 +815,47 @@ public class CctTransportBackendTest {
     verify(postRequestedFor(urlEqualTo("/api")).withoutHeader("Cookie"));
   }
 
+  @Test
+  public void send_withLargeBatch_shouldStreamCompressedBody() {
+    List<EventInternal> events = new ArrayList<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      byte[] payload = new byte[4096];
+      random.nextBytes(payload);
+      events.add(
+          BACKEND.decorate(
+              EventInternal.builder()
+                  .setEventMillis(INITIAL_WALL_TIME)
+                  .setUptimeMillis(INITIAL_UPTIME)
+                  .setTransportName(CCT_TRANSPORT_NAME)
+                  .setEncodedPayload(new EncodedPayload(PROTOBUF_ENCODING, payload))
+                  .build()));
+    }
+    BackendRequest request =
+        BackendRequest.builder()
+            .setEvents(events)
+            .setExtras(new CCTDestination(TEST_ENDPOINT, null).getExtras())
+            .build();
+
+    stubFor(
+        post(urlEqualTo("/api"))
+            .willReturn(aResponse().withStatus(200).withBody("{\"nextRequestWaitMillis\":3}")));
+    wallClock.tick();
+    uptimeClock.tick();
+
+    // The second request reuses the deflater of the first one.
+    assertEquals(BackendResponse.ok(3), BACKEND.send(request));
+    assertEquals(BackendResponse.ok(3), BACKEND.send(request));
+
+    verify(
+        2,
+        postRequestedFor(urlEqualTo("/api"))
+            .withHeader("Content-Encoding", equalTo("gzip"))
+            .withHeader("Transfer-Encoding", equalTo("chunked"))
+            .withoutHeader("Content-Length")
+            .withRequestBody(matchingJsonPath("$[?(@.logRequest[0].logEvent.size() == 200)]")));
+  }
+
   // When there is no active network, the ConnectivityManager returns null when
   // getActiveNetworkInfo() is called.
   @Implements(ConnectivityManager.class)
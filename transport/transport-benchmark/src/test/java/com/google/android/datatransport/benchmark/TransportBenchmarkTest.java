@@ -0,0 +1,47 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.benchmark;
+
+import com.google.android.datatransport.cct.CctUploadBenchmark;
+import com.google.android.datatransport.runtime.firebase.transport.ClientMetricsEncodingBenchmark;
+import com.google.android.datatransport.runtime.scheduling.persistence.EventStoreBenchmark;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Runs the transport benchmarks on Robolectric, which provides the application context and SQLite
+ * that the event store and the CCT backend need.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TransportBenchmarkTest {
+
+  @Test
+  public void runTransportBenchmarks() throws Exception {
+    new Runner(
+            new OptionsBuilder()
+                .include(EventStoreBenchmark.class.getName())
+                .include(CctUploadBenchmark.class.getName())
+                .include(ClientMetricsEncodingBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                // The benchmarks run in the test JVM, whose classpath a forked JVM can't rebuild.
+                .forks(0)
+                .build())
+        .run();
+  }
+}
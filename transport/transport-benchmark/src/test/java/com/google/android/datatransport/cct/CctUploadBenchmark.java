@@ -0,0 +1,164 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.cct;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.android.datatransport.Encoding;
+import com.google.android.datatransport.cct.internal.BatchedLogRequest;
+import com.google.android.datatransport.cct.internal.LogEvent;
+import com.google.android.datatransport.cct.internal.LogRequest;
+import com.google.android.datatransport.runtime.EncodedPayload;
+import com.google.android.datatransport.runtime.EventInternal;
+import com.google.android.datatransport.runtime.backends.BackendRequest;
+import com.google.android.datatransport.runtime.backends.BackendResponse;
+import com.google.android.datatransport.runtime.time.TestClock;
+import com.google.firebase.encoders.DataEncoder;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding {@link CctTransportBackend} requests, and uploading them to a local WireMock
+ * stand-in of the CCT endpoint, per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CctUploadBenchmark {
+  private static final int EVENTS_PER_REQUEST = 50;
+
+  @Param({"100", "10240", "102400"})
+  public int payloadSize;
+
+  private final WireMockServer server =
+      new WireMockServer(options().dynamicPort().disableRequestJournal());
+  private final Writer discardingWriter = new DiscardingWriter();
+  private CctTransportBackend backend;
+  private BackendRequest backendRequest;
+  private BatchedLogRequest batchedLogRequest;
+  private DataEncoder encoder;
+
+  @Setup
+  public void setUp() {
+    server.start();
+    server.stubFor(
+        post(urlEqualTo("/api"))
+            .willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withHeader("Content-Type", "application/json;charset=UTF8;hello=world")
+                    .withBody("{\"nextRequestWaitMillis\":0}")));
+
+    byte[] payload = new byte[payloadSize];
+    new Random(payloadSize).nextBytes(payload);
+
+    backend =
+        new CctTransportBackend(
+            ApplicationProvider.getApplicationContext(), new TestClock(1), new TestClock(2));
+    List<EventInternal> events = new ArrayList<>();
+    for (int i = 0; i < EVENTS_PER_REQUEST; i++) {
+      events.add(
+          backend.decorate(
+              EventInternal.builder()
+                  .setEventMillis(1)
+                  .setUptimeMillis(2)
+                  .setTransportName("3")
+                  .setEncodedPayload(new EncodedPayload(Encoding.of("proto"), payload))
+                  .build()));
+    }
+    backendRequest =
+        BackendRequest.builder()
+            .setEvents(events)
+            .setExtras(
+                new CCTDestination("http://localhost:" + server.port() + "/api", null)
+                    .getExtras())
+            .build();
+
+    List<LogEvent> logEvents = new ArrayList<>();
+    for (int i = 0; i < EVENTS_PER_REQUEST; i++) {
+      logEvents.add(
+          LogEvent.protoBuilder(payload)
+              .setEventTimeMs(1)
+              .setEventUptimeMs(2)
+              .setTimezoneOffsetSeconds(3)
+              .build());
+    }
+    batchedLogRequest =
+        BatchedLogRequest.create(
+            Collections.singletonList(
+                LogRequest.builder()
+                    .setRequestTimeMs(1)
+                    .setRequestUptimeMs(2)
+                    .setSource(3)
+                    .setLogEvents(logEvents)
+                    .build()));
+    encoder = BatchedLogRequest.createDataEncoder();
+  }
+
+  @TearDown
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENTS_PER_REQUEST)
+  public void send() {
+    BackendResponse response = backend.send(backendRequest);
+    if (response.getStatus() != BackendResponse.Status.OK) {
+      throw new AssertionError("Upload failed: " + response.getStatus());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENTS_PER_REQUEST)
+  public void encodeRequest() throws IOException {
+    encoder.encode(batchedLogRequest, discardingWriter);
+  }
+
+  private static final class DiscardingWriter extends Writer {
+    @Override
+    public void write(char[] cbuf, int off, int len) {}
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.runtime.firebase.transport;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding the client health metrics of 100 log sources, per log source, as their metrics
+ * make up most of the message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClientMetricsEncodingBenchmark {
+  private static final int LOG_SOURCES = 100;
+
+  private ClientMetrics clientMetrics;
+
+  @Setup
+  public void setUp() {
+    ClientMetrics.Builder builder =
+        ClientMetrics.newBuilder()
+            .setWindow(TimeWindow.newBuilder().setStartMs(1).setEndMs(2).build())
+            .setGlobalMetrics(
+                GlobalMetrics.newBuilder()
+                    .setStorageMetrics(
+                        StorageMetrics.newBuilder()
+                            .setCurrentCacheSizeBytes(3)
+                            .setMaxCacheSizeBytes(4)
+                            .build())
+                    .build())
+            .setAppNamespace("com.example.benchmark");
+    for (int i = 0; i < LOG_SOURCES; i++) {
+      builder.addLogSourceMetrics(
+          LogSourceMetrics.newBuilder()
+              .setLogSource("log-source-" + i)
+              .setLogEventDroppedList(
+                  Arrays.asList(
+                      LogEventDropped.newBuilder()
+                          .setReason(LogEventDropped.Reason.CACHE_FULL)
+                          .setEventsDroppedCount(i)
+                          .build(),
+                      LogEventDropped.newBuilder()
+                          .setReason(LogEventDropped.Reason.MESSAGE_TOO_OLD)
+                          .setEventsDroppedCount(i)
+                          .build()))
+              .build());
+    }
+    clientMetrics = builder.build();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOG_SOURCES)
+  public byte[] toByteArray() {
+    return clientMetrics.toByteArray();
+  }
+}
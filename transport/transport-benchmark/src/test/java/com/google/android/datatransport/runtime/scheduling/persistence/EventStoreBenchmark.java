@@ -0,0 +1,131 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.runtime.scheduling.persistence;
+
+import static com.google.android.datatransport.runtime.scheduling.persistence.SchemaManager.SCHEMA_VERSION;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.datatransport.Encoding;
+import com.google.android.datatransport.runtime.EncodedPayload;
+import com.google.android.datatransport.runtime.EventInternal;
+import com.google.android.datatransport.runtime.TransportContext;
+import com.google.android.datatransport.runtime.time.TestClock;
+import com.google.android.datatransport.runtime.time.UptimeClock;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SQLiteEventStore#persist}, {@link SQLiteEventStore#loadBatch} and a full
+ * persist/load/{@link SQLiteEventStore#recordSuccess} cycle, per event.
+ *
+ * <p>The store is cleared and filled with one batch of events before every iteration, so that the
+ * database doesn't grow without bound over the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventStoreBenchmark {
+  private static final TransportContext TRANSPORT_CONTEXT =
+      TransportContext.builder().setBackendName("cct").build();
+  private static final int BATCH_SIZE = 200;
+  private static final EventStoreConfig CONFIG =
+      EventStoreConfig.DEFAULT.toBuilder()
+          .setMaxStorageSizeInBytes(Long.MAX_VALUE)
+          .setMaxStorageSizePerLogSourceInBytes(Long.MAX_VALUE)
+          .setLoadBatchSize(BATCH_SIZE)
+          .build();
+
+  /** 100 KB exceeds the maximum blob size of an event row, so it's stored in chunks. */
+  @Param({"100", "10240", "102400"})
+  public int payloadSize;
+
+  private EventInternal event;
+  private SQLiteEventStore store;
+
+  @Setup
+  public void setUp() {
+    byte[] payload = new byte[payloadSize];
+    new Random(payloadSize).nextBytes(payload);
+    event =
+        EventInternal.builder()
+            .setTransportName("42")
+            .setEventMillis(1)
+            .setUptimeMillis(2)
+            .setEncodedPayload(new EncodedPayload(Encoding.of("proto"), payload))
+            .addMetadata("key1", "value1")
+            .addMetadata("key2", "value2")
+            .build();
+    store =
+        new SQLiteEventStore(
+            new TestClock(1),
+            new UptimeClock(),
+            CONFIG,
+            new SchemaManager(
+                ApplicationProvider.getApplicationContext(),
+                UUID.randomUUID().toString(),
+                SCHEMA_VERSION),
+            () -> "com.example.benchmark");
+  }
+
+  @Setup(Level.Iteration)
+  public void fillStore() {
+    store.clearDb();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      store.persist(TRANSPORT_CONTEXT, event);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    store.clearDb();
+    store.close();
+  }
+
+  @Benchmark
+  public PersistedEvent persist() {
+    return store.persist(TRANSPORT_CONTEXT, event);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public Iterable<PersistedEvent> loadBatch() {
+    return store.loadBatch(TRANSPORT_CONTEXT);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void persistLoadAndRecordSuccess() {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      store.persist(TRANSPORT_CONTEXT, event);
+    }
+    store.recordSuccess(store.loadBatch(TRANSPORT_CONTEXT));
+  }
+}
@@ -41,4 +41,9 @@ public class TestWorkScheduler implements WorkScheduler {
     }
     uploader.get().upload(transportContext, attemptNumber, () -> {});
   }
+
+  @Override
+  public int getScheduledAttemptNumber(TransportContext transportContext) {
+    return 1;
+  }
 }
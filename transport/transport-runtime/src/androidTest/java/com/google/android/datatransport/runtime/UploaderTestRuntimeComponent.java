@@ -16,6 +16,7 @@ package com.google.android.datatransport.runtime;
 
 import android.content.Context;
 import com.google.android.datatransport.runtime.backends.BackendRegistry;
+import com.google.android.datatransport.runtime.scheduling.SchedulingConfigModule;
 import com.google.android.datatransport.runtime.scheduling.jobscheduling.Uploader;
 import com.google.android.datatransport.runtime.scheduling.jobscheduling.WorkScheduler;
 import com.google.android.datatransport.runtime.scheduling.persistence.SQLiteEventStore;
@@ -33,6 +34,7 @@ import javax.inject.Singleton;
       SpyEventStoreModule.class,
       TestExecutionModule.class,
       TestSchedulingModule.class,
+      SchedulingConfigModule.class,
     })
 @Singleton
 abstract class UploaderTestRuntimeComponent extends TransportRuntimeComponent {
@@ -97,12 +97,14 @@ public class SQLiteEventStoreTest {
           .build();
 
   private static final long HOUR = 60 * 60 * 1000;
+  private static final int PAYLOAD_SIZE = EVENT.getEncodedPayload().getBytes().length;
   private static final int MAX_BLOB_SIZE_BYTES = 6;
   private static final EventStoreConfig CONFIG =
       EventStoreConfig.DEFAULT.toBuilder()
           .setLoadBatchSize(5)
           .setEventCleanUpAge(HOUR)
           .setMaxBlobByteSizePerRow(MAX_BLOB_SIZE_BYTES)
+          .setEvictionHeadroomInBytes(0)
           .build();
 
   private static final LogEventDropped.Reason REASON_CACHE_FULL = LogEventDropped.Reason.CACHE_FULL;
@@ -141,6 +143,24 @@ public class SQLiteEventStoreTest {
     assertThat(events).containsExactly(newEvent);
   }
 
+  @Test
+  public void persist_afterRolledBackCriticalSection_correctlyRoundTrips() {
+    try {
+      store.runCriticalSection(
+          () -> {
+            store.persist(TRANSPORT_CONTEXT, EVENT);
+            throw new IllegalStateException("fail");
+          });
+    } catch (IllegalStateException e) {
+      // Rolls back the transport context that was inserted along with the event.
+    }
+
+    PersistedEvent newEvent = store.persist(TRANSPORT_CONTEXT, EVENT);
+    Iterable<PersistedEvent> events = store.loadBatch(TRANSPORT_CONTEXT);
+
+    assertThat(events).containsExactly(newEvent);
+  }
+
   @Test
   public void persist_withNonInlineBlob_correctlyRoundTrips() {
     byte[] payload = "LongerThanSixBytes".getBytes(Charset.defaultCharset());
@@ -286,12 +306,10 @@ public class SQLiteEventStoreTest {
   }
 
   @Test
-  public void persist_whenDbSizeOnDiskIsAtLimit_shouldRecordLogEventDroppedDueToCacheFull() {
+  public void persist_whenEventDoesNotFit_shouldRecordLogEventDroppedDueToCacheFull() {
     SQLiteEventStore storeUnderTest =
         newStoreWithConfig(
-            clock,
-            CONFIG.toBuilder().setMaxStorageSizeInBytes(store.getByteSize()).build(),
-            packageName);
+            clock, CONFIG.toBuilder().setMaxStorageSizeInBytes(PAYLOAD_SIZE - 1).build(), packageName);
 
     storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT);
 
@@ -445,19 +463,164 @@ public class SQLiteEventStoreTest {
   }
 
   @Test
-  public void persist_whenDbSizeOnDiskIsAtLimit_shouldNotPersistNewEvents() {
+  public void persist_whenEventDoesNotFit_shouldNotPersistNewEvents() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock, CONFIG.toBuilder().setMaxStorageSizeInBytes(PAYLOAD_SIZE - 1).build(), packageName);
+    assertThat(storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT)).isNull();
+
+    storeUnderTest =
+        newStoreWithConfig(
+            clock, CONFIG.toBuilder().setMaxStorageSizeInBytes(PAYLOAD_SIZE).build(), packageName);
+    assertThat(storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT)).isNotNull();
+  }
+
+  @Test
+  public void persist_whenStorageIsFull_shouldEvictOldestEventsOfTheSamePriority() {
     SQLiteEventStore storeUnderTest =
         newStoreWithConfig(
             clock,
-            CONFIG.toBuilder().setMaxStorageSizeInBytes(store.getByteSize()).build(),
+            CONFIG.toBuilder().setMaxStorageSizeInBytes(2 * PAYLOAD_SIZE).build(),
             packageName);
+
+    storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(1).build());
+    PersistedEvent event2 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(2).build());
+    PersistedEvent event3 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(3).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT)).containsExactly(event2, event3);
+    assertThat(storeUnderTest.loadClientMetrics().getLogSourceMetricsList())
+        .comparingElementsUsing(CLIENT_METRICS_CORRESPONDENCE)
+        .containsExactly(
+            LogSourceMetrics.newBuilder()
+                .setLogSource(EVENT.getTransportName())
+                .addLogEventDropped(
+                    LogEventDropped.newBuilder()
+                        .setEventsDroppedCount(1)
+                        .setReason(REASON_CACHE_FULL)
+                        .build())
+                .build());
+  }
+
+  @Test
+  public void persist_whenStorageIsFull_shouldEvictLowerPriorityEventsFirst() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock,
+            CONFIG.toBuilder().setMaxStorageSizeInBytes(2 * PAYLOAD_SIZE).build(),
+            packageName);
+    TransportContext veryLow = TRANSPORT_CONTEXT.withPriority(Priority.VERY_LOW);
+
+    PersistedEvent olderEvent =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(1).build());
+    storeUnderTest.persist(veryLow, EVENT.toBuilder().setEventMillis(2).build());
+    PersistedEvent newEvent =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(3).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT)).containsExactly(olderEvent, newEvent);
+  }
+
+  @Test
+  public void persist_whenStorageIsFull_shouldNotEvictHigherPriorityEvents() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock,
+            CONFIG.toBuilder().setMaxStorageSizeInBytes(2 * PAYLOAD_SIZE).build(),
+            packageName);
+    TransportContext highest = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+
+    PersistedEvent event1 = storeUnderTest.persist(highest, EVENT);
+    PersistedEvent event2 = storeUnderTest.persist(highest, EVENT);
+
     assertThat(storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT)).isNull();
+    assertThat(storeUnderTest.loadBatch(highest)).containsExactly(event1, event2);
+  }
 
-    storeUnderTest =
+  @Test
+  public void persist_whenStorageIsFull_shouldEvictExpiredEventsOfAnyPriority() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock,
+            CONFIG.toBuilder().setMaxStorageSizeInBytes(2 * PAYLOAD_SIZE).build(),
+            packageName);
+    TransportContext highest = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+
+    storeUnderTest.persist(highest, EVENT.toBuilder().setEventMillis(clock.getTime()).build());
+    clock.advance(2 * HOUR);
+    PersistedEvent event2 =
+        storeUnderTest.persist(highest, EVENT.toBuilder().setEventMillis(clock.getTime()).build());
+    PersistedEvent event3 =
+        storeUnderTest.persist(
+            TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(clock.getTime()).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT)).containsExactly(event2, event3);
+  }
+
+  @Test
+  public void persist_whenStorageIsFull_shouldEvictUpToTheHeadroom() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock,
+            CONFIG.toBuilder()
+                .setMaxStorageSizeInBytes(4 * PAYLOAD_SIZE)
+                .setEvictionHeadroomInBytes(PAYLOAD_SIZE)
+                .build(),
+            packageName);
+
+    storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(1).build());
+    storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(2).build());
+    PersistedEvent event3 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(3).build());
+    PersistedEvent event4 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(4).build());
+    PersistedEvent event5 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(5).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT)).containsExactly(event3, event4, event5);
+
+    PersistedEvent event6 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(6).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT))
+        .containsExactly(event3, event4, event5, event6);
+  }
+
+  @Test
+  public void persist_whenLogSourceQuotaIsExceeded_shouldOnlyEvictEventsOfThatLogSource() {
+    SQLiteEventStore storeUnderTest =
         newStoreWithConfig(
             clock,
-            CONFIG.toBuilder().setMaxStorageSizeInBytes(store.getByteSize() + 1).build(),
+            CONFIG.toBuilder()
+                .setMaxStorageSizeInBytes(10 * PAYLOAD_SIZE)
+                .setMaxStorageSizePerLogSourceInBytes(2 * PAYLOAD_SIZE)
+                .build(),
             packageName);
+    EventInternal otherLogSourceEvent = EVENT.toBuilder().setTransportName("43").build();
+
+    storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(1).build());
+    PersistedEvent event2 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(2).build());
+    PersistedEvent event3 = storeUnderTest.persist(TRANSPORT_CONTEXT, otherLogSourceEvent);
+    PersistedEvent event4 =
+        storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT.toBuilder().setEventMillis(4).build());
+
+    assertThat(storeUnderTest.loadBatch(TRANSPORT_CONTEXT))
+        .containsExactly(event2, event3, event4);
+  }
+
+  @Test
+  public void persist_afterEventsAreRemoved_shouldReuseTheirSpace() {
+    SQLiteEventStore storeUnderTest =
+        newStoreWithConfig(
+            clock, CONFIG.toBuilder().setMaxStorageSizeInBytes(PAYLOAD_SIZE).build(), packageName);
+    TransportContext highest = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+
+    PersistedEvent event = storeUnderTest.persist(highest, EVENT);
+    assertThat(storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT)).isNull();
+
+    storeUnderTest.recordSuccess(Collections.singleton(event));
+
     assertThat(storeUnderTest.persist(TRANSPORT_CONTEXT, EVENT)).isNotNull();
   }
 
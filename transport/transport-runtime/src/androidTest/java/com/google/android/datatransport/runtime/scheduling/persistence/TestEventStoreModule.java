@@ -31,6 +31,8 @@ public abstract class TestEventStoreModule {
   static EventStoreConfig storeConfig() {
     return EventStoreConfig.builder()
         .setMaxStorageSizeInBytes(MAX_DB_STORAGE_SIZE_IN_BYTES)
+        .setMaxStorageSizePerLogSourceInBytes(MAX_DB_STORAGE_SIZE_IN_BYTES)
+        .setEvictionHeadroomInBytes(0)
         .setLoadBatchSize(LOAD_BATCH_SIZE)
         .setCriticalSectionEnterTimeoutMs(LOCK_TIME_OUT_MS)
         .setEventCleanUpAge(60 * 1000)
@@ -23,6 +23,13 @@ import com.google.android.datatransport.runtime.backends.TransportBackend;
 import com.google.android.datatransport.runtime.scheduling.jobscheduling.WorkScheduler;
 import com.google.android.datatransport.runtime.scheduling.persistence.EventStore;
 import com.google.android.datatransport.runtime.synchronization.SynchronizationGuard;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import javax.inject.Inject;
@@ -39,6 +46,7 @@ public class DefaultScheduler implements Scheduler {
   private final BackendRegistry backendRegistry;
   private final EventStore eventStore;
   private final SynchronizationGuard guard;
+  private final Queue<PendingEvent> pendingEvents = new ConcurrentLinkedQueue<>();
 
   @Inject
   public DefaultScheduler(
@@ -57,38 +65,103 @@ public class DefaultScheduler implements Scheduler {
   /**
    * Schedules the events to be eventually sent to the backend.
    *
+   * <p>Events that are scheduled while earlier events are still being persisted are persisted
+   * together in a single critical section, so that a burst of events results in one commit rather
+   * than one commit per event. The callback is invoked once the commit that contains the event has
+   * completed.
+   *
    * @param transportContext The transport context with which the event needs to be sent.
    * @param event The event itself which needs to be logged with additional information.
    */
   @Override
   public void schedule(
       TransportContext transportContext, EventInternal event, TransportScheduleCallback callback) {
-    executor.execute(
+    pendingEvents.add(new PendingEvent(transportContext, event, callback));
+    executor.execute(this::persistPendingEvents);
+  }
+
+  private void persistPendingEvents() {
+    List<PendingEvent> batch = new ArrayList<>();
+    PendingEvent pendingEvent;
+    while ((pendingEvent = pendingEvents.poll()) != null) {
+      try {
+        TransportBackend transportBackend =
+            backendRegistry.get(pendingEvent.transportContext.getBackendName());
+        if (transportBackend == null) {
+          String errorMsg =
+              String.format(
+                  "Transport backend '%s' is not registered",
+                  pendingEvent.transportContext.getBackendName());
+          LOGGER.warning(errorMsg);
+          pendingEvent.callback.onSchedule(new IllegalArgumentException(errorMsg));
+          continue;
+        }
+        pendingEvent.event = transportBackend.decorate(pendingEvent.event);
+        batch.add(pendingEvent);
+      } catch (Exception e) {
+        LOGGER.warning("Error scheduling event " + e.getMessage());
+        pendingEvent.callback.onSchedule(e);
+      }
+    }
+    if (batch.isEmpty()) {
+      // The events have been persisted by an earlier group commit.
+      return;
+    }
+
+    try {
+      persist(batch);
+    } catch (Exception e) {
+      LOGGER.warning("Error scheduling event " + e.getMessage());
+      if (batch.size() == 1) {
+        batch.get(0).callback.onSchedule(e);
+        return;
+      }
+      // The whole group commit was rolled back. Persist the events one by one, so that the event
+      // that caused the failure doesn't fail the others.
+      for (PendingEvent event : batch) {
+        try {
+          persist(Collections.singletonList(event));
+        } catch (Exception eventException) {
+          LOGGER.warning("Error scheduling event " + eventException.getMessage());
+          event.callback.onSchedule(eventException);
+          continue;
+        }
+        event.callback.onSchedule(null);
+      }
+      return;
+    }
+    for (PendingEvent event : batch) {
+      event.callback.onSchedule(null);
+    }
+  }
+
+  /** Persists the events and schedules their upload in a single critical section. */
+  private void persist(List<PendingEvent> events) {
+    guard.runCriticalSection(
         () -> {
-          try {
-            TransportBackend transportBackend =
-                backendRegistry.get(transportContext.getBackendName());
-            if (transportBackend == null) {
-              String errorMsg =
-                  String.format(
-                      "Transport backend '%s' is not registered",
-                      transportContext.getBackendName());
-              LOGGER.warning(errorMsg);
-              callback.onSchedule(new IllegalArgumentException(errorMsg));
-              return;
-            }
-            EventInternal decoratedEvent = transportBackend.decorate(event);
-            guard.runCriticalSection(
-                () -> {
-                  eventStore.persist(transportContext, decoratedEvent);
-                  workScheduler.schedule(transportContext, 1);
-                  return null;
-                });
-            callback.onSchedule(null);
-          } catch (Exception e) {
-            LOGGER.warning("Error scheduling event " + e.getMessage());
-            callback.onSchedule(e);
+          Set<TransportContext> transportContexts = new LinkedHashSet<>();
+          for (PendingEvent event : events) {
+            eventStore.persist(event.transportContext, event.event);
+            transportContexts.add(event.transportContext);
+          }
+          for (TransportContext transportContext : transportContexts) {
+            workScheduler.schedule(transportContext, 1);
           }
+          return null;
         });
   }
+
+  /** An event that has been scheduled but not persisted yet. */
+  private static final class PendingEvent {
+    final TransportContext transportContext;
+    EventInternal event;
+    final TransportScheduleCallback callback;
+
+    PendingEvent(
+        TransportContext transportContext, EventInternal event, TransportScheduleCallback callback) {
+      this.transportContext = transportContext;
+      this.event = event;
+      this.callback = callback;
+    }
+  }
 }
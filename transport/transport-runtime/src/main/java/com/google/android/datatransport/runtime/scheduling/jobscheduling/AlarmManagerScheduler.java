@@ -27,6 +27,8 @@ import com.google.android.datatransport.runtime.logging.Logging;
 import com.google.android.datatransport.runtime.scheduling.persistence.EventStore;
 import com.google.android.datatransport.runtime.time.Clock;
 import com.google.android.datatransport.runtime.util.PriorityMapping;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Schedules the service {@link AlarmManagerSchedulerBroadcastReceiver} based on the backendname.
@@ -49,6 +51,12 @@ public class AlarmManagerScheduler implements WorkScheduler {
 
   private final Clock clock;
 
+  /**
+   * The attempt numbers of the alarms set by this process. Unlike jobs, pending alarms can't be
+   * queried for the extras of their intent.
+   */
+  private final Map<TransportContext, Integer> scheduledAttemptNumbers = new ConcurrentHashMap<>();
+
   public AlarmManagerScheduler(
       Context applicationContext, EventStore eventStore, Clock clock, SchedulerConfig config) {
     this(
@@ -83,6 +91,12 @@ public class AlarmManagerScheduler implements WorkScheduler {
     return (PendingIntent.getBroadcast(context, 0, intent, flags) != null);
   }
 
+  @Override
+  public int getScheduledAttemptNumber(TransportContext transportContext) {
+    Integer attemptNumber = scheduledAttemptNumbers.get(transportContext);
+    return attemptNumber != null ? attemptNumber : 1;
+  }
+
   @Override
   public void schedule(TransportContext transportContext, int attemptNumber) {
     schedule(transportContext, attemptNumber, false);
@@ -138,5 +152,6 @@ public class AlarmManagerScheduler implements WorkScheduler {
             Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0);
     this.alarmManager.set(
         AlarmManager.ELAPSED_REALTIME, clock.getTime() + scheduleDelay, pendingIntent);
+    scheduledAttemptNumbers.put(transportContext, attemptNumber);
   }
 }
@@ -83,6 +83,19 @@ public class JobInfoScheduler implements WorkScheduler {
     return false;
   }
 
+  @Override
+  public int getScheduledAttemptNumber(TransportContext transportContext) {
+    JobScheduler jobScheduler =
+        (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    int jobId = getJobId(transportContext);
+    for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+      if (jobInfo.getId() == jobId) {
+        return Math.max(jobInfo.getExtras().getInt(ATTEMPT_NUMBER), 1);
+      }
+    }
+    return 1;
+  }
+
   /**
    * Schedules the JobScheduler service.
    *
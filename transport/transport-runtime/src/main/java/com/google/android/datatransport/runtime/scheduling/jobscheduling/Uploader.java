@@ -42,9 +42,10 @@ import com.google.android.datatransport.runtime.time.WallTime;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import javax.inject.Inject;
 
@@ -54,6 +55,12 @@ public class Uploader {
   private static final String LOG_TAG = "Uploader";
   private static final String CLIENT_HEALTH_METRICS_LOG_SOURCE = "GDT_CLIENT_METRICS";
 
+  /** The maximum time spent uploading consecutive batches in a single run. */
+  @VisibleForTesting static final long DRAIN_TIME_BUDGET_MILLIS = 30 * 1000;
+
+  /** The maximum payload size uploaded in consecutive batches in a single run. */
+  @VisibleForTesting static final long DRAIN_BYTE_BUDGET = 1024 * 1024;
+
   private final Context context;
   private final BackendRegistry backendRegistry;
   private final EventStore eventStore;
@@ -63,6 +70,7 @@ public class Uploader {
   private final Clock clock;
   private final Clock uptimeClock;
   private final ClientHealthMetricsStore clientHealthMetricsStore;
+  private final SchedulerConfig schedulerConfig;
 
   @Inject
   public Uploader(
@@ -74,7 +82,8 @@ public class Uploader {
       SynchronizationGuard guard,
       @WallTime Clock clock,
       @Monotonic Clock uptimeClock,
-      ClientHealthMetricsStore clientHealthMetricsStore) {
+      ClientHealthMetricsStore clientHealthMetricsStore,
+      SchedulerConfig schedulerConfig) {
     this.context = context;
     this.backendRegistry = backendRegistry;
     this.eventStore = eventStore;
@@ -84,6 +93,7 @@ public class Uploader {
     this.clock = clock;
     this.uptimeClock = uptimeClock;
     this.clientHealthMetricsStore = clientHealthMetricsStore;
+    this.schedulerConfig = schedulerConfig;
   }
 
   boolean isNetworkAvailable() {
@@ -105,7 +115,11 @@ public class Uploader {
                     return null;
                   });
             } else {
-              logAndUpdateState(transportContext, attemptNumber);
+              BackendResponse response = logAndUpdateState(transportContext, attemptNumber);
+              if (response.getStatus() == BackendResponse.Status.OK
+                  && response.getNextRequestWaitMillis() == 0) {
+                uploadCoalescedContexts(transportContext);
+              }
             }
           } catch (SynchronizationException e) {
             workScheduler.schedule(transportContext, attemptNumber + 1);
@@ -115,101 +129,156 @@ public class Uploader {
         });
   }
 
+  /**
+   * Uploads the pending events of the other contexts of the same backend in the wake-up of an
+   * upload, rather than waking the device and the radio again when their own jobs are due.
+   *
+   * <p>Contexts are skipped if the backend asked them to wait, or if their priority requires
+   * device conditions that are not known to be met, such as an idle device or an unmetered
+   * network. Their scheduled jobs still run, and find no pending events if the context has been
+   * uploaded here.
+   */
+  @VisibleForTesting
+  void uploadCoalescedContexts(TransportContext uploadedContext) {
+    Iterable<TransportContext> activeContexts =
+        guard.runCriticalSection(eventStore::loadActiveContexts);
+    for (TransportContext transportContext : activeContexts) {
+      if (transportContext.equals(uploadedContext)
+          || !transportContext.getBackendName().equals(uploadedContext.getBackendName())
+          || !canUploadEarly(transportContext)) {
+        continue;
+      }
+      Logging.d(LOG_TAG, "Coalescing upload for context %s", transportContext);
+      BackendResponse response =
+          logAndUpdateState(
+              transportContext, workScheduler.getScheduledAttemptNumber(transportContext));
+      if (response.getStatus() != BackendResponse.Status.OK
+          || response.getNextRequestWaitMillis() > 0) {
+        return;
+      }
+    }
+  }
+
+  private boolean canUploadEarly(TransportContext transportContext) {
+    if (guard.runCriticalSection(() -> eventStore.getNextCallTime(transportContext))
+        > clock.getTime()) {
+      return false;
+    }
+    Set<SchedulerConfig.Flag> flags = schedulerConfig.getFlags(transportContext.getPriority());
+    if (flags.contains(SchedulerConfig.Flag.DEVICE_IDLE)
+        || flags.contains(SchedulerConfig.Flag.DEVICE_CHARGING)) {
+      return false;
+    }
+    return !flags.contains(SchedulerConfig.Flag.NETWORK_UNMETERED) || isNetworkUnmetered();
+  }
+
+  boolean isNetworkUnmetered() {
+    ConnectivityManager connectivityManager =
+        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    return !connectivityManager.isActiveNetworkMetered();
+  }
+
   @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
   @CanIgnoreReturnValue
   public BackendResponse logAndUpdateState(TransportContext transportContext, int attemptNumber) {
     TransportBackend backend = backendRegistry.get(transportContext.getBackendName());
     long maxNextRequestWaitMillis = 0;
 
+    // Consecutive batches are uploaded in the same run until the backlog is drained, the drain
+    // budget is used up, or the backend asks to wait before the next request.
+    long drainDeadlineMillis = uptimeClock.getTime() + DRAIN_TIME_BUDGET_MILLIS;
+    long drainedBytes = 0;
+    boolean shouldUploadClientHealthMetrics = transportContext.shouldUploadClientHealthMetrics();
+
     BackendResponse response = BackendResponse.ok(maxNextRequestWaitMillis);
+    drain:
     while (guard.runCriticalSection(() -> eventStore.hasPendingEventsFor(transportContext))) {
       Iterable<PersistedEvent> persistedEvents =
           guard.runCriticalSection(() -> eventStore.loadBatch(transportContext));
 
-      List<PersistedEvent> sentEvents = new ArrayList<>();
-
       // Do not make a call to the backend if the list is empty.
       if (!persistedEvents.iterator().hasNext()) {
         return response;
       }
 
-      if (backend == null) {
-        Logging.d(
-            LOG_TAG, "Unknown backend for %s, deleting event batch for it...", transportContext);
-        response = BackendResponse.fatalError();
-      } else {
-        List<EventInternal> eventInternals = new ArrayList<>();
-
-        PersistedEvent oldestEvent = persistedEvents.iterator().next();
-        String targetPseudonymousId = oldestEvent.getEvent().getPseudonymousId();
-
-        for (PersistedEvent persistedEvent : persistedEvents) {
-          EventInternal event = persistedEvent.getEvent();
-          String pseudonymousId = event.getPseudonymousId();
-
-          if (Objects.equals(targetPseudonymousId, pseudonymousId)) {
+      for (List<PersistedEvent> sentEvents : groupByPseudonymousId(persistedEvents)) {
+        if (backend == null) {
+          Logging.d(
+              LOG_TAG, "Unknown backend for %s, deleting event batch for it...", transportContext);
+          response = BackendResponse.fatalError();
+        } else {
+          List<EventInternal> eventInternals = new ArrayList<>();
+          for (PersistedEvent persistedEvent : sentEvents) {
+            EventInternal event = persistedEvent.getEvent();
             eventInternals.add(event);
-            sentEvents.add(persistedEvent);
+            drainedBytes += event.getEncodedPayload().getBytes().length;
           }
-        }
 
-        if (transportContext.shouldUploadClientHealthMetrics()) {
-          eventInternals.add(createMetricsEvent(backend, targetPseudonymousId));
-        }
+          if (shouldUploadClientHealthMetrics) {
+            String pseudonymousId = sentEvents.get(0).getEvent().getPseudonymousId();
+            eventInternals.add(createMetricsEvent(backend, pseudonymousId));
+          }
 
-        response =
-            backend.send(
-                BackendRequest.builder()
-                    .setEvents(eventInternals)
-                    .setExtras(transportContext.getExtras())
-                    .build());
-      }
-      if (response.getStatus() == BackendResponse.Status.TRANSIENT_ERROR) {
-        long finalMaxNextRequestWaitMillis1 = maxNextRequestWaitMillis;
-        guard.runCriticalSection(
-            () -> {
-              eventStore.recordFailure(sentEvents);
-              eventStore.recordNextCallTime(
-                  transportContext, clock.getTime() + finalMaxNextRequestWaitMillis1);
-              return null;
-            });
-        workScheduler.schedule(transportContext, attemptNumber + 1, true);
-        return response;
-      } else {
-        guard.runCriticalSection(
-            () -> {
-              eventStore.recordSuccess(sentEvents);
-              return null;
-            });
-        if (response.getStatus() == BackendResponse.Status.OK) {
-          maxNextRequestWaitMillis =
-              Math.max(maxNextRequestWaitMillis, response.getNextRequestWaitMillis());
-          if (transportContext.shouldUploadClientHealthMetrics()) {
+          response =
+              backend.send(
+                  BackendRequest.builder()
+                      .setEvents(eventInternals)
+                      .setExtras(transportContext.getExtras())
+                      .build());
+        }
+        if (response.getStatus() == BackendResponse.Status.TRANSIENT_ERROR) {
+          long finalMaxNextRequestWaitMillis1 = maxNextRequestWaitMillis;
+          guard.runCriticalSection(
+              () -> {
+                eventStore.recordFailure(sentEvents);
+                eventStore.recordNextCallTime(
+                    transportContext, clock.getTime() + finalMaxNextRequestWaitMillis1);
+                return null;
+              });
+          workScheduler.schedule(transportContext, attemptNumber + 1, true);
+          return response;
+        } else {
+          guard.runCriticalSection(
+              () -> {
+                eventStore.recordSuccess(sentEvents);
+                return null;
+              });
+          if (response.getStatus() == BackendResponse.Status.OK) {
+            maxNextRequestWaitMillis =
+                Math.max(maxNextRequestWaitMillis, response.getNextRequestWaitMillis());
+            if (shouldUploadClientHealthMetrics) {
+              guard.runCriticalSection(
+                  () -> {
+                    clientHealthMetricsStore.resetClientMetrics();
+                    return null;
+                  });
+              // The metrics have been uploaded, there is no need to send them again.
+              shouldUploadClientHealthMetrics = false;
+            }
+            if (maxNextRequestWaitMillis > 0
+                || drainedBytes >= DRAIN_BYTE_BUDGET
+                || uptimeClock.getTime() >= drainDeadlineMillis) {
+              break drain;
+            }
+          } else if (response.getStatus() == BackendResponse.Status.INVALID_PAYLOAD) {
+            Map<String, Integer> countMap = new HashMap<>();
+            for (PersistedEvent sentEvent : sentEvents) {
+              String logSource = sentEvent.getEvent().getTransportName();
+              if (!countMap.containsKey(logSource)) {
+                countMap.put(logSource, 1);
+              } else {
+                countMap.put(logSource, countMap.get(logSource) + 1);
+              }
+            }
             guard.runCriticalSection(
                 () -> {
-                  clientHealthMetricsStore.resetClientMetrics();
+                  for (Map.Entry<String, Integer> entry : countMap.entrySet()) {
+                    clientHealthMetricsStore.recordLogEventDropped(
+                        entry.getValue(), LogEventDropped.Reason.INVALID_PAYLOD, entry.getKey());
+                  }
                   return null;
                 });
           }
-          break;
-        } else if (response.getStatus() == BackendResponse.Status.INVALID_PAYLOAD) {
-          Map<String, Integer> countMap = new HashMap<>();
-          for (PersistedEvent sentEvent : sentEvents) {
-            String logSource = sentEvent.getEvent().getTransportName();
-            if (!countMap.containsKey(logSource)) {
-              countMap.put(logSource, 1);
-            } else {
-              countMap.put(logSource, countMap.get(logSource) + 1);
-            }
-          }
-          guard.runCriticalSection(
-              () -> {
-                for (Map.Entry<String, Integer> entry : countMap.entrySet()) {
-                  clientHealthMetricsStore.recordLogEventDropped(
-                      entry.getValue(), LogEventDropped.Reason.INVALID_PAYLOD, entry.getKey());
-                }
-                return null;
-              });
         }
       }
     }
@@ -227,6 +296,25 @@ public class Uploader {
     return response;
   }
 
+  /**
+   * Splits the events into one group per pseudonymous ID, since events of different pseudonymous
+   * IDs cannot be uploaded in the same request. Groups are ordered by their oldest event.
+   */
+  private static Iterable<List<PersistedEvent>> groupByPseudonymousId(
+      Iterable<PersistedEvent> persistedEvents) {
+    Map<String, List<PersistedEvent>> eventsByPseudonymousId = new LinkedHashMap<>();
+    for (PersistedEvent persistedEvent : persistedEvents) {
+      String pseudonymousId = persistedEvent.getEvent().getPseudonymousId();
+      List<PersistedEvent> events = eventsByPseudonymousId.get(pseudonymousId);
+      if (events == null) {
+        events = new ArrayList<>();
+        eventsByPseudonymousId.put(pseudonymousId, events);
+      }
+      events.add(persistedEvent);
+    }
+    return eventsByPseudonymousId.values();
+  }
+
   @VisibleForTesting
   public EventInternal createMetricsEvent(
       TransportBackend backend, @Nullable String pseudonymousId) {
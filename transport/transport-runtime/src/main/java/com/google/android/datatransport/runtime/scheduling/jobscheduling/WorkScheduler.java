@@ -21,4 +21,10 @@ public interface WorkScheduler {
   void schedule(TransportContext transportContext, int attemptNumber);
 
   void schedule(TransportContext transportContext, int attemptNumber, boolean force);
+
+  /**
+   * Returns the attempt number of the upload that is scheduled for the context, or 1 if it is not
+   * known.
+   */
+  int getScheduledAttemptNumber(TransportContext transportContext);
 }
@@ -19,6 +19,8 @@ import com.google.auto.value.AutoValue;
 @AutoValue
 abstract class EventStoreConfig {
   private static final long MAX_DB_STORAGE_SIZE_IN_BYTES = 10 * 1024 * 1024;
+  private static final long MAX_LOG_SOURCE_STORAGE_SIZE_IN_BYTES = 5 * 1024 * 1024;
+  private static final long EVICTION_HEADROOM_IN_BYTES = 512 * 1024;
   private static final int LOAD_BATCH_SIZE = 200;
   private static final int LOCK_TIME_OUT_MS = 10000;
   private static final long DURATION_ONE_WEEK_MS = 7 * 24 * 60 * 60 * 1000;
@@ -27,14 +29,29 @@ abstract class EventStoreConfig {
   static final EventStoreConfig DEFAULT =
       EventStoreConfig.builder()
           .setMaxStorageSizeInBytes(MAX_DB_STORAGE_SIZE_IN_BYTES)
+          .setMaxStorageSizePerLogSourceInBytes(MAX_LOG_SOURCE_STORAGE_SIZE_IN_BYTES)
+          .setEvictionHeadroomInBytes(EVICTION_HEADROOM_IN_BYTES)
           .setLoadBatchSize(LOAD_BATCH_SIZE)
           .setCriticalSectionEnterTimeoutMs(LOCK_TIME_OUT_MS)
           .setEventCleanUpAge(DURATION_ONE_WEEK_MS)
           .setMaxBlobByteSizePerRow(MAX_BLOB_BYTE_SIZE_PER_ROW)
           .build();
 
+  /**
+   * The maximum size of the payloads of all stored events. It doesn't account for the metadata of
+   * the events or the overhead of the database, so the database file is larger than this.
+   */
   abstract long getMaxStorageSizeInBytes();
 
+  /** The maximum size of the payloads of the stored events of one log source. */
+  abstract long getMaxStorageSizePerLogSourceInBytes();
+
+  /**
+   * The number of bytes evicted beyond what a new event needs once a limit is reached, so that the
+   * events that follow it can be stored without evicting again.
+   */
+  abstract long getEvictionHeadroomInBytes();
+
   abstract int getLoadBatchSize();
 
   abstract int getCriticalSectionEnterTimeoutMs();
@@ -50,6 +67,8 @@ abstract class EventStoreConfig {
   Builder toBuilder() {
     return builder()
         .setMaxStorageSizeInBytes(getMaxStorageSizeInBytes())
+        .setMaxStorageSizePerLogSourceInBytes(getMaxStorageSizePerLogSourceInBytes())
+        .setEvictionHeadroomInBytes(getEvictionHeadroomInBytes())
         .setLoadBatchSize(getLoadBatchSize())
         .setCriticalSectionEnterTimeoutMs(getCriticalSectionEnterTimeoutMs())
         .setEventCleanUpAge(getEventCleanUpAge())
@@ -60,6 +79,10 @@ abstract class EventStoreConfig {
   abstract static class Builder {
     abstract Builder setMaxStorageSizeInBytes(long value);
 
+    abstract Builder setMaxStorageSizePerLogSourceInBytes(long value);
+
+    abstract Builder setEvictionHeadroomInBytes(long value);
+
     abstract Builder setLoadBatchSize(int value);
 
     abstract Builder setCriticalSectionEnterTimeoutMs(int value);
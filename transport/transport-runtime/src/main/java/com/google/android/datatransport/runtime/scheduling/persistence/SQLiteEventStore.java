@@ -18,6 +18,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabaseLockedException;
+import android.database.sqlite.SQLiteStatement;
 import android.os.SystemClock;
 import android.util.Base64;
 import androidx.annotation.Nullable;
@@ -51,6 +52,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -69,12 +71,54 @@ public class SQLiteEventStore
   private static final int LOCK_RETRY_BACK_OFF_MILLIS = 50;
   private static final Encoding PROTOBUF_ENCODING = Encoding.of("proto");
 
+  /**
+   * The payload size of an event aliased as {@code e}. Payloads that exceed the maximum blob size
+   * are stored as chunks in the event_payloads table, which is only queried for those events.
+   */
+  private static final String EVENT_PAYLOAD_SIZE_SQL =
+      "(CASE WHEN e.inline THEN IFNULL(LENGTH(e.payload), 0) ELSE IFNULL((SELECT"
+          + " SUM(LENGTH(p.bytes)) FROM event_payloads AS p WHERE p.event_id = e._id), 0) END)";
+
+  /**
+   * Ranks the priority of a transport context aliased as {@code t} in the order in which its
+   * events are evicted, see {@link #evictionRank(Priority)}.
+   */
+  private static final String EVICTION_RANK_SQL =
+      "(CASE t.priority"
+          + " WHEN "
+          + PriorityMapping.toInt(Priority.VERY_LOW)
+          + " THEN "
+          + evictionRank(Priority.VERY_LOW)
+          + " WHEN "
+          + PriorityMapping.toInt(Priority.DEFAULT)
+          + " THEN "
+          + evictionRank(Priority.DEFAULT)
+          + " ELSE "
+          + evictionRank(Priority.HIGHEST)
+          + " END)";
+
   private final SchemaManager schemaManager;
   private final Clock wallClock;
   private final Clock monotonicClock;
   private final EventStoreConfig config;
   private final Provider<String> packageName;
 
+  /**
+   * The row ids of transport contexts. Rows of the transport_contexts table are only removed by
+   * {@link #clearDb()}, which clears this cache as well.
+   */
+  private final Map<TransportContext, Long> transportContextIds = new ConcurrentHashMap<>();
+
+  /** Insert statements compiled for the current database, reused across calls to persist. */
+  @Nullable private volatile InsertStatements insertStatements;
+
+  /**
+   * Payload bytes stored per log source, kept up to date by the transactions that insert and
+   * delete events so that storage limits are enforced without measuring the database. It is loaded
+   * lazily, and discarded whenever a transaction fails as its updates may have been rolled back.
+   */
+  @Nullable private volatile Map<String, Long> storedBytesByLogSource;
+
   @Inject
   SQLiteEventStore(
       @WallTime Clock wallClock,
@@ -111,10 +155,12 @@ public class SQLiteEventStore
     long newRowId =
         inTransaction(
             db -> {
-              // drop new events until old ones are uploaded and removed.
-              // TODO(vkryachko): come up with a more sophisticated algorithm for limiting disk
-              // space.
-              if (isStorageAtLimit()) {
+              byte[] payloadBytes = event.getEncodedPayload().getBytes();
+              if (!ensureRoomFor(
+                  db,
+                  event.getTransportName(),
+                  transportContext.getPriority(),
+                  payloadBytes.length)) {
                 recordLogEventDropped(
                     1, LogEventDropped.Reason.CACHE_FULL, event.getTransportName());
                 return -1L;
@@ -122,49 +168,50 @@ public class SQLiteEventStore
 
               long contextId = ensureTransportContext(db, transportContext);
               int maxBlobSizePerRow = config.getMaxBlobByteSizePerRow();
+              InsertStatements statements = getInsertStatements(db);
 
-              byte[] payloadBytes = event.getEncodedPayload().getBytes();
               boolean inline = payloadBytes.length <= maxBlobSizePerRow;
-              ContentValues values = new ContentValues();
-              values.put("context_id", contextId);
-              values.put("transport_name", event.getTransportName());
-              values.put("timestamp_ms", event.getEventMillis());
-              values.put("uptime_ms", event.getUptimeMillis());
-              values.put("payload_encoding", event.getEncodedPayload().getEncoding().getName());
-              values.put("code", event.getCode());
-              values.put("num_attempts", 0);
-              values.put("inline", inline);
-              values.put("payload", inline ? payloadBytes : new byte[0]);
-              values.put("product_id", event.getProductId());
-              values.put("pseudonymous_id", event.getPseudonymousId());
-              values.put("experiment_ids_clear_blob", event.getExperimentIdsClear());
-              values.put("experiment_ids_encrypted_blob", event.getExperimentIdsEncrypted());
-              long newEventId = db.insert("events", null, values);
+              SQLiteStatement insertEvent = statements.insertEvent;
+              insertEvent.clearBindings();
+              insertEvent.bindLong(1, contextId);
+              insertEvent.bindString(2, event.getTransportName());
+              insertEvent.bindLong(3, event.getEventMillis());
+              insertEvent.bindLong(4, event.getUptimeMillis());
+              insertEvent.bindString(5, event.getEncodedPayload().getEncoding().getName());
+              bindNullable(insertEvent, 6, event.getCode());
+              insertEvent.bindLong(7, 0);
+              insertEvent.bindLong(8, inline ? 1 : 0);
+              insertEvent.bindBlob(9, inline ? payloadBytes : new byte[0]);
+              bindNullable(insertEvent, 10, event.getProductId());
+              bindNullable(insertEvent, 11, event.getPseudonymousId());
+              bindNullable(insertEvent, 12, event.getExperimentIdsClear());
+              bindNullable(insertEvent, 13, event.getExperimentIdsEncrypted());
+              long newEventId = insertEvent.executeInsert();
               if (!inline) {
                 int numChunks = (int) Math.ceil((double) payloadBytes.length / maxBlobSizePerRow);
 
+                SQLiteStatement insertPayload = statements.insertPayload;
                 for (int chunk = 1; chunk <= numChunks; chunk++) {
                   byte[] chunkBytes =
                       Arrays.copyOfRange(
                           payloadBytes,
                           (chunk - 1) * maxBlobSizePerRow,
                           Math.min((chunk) * maxBlobSizePerRow, payloadBytes.length));
-                  ContentValues payloadValues = new ContentValues();
-                  payloadValues.put("event_id", newEventId);
-                  payloadValues.put("sequence_num", chunk);
-                  payloadValues.put("bytes", chunkBytes);
-                  db.insert("event_payloads", null, payloadValues);
+                  insertPayload.bindLong(1, newEventId);
+                  insertPayload.bindLong(2, chunk);
+                  insertPayload.bindBlob(3, chunkBytes);
+                  insertPayload.executeInsert();
                 }
               }
 
-              // TODO: insert all with one sql query.
+              SQLiteStatement insertMetadata = statements.insertMetadata;
               for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
-                ContentValues metadata = new ContentValues();
-                metadata.put("event_id", newEventId);
-                metadata.put("name", entry.getKey());
-                metadata.put("value", entry.getValue());
-                db.insert("event_metadata", null, metadata);
+                insertMetadata.bindLong(1, newEventId);
+                insertMetadata.bindString(2, entry.getKey());
+                insertMetadata.bindString(3, entry.getValue());
+                insertMetadata.executeInsert();
               }
+              adjustStoredBytes(event.getTransportName(), payloadBytes.length);
               return newEventId;
             });
 
@@ -174,6 +221,241 @@ public class SQLiteEventStore
     return PersistedEvent.create(newRowId, transportContext, event);
   }
 
+  /**
+   * Evicts stored events if needed to make room for a new event, so that neither the storage limit
+   * nor the storage quota of the event's log source is exceeded.
+   *
+   * <p>Expired events are evicted first, followed by events with the same or a lower priority than
+   * the new event, in order of priority and then age. Events with a higher priority are never
+   * evicted, and nothing is evicted if the new event would still not fit.
+   *
+   * <p>Finding the events to evict scans all stored events, so up to {@link
+   * EventStoreConfig#getEvictionHeadroomInBytes()} more bytes are evicted than needed to avoid
+   * scanning again for each of the events that follow.
+   *
+   * @return whether the new event can be stored.
+   */
+  private boolean ensureRoomFor(
+      SQLiteDatabase db, String logSource, Priority priority, long eventSize) {
+    Map<String, Long> bytesByLogSource = getStoredBytesByLogSource(db);
+    Map<Long, EvictedEvent> evicted = new HashMap<>();
+    long headroom = config.getEvictionHeadroomInBytes();
+
+    Long logSourceBytes = bytesByLogSource.get(logSource);
+    long logSourceExcess =
+        (logSourceBytes == null ? 0 : logSourceBytes)
+            + eventSize
+            - config.getMaxStorageSizePerLogSourceInBytes();
+    if (logSourceExcess > 0
+        && !collectEvictions(
+            db, logSource, priority, logSourceExcess, logSourceExcess + headroom, evicted)) {
+      return false;
+    }
+
+    long totalExcess = eventSize - config.getMaxStorageSizeInBytes();
+    for (long bytes : bytesByLogSource.values()) {
+      totalExcess += bytes;
+    }
+    for (EvictedEvent event : evicted.values()) {
+      totalExcess -= event.size;
+    }
+    if (totalExcess > 0
+        && !collectEvictions(db, null, priority, totalExcess, totalExcess + headroom, evicted)) {
+      return false;
+    }
+
+    if (!evicted.isEmpty()) {
+      deleteEvicted(db, evicted);
+    }
+    return true;
+  }
+
+  /**
+   * Adds events to {@code evicted}, in eviction order, until at least {@code bytesWanted} more
+   * bytes would be freed or no evictable events are left. Nothing is added if fewer than {@code
+   * bytesNeeded} bytes can be freed.
+   *
+   * @return whether enough evictable events were found.
+   */
+  private boolean collectEvictions(
+      SQLiteDatabase db,
+      @Nullable String logSource,
+      Priority priority,
+      long bytesNeeded,
+      long bytesWanted,
+      Map<Long, EvictedEvent> evicted) {
+    long expiredBefore = wallClock.getTime() - config.getEventCleanUpAge();
+    String query =
+        "SELECT e._id, e.transport_name, "
+            + EVENT_PAYLOAD_SIZE_SQL
+            + " FROM events AS e, transport_contexts AS t WHERE e.context_id = t._id"
+            + " AND (e.timestamp_ms < "
+            + expiredBefore
+            + " OR "
+            + EVICTION_RANK_SQL
+            + " <= "
+            + evictionRank(priority)
+            + ")"
+            + (logSource != null ? " AND e.transport_name = ?" : "")
+            + " ORDER BY e.timestamp_ms < "
+            + expiredBefore
+            + " DESC, "
+            + EVICTION_RANK_SQL
+            + ", e.timestamp_ms";
+    String[] selectionArgs = logSource != null ? new String[] {logSource} : new String[] {};
+
+    return tryWithCursor(
+        db.rawQuery(query, selectionArgs),
+        cursor -> {
+          Map<Long, EvictedEvent> collected = new HashMap<>();
+          long bytesFreed = 0;
+          while (bytesFreed < bytesWanted && cursor.moveToNext()) {
+            long id = cursor.getLong(0);
+            if (evicted.containsKey(id)) {
+              continue;
+            }
+            EvictedEvent event = new EvictedEvent(cursor.getString(1), cursor.getLong(2));
+            collected.put(id, event);
+            bytesFreed += event.size;
+          }
+          if (bytesFreed < bytesNeeded) {
+            return false;
+          }
+          evicted.putAll(collected);
+          return true;
+        });
+  }
+
+  private void deleteEvicted(SQLiteDatabase db, Map<Long, EvictedEvent> evicted) {
+    StringBuilder idList = new StringBuilder("(");
+    Map<String, Integer> countByLogSource = new HashMap<>();
+    for (Map.Entry<Long, EvictedEvent> entry : evicted.entrySet()) {
+      if (idList.length() > 1) {
+        idList.append(',');
+      }
+      idList.append(entry.getKey());
+
+      EvictedEvent event = entry.getValue();
+      Integer count = countByLogSource.get(event.logSource);
+      countByLogSource.put(event.logSource, count == null ? 1 : count + 1);
+      adjustStoredBytes(event.logSource, -event.size);
+    }
+    idList.append(')');
+
+    db.compileStatement("DELETE FROM events WHERE _id in " + idList).execute();
+    for (Map.Entry<String, Integer> entry : countByLogSource.entrySet()) {
+      Logging.d(LOG_TAG, "Evicted %d events of log source %s", entry.getValue(), entry.getKey());
+      recordLogEventDropped(entry.getValue(), LogEventDropped.Reason.CACHE_FULL, entry.getKey());
+    }
+  }
+
+  /** Returns the order in which events of a priority are evicted, lowest first. */
+  private static int evictionRank(Priority priority) {
+    switch (priority) {
+      case VERY_LOW:
+        return 0;
+      case DEFAULT:
+        return 1;
+      case HIGHEST:
+        return 2;
+    }
+    throw new IllegalArgumentException("Unknown priority " + priority);
+  }
+
+  private Map<String, Long> getStoredBytesByLogSource(SQLiteDatabase db) {
+    Map<String, Long> bytesByLogSource = storedBytesByLogSource;
+    if (bytesByLogSource == null) {
+      bytesByLogSource =
+          tryWithCursor(
+              db.rawQuery(
+                  "SELECT e.transport_name, SUM("
+                      + EVENT_PAYLOAD_SIZE_SQL
+                      + ") FROM events AS e GROUP BY e.transport_name",
+                  new String[] {}),
+              cursor -> {
+                Map<String, Long> result = new HashMap<>();
+                while (cursor.moveToNext()) {
+                  result.put(cursor.getString(0), cursor.getLong(1));
+                }
+                return result;
+              });
+      storedBytesByLogSource = bytesByLogSource;
+    }
+    return bytesByLogSource;
+  }
+
+  /** Updates the stored bytes of a log source, if they have been loaded. */
+  private void adjustStoredBytes(String logSource, long delta) {
+    Map<String, Long> bytesByLogSource = storedBytesByLogSource;
+    if (bytesByLogSource == null) {
+      return;
+    }
+    Long bytes = bytesByLogSource.get(logSource);
+    long newBytes = (bytes == null ? 0 : bytes) + delta;
+    if (newBytes > 0) {
+      bytesByLogSource.put(logSource, newBytes);
+    } else {
+      bytesByLogSource.remove(logSource);
+    }
+  }
+
+  /** Subtracts the payloads of the events about to be deleted from the stored bytes. */
+  private void releaseStoredBytes(SQLiteDatabase db, String whereClause, String[] whereArgs) {
+    if (storedBytesByLogSource == null) {
+      return;
+    }
+    tryWithCursor(
+        db.rawQuery(
+            "SELECT e.transport_name, SUM("
+                + EVENT_PAYLOAD_SIZE_SQL
+                + ") FROM events AS e WHERE "
+                + whereClause
+                + " GROUP BY e.transport_name",
+            whereArgs),
+        cursor -> {
+          while (cursor.moveToNext()) {
+            adjustStoredBytes(cursor.getString(0), -cursor.getLong(1));
+          }
+          return null;
+        });
+  }
+
+  private InsertStatements getInsertStatements(SQLiteDatabase db) {
+    InsertStatements statements = insertStatements;
+    if (statements == null || statements.db != db) {
+      if (statements != null) {
+        statements.close();
+      }
+      statements = new InsertStatements(db);
+      insertStatements = statements;
+    }
+    return statements;
+  }
+
+  private static void bindNullable(SQLiteStatement statement, int index, @Nullable Integer value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindLong(index, value);
+    }
+  }
+
+  private static void bindNullable(SQLiteStatement statement, int index, @Nullable String value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindString(index, value);
+    }
+  }
+
+  private static void bindNullable(SQLiteStatement statement, int index, @Nullable byte[] value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindBlob(index, value);
+    }
+  }
+
   private long ensureTransportContext(SQLiteDatabase db, TransportContext transportContext) {
     Long existingId = getTransportContextId(db, transportContext);
     if (existingId != null) {
@@ -188,11 +470,20 @@ public class SQLiteEventStore
       record.put("extras", Base64.encodeToString(transportContext.getExtras(), Base64.DEFAULT));
     }
 
-    return db.insert("transport_contexts", null, record);
+    long id = db.insert("transport_contexts", null, record);
+    if (id != -1) {
+      transportContextIds.put(transportContext, id);
+    }
+    return id;
   }
 
   @Nullable
   private Long getTransportContextId(SQLiteDatabase db, TransportContext transportContext) {
+    Long cachedId = transportContextIds.get(transportContext);
+    if (cachedId != null) {
+      return cachedId;
+    }
+
     final StringBuilder selection = new StringBuilder("backend_name = ? and priority = ?");
     ArrayList<String> selectionArgs =
         new ArrayList<>(
@@ -220,7 +511,9 @@ public class SQLiteEventStore
           if (!cursor.moveToNext()) {
             return null;
           }
-          return cursor.getLong(0);
+          long id = cursor.getLong(0);
+          transportContextIds.put(transportContext, id);
+          return id;
         });
   }
 
@@ -251,6 +544,7 @@ public class SQLiteEventStore
                 }
                 return null;
               });
+          releaseStoredBytes(db, "e.num_attempts >= " + MAX_RETRIES, new String[] {});
           db.compileStatement("DELETE FROM events WHERE num_attempts >= " + MAX_RETRIES).execute();
           return null;
         });
@@ -262,8 +556,13 @@ public class SQLiteEventStore
       return;
     }
 
-    String query = "DELETE FROM events WHERE _id in " + toIdList(events);
-    getDb().compileStatement(query).execute();
+    String idList = toIdList(events);
+    inTransaction(
+        db -> {
+          releaseStoredBytes(db, "e._id in " + idList, new String[] {});
+          db.compileStatement("DELETE FROM events WHERE _id in " + idList).execute();
+          return null;
+        });
   }
 
   private static String toIdList(Iterable<PersistedEvent> events) {
@@ -405,12 +704,18 @@ public class SQLiteEventStore
                 return null;
               });
 
+          releaseStoredBytes(db, "e.timestamp_ms < ?", selectionArgs);
           return db.delete("events", "timestamp_ms < ?", selectionArgs);
         });
   }
 
   @Override
   public void close() {
+    InsertStatements statements = insertStatements;
+    insertStatements = null;
+    if (statements != null) {
+      statements.close();
+    }
     schemaManager.close();
   }
 
@@ -420,6 +725,8 @@ public class SQLiteEventStore
         db -> {
           db.delete("events", null, new String[] {});
           db.delete("transport_contexts", null, new String[] {});
+          transportContextIds.clear();
+          storedBytesByLogSource = null;
           return null;
         });
   }
@@ -786,25 +1093,84 @@ public class SQLiteEventStore
   public <T> T runCriticalSection(CriticalSection<T> criticalSection) {
     SQLiteDatabase db = getDb();
     ensureBeginTransaction(db);
+    boolean successful = false;
     try {
       T result = criticalSection.execute();
       db.setTransactionSuccessful();
+      successful = true;
       return result;
     } finally {
       db.endTransaction();
+      if (!successful) {
+        invalidateTransactionCaches();
+      }
     }
   }
 
+  /**
+   * Drops the cached state that may have been filled by a transaction that was rolled back, such as
+   * the ids of transport contexts that were inserted by it.
+   */
+  private void invalidateTransactionCaches() {
+    storedBytesByLogSource = null;
+    transportContextIds.clear();
+  }
+
   @VisibleForTesting
   <T> T inTransaction(Function<SQLiteDatabase, T> function) {
     SQLiteDatabase db = getDb();
     db.beginTransaction();
+    boolean successful = false;
     try {
       T result = function.apply(db);
       db.setTransactionSuccessful();
+      successful = true;
       return result;
     } finally {
       db.endTransaction();
+      if (!successful) {
+        invalidateTransactionCaches();
+      }
+    }
+  }
+
+  /** Compiled statements that insert the rows of a persisted event. */
+  private static final class InsertStatements {
+    final SQLiteDatabase db;
+    final SQLiteStatement insertEvent;
+    final SQLiteStatement insertPayload;
+    final SQLiteStatement insertMetadata;
+
+    InsertStatements(SQLiteDatabase db) {
+      this.db = db;
+      insertEvent =
+          db.compileStatement(
+              "INSERT INTO events (context_id, transport_name, timestamp_ms, uptime_ms,"
+                  + " payload_encoding, code, num_attempts, inline, payload, product_id,"
+                  + " pseudonymous_id, experiment_ids_clear_blob, experiment_ids_encrypted_blob)"
+                  + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      insertPayload =
+          db.compileStatement(
+              "INSERT INTO event_payloads (event_id, sequence_num, bytes) VALUES (?, ?, ?)");
+      insertMetadata =
+          db.compileStatement(
+              "INSERT INTO event_metadata (event_id, name, value) VALUES (?, ?, ?)");
+    }
+
+    void close() {
+      insertEvent.close();
+      insertPayload.close();
+      insertMetadata.close();
+    }
+  }
+
+  private static final class EvictedEvent {
+    final String logSource;
+    final long size;
+
+    EvictedEvent(String logSource, long size) {
+      this.logSource = logSource;
+      this.size = size;
     }
   }
 
@@ -818,12 +1184,6 @@ public class SQLiteEventStore
     }
   }
 
-  private boolean isStorageAtLimit() {
-    long byteSize = getPageCount() * getPageSize();
-
-    return byteSize >= config.getMaxStorageSizeInBytes();
-  }
-
   @VisibleForTesting
   long getByteSize() {
     return getPageCount() * getPageSize();
@@ -136,7 +136,7 @@ public class TransportRuntimeTest {
             fixedClock(EVENT_MILLIS),
             fixedClock(UPTIME_MILLIS),
             new ImmediateScheduler(Runnable::run, mockRegistry),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     verify(mockInitializer, times(1)).ensureContextsScheduled();
@@ -200,7 +200,7 @@ public class TransportRuntimeTest {
             fixedClock(EVENT_MILLIS),
             fixedClock(UPTIME_MILLIS),
             new ImmediateScheduler(Runnable::run, mockRegistry),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     verify(mockInitializer, times(1)).ensureContextsScheduled();
@@ -239,7 +239,7 @@ public class TransportRuntimeTest {
             fixedClock(UPTIME_MILLIS),
             new DefaultScheduler(
                 Runnable::run, mockRegistry, mockWorkScheduler, mockEventStore, guard),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     verify(mockInitializer, times(1)).ensureContextsScheduled();
@@ -300,7 +300,7 @@ public class TransportRuntimeTest {
             fixedClock(UPTIME_MILLIS),
             new DefaultScheduler(
                 Runnable::run, mockRegistry, mockWorkScheduler, mockEventStore, guard),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     verify(mockInitializer, times(1)).ensureContextsScheduled();
@@ -327,7 +327,7 @@ public class TransportRuntimeTest {
             fixedClock(EVENT_MILLIS),
             fixedClock(UPTIME_MILLIS),
             new ImmediateScheduler(Runnable::run, mockRegistry),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     TransportFactory transportFactory = runtime.newFactory(new TestDestination());
@@ -349,7 +349,7 @@ public class TransportRuntimeTest {
             fixedClock(EVENT_MILLIS),
             fixedClock(UPTIME_MILLIS),
             new ImmediateScheduler(Runnable::run, mockRegistry),
-            new Uploader(null, null, null, null, null, null, () -> 2, null, null),
+            new Uploader(null, null, null, null, null, null, () -> 2, null, null, null),
             mockInitializer);
 
     TransportFactory transportFactory = runtime.newFactory(new YamlEncodedDestination());
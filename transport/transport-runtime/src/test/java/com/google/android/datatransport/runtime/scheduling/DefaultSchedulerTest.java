@@ -0,0 +1,137 @@
+// Copyright 2024 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.android.datatransport.runtime.scheduling;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import androidx.annotation.Nullable;
+import com.google.android.datatransport.Encoding;
+import com.google.android.datatransport.TransportScheduleCallback;
+import com.google.android.datatransport.runtime.EncodedPayload;
+import com.google.android.datatransport.runtime.EventInternal;
+import com.google.android.datatransport.runtime.TransportContext;
+import com.google.android.datatransport.runtime.backends.BackendRegistry;
+import com.google.android.datatransport.runtime.backends.TransportBackend;
+import com.google.android.datatransport.runtime.scheduling.jobscheduling.WorkScheduler;
+import com.google.android.datatransport.runtime.scheduling.persistence.EventStore;
+import com.google.android.datatransport.runtime.synchronization.SynchronizationGuard;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DefaultSchedulerTest {
+  private static final String BACKEND_NAME = "backend";
+  private static final TransportContext TRANSPORT_CONTEXT =
+      TransportContext.builder().setBackendName(BACKEND_NAME).build();
+  private static final EventInternal GOOD_EVENT = createEvent("good");
+  private static final EventInternal BAD_EVENT = createEvent("bad");
+  private static final SynchronizationGuard guard =
+      new SynchronizationGuard() {
+        @Override
+        public <T> T runCriticalSection(CriticalSection<T> criticalSection) {
+          return criticalSection.execute();
+        }
+      };
+
+  private final List<Runnable> pendingTasks = new ArrayList<>();
+  private final BackendRegistry mockRegistry = mock(BackendRegistry.class);
+  private final TransportBackend mockBackend = mock(TransportBackend.class);
+  private final WorkScheduler mockWorkScheduler = mock(WorkScheduler.class);
+  private final EventStore mockEventStore = mock(EventStore.class);
+
+  private final DefaultScheduler scheduler =
+      new DefaultScheduler(
+          pendingTasks::add, mockRegistry, mockWorkScheduler, mockEventStore, guard);
+
+  private static class StatefulTransportScheduleCallback implements TransportScheduleCallback {
+    public boolean called = false;
+    public Exception exception = null;
+
+    @Override
+    public void onSchedule(@Nullable Exception error) {
+      called = true;
+      exception = error;
+    }
+  }
+
+  private static EventInternal createEvent(String transportName) {
+    return EventInternal.builder()
+        .setTransportName(transportName)
+        .setEventMillis(1)
+        .setUptimeMillis(2)
+        .setEncodedPayload(
+            new EncodedPayload(Encoding.of("proto"), "Hello".getBytes(Charset.defaultCharset())))
+        .build();
+  }
+
+  @Before
+  public void setUp() {
+    when(mockRegistry.get(BACKEND_NAME)).thenReturn(mockBackend);
+    when(mockBackend.decorate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  private void runPendingTasks() {
+    for (Runnable task : new ArrayList<>(pendingTasks)) {
+      task.run();
+    }
+    pendingTasks.clear();
+  }
+
+  @Test
+  public void schedule_eventsScheduledTogether_arePersistedInOneBatch() {
+    StatefulTransportScheduleCallback callback1 = new StatefulTransportScheduleCallback();
+    StatefulTransportScheduleCallback callback2 = new StatefulTransportScheduleCallback();
+
+    scheduler.schedule(TRANSPORT_CONTEXT, GOOD_EVENT, callback1);
+    scheduler.schedule(TRANSPORT_CONTEXT, GOOD_EVENT, callback2);
+    runPendingTasks();
+
+    verify(mockEventStore, times(2)).persist(TRANSPORT_CONTEXT, GOOD_EVENT);
+    verify(mockWorkScheduler, times(1)).schedule(TRANSPORT_CONTEXT, 1);
+    assertThat(callback1.called).isTrue();
+    assertThat(callback1.exception).isNull();
+    assertThat(callback2.called).isTrue();
+    assertThat(callback2.exception).isNull();
+  }
+
+  @Test
+  public void schedule_oneEventOfBatchFailsToPersist_onlyFailsThatEvent() {
+    RuntimeException failure = new RuntimeException("persist failed");
+    when(mockEventStore.persist(eq(TRANSPORT_CONTEXT), eq(BAD_EVENT))).thenThrow(failure);
+    StatefulTransportScheduleCallback badCallback = new StatefulTransportScheduleCallback();
+    StatefulTransportScheduleCallback goodCallback = new StatefulTransportScheduleCallback();
+
+    scheduler.schedule(TRANSPORT_CONTEXT, BAD_EVENT, badCallback);
+    scheduler.schedule(TRANSPORT_CONTEXT, GOOD_EVENT, goodCallback);
+    runPendingTasks();
+
+    assertThat(badCallback.called).isTrue();
+    assertThat(badCallback.exception).isSameInstanceAs(failure);
+    assertThat(goodCallback.called).isTrue();
+    assertThat(goodCallback.exception).isNull();
+    verify(mockEventStore, times(1)).persist(TRANSPORT_CONTEXT, GOOD_EVENT);
+  }
+}
@@ -216,4 +216,13 @@ public class AlarmManagerSchedulerTest {
     verify(alarmManager, times(1))
         .set(eq(AlarmManager.ELAPSED_REALTIME), eq(INITIAL_TIMESTAMP + 1), any());
   }
+
+  @Test
+  public void getScheduledAttemptNumber_returnsAttemptNumberOfLastAlarm() {
+    assertThat(scheduler.getScheduledAttemptNumber(TRANSPORT_CONTEXT)).isEqualTo(1);
+
+    scheduler.schedule(TRANSPORT_CONTEXT, 3);
+
+    assertThat(scheduler.getScheduledAttemptNumber(TRANSPORT_CONTEXT)).isEqualTo(3);
+  }
 }
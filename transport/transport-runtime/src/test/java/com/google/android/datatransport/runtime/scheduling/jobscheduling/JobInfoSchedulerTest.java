@@ -270,4 +270,13 @@ public class JobInfoSchedulerTest {
 
     assertThat(jobInfo.getMinLatencyMillis()).isEqualTo(1);
   }
+
+  @Test
+  public void getScheduledAttemptNumber_returnsAttemptNumberOfPendingJob() {
+    assertThat(scheduler.getScheduledAttemptNumber(TRANSPORT_CONTEXT)).isEqualTo(1);
+
+    scheduler.schedule(TRANSPORT_CONTEXT, 3);
+
+    assertThat(scheduler.getScheduledAttemptNumber(TRANSPORT_CONTEXT)).isEqualTo(3);
+  }
 }
@@ -17,8 +17,11 @@ package com.google.android.datatransport.runtime.scheduling.jobscheduling;
 import static android.os.Build.VERSION_CODES.LOLLIPOP;
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -26,6 +29,7 @@ import static org.mockito.Mockito.when;
 
 import androidx.test.core.app.ApplicationProvider;
 import com.google.android.datatransport.Encoding;
+import com.google.android.datatransport.Priority;
 import com.google.android.datatransport.runtime.EncodedPayload;
 import com.google.android.datatransport.runtime.EventInternal;
 import com.google.android.datatransport.runtime.TransportContext;
@@ -113,7 +117,8 @@ public class UploaderTest {
               guard,
               () -> 2,
               () -> 2,
-              mockClientHealthMetricsStore));
+              mockClientHealthMetricsStore,
+              SchedulerConfig.getDefault(() -> 2)));
 
   private EventInternal makeEventWithPseudonymousId(String id) {
     return EventInternal.builder()
@@ -343,4 +348,99 @@ public class UploaderTest {
     assertThat(store.hasPendingEventsFor(TRANSPORT_CONTEXT)).isTrue();
     verify(mockScheduler, times(1)).schedule(TRANSPORT_CONTEXT, 1, true);
   }
+
+  @Test
+  public void upload_withoutRequestedWait_shouldDrainAllPseudonymousIds() {
+    EventInternal oldestEvent = makeEventWithPseudonymousId("myId");
+    EventInternal otherEvent = makeEventWithPseudonymousId("otherId");
+
+    when(mockBackend.send(any())).thenReturn(BackendResponse.ok(0));
+
+    store.persist(TRANSPORT_CONTEXT, oldestEvent);
+    store.persist(TRANSPORT_CONTEXT, EVENT);
+    store.persist(TRANSPORT_CONTEXT, otherEvent);
+
+    uploader.logAndUpdateState(TRANSPORT_CONTEXT, 1);
+    verify(mockBackend, times(3)).send(any());
+    assertThat(store.hasPendingEventsFor(TRANSPORT_CONTEXT)).isFalse();
+    verify(mockScheduler, never()).schedule(any(), anyInt(), anyBoolean());
+  }
+
+  @Test
+  public void upload_withoutRequestedWait_shouldStopDrainingWhenByteBudgetIsUsedUp() {
+    byte[] payload = new byte[(int) (Uploader.DRAIN_BYTE_BUDGET / 2)];
+    for (String id : Arrays.asList("first", "second", "third")) {
+      store.persist(
+          TRANSPORT_CONTEXT,
+          makeEventWithPseudonymousId(id).toBuilder()
+              .setEncodedPayload(new EncodedPayload(Encoding.of("proto"), payload))
+              .build());
+    }
+
+    when(mockBackend.send(any())).thenReturn(BackendResponse.ok(0));
+
+    uploader.logAndUpdateState(TRANSPORT_CONTEXT, 1);
+    verify(mockBackend, times(2)).send(any());
+    assertThat(store.hasPendingEventsFor(TRANSPORT_CONTEXT)).isTrue();
+    verify(mockScheduler, times(1)).schedule(TRANSPORT_CONTEXT, 1, true);
+  }
+
+  @Test
+  public void upload_shouldCoalesceOtherContextsOfTheSameBackend() {
+    TransportContext highestContext = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+    TransportContext otherBackendContext =
+        TransportContext.builder().setBackendName("backend2").build();
+    when(mockBackend.send(any())).thenReturn(BackendResponse.ok(0));
+    store.persist(TRANSPORT_CONTEXT, EVENT);
+    store.persist(highestContext, EVENT);
+    store.persist(otherBackendContext, EVENT);
+
+    uploader.upload(TRANSPORT_CONTEXT, 1, mockRunnable);
+
+    verify(mockBackend, times(2)).send(any());
+    assertThat(store.hasPendingEventsFor(TRANSPORT_CONTEXT)).isFalse();
+    assertThat(store.hasPendingEventsFor(highestContext)).isFalse();
+    assertThat(store.hasPendingEventsFor(otherBackendContext)).isTrue();
+  }
+
+  @Test
+  public void upload_whenCoalescedContextFails_shouldRescheduleItsNextAttempt() {
+    TransportContext highestContext = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+    when(mockBackend.send(any()))
+        .thenReturn(BackendResponse.ok(0))
+        .thenReturn(BackendResponse.transientError());
+    when(mockScheduler.getScheduledAttemptNumber(highestContext)).thenReturn(3);
+    store.persist(TRANSPORT_CONTEXT, EVENT);
+    store.persist(highestContext, EVENT);
+
+    uploader.upload(TRANSPORT_CONTEXT, 1, mockRunnable);
+
+    verify(mockScheduler, times(1)).schedule(highestContext, 4, true);
+  }
+
+  @Test
+  public void upload_shouldNotCoalesceContextsThatRequireDeviceIdle() {
+    TransportContext veryLowContext = TRANSPORT_CONTEXT.withPriority(Priority.VERY_LOW);
+    when(mockBackend.send(any())).thenReturn(BackendResponse.ok(0));
+    store.persist(TRANSPORT_CONTEXT, EVENT);
+    store.persist(veryLowContext, EVENT);
+
+    uploader.upload(TRANSPORT_CONTEXT, 1, mockRunnable);
+
+    verify(mockBackend, times(1)).send(any());
+    assertThat(store.hasPendingEventsFor(veryLowContext)).isTrue();
+  }
+
+  @Test
+  public void upload_whenBackendAsksToWait_shouldNotCoalesce() {
+    TransportContext highestContext = TRANSPORT_CONTEXT.withPriority(Priority.HIGHEST);
+    when(mockBackend.send(any())).thenReturn(BackendResponse.ok(1000));
+    store.persist(TRANSPORT_CONTEXT, EVENT);
+    store.persist(highestContext, EVENT);
+
+    uploader.upload(TRANSPORT_CONTEXT, 1, mockRunnable);
+
+    verify(mockBackend, times(1)).send(any());
+    assertThat(store.hasPendingEventsFor(highestContext)).isTrue();
+  }
 }